@@ -0,0 +1,139 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+/**
+ * An intrusive doubly linked list of nodes,
+ * ordered from least recently used (the head)
+ * to most recently used (the tail).
+ *
+ * The links are stored in the nodes themselves,
+ * so moving a node to the tail is O(1) and allocates nothing.
+ * A node can only be in one queue at a time.
+ *
+ * This class is not thread safe, it is guarded by the cache's eviction lock.
+ *
+ * @param <K>
+ * Type of the keys.
+ * @param <V>
+ * Type of the values.
+ */
+final class AccessOrderQueue<K, V>
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private Node<K, V> first;
+	private Node<K, V> last;
+	private long size = 0;
+
+	// -------------------------------------------- //
+	// INSPECT
+	// -------------------------------------------- //
+
+	Node<K, V> peekFirst()
+	{
+		return this.first;
+	}
+
+	long size()
+	{
+		return this.size;
+	}
+
+	boolean isEmpty()
+	{
+		return this.first == null;
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	void addLast(Node<K, V> node)
+	{
+		assert node.getPreviousInQueue() == null && node.getNextInQueue() == null;
+
+		Node<K, V> oldLast = this.last;
+		this.last = node;
+		if (oldLast == null)
+		{
+			this.first = node;
+		}
+		else
+		{
+			oldLast.setNextInQueue(node);
+			node.setPreviousInQueue(oldLast);
+		}
+		this.size++;
+	}
+
+	void remove(Node<K, V> node)
+	{
+		Node<K, V> previous = node.getPreviousInQueue();
+		Node<K, V> next = node.getNextInQueue();
+
+		if (previous == null) this.first = next;
+		else previous.setNextInQueue(next);
+
+		if (next == null) this.last = previous;
+		else next.setPreviousInQueue(previous);
+
+		node.setPreviousInQueue(null);
+		node.setNextInQueue(null);
+		this.size--;
+	}
+
+	void moveToBack(Node<K, V> node)
+	{
+		if (node == this.last) return;
+		this.remove(node);
+		this.addLast(node);
+	}
+
+	Node<K, V> pollFirst()
+	{
+		Node<K, V> node = this.first;
+		if (node != null) this.remove(node);
+		return node;
+	}
+
+	void clear()
+	{
+		Node<K, V> node = this.first;
+		while (node != null)
+		{
+			Node<K, V> next = node.getNextInQueue();
+			node.setPreviousInQueue(null);
+			node.setNextInQueue(null);
+			node = next;
+		}
+		this.first = null;
+		this.last = null;
+		this.size = 0;
+	}
+
+}
@@ -0,0 +1,606 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The W-TinyLFU cache implementation returned by {@code CacheBuilder}.
+ *
+ * The entries live in a {@code ConcurrentHashMap}, so lookups never block.
+ * The eviction policy (the queues, the frequency sketch and the timer wheel)
+ * is guarded by a single lock. Writes always take the lock,
+ * reads only record their access if the lock is free.
+ * So under heavy contention some accesses are not recorded,
+ * which only makes the policy slightly less precise.
+ *
+ * The space is split into a window LRU of 1% and a main space of 99%.
+ * The main space is a segmented LRU, where 80% is protected
+ * and the rest is probation. Entries leaving the window compete with
+ * the least recently used entry in probation, and the one with the
+ * highest estimated frequency is kept.
+ *
+ * @param <K>
+ * Type of the keys.
+ * @param <V>
+ * Type of the values.
+ */
+final class BoundedCache<K, V> implements Cache<K, V>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final double PERCENT_WINDOW = 0.01D;
+	private static final double PERCENT_PROTECTED = 0.80D;
+
+	// Candidates this unpopular are never admitted by chance.
+	private static final int ADMIT_RANDOMLY_THRESHOLD = 5;
+
+	private static final long UNSET = -1L;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+
+	private final long maxSize;
+	private final long windowMax;
+	private final long protectedMax;
+
+	private final long expireAfterWriteNanos;
+	private final long expireAfterAccessNanos;
+	private final Function<? super K, ? extends V> loader;
+	private final LongSupplier ticker;
+
+	// Guarded by the eviction lock
+	private final FrequencySketch sketch;
+	private final AccessOrderQueue<K, V> window = new AccessOrderQueue<>();
+	private final AccessOrderQueue<K, V> probation = new AccessOrderQueue<>();
+	private final AccessOrderQueue<K, V> protectedQueue = new AccessOrderQueue<>();
+	private final TimerWheel<K, V> timerWheel;
+	private final Predicate<Node<K, V>> expirer = this::expireIfDue;
+	private long maintenanceTime;
+
+	// Statistics
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder loadSuccessCount = new LongAdder();
+	private final LongAdder loadFailureCount = new LongAdder();
+	private final LongAdder totalLoadTime = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	BoundedCache(CacheBuilder<K, V> builder)
+	{
+		this.maxSize = builder.getMaxSize();
+		this.windowMax = Math.max(1L, (long) (this.maxSize * PERCENT_WINDOW));
+		this.protectedMax = (long) ((this.maxSize - this.windowMax) * PERCENT_PROTECTED);
+
+		this.expireAfterWriteNanos = builder.getExpireAfterWriteNanos();
+		this.expireAfterAccessNanos = builder.getExpireAfterAccessNanos();
+		this.loader = builder.getLoader();
+		this.ticker = builder.getTicker();
+
+		this.sketch = new FrequencySketch(this.maxSize);
+		this.timerWheel = builder.isExpiring() ? new TimerWheel<>(this.ticker.getAsLong()) : null;
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: LOOKUP
+	// -------------------------------------------- //
+
+	@Override
+	public Optional<V> getIfPresent(K key) throws ArgumentNullException
+	{
+		Argument.handleNull(key, "key");
+
+		Node<K, V> node = this.data.get(key);
+		if (node == null)
+		{
+			this.missCount.increment();
+			return Optional.empty();
+		}
+
+		long now = this.ticker.getAsLong();
+		if (this.hasExpired(node, now))
+		{
+			this.missCount.increment();
+			return Optional.empty();
+		}
+
+		V value = node.getValue();
+		this.hitCount.increment();
+		this.afterRead(node, now);
+		return Optional.of(value);
+	}
+
+	@Override
+	public V get(K key) throws ArgumentNullException, IllegalStateException
+	{
+		if (this.loader == null) throw new IllegalStateException("No loader was specified for this cache.");
+		return this.get(key, this.loader);
+	}
+
+	@Override
+	public V get(K key, Supplier<? extends V> loader) throws ArgumentNullException, IllegalStateException
+	{
+		Argument.handleNull(loader, "loader");
+		return this.get(key, k -> loader.get());
+	}
+
+	@Override
+	public V get(K key, Function<? super K, ? extends V> loader) throws ArgumentNullException, IllegalStateException
+	{
+		Argument.handleNull(key, "key");
+		Argument.handleNull(loader, "loader");
+
+		long now = this.ticker.getAsLong();
+		Node<K, V> node = this.data.get(key);
+		if (node != null && ! this.hasExpired(node, now))
+		{
+			this.hitCount.increment();
+			this.afterRead(node, now);
+			return node.getValue();
+		}
+
+		this.missCount.increment();
+
+		PendingWrite<K, V> write = new PendingWrite<>();
+		node = this.data.compute(key, (k, prior) ->
+		{
+			if (prior != null && ! this.hasExpired(prior, now)) return prior;
+
+			V value = this.load(k, loader);
+			write.setCreated(new Node<>(k, value, this.ticker.getAsLong()));
+			write.setReplaced(prior);
+			return write.getCreated();
+		});
+
+		if (write.getCreated() != null) this.afterWrite(write);
+		return node.getValue();
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: MODIFY
+	// -------------------------------------------- //
+
+	@Override
+	public void put(K key, V value) throws ArgumentNullException
+	{
+		Argument.handleNull(key, "key");
+		Argument.handleNull(value, "value");
+
+		long now = this.ticker.getAsLong();
+		PendingWrite<K, V> write = new PendingWrite<>();
+		this.data.compute(key, (k, prior) ->
+		{
+			if (prior == null || this.hasExpired(prior, now))
+			{
+				write.setCreated(new Node<>(k, value, now));
+				write.setReplaced(prior);
+				return write.getCreated();
+			}
+
+			prior.setValue(value);
+			prior.setWriteTime(now);
+			prior.setAccessTime(now);
+			write.setUpdated(prior);
+			return prior;
+		});
+
+		this.afterWrite(write);
+	}
+
+	@Override
+	public void invalidate(K key) throws ArgumentNullException
+	{
+		Argument.handleNull(key, "key");
+
+		Node<K, V> node = this.data.remove(key);
+		if (node == null) return;
+
+		this.evictionLock.lock();
+		try
+		{
+			this.onRemove(node);
+		}
+		finally
+		{
+			this.evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		this.evictionLock.lock();
+		try
+		{
+			for (Node<K, V> node : this.data.values())
+			{
+				this.data.remove(node.getKey(), node);
+				this.onRemove(node);
+			}
+		}
+		finally
+		{
+			this.evictionLock.unlock();
+		}
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: INSPECT
+	// -------------------------------------------- //
+
+	@Override
+	public long size()
+	{
+		return this.data.mappingCount();
+	}
+
+	@Override
+	public CacheStats getStats()
+	{
+		return new CacheStats(
+			this.hitCount.sum(),
+			this.missCount.sum(),
+			this.loadSuccessCount.sum(),
+			this.loadFailureCount.sum(),
+			this.totalLoadTime.sum(),
+			this.evictionCount.sum()
+		);
+	}
+
+	@Override
+	public void cleanUp()
+	{
+		this.evictionLock.lock();
+		try
+		{
+			this.maintenance(this.ticker.getAsLong());
+		}
+		finally
+		{
+			this.evictionLock.unlock();
+		}
+	}
+
+	// -------------------------------------------- //
+	// LOADING
+	// -------------------------------------------- //
+
+	private V load(K key, Function<? super K, ? extends V> loader)
+	{
+		long start = this.ticker.getAsLong();
+		V value;
+		try
+		{
+			value = loader.apply(key);
+		}
+		catch (RuntimeException | Error ex)
+		{
+			this.loadFailureCount.increment();
+			this.totalLoadTime.add(this.ticker.getAsLong() - start);
+			throw ex;
+		}
+		this.totalLoadTime.add(this.ticker.getAsLong() - start);
+
+		if (value == null)
+		{
+			this.loadFailureCount.increment();
+			throw new IllegalStateException("The loader returned null for key: " + key);
+		}
+
+		this.loadSuccessCount.increment();
+		return value;
+	}
+
+	// -------------------------------------------- //
+	// EXPIRY
+	// -------------------------------------------- //
+
+	private boolean hasExpired(Node<K, V> node, long now)
+	{
+		if (this.expireAfterWriteNanos != UNSET && now - node.getWriteTime() >= this.expireAfterWriteNanos) return true;
+		if (this.expireAfterAccessNanos != UNSET && now - node.getAccessTime() >= this.expireAfterAccessNanos) return true;
+		return false;
+	}
+
+	private long getDeadline(Node<K, V> node)
+	{
+		if (this.expireAfterWriteNanos == UNSET) return node.getAccessTime() + this.expireAfterAccessNanos;
+
+		long deadline = node.getWriteTime() + this.expireAfterWriteNanos;
+		if (this.expireAfterAccessNanos == UNSET) return deadline;
+
+		long accessDeadline = node.getAccessTime() + this.expireAfterAccessNanos;
+		return (accessDeadline - deadline < 0) ? accessDeadline : deadline;
+	}
+
+	// Called by the timer wheel, while holding the eviction lock.
+	private boolean expireIfDue(Node<K, V> node)
+	{
+		if ( ! this.hasExpired(node, this.maintenanceTime))
+		{
+			node.setVariableTime(this.getDeadline(node));
+			return false;
+		}
+
+		this.evict(node);
+		return true;
+	}
+
+	// -------------------------------------------- //
+	// POLICY: EVENTS
+	// -------------------------------------------- //
+
+	private void afterRead(Node<K, V> node, long now)
+	{
+		if (this.expireAfterAccessNanos != UNSET) node.setAccessTime(now);
+
+		// Reads must never block, so if someone else holds the lock
+		// this access is simply not recorded.
+		if ( ! this.evictionLock.tryLock()) return;
+		try
+		{
+			this.onAccess(node);
+		}
+		finally
+		{
+			this.evictionLock.unlock();
+		}
+	}
+
+	private void afterWrite(PendingWrite<K, V> write)
+	{
+		this.evictionLock.lock();
+		try
+		{
+			if (write.getReplaced() != null)
+			{
+				// Only expired entries are replaced by a new node.
+				this.evictionCount.increment();
+				this.onRemove(write.getReplaced());
+			}
+			if (write.getCreated() != null) this.onAdd(write.getCreated());
+			if (write.getUpdated() != null) this.onUpdate(write.getUpdated());
+
+			this.maintenance(this.ticker.getAsLong());
+		}
+		finally
+		{
+			this.evictionLock.unlock();
+		}
+	}
+
+	private void onAdd(Node<K, V> node)
+	{
+		// It might have been removed, before we got the lock.
+		if (node.isDead() || this.data.get(node.getKey()) != node) return;
+
+		this.sketch.increment(node.getKey());
+		node.setQueueType(Node.QUEUE_WINDOW);
+		this.window.addLast(node);
+
+		if (this.timerWheel != null)
+		{
+			node.setVariableTime(this.getDeadline(node));
+			this.timerWheel.schedule(node);
+		}
+	}
+
+	private void onUpdate(Node<K, V> node)
+	{
+		this.onAccess(node);
+		if (this.timerWheel != null && node.isInQueue())
+		{
+			node.setVariableTime(this.getDeadline(node));
+			this.timerWheel.reschedule(node);
+		}
+	}
+
+	private void onAccess(Node<K, V> node)
+	{
+		this.sketch.increment(node.getKey());
+
+		switch (node.getQueueType())
+		{
+			case Node.QUEUE_WINDOW:
+				this.window.moveToBack(node);
+				break;
+			case Node.QUEUE_PROBATION:
+				this.probation.remove(node);
+				node.setQueueType(Node.QUEUE_PROTECTED);
+				this.protectedQueue.addLast(node);
+				this.demoteFromProtected();
+				break;
+			case Node.QUEUE_PROTECTED:
+				this.protectedQueue.moveToBack(node);
+				break;
+			default:
+				// Not added yet, or already removed.
+				return;
+		}
+
+		if (this.timerWheel != null && this.expireAfterAccessNanos != UNSET)
+		{
+			node.setVariableTime(this.getDeadline(node));
+			this.timerWheel.reschedule(node);
+		}
+	}
+
+	private void onRemove(Node<K, V> node)
+	{
+		if (node.isInQueue()) this.getQueue(node).remove(node);
+		if (this.timerWheel != null) this.timerWheel.deschedule(node);
+		node.setQueueType(Node.QUEUE_DEAD);
+	}
+
+	// -------------------------------------------- //
+	// POLICY: MAINTENANCE
+	// -------------------------------------------- //
+
+	private void maintenance(long now)
+	{
+		if (this.timerWheel != null)
+		{
+			this.maintenanceTime = now;
+			this.timerWheel.advance(now, this.expirer);
+		}
+		this.evictEntries();
+	}
+
+	private void evictEntries()
+	{
+		// Move the overflow from the window into probation.
+		// The first of those is the first candidate for admission.
+		Node<K, V> candidate = null;
+		while (this.window.size() > this.windowMax)
+		{
+			Node<K, V> node = this.window.pollFirst();
+			node.setQueueType(Node.QUEUE_PROBATION);
+			this.probation.addLast(node);
+			if (candidate == null) candidate = node;
+		}
+
+		// Candidates are at the back of probation, victims are at the front.
+		while (this.getPolicySize() > this.maxSize)
+		{
+			Node<K, V> victim = this.getVictim();
+
+			if (candidate == null || candidate == victim)
+			{
+				candidate = (candidate == null) ? null : candidate.getNextInQueue();
+				this.evict(victim);
+				continue;
+			}
+
+			Node<K, V> next = candidate.getNextInQueue();
+			if (this.admit(candidate.getKey(), victim.getKey()))
+			{
+				this.evict(victim);
+			}
+			else
+			{
+				this.evict(candidate);
+			}
+			candidate = next;
+		}
+	}
+
+	private boolean admit(K candidateKey, K victimKey)
+	{
+		int candidateFrequency = this.sketch.frequency(candidateKey);
+		int victimFrequency = this.sketch.frequency(victimKey);
+
+		if (candidateFrequency > victimFrequency) return true;
+		if (candidateFrequency <= ADMIT_RANDOMLY_THRESHOLD) return false;
+
+		// An attacker could make a victim artificially popular,
+		// so warm candidates are sometimes let in anyway.
+		return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+	}
+
+	private void demoteFromProtected()
+	{
+		while (this.protectedQueue.size() > this.protectedMax)
+		{
+			Node<K, V> node = this.protectedQueue.pollFirst();
+			node.setQueueType(Node.QUEUE_PROBATION);
+			this.probation.addLast(node);
+		}
+	}
+
+	private void evict(Node<K, V> node)
+	{
+		if (this.data.remove(node.getKey(), node)) this.evictionCount.increment();
+		this.onRemove(node);
+	}
+
+	// -------------------------------------------- //
+	// POLICY: UTIL
+	// -------------------------------------------- //
+
+	private long getPolicySize()
+	{
+		return this.window.size() + this.probation.size() + this.protectedQueue.size();
+	}
+
+	private Node<K, V> getVictim()
+	{
+		if ( ! this.probation.isEmpty()) return this.probation.peekFirst();
+		if ( ! this.protectedQueue.isEmpty()) return this.protectedQueue.peekFirst();
+		return this.window.peekFirst();
+	}
+
+	private AccessOrderQueue<K, V> getQueue(Node<K, V> node)
+	{
+		switch (node.getQueueType())
+		{
+			case Node.QUEUE_WINDOW: return this.window;
+			case Node.QUEUE_PROBATION: return this.probation;
+			case Node.QUEUE_PROTECTED: return this.protectedQueue;
+			default: throw new IllegalStateException("Node is not in a queue: " + node.getQueueType());
+		}
+	}
+
+	// -------------------------------------------- //
+	// PENDING WRITE
+	// -------------------------------------------- //
+
+	private static final class PendingWrite<K, V>
+	{
+		private Node<K, V> created;
+		private Node<K, V> replaced;
+		private Node<K, V> updated;
+
+		Node<K, V> getCreated() { return this.created; }
+		void setCreated(Node<K, V> created) { this.created = created; }
+
+		Node<K, V> getReplaced() { return this.replaced; }
+		void setReplaced(Node<K, V> replaced) { this.replaced = replaced; }
+
+		Node<K, V> getUpdated() { return this.updated; }
+		void setUpdated(Node<K, V> updated) { this.updated = updated; }
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, thread safe, in memory cache.
+ * Instances are created using a {@code CacheBuilder}.
+ *
+ * When the cache is full, it uses the W-TinyLFU policy to decide
+ * what to evict. New entries are put in a small LRU window,
+ * and when they leave the window, they are only admitted
+ * to the main space, if they are estimated to be used more often,
+ * than the entry that would be evicted to make room for them.
+ * That makes the cache resistant to scans, which would
+ * flush a plain LRU cache.
+ *
+ * Entries can also expire a fixed amount of time after they were
+ * written or last accessed.
+ *
+ * Neither keys nor values can be null.
+ *
+ * @param <K>
+ * Type of the keys.
+ * @param <V>
+ * Type of the values.
+ * @see CacheBuilder
+ */
+public interface Cache<K, V>
+{
+	// -------------------------------------------- //
+	// LOOKUP
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the value associated with the key,
+	 * if it is present and not expired.
+	 * @param key
+	 * The key to look up.
+	 * @return
+	 * The value associated with the key,
+	 * or an empty optional if there is none.
+	 * @throws ArgumentNullException
+	 * If key is null.
+	 */
+	public Optional<V> getIfPresent(K key) throws ArgumentNullException;
+
+	/**
+	 * Returns the value associated with the key,
+	 * if it is not present it is loaded using the loader
+	 * specified in the {@code CacheBuilder}.
+	 * @param key
+	 * The key to look up.
+	 * @return
+	 * The value associated with the key.
+	 * @throws ArgumentNullException
+	 * If key is null.
+	 * @throws IllegalStateException
+	 * If no loader was specified, or if the loader returned null.
+	 */
+	public V get(K key) throws ArgumentNullException, IllegalStateException;
+
+	/**
+	 * Returns the value associated with the key,
+	 * if it is not present it is computed using the loader, and stored.
+	 * The loader is called at most once per key at a time,
+	 * other threads asking for the same key will wait for it.
+	 * @param key
+	 * The key to look up.
+	 * @param loader
+	 * The function used to compute the value, if it is not present.
+	 * @return
+	 * The value associated with the key.
+	 * @throws ArgumentNullException
+	 * If key or loader is null.
+	 * @throws IllegalStateException
+	 * If the loader returned null.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) throws ArgumentNullException, IllegalStateException;
+
+	/**
+	 * Returns the value associated with the key,
+	 * if it is not present it is supplied by the loader, and stored.
+	 * This is equal to {@code get(key, k -> loader.get())}
+	 * @param key
+	 * The key to look up.
+	 * @param loader
+	 * The supplier used to create the value, if it is not present.
+	 * @return
+	 * The value associated with the key.
+	 * @throws ArgumentNullException
+	 * If key or loader is null.
+	 * @throws IllegalStateException
+	 * If the loader returned null.
+	 */
+	public V get(K key, Supplier<? extends V> loader) throws ArgumentNullException, IllegalStateException;
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Associates the value with the key,
+	 * replacing any previous value.
+	 * @param key
+	 * The key.
+	 * @param value
+	 * The value.
+	 * @throws ArgumentNullException
+	 * If key or value is null.
+	 */
+	public void put(K key, V value) throws ArgumentNullException;
+
+	/**
+	 * Removes the entry for the key, if present.
+	 * @param key
+	 * The key.
+	 * @throws ArgumentNullException
+	 * If key is null.
+	 */
+	public void invalidate(K key) throws ArgumentNullException;
+
+	/**
+	 * Removes all entries from the cache.
+	 */
+	public void invalidateAll();
+
+	// -------------------------------------------- //
+	// INSPECT
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the approximate number of entries in this cache.
+	 * Entries that have expired, but not yet been removed are included.
+	 * @return
+	 * The approximate number of entries.
+	 */
+	public long size();
+
+	/**
+	 * Returns a snapshot of the statistics for this cache.
+	 * @return
+	 * The current statistics.
+	 */
+	public CacheStats getStats();
+
+	/**
+	 * Performs any pending maintenance, such as removing expired entries.
+	 * This is done automatically on writes, so it rarely has to be called.
+	 */
+	public void cleanUp();
+
+}
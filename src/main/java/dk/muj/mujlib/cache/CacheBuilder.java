@@ -0,0 +1,203 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+import dk.muj.mujlib.Builder;
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * This is used to create a {@code Cache}.
+ * The max size must always be set, everything else is optional.
+ *
+ * {@code Cache<String, User> cache = new CacheBuilder<String, User>()
+ * .setMaxSize(10_000)
+ * .setExpireAfterWrite(5, TimeUnit.MINUTES)
+ * .setLoader(repository::load)
+ * .build(); }
+ *
+ * A builder can be used to build several caches,
+ * they will not share any state.
+ *
+ * @param <K>
+ * Type of the keys.
+ * @param <V>
+ * Type of the values.
+ * @see Cache
+ */
+public final class CacheBuilder<K, V> implements Builder<Cache<K, V>>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final long UNSET = -1L;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private long maxSize = UNSET;
+	private long expireAfterWriteNanos = UNSET;
+	private long expireAfterAccessNanos = UNSET;
+	private Function<? super K, ? extends V> loader = null;
+	private LongSupplier ticker = System::nanoTime;
+
+	// -------------------------------------------- //
+	// SETTERS
+	// -------------------------------------------- //
+
+	/**
+	 * Sets the max number of entries the cache can hold.
+	 * @param maxSize
+	 * The max number of entries.
+	 * @return
+	 * This builder.
+	 * @throws IllegalArgumentException
+	 * If maxSize is not positive.
+	 */
+	public CacheBuilder<K, V> setMaxSize(long maxSize) throws IllegalArgumentException
+	{
+		if (maxSize <= 0) throw new IllegalArgumentException("maxSize: " + maxSize);
+		this.maxSize = maxSize;
+		return this;
+	}
+
+	/**
+	 * Makes entries expire a fixed time after they were created,
+	 * or after their value was last replaced.
+	 * @param duration
+	 * The amount of time, in the passed unit.
+	 * @param unit
+	 * The unit of duration.
+	 * @return
+	 * This builder.
+	 * @throws ArgumentNullException
+	 * If unit is null.
+	 * @throws IllegalArgumentException
+	 * If duration is not positive.
+	 */
+	public CacheBuilder<K, V> setExpireAfterWrite(long duration, TimeUnit unit) throws ArgumentNullException, IllegalArgumentException
+	{
+		this.expireAfterWriteNanos = toNanos(duration, unit);
+		return this;
+	}
+
+	/**
+	 * Makes entries expire a fixed time after they were last read or written.
+	 * @param duration
+	 * The amount of time, in the passed unit.
+	 * @param unit
+	 * The unit of duration.
+	 * @return
+	 * This builder.
+	 * @throws ArgumentNullException
+	 * If unit is null.
+	 * @throws IllegalArgumentException
+	 * If duration is not positive.
+	 */
+	public CacheBuilder<K, V> setExpireAfterAccess(long duration, TimeUnit unit) throws ArgumentNullException, IllegalArgumentException
+	{
+		this.expireAfterAccessNanos = toNanos(duration, unit);
+		return this;
+	}
+
+	/**
+	 * Sets the function used by {@code Cache#get(Object)}
+	 * to load values that are not present.
+	 * @param loader
+	 * The loader.
+	 * @return
+	 * This builder.
+	 * @throws ArgumentNullException
+	 * If loader is null.
+	 */
+	public CacheBuilder<K, V> setLoader(Function<? super K, ? extends V> loader) throws ArgumentNullException
+	{
+		Argument.handleNull(loader, "loader");
+		this.loader = loader;
+		return this;
+	}
+
+	/**
+	 * Sets the time source, used for expiry and load time statistics.
+	 * By default this is {@code System::nanoTime}
+	 * It is mostly useful for testing.
+	 * @param ticker
+	 * A supplier of the current time in nanoseconds.
+	 * @return
+	 * This builder.
+	 * @throws ArgumentNullException
+	 * If ticker is null.
+	 */
+	public CacheBuilder<K, V> setTicker(LongSupplier ticker) throws ArgumentNullException
+	{
+		Argument.handleNull(ticker, "ticker");
+		this.ticker = ticker;
+		return this;
+	}
+
+	// -------------------------------------------- //
+	// GETTERS
+	// -------------------------------------------- //
+
+	long getMaxSize() { return this.maxSize; }
+	long getExpireAfterWriteNanos() { return this.expireAfterWriteNanos; }
+	long getExpireAfterAccessNanos() { return this.expireAfterAccessNanos; }
+	Function<? super K, ? extends V> getLoader() { return this.loader; }
+	LongSupplier getTicker() { return this.ticker; }
+
+	boolean isExpiring()
+	{
+		return this.getExpireAfterWriteNanos() != UNSET || this.getExpireAfterAccessNanos() != UNSET;
+	}
+
+	// -------------------------------------------- //
+	// BUILD
+	// -------------------------------------------- //
+
+	@Override
+	public Cache<K, V> build() throws IllegalStateException
+	{
+		if (this.getMaxSize() == UNSET) throw new IllegalStateException("maxSize must be set.");
+		return new BoundedCache<>(this);
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static long toNanos(long duration, TimeUnit unit)
+	{
+		Argument.handleNull(unit, "unit");
+		if (duration <= 0) throw new IllegalArgumentException("duration: " + duration);
+		return unit.toNanos(duration);
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.hash.HashUtil;
+
+/**
+ * An immutable snapshot of the statistics for a {@code Cache}.
+ * The counts are taken from several independent counters,
+ * so a snapshot taken while the cache is in use,
+ * is not guaranteed to be perfectly consistent.
+ *
+ * @see Cache#getStats()
+ */
+public final class CacheStats
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final long hitCount;
+	private final long missCount;
+	private final long loadSuccessCount;
+	private final long loadFailureCount;
+	private final long totalLoadTime;
+	private final long evictionCount;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new snapshot of cache statistics.
+	 * @param hitCount
+	 * Number of lookups that found a value.
+	 * @param missCount
+	 * Number of lookups that didn't find a value.
+	 * @param loadSuccessCount
+	 * Number of values that were successfully loaded.
+	 * @param loadFailureCount
+	 * Number of loads that threw an exception.
+	 * @param totalLoadTime
+	 * Total time spent loading in nanoseconds.
+	 * @param evictionCount
+	 * Number of entries that were evicted because of size or expiry.
+	 * @throws IllegalArgumentException
+	 * If any of the values are negative.
+	 */
+	@Pure
+	public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime, long evictionCount) throws IllegalArgumentException
+	{
+		if (hitCount < 0 || missCount < 0 || loadSuccessCount < 0 || loadFailureCount < 0 || totalLoadTime < 0 || evictionCount < 0)
+		{
+			throw new IllegalArgumentException("Cache statistics can't be negative.");
+		}
+
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadTime = totalLoadTime;
+		this.evictionCount = evictionCount;
+	}
+
+	// -------------------------------------------- //
+	// GETTERS
+	// -------------------------------------------- //
+
+	public long getHitCount() { return this.hitCount; }
+	public long getMissCount() { return this.missCount; }
+	public long getLoadSuccessCount() { return this.loadSuccessCount; }
+	public long getLoadFailureCount() { return this.loadFailureCount; }
+	public long getTotalLoadTime() { return this.totalLoadTime; }
+	public long getEvictionCount() { return this.evictionCount; }
+
+	// -------------------------------------------- //
+	// DERIVED
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the number of lookups,
+	 * that is hits plus misses.
+	 * @return
+	 * The number of lookups.
+	 */
+	public long getRequestCount()
+	{
+		return this.getHitCount() + this.getMissCount();
+	}
+
+	/**
+	 * Returns the ratio of lookups that were hits.
+	 * If no lookups has been done, this is 1.0
+	 * @return
+	 * A value between 0.0 and 1.0 (both inclusive).
+	 */
+	public double getHitRate()
+	{
+		long requestCount = this.getRequestCount();
+		return (requestCount == 0) ? 1.0D : (double) this.getHitCount() / requestCount;
+	}
+
+	/**
+	 * Returns the ratio of lookups that were misses.
+	 * If no lookups has been done, this is 0.0
+	 * @return
+	 * A value between 0.0 and 1.0 (both inclusive).
+	 */
+	public double getMissRate()
+	{
+		long requestCount = this.getRequestCount();
+		return (requestCount == 0) ? 0.0D : (double) this.getMissCount() / requestCount;
+	}
+
+	/**
+	 * Returns the average time spent loading a value,
+	 * in nanoseconds. Failed loads are included.
+	 * If nothing has been loaded, this is 0.0
+	 * @return
+	 * The average load penalty in nanoseconds.
+	 */
+	public double getAverageLoadPenalty()
+	{
+		long loadCount = this.getLoadSuccessCount() + this.getLoadFailureCount();
+		return (loadCount == 0) ? 0.0D : (double) this.getTotalLoadTime() / loadCount;
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof CacheStats)) return false;
+
+		CacheStats that = (CacheStats) o;
+
+		if (this.getHitCount() != that.getHitCount()) return false;
+		if (this.getMissCount() != that.getMissCount()) return false;
+		if (this.getLoadSuccessCount() != that.getLoadSuccessCount()) return false;
+		if (this.getLoadFailureCount() != that.getLoadFailureCount()) return false;
+		if (this.getTotalLoadTime() != that.getTotalLoadTime()) return false;
+		if (this.getEvictionCount() != that.getEvictionCount()) return false;
+
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int result = HashUtil.HASHCODE_START;
+		result = HashUtil.resultAddField(result, this.getHitCount());
+		result = HashUtil.resultAddField(result, this.getMissCount());
+		result = HashUtil.resultAddField(result, this.getLoadSuccessCount());
+		result = HashUtil.resultAddField(result, this.getLoadFailureCount());
+		result = HashUtil.resultAddField(result, this.getTotalLoadTime());
+		result = HashUtil.resultAddField(result, this.getEvictionCount());
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CacheStats{hitCount=" + this.getHitCount()
+			+ ", missCount=" + this.getMissCount()
+			+ ", loadSuccessCount=" + this.getLoadSuccessCount()
+			+ ", loadFailureCount=" + this.getLoadFailureCount()
+			+ ", totalLoadTime=" + this.getTotalLoadTime()
+			+ ", evictionCount=" + this.getEvictionCount()
+			+ "}";
+	}
+
+}
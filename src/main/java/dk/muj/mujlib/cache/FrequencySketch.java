@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+/**
+ * A count-min sketch, used to estimate how often
+ * a key has been accessed, without storing the key itself.
+ * This is the TinyLFU frequency filter used by the {@code Cache}.
+ *
+ * Every counter is 4 bits, so it can at most count to 15.
+ * Sixteen counters are packed into every long,
+ * and a key is mapped to four counters, each in a long picked by its own hash.
+ * So a lookup touches up to four longs, usually in different cache lines.
+ * The estimated frequency is the minimum of those four counters.
+ *
+ * To make the sketch forget old history, all counters are halved
+ * when the number of recorded increments reaches ten times the table size.
+ * This is called aging, or a reset.
+ *
+ * This class is not thread safe, it is guarded by the cache's eviction lock.
+ */
+final class FrequencySketch
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final long[] SEEDS = {
+		0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+	};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK = 0x1111111111111111L;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int additions = 0;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	FrequencySketch(long maxSize)
+	{
+		assert maxSize > 0 : maxSize;
+
+		int capacity = (int) Math.min(maxSize, 1 << 30);
+		int length = (capacity <= 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+		this.table = new long[length];
+		this.tableMask = length - 1;
+		this.sampleSize = (int) Math.min(10L * length, Integer.MAX_VALUE);
+	}
+
+	// -------------------------------------------- //
+	// FREQUENCY
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the estimated number of occurrences of the key,
+	 * since the last reset. The value is never higher than 15.
+	 */
+	int frequency(Object key)
+	{
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+		int frequency = Integer.MAX_VALUE;
+
+		for (int i = 0; i < 4; i++)
+		{
+			int index = this.indexOf(hash, i);
+			int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+			frequency = Math.min(frequency, count);
+		}
+
+		return frequency;
+	}
+
+	/**
+	 * Increments the popularity of the key,
+	 * if it isn't already at the max.
+	 * If enough increments have been recorded,
+	 * all counters will be aged.
+	 */
+	void increment(Object key)
+	{
+		int hash = spread(key.hashCode());
+		int start = (hash & 3) << 2;
+
+		boolean added = false;
+		for (int i = 0; i < 4; i++)
+		{
+			int index = this.indexOf(hash, i);
+			added |= this.incrementAt(index, start + i);
+		}
+
+		if (added && ++this.additions == this.sampleSize)
+		{
+			this.reset();
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private boolean incrementAt(int index, int counter)
+	{
+		int offset = counter << 2;
+		long mask = 0xfL << offset;
+		if ((this.table[index] & mask) == mask) return false;
+
+		this.table[index] += 1L << offset;
+		return true;
+	}
+
+	private void reset()
+	{
+		int odd = 0;
+		for (int i = 0; i < this.table.length; i++)
+		{
+			odd += Long.bitCount(this.table[i] & ONE_MASK);
+			this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+		}
+		this.additions = (this.additions >>> 1) - (odd >>> 2);
+	}
+
+	private int indexOf(int item, int i)
+	{
+		long hash = (item + SEEDS[i]) * SEEDS[i];
+		hash += (hash >>> 32);
+		return ((int) hash) & this.tableMask;
+	}
+
+	private static int spread(int x)
+	{
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+/**
+ * A single entry in a {@code BoundedCache}.
+ *
+ * The key, value and timestamps may be read by any thread.
+ * The queue and timer wheel links, as well as the queue type,
+ * are only touched while holding the cache's eviction lock.
+ *
+ * @param <K>
+ * Type of the key.
+ * @param <V>
+ * Type of the value.
+ */
+final class Node<K, V>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	static final int QUEUE_NONE = 0;
+	static final int QUEUE_WINDOW = 1;
+	static final int QUEUE_PROBATION = 2;
+	static final int QUEUE_PROTECTED = 3;
+	static final int QUEUE_DEAD = 4;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final K key;
+	private volatile V value;
+	private volatile long writeTime;
+	private volatile long accessTime;
+
+	// Guarded by the eviction lock
+	private int queueType = QUEUE_NONE;
+	private Node<K, V> previousInQueue;
+	private Node<K, V> nextInQueue;
+
+	private long variableTime;
+	private Node<K, V> previousInWheel;
+	private Node<K, V> nextInWheel;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	Node(K key, V value, long now)
+	{
+		this.key = key;
+		this.value = value;
+		this.writeTime = now;
+		this.accessTime = now;
+	}
+
+	// -------------------------------------------- //
+	// ENTRY
+	// -------------------------------------------- //
+
+	K getKey() { return this.key; }
+
+	V getValue() { return this.value; }
+	void setValue(V value) { this.value = value; }
+
+	long getWriteTime() { return this.writeTime; }
+	void setWriteTime(long writeTime) { this.writeTime = writeTime; }
+
+	long getAccessTime() { return this.accessTime; }
+	void setAccessTime(long accessTime) { this.accessTime = accessTime; }
+
+	// -------------------------------------------- //
+	// QUEUE
+	// -------------------------------------------- //
+
+	int getQueueType() { return this.queueType; }
+	void setQueueType(int queueType) { this.queueType = queueType; }
+
+	boolean isInQueue() { return this.getQueueType() != QUEUE_NONE && this.getQueueType() != QUEUE_DEAD; }
+	boolean isDead() { return this.getQueueType() == QUEUE_DEAD; }
+
+	Node<K, V> getPreviousInQueue() { return this.previousInQueue; }
+	void setPreviousInQueue(Node<K, V> previousInQueue) { this.previousInQueue = previousInQueue; }
+
+	Node<K, V> getNextInQueue() { return this.nextInQueue; }
+	void setNextInQueue(Node<K, V> nextInQueue) { this.nextInQueue = nextInQueue; }
+
+	// -------------------------------------------- //
+	// TIMER WHEEL
+	// -------------------------------------------- //
+
+	long getVariableTime() { return this.variableTime; }
+	void setVariableTime(long variableTime) { this.variableTime = variableTime; }
+
+	Node<K, V> getPreviousInWheel() { return this.previousInWheel; }
+	void setPreviousInWheel(Node<K, V> previousInWheel) { this.previousInWheel = previousInWheel; }
+
+	Node<K, V> getNextInWheel() { return this.nextInWheel; }
+	void setNextInWheel(Node<K, V> nextInWheel) { this.nextInWheel = nextInWheel; }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+import java.util.function.Predicate;
+
+/**
+ * A hierarchical timer wheel, used to expire cache entries
+ * in amortised O(1) time, without scanning all entries.
+ *
+ * Each level of the wheel is an array of buckets,
+ * each covering a power of two nanoseconds.
+ * The levels cover roughly 1.07 seconds, 1.14 minutes,
+ * 1.22 hours, 19.5 hours and 13 days per bucket.
+ * When time advances, the buckets that have been passed are emptied.
+ * Entries in them are either expired, or rescheduled to a finer level.
+ *
+ * Every bucket is a circular doubly linked list, with a sentinel node.
+ * So scheduling and descheduling is O(1) and allocates nothing.
+ *
+ * This class is not thread safe, it is guarded by the cache's eviction lock.
+ *
+ * @param <K>
+ * Type of the keys.
+ * @param <V>
+ * Type of the values.
+ */
+final class TimerWheel<K, V>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+	private static final long[] SPANS = {
+		1L << 30, // 1.07s
+		1L << 36, // 1.14m
+		1L << 42, // 1.22h
+		1L << 46, // 19.5h
+		1L << 50, // 13.0d
+		1L << 50, // 13.0d
+	};
+
+	private static final int[] SHIFT = {30, 36, 42, 46, 50};
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final Node<K, V>[][] wheel;
+	private long nanos;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	@SuppressWarnings("unchecked")
+	TimerWheel(long now)
+	{
+		this.nanos = now;
+		Node<?, ?>[][] wheel = new Node<?, ?>[BUCKETS.length][];
+		for (int i = 0; i < wheel.length; i++)
+		{
+			wheel[i] = new Node<?, ?>[BUCKETS[i]];
+			for (int j = 0; j < wheel[i].length; j++)
+			{
+				Node<K, V> sentinel = new Node<>(null, null, now);
+				sentinel.setPreviousInWheel(sentinel);
+				sentinel.setNextInWheel(sentinel);
+				wheel[i][j] = sentinel;
+			}
+		}
+		this.wheel = (Node<K, V>[][]) wheel;
+	}
+
+	// -------------------------------------------- //
+	// SCHEDULE
+	// -------------------------------------------- //
+
+	/**
+	 * Schedules the node, at its variable time.
+	 * The node must not already be scheduled.
+	 */
+	void schedule(Node<K, V> node)
+	{
+		Node<K, V> sentinel = this.findBucket(node.getVariableTime());
+		link(sentinel, node);
+	}
+
+	/**
+	 * Reschedules the node at its variable time,
+	 * whether or not it is already scheduled.
+	 */
+	void reschedule(Node<K, V> node)
+	{
+		if (node.getNextInWheel() != null)
+		{
+			unlink(node);
+		}
+		this.schedule(node);
+	}
+
+	/**
+	 * Removes the node from the wheel, if it is scheduled.
+	 */
+	void deschedule(Node<K, V> node)
+	{
+		if (node.getNextInWheel() == null) return;
+		unlink(node);
+	}
+
+	// -------------------------------------------- //
+	// ADVANCE
+	// -------------------------------------------- //
+
+	/**
+	 * Advances the wheel to the current time,
+	 * and offers every node which might have expired, to the evictor.
+	 * If the evictor returns false, the node is rescheduled
+	 * at its (possibly updated) variable time.
+	 *
+	 * @param now
+	 * The current time in nanoseconds.
+	 * @param evictor
+	 * Evicts the passed node and returns true if it has expired.
+	 * Otherwise updates its variable time and returns false.
+	 */
+	void advance(long now, Predicate<Node<K, V>> evictor)
+	{
+		long previous = this.nanos;
+		this.nanos = now;
+
+		for (int i = 0; i < SHIFT.length; i++)
+		{
+			long previousTicks = previous >>> SHIFT[i];
+			long currentTicks = now >>> SHIFT[i];
+			if ((currentTicks - previousTicks) <= 0L) break;
+			this.expire(i, previousTicks, currentTicks - previousTicks, evictor);
+		}
+	}
+
+	private void expire(int index, long previousTicks, long delta, Predicate<Node<K, V>> evictor)
+	{
+		Node<K, V>[] buckets = this.wheel[index];
+		int mask = buckets.length - 1;
+		int steps = (int) Math.min(1 + delta, buckets.length);
+		int start = (int) (previousTicks & mask);
+		int end = start + steps;
+
+		for (int i = start; i < end; i++)
+		{
+			Node<K, V> sentinel = buckets[i & mask];
+			Node<K, V> node = sentinel.getNextInWheel();
+			sentinel.setPreviousInWheel(sentinel);
+			sentinel.setNextInWheel(sentinel);
+
+			while (node != sentinel)
+			{
+				Node<K, V> next = node.getNextInWheel();
+				node.setPreviousInWheel(null);
+				node.setNextInWheel(null);
+
+				if ((node.getVariableTime() - this.nanos) > 0L || ! evictor.test(node))
+				{
+					this.schedule(node);
+				}
+				node = next;
+			}
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private Node<K, V> findBucket(long time)
+	{
+		long duration = time - this.nanos;
+
+		// Already due, it will be picked up on the next tick.
+		if (duration < 0L)
+		{
+			time = this.nanos;
+			duration = 0L;
+		}
+
+		int length = this.wheel.length - 1;
+		for (int i = 0; i < length; i++)
+		{
+			if (duration < SPANS[i + 1])
+			{
+				long ticks = time >>> SHIFT[i];
+				int index = (int) (ticks & (this.wheel[i].length - 1));
+				return this.wheel[i][index];
+			}
+		}
+		return this.wheel[length][0];
+	}
+
+	private static <K, V> void link(Node<K, V> sentinel, Node<K, V> node)
+	{
+		node.setPreviousInWheel(sentinel.getPreviousInWheel());
+		node.setNextInWheel(sentinel);
+
+		sentinel.getPreviousInWheel().setNextInWheel(node);
+		sentinel.setPreviousInWheel(node);
+	}
+
+	private static <K, V> void unlink(Node<K, V> node)
+	{
+		Node<K, V> next = node.getNextInWheel();
+		Node<K, V> previous = node.getPreviousInWheel();
+		next.setPreviousInWheel(previous);
+		previous.setNextInWheel(next);
+		node.setNextInWheel(null);
+		node.setPreviousInWheel(null);
+	}
+
+}
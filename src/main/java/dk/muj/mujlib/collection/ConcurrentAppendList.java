@@ -0,0 +1,380 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A list which can only be appended to, safely from many threads at once, without locking.
+ *
+ * The elements are stored in segments, which double in size.
+ * So growing never copies existing elements, unlike {@code ArrayList},
+ * and the list can hold up to {@code MAX_SIZE} elements.
+ *
+ * An append creates the segments it needs, reserves its indexes with an atomic
+ * compare-and-set, and then stores the elements in their slots. Reads are safe
+ * while appends continue. A read of an index, which was reserved but not yet stored,
+ * waits for the appending thread to store it. Nothing between the reservation
+ * and the store allocates or can fail, so the wait only lasts as long as
+ * the appending thread is paused there, which is usually a moment.
+ *
+ * Iterators and spliterators see the elements present when they are created,
+ * and the spliterator splits evenly, for parallel streams.
+ *
+ * Elements can't be null. All other modifications throw an {@code UnsupportedOperationException}.
+ *
+ * @param <E>
+ * Type of the elements.
+ */
+public final class ConcurrentAppendList<E> extends AbstractList<E> implements RandomAccess
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final int FIRST_SEGMENT_SHIFT = 4;
+	private static final int FIRST_SEGMENT_SIZE = 1 << FIRST_SEGMENT_SHIFT;
+	private static final int SEGMENT_COUNT = 27;
+
+	/**
+	 * The maximum number of elements in the list.
+	 */
+	public static final int MAX_SIZE = FIRST_SEGMENT_SIZE * ((1 << SEGMENT_COUNT) - 1);
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	// Segment k has FIRST_SEGMENT_SIZE << k slots, created when first needed.
+	private final AtomicReferenceArray<AtomicReferenceArray<Object>> segments = new AtomicReferenceArray<>(SEGMENT_COUNT);
+
+	// The number of reserved indexes, their segments already exist.
+	private final AtomicInteger tail = new AtomicInteger();
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new empty list.
+	 */
+	public ConcurrentAppendList()
+	{
+
+	}
+
+	/**
+	 * Creates a new list containing the passed elements.
+	 * If the array is modified afterwards, the list won't be affected.
+	 * @param elements
+	 * The elements.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new list containing the elements, in order.
+	 * @throws ArgumentNullException
+	 * If elements, or any of them, is null.
+	 */
+	@Pure
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <E> ConcurrentAppendList<E> of(E... elements) throws ArgumentNullException
+	{
+		Argument.handleNull(elements, "elements");
+
+		ConcurrentAppendList<E> ret = new ConcurrentAppendList<>();
+		for (E element : elements)
+		{
+			ret.add(element);
+		}
+		return ret;
+	}
+
+	/**
+	 * Creates a new list containing the elements of the passed collection.
+	 * @param collection
+	 * The collection.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new list containing the elements, in iteration order.
+	 * @throws ArgumentNullException
+	 * If collection, or any of its elements, is null.
+	 */
+	@Pure
+	public static <E> ConcurrentAppendList<E> copyOf(Collection<? extends E> collection) throws ArgumentNullException
+	{
+		Argument.handleNull(collection, "collection");
+
+		ConcurrentAppendList<E> ret = new ConcurrentAppendList<>();
+		ret.addAll(collection);
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// APPEND
+	// -------------------------------------------- //
+
+	/**
+	 * Appends the element to the end of the list.
+	 * This is lock free and can be done from many threads at once.
+	 * @param element
+	 * The element.
+	 * @return
+	 * True.
+	 * @throws ArgumentNullException
+	 * If element is null.
+	 * @throws IllegalStateException
+	 * If the list already contains {@code MAX_SIZE} elements.
+	 */
+	@Override
+	public boolean add(E element) throws ArgumentNullException, IllegalStateException
+	{
+		Argument.handleNull(element, "element");
+
+		int index = this.reserve(1);
+		this.store(index, element);
+		return true;
+	}
+
+	/**
+	 * Appends all the elements, in a single contiguous block.
+	 * This is lock free and can be done from many threads at once.
+	 * The collection must not change while this runs.
+	 * @param collection
+	 * The elements.
+	 * @return
+	 * True if the collection wasn't empty.
+	 * @throws ArgumentNullException
+	 * If collection, or any of its elements, is null.
+	 * @throws IllegalStateException
+	 * If there isn't room for the elements.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends E> collection) throws ArgumentNullException, IllegalStateException
+	{
+		Argument.handleNull(collection, "collection");
+
+		Object[] elements = collection.toArray();
+		if (elements.length == 0) return false;
+		for (Object element : elements)
+		{
+			Argument.handleNull(element, "element");
+		}
+
+		int index = this.reserve(elements.length);
+		for (Object element : elements)
+		{
+			this.store(index++, element);
+		}
+		return true;
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: LIST
+	// -------------------------------------------- //
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= this.size()) throw new IndexOutOfBoundsException("index: " + index + " size: " + this.size());
+		return (E) this.load(index);
+	}
+
+	@Override
+	public int size()
+	{
+		return this.tail.get();
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return Spliterators.iterator(this.spliterator());
+	}
+
+	@Override
+	public Spliterator<E> spliterator()
+	{
+		return new SegmentSpliterator(0, this.size());
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	// The segments are created before the indexes are published,
+	// so if that fails, no reserved slot is left that readers wait for forever.
+	private int reserve(int count)
+	{
+		while (true)
+		{
+			int index = this.tail.get();
+			if (count > MAX_SIZE - index) throw new IllegalStateException("The list is full, it can hold at most " + MAX_SIZE + " elements.");
+
+			int lastSegment = segmentOf(index + count - 1 + FIRST_SEGMENT_SIZE);
+			for (int segmentIndex = segmentOf(index + FIRST_SEGMENT_SIZE); segmentIndex <= lastSegment; segmentIndex++)
+			{
+				this.getOrCreateSegment(segmentIndex);
+			}
+
+			if (this.tail.compareAndSet(index, index + count)) return index;
+		}
+	}
+
+	private void store(int index, Object element)
+	{
+		int position = index + FIRST_SEGMENT_SIZE;
+		this.segments.get(segmentOf(position)).lazySet(offsetOf(position), element);
+	}
+
+	private Object load(int index)
+	{
+		int position = index + FIRST_SEGMENT_SIZE;
+		int segmentIndex = segmentOf(position);
+		int offset = offsetOf(position);
+
+		// The index is reserved, so the segment exists and the appender is about to store it.
+		AtomicReferenceArray<Object> segment = this.segments.get(segmentIndex);
+		Object ret;
+		while ((ret = segment.get(offset)) == null)
+		{
+			Thread.yield();
+		}
+		return ret;
+	}
+
+	private AtomicReferenceArray<Object> getOrCreateSegment(int segmentIndex)
+	{
+		AtomicReferenceArray<Object> ret = this.segments.get(segmentIndex);
+		if (ret != null) return ret;
+
+		// Several threads may race to create it, only one wins.
+		AtomicReferenceArray<Object> created = new AtomicReferenceArray<>(FIRST_SEGMENT_SIZE << segmentIndex);
+		if (this.segments.compareAndSet(segmentIndex, null, created)) return created;
+		return this.segments.get(segmentIndex);
+	}
+
+	// Positions are offset by the first segment size,
+	// so the highest bit tells the segment.
+	private static int segmentOf(int position)
+	{
+		return (31 - Integer.numberOfLeadingZeros(position)) - FIRST_SEGMENT_SHIFT;
+	}
+
+	private static int offsetOf(int position)
+	{
+		return position - Integer.highestOneBit(position);
+	}
+
+	// -------------------------------------------- //
+	// SPLITERATOR
+	// -------------------------------------------- //
+
+	private final class SegmentSpliterator implements Spliterator<E>
+	{
+		private int index;
+		private final int fence;
+
+		SegmentSpliterator(int index, int fence)
+		{
+			this.index = index;
+			this.fence = fence;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean tryAdvance(Consumer<? super E> action)
+		{
+			Argument.handleNull(action, "action");
+			if (this.index >= this.fence) return false;
+
+			action.accept((E) ConcurrentAppendList.this.load(this.index++));
+			return true;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void forEachRemaining(Consumer<? super E> action)
+		{
+			Argument.handleNull(action, "action");
+
+			// Walk a segment at a time, rather than finding it for every element.
+			while (this.index < this.fence)
+			{
+				int position = this.index + FIRST_SEGMENT_SIZE;
+				int segmentIndex = segmentOf(position);
+				int offset = offsetOf(position);
+				int end = Math.min(this.fence - this.index, (FIRST_SEGMENT_SIZE << segmentIndex) - offset) + offset;
+
+				AtomicReferenceArray<Object> segment = ConcurrentAppendList.this.segments.get(segmentIndex);
+				for (int i = offset; i < end; i++)
+				{
+					Object element = segment.get(i);
+					if (element == null) element = ConcurrentAppendList.this.load(this.index);
+					this.index++;
+					action.accept((E) element);
+				}
+			}
+		}
+
+		@Override
+		public Spliterator<E> trySplit()
+		{
+			int middle = (this.index + this.fence) >>> 1;
+			if (middle - this.index < FIRST_SEGMENT_SIZE) return null;
+
+			Spliterator<E> ret = new SegmentSpliterator(this.index, middle);
+			this.index = middle;
+			return ret;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return this.fence - this.index;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+		}
+	}
+
+}
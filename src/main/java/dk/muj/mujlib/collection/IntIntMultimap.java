@@ -0,0 +1,481 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.hash.HashUtil;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable multimap from ints to ints, like a {@code Map<Integer, List<Integer>>}
+ * but without boxing, or a list object per key.
+ *
+ * All values are stored in one shared array, grouped by key,
+ * and each key stores the offset of its group (compressed sparse row layout).
+ * So the map uses about 4 bytes per value and 8 bytes per key,
+ * and the values of a key are a slice of the array, which is returned without copying.
+ * The values of each key are sorted ascending.
+ *
+ * This makes a compact inverted index, for example from tags to the entities having them.
+ * Use {@code inverse()} to go the other way.
+ *
+ * It is built in one bulk pass using {@code of(keys, values)}.
+ */
+public final class IntIntMultimap
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final IntIntMultimap EMPTY = new IntIntMultimap(new int[0], new int[] {0}, new int[0]);
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	// Distinct keys, ascending.
+	private final int[] keys;
+
+	// The values of keys[i] are values[offsets[i]] to values[offsets[i + 1]] exclusive.
+	private final int[] offsets;
+	private final int[] values;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private IntIntMultimap(int[] keys, int[] offsets, int[] values)
+	{
+		this.keys = keys;
+		this.offsets = offsets;
+		this.values = values;
+	}
+
+	/**
+	 * @return
+	 * The empty multimap.
+	 */
+	@Pure
+	public static IntIntMultimap empty()
+	{
+		return EMPTY;
+	}
+
+	/**
+	 * Creates a multimap from parallel arrays of pairs,
+	 * so values[i] is mapped to keys[i].
+	 * The arrays don't need to be sorted, and duplicate pairs are kept.
+	 * It runs in O(n log k) time, where k is the number of distinct keys.
+	 * @param keys
+	 * The keys of the pairs.
+	 * @param values
+	 * The values of the pairs.
+	 * @return
+	 * A new multimap containing the pairs.
+	 * @throws ArgumentNullException
+	 * If keys or values is null.
+	 * @throws IllegalArgumentException
+	 * If keys and values differ in length.
+	 */
+	@Pure
+	public static IntIntMultimap of(int[] keys, int[] values) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(keys, "keys");
+		Argument.handleNull(values, "values");
+		if (keys.length != values.length) throw new IllegalArgumentException("keys and values must have the same length.");
+		if (keys.length == 0) return EMPTY;
+
+		int[] distinct = distinctSorted(keys);
+
+		// Count the values of each key, then turn the counts into offsets.
+		int[] offsets = new int[distinct.length + 1];
+		int[] slots = new int[keys.length];
+		for (int i = 0; i < keys.length; i++)
+		{
+			int slot = Arrays.binarySearch(distinct, keys[i]);
+			slots[i] = slot;
+			offsets[slot + 1]++;
+		}
+		for (int i = 0; i < distinct.length; i++)
+		{
+			offsets[i + 1] += offsets[i];
+		}
+
+		// Scatter the values into their groups.
+		int[] positions = Arrays.copyOf(offsets, distinct.length);
+		int[] grouped = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			grouped[positions[slots[i]]++] = values[i];
+		}
+		for (int i = 0; i < distinct.length; i++)
+		{
+			Arrays.sort(grouped, offsets[i], offsets[i + 1]);
+		}
+
+		return new IntIntMultimap(distinct, offsets, grouped);
+	}
+
+	// -------------------------------------------- //
+	// ACCESS
+	// -------------------------------------------- //
+
+	/**
+	 * Gets the values mapped to the key, as a view of the shared array.
+	 * @param key
+	 * The key.
+	 * @return
+	 * The values sorted ascending, empty if the key isn't present.
+	 */
+	public Values get(int key)
+	{
+		int index = Arrays.binarySearch(this.keys, key);
+		if (index < 0) return Values.EMPTY;
+		return new Values(this.values, this.offsets[index], this.offsets[index + 1]);
+	}
+
+	/**
+	 * @param key
+	 * The key.
+	 * @return
+	 * The number of values mapped to the key.
+	 */
+	public int getValueCount(int key)
+	{
+		int index = Arrays.binarySearch(this.keys, key);
+		if (index < 0) return 0;
+		return this.offsets[index + 1] - this.offsets[index];
+	}
+
+	public boolean containsKey(int key)
+	{
+		return Arrays.binarySearch(this.keys, key) >= 0;
+	}
+
+	/**
+	 * @param key
+	 * The key.
+	 * @param value
+	 * The value.
+	 * @return
+	 * True if the value is mapped to the key. This is O(log n).
+	 */
+	public boolean containsEntry(int key, int value)
+	{
+		return this.get(key).contains(value);
+	}
+
+	/**
+	 * @return
+	 * The number of distinct keys.
+	 */
+	public int getKeyCount()
+	{
+		return this.keys.length;
+	}
+
+	/**
+	 * @param index
+	 * The index of the key, between 0 and getKeyCount() exclusive.
+	 * @return
+	 * The key at that index, keys are sorted ascending.
+	 * @throws IndexOutOfBoundsException
+	 * If index is out of bounds.
+	 */
+	public int getKey(int index) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= this.keys.length) throw new IndexOutOfBoundsException("index: " + index + " size: " + this.keys.length);
+		return this.keys[index];
+	}
+
+	/**
+	 * @return
+	 * The distinct keys, ascending, as a new array.
+	 */
+	public int[] keys()
+	{
+		return this.keys.clone();
+	}
+
+	/**
+	 * @return
+	 * The number of key-value pairs.
+	 */
+	public int size()
+	{
+		return this.values.length;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.values.length == 0;
+	}
+
+	// -------------------------------------------- //
+	// BULK
+	// -------------------------------------------- //
+
+	/**
+	 * An action on a pair of an {@code IntIntMultimap}.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer
+	{
+		void accept(int key, int value);
+	}
+
+	/**
+	 * Performs the action for every pair, in ascending key order,
+	 * and ascending value order for each key.
+	 * @param action
+	 * The action.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 */
+	public void forEach(EntryConsumer action) throws ArgumentNullException
+	{
+		Argument.handleNull(action, "action");
+		for (int i = 0; i < this.keys.length; i++)
+		{
+			int key = this.keys[i];
+			for (int j = this.offsets[i]; j < this.offsets[i + 1]; j++)
+			{
+				action.accept(key, this.values[j]);
+			}
+		}
+	}
+
+	/**
+	 * Creates the inverse multimap, where every pair is reversed.
+	 * For an index from tags to entities, this is the index from entities to tags.
+	 * @return
+	 * The inverse multimap.
+	 */
+	@Pure
+	public IntIntMultimap inverse()
+	{
+		int[] pairKeys = new int[this.values.length];
+		for (int i = 0; i < this.keys.length; i++)
+		{
+			Arrays.fill(pairKeys, this.offsets[i], this.offsets[i + 1], this.keys[i]);
+		}
+		return of(this.values, pairKeys);
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof IntIntMultimap)) return false;
+		IntIntMultimap that = (IntIntMultimap) o;
+		return Arrays.equals(this.keys, that.keys) && Arrays.equals(this.offsets, that.offsets) && Arrays.equals(this.values, that.values);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int ret = HashUtil.HASHCODE_START;
+		ret = HashUtil.resultAddField(ret, Arrays.hashCode(this.keys));
+		ret = HashUtil.resultAddField(ret, Arrays.hashCode(this.values));
+		return ret;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringJoiner ret = new StringJoiner(", ", "{", "}");
+		for (int i = 0; i < this.keys.length; i++)
+		{
+			ret.add(this.keys[i] + "=" + new Values(this.values, this.offsets[i], this.offsets[i + 1]));
+		}
+		return ret.toString();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static int[] distinctSorted(int[] array)
+	{
+		int[] ret = array.clone();
+		Arrays.sort(ret);
+		int size = 0;
+		for (int i = 0; i < ret.length; i++)
+		{
+			if (size == 0 || ret[size - 1] != ret[i]) ret[size++] = ret[i];
+		}
+		return Arrays.copyOf(ret, size);
+	}
+
+	// -------------------------------------------- //
+	// VALUES
+	// -------------------------------------------- //
+
+	/**
+	 * A read only view of the values of one key,
+	 * a slice of the multimap's array, sorted ascending.
+	 */
+	public static final class Values
+	{
+		// -------------------------------------------- //
+		// CONSTANTS
+		// -------------------------------------------- //
+
+		private static final Values EMPTY = new Values(new int[0], 0, 0);
+
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private final int[] array;
+		private final int from;
+		private final int to;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		private Values(int[] array, int from, int to)
+		{
+			this.array = array;
+			this.from = from;
+			this.to = to;
+		}
+
+		// -------------------------------------------- //
+		// ACCESS
+		// -------------------------------------------- //
+
+		public int size()
+		{
+			return this.to - this.from;
+		}
+
+		public boolean isEmpty()
+		{
+			return this.to == this.from;
+		}
+
+		/**
+		 * @param index
+		 * The index, between 0 and size() exclusive.
+		 * @return
+		 * The value at that index.
+		 * @throws IndexOutOfBoundsException
+		 * If index is out of bounds.
+		 */
+		public int get(int index) throws IndexOutOfBoundsException
+		{
+			if (index < 0 || index >= this.size()) throw new IndexOutOfBoundsException("index: " + index + " size: " + this.size());
+			return this.array[this.from + index];
+		}
+
+		/**
+		 * @param value
+		 * The value to search for.
+		 * @return
+		 * True if the value is in the slice. This is a binary search.
+		 */
+		public boolean contains(int value)
+		{
+			return Arrays.binarySearch(this.array, this.from, this.to, value) >= 0;
+		}
+
+		public void forEach(IntConsumer action) throws ArgumentNullException
+		{
+			Argument.handleNull(action, "action");
+			for (int i = this.from; i < this.to; i++)
+			{
+				action.accept(this.array[i]);
+			}
+		}
+
+		public IntStream stream()
+		{
+			return Arrays.stream(this.array, this.from, this.to);
+		}
+
+		/**
+		 * @return
+		 * The values as a new array.
+		 */
+		public int[] toArray()
+		{
+			return Arrays.copyOfRange(this.array, this.from, this.to);
+		}
+
+		// -------------------------------------------- //
+		// EQUALS AND HASHCODE
+		// -------------------------------------------- //
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o) return true;
+			if ( ! (o instanceof Values)) return false;
+			Values that = (Values) o;
+			if (this.size() != that.size()) return false;
+			for (int i = 0; i < this.size(); i++)
+			{
+				if (this.array[this.from + i] != that.array[that.from + i]) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			// The same as Arrays.hashCode of the slice.
+			int ret = 1;
+			for (int i = this.from; i < this.to; i++)
+			{
+				ret = 31 * ret + this.array[i];
+			}
+			return ret;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringJoiner ret = new StringJoiner(", ", "[", "]");
+			for (int i = this.from; i < this.to; i++)
+			{
+				ret.add(String.valueOf(this.array[i]));
+			}
+			return ret.toString();
+		}
+	}
+
+}
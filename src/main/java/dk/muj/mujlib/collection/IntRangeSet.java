@@ -0,0 +1,417 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.hash.HashUtil;
+import dk.muj.mujlib.util.MCollections;
+
+import java.util.List;
+
+/**
+ * A set of integers, stored as disjoint ranges.
+ * It is much smaller than storing each integer, when they are mostly consecutive.
+ * Think of it as a set of {@code MCollections.range} lists.
+ *
+ * Ranges are from start (inclusive) to end (exclusive),
+ * just like {@code MCollections.range}. So {@code Integer.MAX_VALUE} can't be contained.
+ * Overlapping and adjacent ranges are coalesced automatically,
+ * so {@code [0, 5)} and {@code [5, 10)} become {@code [0, 10)}.
+ *
+ * It is a {@link LongRangeSet} with the integers widened to longs,
+ * so the ranges are kept sorted in a single primitive array,
+ * and lookups are a binary search and take O(log n) time.
+ *
+ * This class is not thread safe.
+ */
+public final class IntRangeSet
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	// Only contains integers in the int range.
+	private final LongRangeSet set;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new empty range set.
+	 */
+	public IntRangeSet()
+	{
+		this(new LongRangeSet());
+	}
+
+	private IntRangeSet(LongRangeSet set)
+	{
+		this.set = set;
+	}
+
+	/**
+	 * Creates a range set containing a single range.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @return
+	 * A new range set.
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	@Pure
+	public static IntRangeSet of(int start, int end) throws IllegalArgumentException
+	{
+		return new IntRangeSet(LongRangeSet.of(start, end));
+	}
+
+	/**
+	 * Creates a copy of the passed range set.
+	 * Changes to either won't affect the other.
+	 * @param set
+	 * The range set to copy.
+	 * @return
+	 * A new range set equal to the passed one.
+	 * @throws ArgumentNullException
+	 * If set is null.
+	 */
+	@Pure
+	public static IntRangeSet copyOf(IntRangeSet set) throws ArgumentNullException
+	{
+		Argument.handleNull(set, "set");
+		return new IntRangeSet(LongRangeSet.copyOf(set.set));
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Adds a single integer.
+	 * @param value
+	 * The integer to add.
+	 * @throws IllegalArgumentException
+	 * If value is {@code Integer.MAX_VALUE}.
+	 */
+	public void add(int value) throws IllegalArgumentException
+	{
+		if (value == Integer.MAX_VALUE) throw new IllegalArgumentException("Integer.MAX_VALUE can't be added.");
+		this.set.add(value);
+	}
+
+	/**
+	 * Adds all integers in a range, coalescing it with
+	 * any range it overlaps or is adjacent to.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public void add(int start, int end) throws IllegalArgumentException
+	{
+		this.set.add(start, end);
+	}
+
+	/**
+	 * Adds many ranges at once, which is much faster than adding them one by one.
+	 * The ranges don't need to be sorted and may overlap.
+	 * Range i is from starts[i] (inclusive) to ends[i] (exclusive).
+	 * @param starts
+	 * The starts of the ranges.
+	 * @param ends
+	 * The ends of the ranges.
+	 * @throws ArgumentNullException
+	 * If starts or ends is null.
+	 * @throws IllegalArgumentException
+	 * If starts and ends differ in length, or a start is larger than its end.
+	 */
+	public void addAll(int[] starts, int[] ends) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(starts, "starts");
+		Argument.handleNull(ends, "ends");
+		this.set.addAll(widen(starts), widen(ends));
+	}
+
+	/**
+	 * Adds all integers in another range set.
+	 * @param set
+	 * The range set to add.
+	 * @throws ArgumentNullException
+	 * If set is null.
+	 */
+	public void addAll(IntRangeSet set) throws ArgumentNullException
+	{
+		Argument.handleNull(set, "set");
+		this.set.addAll(set.set);
+	}
+
+	/**
+	 * Removes a single integer, splitting the range containing it.
+	 * @param value
+	 * The integer to remove.
+	 */
+	public void remove(int value)
+	{
+		this.set.remove(value);
+	}
+
+	/**
+	 * Removes all integers in a range.
+	 * Ranges partially covered are cut.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public void remove(int start, int end) throws IllegalArgumentException
+	{
+		this.set.remove(start, end);
+	}
+
+	/**
+	 * Removes all ranges.
+	 */
+	public void clear()
+	{
+		this.set.clear();
+	}
+
+	// -------------------------------------------- //
+	// INSPECT
+	// -------------------------------------------- //
+
+	/**
+	 * Checks whether an integer is in any of the ranges.
+	 * This takes O(log n) time.
+	 * @param value
+	 * The integer to look for.
+	 * @return
+	 * True if the integer is in this set.
+	 */
+	public boolean contains(int value)
+	{
+		return this.set.contains(value);
+	}
+
+	/**
+	 * Checks whether any integer in the range is in this set.
+	 * This takes O(log n) time.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @return
+	 * True if the range and this set have an integer in common.
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public boolean overlaps(int start, int end) throws IllegalArgumentException
+	{
+		return this.set.overlaps(start, end);
+	}
+
+	/**
+	 * Checks whether every integer in the range is in this set.
+	 * This takes O(log n) time.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @return
+	 * True if the range is entirely in this set.
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public boolean encloses(int start, int end) throws IllegalArgumentException
+	{
+		return this.set.encloses(start, end);
+	}
+
+	/**
+	 * Gets the number of disjoint ranges in this set.
+	 * @return
+	 * The number of ranges.
+	 */
+	public int getRangeCount()
+	{
+		return this.set.getRangeCount();
+	}
+
+	/**
+	 * Gets the start of a range. Ranges are sorted in ascending order.
+	 * @param index
+	 * The index of the range.
+	 * @return
+	 * The first integer in the range. (inclusive)
+	 * @throws IndexOutOfBoundsException
+	 * If index is negative or not less than the range count.
+	 */
+	public int getStart(int index) throws IndexOutOfBoundsException
+	{
+		return (int) this.set.getStart(index);
+	}
+
+	/**
+	 * Gets the end of a range. Ranges are sorted in ascending order.
+	 * @param index
+	 * The index of the range.
+	 * @return
+	 * The integer after the last one in the range. (exclusive)
+	 * @throws IndexOutOfBoundsException
+	 * If index is negative or not less than the range count.
+	 */
+	public int getEnd(int index) throws IndexOutOfBoundsException
+	{
+		return (int) this.set.getEnd(index);
+	}
+
+	/**
+	 * Gets a range as a list of its integers.
+	 * @param index
+	 * The index of the range.
+	 * @return
+	 * {@code MCollections.range(getStart(index), getEnd(index))}
+	 * @throws IndexOutOfBoundsException
+	 * If index is negative or not less than the range count.
+	 */
+	public List<Integer> getRange(int index) throws IndexOutOfBoundsException
+	{
+		return MCollections.range(this.getStart(index), this.getEnd(index));
+	}
+
+	/**
+	 * Counts the integers in this set.
+	 * @return
+	 * The sum of the lengths of all ranges.
+	 */
+	public long getCardinality()
+	{
+		// Int ranges never add up to more than a long can hold.
+		return this.set.getCardinality();
+	}
+
+	public boolean isEmpty()
+	{
+		return this.set.isEmpty();
+	}
+
+	// -------------------------------------------- //
+	// SET OPERATIONS
+	// -------------------------------------------- //
+
+	/**
+	 * Computes the union of two range sets, in O(n + m) time.
+	 * Neither of them is changed.
+	 * @param a
+	 * The first range set.
+	 * @param b
+	 * The second range set.
+	 * @return
+	 * A new range set with the integers in either a or b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static IntRangeSet union(IntRangeSet a, IntRangeSet b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+		return new IntRangeSet(LongRangeSet.union(a.set, b.set));
+	}
+
+	/**
+	 * Computes the intersection of two range sets, in O(n + m) time.
+	 * Neither of them is changed.
+	 * @param a
+	 * The first range set.
+	 * @param b
+	 * The second range set.
+	 * @return
+	 * A new range set with the integers in both a and b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static IntRangeSet intersection(IntRangeSet a, IntRangeSet b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+		return new IntRangeSet(LongRangeSet.intersection(a.set, b.set));
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof IntRangeSet)) return false;
+		return this.set.equals(((IntRangeSet) o).set);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		// The bounds are hashed as ints, not as the widened longs.
+		int ret = HashUtil.HASHCODE_START;
+		for (int i = 0; i < this.getRangeCount(); i++)
+		{
+			ret = HashUtil.resultAddField(ret, this.getStart(i));
+			ret = HashUtil.resultAddField(ret, this.getEnd(i));
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.set.toString();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static long[] widen(int[] values)
+	{
+		long[] ret = new long[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			ret[i] = values[i];
+		}
+		return ret;
+	}
+
+}
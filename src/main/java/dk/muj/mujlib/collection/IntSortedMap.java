@@ -0,0 +1,519 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+/**
+ * A sorted map from primitive ints to objects, like a {@code TreeMap<Integer, V>}
+ * without boxing the keys, or chasing a pointer for every comparison.
+ *
+ * It is a {@link LongSortedMap} with the keys widened to longs,
+ * which keeps their order, so it is the same B+-tree.
+ * Keys are stored in primitive arrays in the nodes,
+ * so a lookup is a few binary searches in contiguous memory.
+ *
+ * Range iteration doesn't allocate per entry, use {@code forEachInRange}
+ * or a {@code Cursor}, which can seek to the floor or ceiling of a key.
+ * A map can be bulk loaded from sorted arrays in linear time, using {@code fromSorted}.
+ *
+ * Values can't be null. This class is not thread safe.
+ *
+ * @param <V>
+ * Type of the values.
+ */
+public final class IntSortedMap<V>
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final LongSortedMap<V> map;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new empty map.
+	 */
+	public IntSortedMap()
+	{
+		this(new LongSortedMap<>());
+	}
+
+	// The map must only contain keys in the int range.
+	IntSortedMap(LongSortedMap<V> map)
+	{
+		this.map = map;
+	}
+
+	/**
+	 * Creates a map from keys and values sorted by key, in linear time.
+	 * This is much faster than putting the entries one by one.
+	 * @param keys
+	 * The keys, in strictly ascending order.
+	 * @param values
+	 * The values, values[i] is mapped to keys[i].
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A new map containing the entries.
+	 * @throws ArgumentNullException
+	 * If keys, values, or any of the values is null.
+	 * @throws IllegalArgumentException
+	 * If keys and values differ in length, or keys are not strictly ascending.
+	 */
+	@Pure
+	public static <V> IntSortedMap<V> fromSorted(int[] keys, V[] values) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(keys, "keys");
+
+		long[] wide = new long[keys.length];
+		for (int i = 0; i < keys.length; i++)
+		{
+			wide[i] = keys[i];
+		}
+		return new IntSortedMap<>(LongSortedMap.fromSorted(wide, values));
+	}
+
+	// -------------------------------------------- //
+	// ACCESS
+	// -------------------------------------------- //
+
+	/**
+	 * Gets the value mapped to the key.
+	 * @param key
+	 * The key.
+	 * @return
+	 * The value, or null if the key isn't present.
+	 */
+	public V get(int key)
+	{
+		return this.map.get(key);
+	}
+
+	public boolean containsKey(int key)
+	{
+		return this.map.containsKey(key);
+	}
+
+	public int size()
+	{
+		return this.map.size();
+	}
+
+	public boolean isEmpty()
+	{
+		return this.map.isEmpty();
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Maps the key to the value.
+	 * @param key
+	 * The key.
+	 * @param value
+	 * The value.
+	 * @return
+	 * The value previously mapped to the key, or null if there was none.
+	 * @throws ArgumentNullException
+	 * If value is null.
+	 */
+	public V put(int key, V value) throws ArgumentNullException
+	{
+		return this.map.put(key, value);
+	}
+
+	/**
+	 * Removes the key.
+	 * @param key
+	 * The key.
+	 * @return
+	 * The value that was mapped to the key, or null if there was none.
+	 */
+	public V remove(int key)
+	{
+		return this.map.remove(key);
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		this.map.clear();
+	}
+
+	// -------------------------------------------- //
+	// NAVIGATION
+	// -------------------------------------------- //
+
+	/**
+	 * @return
+	 * The smallest key, if the map isn't empty.
+	 */
+	public OptionalInt firstKey()
+	{
+		return narrow(this.map.firstKey());
+	}
+
+	/**
+	 * @return
+	 * The largest key, if the map isn't empty.
+	 */
+	public OptionalInt lastKey()
+	{
+		return narrow(this.map.lastKey());
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The largest key less than or equal to the passed key, if any.
+	 */
+	public OptionalInt floorKey(int key)
+	{
+		return narrow(this.map.floorKey(key));
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The smallest key greater than or equal to the passed key, if any.
+	 */
+	public OptionalInt ceilingKey(int key)
+	{
+		return narrow(this.map.ceilingKey(key));
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The largest key strictly less than the passed key, if any.
+	 */
+	public OptionalInt lowerKey(int key)
+	{
+		return narrow(this.map.lowerKey(key));
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The smallest key strictly greater than the passed key, if any.
+	 */
+	public OptionalInt higherKey(int key)
+	{
+		return narrow(this.map.higherKey(key));
+	}
+
+	/**
+	 * Creates a cursor for walking the entries of this map, in either direction.
+	 * It is invalid until it is positioned by one of its seek methods.
+	 * One cursor can be reused for many walks, so iterating doesn't allocate.
+	 * @return
+	 * A new cursor.
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor(this.map.cursor());
+	}
+
+	// -------------------------------------------- //
+	// ITERATION
+	// -------------------------------------------- //
+
+	/**
+	 * An action on an entry of an {@code IntSortedMap}.
+	 * @param <V>
+	 * Type of the values.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer<V>
+	{
+		void accept(int key, V value);
+	}
+
+	/**
+	 * Performs the action for every entry, in ascending key order.
+	 * @param action
+	 * The action.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 */
+	public void forEach(EntryConsumer<? super V> action) throws ArgumentNullException
+	{
+		Argument.handleNull(action, "action");
+		this.map.forEach((key, value) -> action.accept((int) key, value));
+	}
+
+	/**
+	 * Performs the action for every entry with a key in the range,
+	 * in ascending key order, without allocating per entry.
+	 * This is the sub map from fromInclusive to toExclusive.
+	 * @param fromInclusive
+	 * The smallest key in the range.
+	 * @param toExclusive
+	 * The key after the largest key in the range.
+	 * @param action
+	 * The action.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 */
+	public void forEachInRange(int fromInclusive, int toExclusive, EntryConsumer<? super V> action) throws ArgumentNullException
+	{
+		Argument.handleNull(action, "action");
+		this.map.forEachInRange(fromInclusive, toExclusive, (key, value) -> action.accept((int) key, value));
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof IntSortedMap)) return false;
+		return this.map.equals(((IntSortedMap<?>) o).map);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		// The same as Map, with the keys boxed.
+		// The widened keys would hash as Long, which differs for negative keys.
+		int[] ret = {0};
+		this.forEach((key, value) -> ret[0] += Integer.hashCode(key) ^ value.hashCode());
+		return ret[0];
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.map.toString();
+	}
+
+	// -------------------------------------------- //
+	// CURSOR
+	// -------------------------------------------- //
+
+	/**
+	 * A position in an {@code IntSortedMap}, which can move in both directions.
+	 * It becomes invalid when stepping past either end.
+	 * If the map is modified, other than through {@code setValue},
+	 * the cursor must be positioned again by a seek method.
+	 */
+	public final class Cursor
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private final LongSortedMap<V>.Cursor cursor;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		private Cursor(LongSortedMap<V>.Cursor cursor)
+		{
+			this.cursor = cursor;
+		}
+
+		// -------------------------------------------- //
+		// SEEK
+		// -------------------------------------------- //
+
+		/**
+		 * Moves to the smallest key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekFirst()
+		{
+			return this.cursor.seekFirst();
+		}
+
+		/**
+		 * Moves to the largest key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekLast()
+		{
+			return this.cursor.seekLast();
+		}
+
+		/**
+		 * Moves to the smallest key greater than or equal to the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekCeiling(int key)
+		{
+			return this.cursor.seekCeiling(key);
+		}
+
+		/**
+		 * Moves to the smallest key strictly greater than the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekHigher(int key)
+		{
+			return this.cursor.seekHigher(key);
+		}
+
+		/**
+		 * Moves to the largest key less than or equal to the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekFloor(int key)
+		{
+			return this.cursor.seekFloor(key);
+		}
+
+		/**
+		 * Moves to the largest key strictly less than the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekLower(int key)
+		{
+			return this.cursor.seekLower(key);
+		}
+
+		// -------------------------------------------- //
+		// MOVE
+		// -------------------------------------------- //
+
+		/**
+		 * Moves to the next larger key.
+		 * @return
+		 * True if the cursor is still valid.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public boolean next() throws IllegalStateException
+		{
+			return this.cursor.next();
+		}
+
+		/**
+		 * Moves to the next smaller key.
+		 * @return
+		 * True if the cursor is still valid.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public boolean previous() throws IllegalStateException
+		{
+			return this.cursor.previous();
+		}
+
+		// -------------------------------------------- //
+		// INSPECT
+		// -------------------------------------------- //
+
+		/**
+		 * @return
+		 * True if the cursor is at an entry.
+		 */
+		public boolean isValid()
+		{
+			return this.cursor.isValid();
+		}
+
+		/**
+		 * @return
+		 * The key at the cursor.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public int getKey() throws IllegalStateException
+		{
+			return (int) this.cursor.getKey();
+		}
+
+		/**
+		 * @return
+		 * The value at the cursor.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public V getValue() throws IllegalStateException
+		{
+			return this.cursor.getValue();
+		}
+
+		/**
+		 * Replaces the value at the cursor, which keeps the cursor valid.
+		 * @param value
+		 * The new value.
+		 * @return
+		 * The old value.
+		 * @throws ArgumentNullException
+		 * If value is null.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public V setValue(V value) throws ArgumentNullException, IllegalStateException
+		{
+			return this.cursor.setValue(value);
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static OptionalInt narrow(OptionalLong key)
+	{
+		return key.isPresent() ? OptionalInt.of((int) key.getAsLong()) : OptionalInt.empty();
+	}
+
+}
@@ -0,0 +1,644 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.hash.HashUtil;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * A set of long integers, stored as disjoint ranges.
+ * It is much smaller than storing each integer, when they are mostly consecutive.
+ * It is useful for IP addresses as unsigned integers, or other 64 bit keys,
+ * and {@code IntRangeSet} is built on it.
+ *
+ * Ranges are from start (inclusive) to end (exclusive),
+ * just like {@code MCollections.range}. So {@code Long.MAX_VALUE} can't be contained.
+ * Overlapping and adjacent ranges are coalesced automatically,
+ * so {@code [0, 5)} and {@code [5, 10)} become {@code [0, 10)}.
+ *
+ * The ranges are kept sorted in a single primitive array,
+ * so lookups are a binary search and take O(log n) time.
+ *
+ * This class is not thread safe.
+ */
+public final class LongRangeSet
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	// Start and end of every range, one after another.
+	// It is strictly increasing, because ranges are disjoint and coalesced.
+	private long[] bounds;
+	private int rangeCount;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new empty range set.
+	 */
+	public LongRangeSet()
+	{
+		this(new long[8], 0);
+	}
+
+	private LongRangeSet(long[] bounds, int rangeCount)
+	{
+		this.bounds = bounds;
+		this.rangeCount = rangeCount;
+	}
+
+	/**
+	 * Creates a range set containing a single range.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @return
+	 * A new range set.
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	@Pure
+	public static LongRangeSet of(long start, long end) throws IllegalArgumentException
+	{
+		LongRangeSet ret = new LongRangeSet();
+		ret.add(start, end);
+		return ret;
+	}
+
+	/**
+	 * Creates a copy of the passed range set.
+	 * Changes to either won't affect the other.
+	 * @param set
+	 * The range set to copy.
+	 * @return
+	 * A new range set equal to the passed one.
+	 * @throws ArgumentNullException
+	 * If set is null.
+	 */
+	@Pure
+	public static LongRangeSet copyOf(LongRangeSet set) throws ArgumentNullException
+	{
+		Argument.handleNull(set, "set");
+		return new LongRangeSet(Arrays.copyOf(set.bounds, Math.max(8, 2 * set.rangeCount)), set.rangeCount);
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Adds a single integer.
+	 * @param value
+	 * The integer to add.
+	 * @throws IllegalArgumentException
+	 * If value is {@code Long.MAX_VALUE}.
+	 */
+	public void add(long value) throws IllegalArgumentException
+	{
+		if (value == Long.MAX_VALUE) throw new IllegalArgumentException("Long.MAX_VALUE can't be added.");
+		this.add(value, value + 1);
+	}
+
+	/**
+	 * Adds all integers in a range, coalescing it with
+	 * any range it overlaps or is adjacent to.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public void add(long start, long end) throws IllegalArgumentException
+	{
+		checkRange(start, end);
+		if (start == end) return;
+
+		// Ranges touching the new one are merged with it.
+		int low = this.lowerBound(start) / 2;
+		int high = (this.upperBound(end) + 1) / 2 - 1;
+		if (low > high)
+		{
+			this.replace(low, high, start, end);
+			return;
+		}
+
+		long newStart = Math.min(start, this.getStart(low));
+		long newEnd = Math.max(end, this.getEnd(high));
+		this.replace(low, high, newStart, newEnd);
+	}
+
+	/**
+	 * Adds many ranges at once, which is much faster than adding them one by one.
+	 * The ranges don't need to be sorted and may overlap.
+	 * Range i is from starts[i] (inclusive) to ends[i] (exclusive).
+	 * @param starts
+	 * The starts of the ranges.
+	 * @param ends
+	 * The ends of the ranges.
+	 * @throws ArgumentNullException
+	 * If starts or ends is null.
+	 * @throws IllegalArgumentException
+	 * If starts and ends differ in length, or a start is larger than its end.
+	 */
+	public void addAll(long[] starts, long[] ends) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(starts, "starts");
+		Argument.handleNull(ends, "ends");
+		if (starts.length != ends.length) throw new IllegalArgumentException("starts and ends must have the same length.");
+		for (int i = 0; i < starts.length; i++)
+		{
+			checkRange(starts[i], ends[i]);
+		}
+
+		// The union of ranges only depends on the sorted starts and ends,
+		// not on which start belongs to which end.
+		long[] sortedStarts = starts.clone();
+		long[] sortedEnds = ends.clone();
+		Arrays.sort(sortedStarts);
+		Arrays.sort(sortedEnds);
+
+		long[] added = new long[2 * starts.length];
+		int addedCount = 0;
+		int active = 0;
+		long current = 0;
+		int j = 0;
+		for (int i = 0; i < sortedStarts.length; i++)
+		{
+			// Ends before or at the next start, close ranges.
+			while (sortedEnds[j] < sortedStarts[i])
+			{
+				active--;
+				if (active == 0 && current < sortedEnds[j])
+				{
+					added[2 * addedCount] = current;
+					added[2 * addedCount + 1] = sortedEnds[j];
+					addedCount++;
+				}
+				j++;
+			}
+			if (active == 0) current = sortedStarts[i];
+			active++;
+		}
+		if (sortedStarts.length > 0 && current < sortedEnds[sortedEnds.length - 1])
+		{
+			added[2 * addedCount] = current;
+			added[2 * addedCount + 1] = sortedEnds[sortedEnds.length - 1];
+			addedCount++;
+		}
+
+		LongRangeSet ret = union(this, new LongRangeSet(added, addedCount));
+		this.bounds = ret.bounds;
+		this.rangeCount = ret.rangeCount;
+	}
+
+	/**
+	 * Adds all integers in another range set.
+	 * @param set
+	 * The range set to add.
+	 * @throws ArgumentNullException
+	 * If set is null.
+	 */
+	public void addAll(LongRangeSet set) throws ArgumentNullException
+	{
+		LongRangeSet ret = union(this, set);
+		this.bounds = ret.bounds;
+		this.rangeCount = ret.rangeCount;
+	}
+
+	/**
+	 * Removes a single integer, splitting the range containing it.
+	 * @param value
+	 * The integer to remove.
+	 */
+	public void remove(long value)
+	{
+		if (value == Long.MAX_VALUE) return;
+		this.remove(value, value + 1);
+	}
+
+	/**
+	 * Removes all integers in a range.
+	 * Ranges partially covered are cut.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public void remove(long start, long end) throws IllegalArgumentException
+	{
+		checkRange(start, end);
+		if (start == end) return;
+
+		// Ranges overlapping the removed one.
+		int low = this.upperBound(start) / 2;
+		int high = (this.lowerBound(end) + 1) / 2 - 1;
+		if (low > high) return;
+
+		long leftStart = this.getStart(low);
+		long rightEnd = this.getEnd(high);
+		boolean keepLeft = leftStart < start;
+		boolean keepRight = rightEnd > end;
+
+		if (keepLeft && keepRight)
+		{
+			this.replace(low, high, leftStart, start, end, rightEnd);
+		}
+		else if (keepLeft)
+		{
+			this.replace(low, high, leftStart, start);
+		}
+		else if (keepRight)
+		{
+			this.replace(low, high, end, rightEnd);
+		}
+		else
+		{
+			this.replace(low, high);
+		}
+	}
+
+	/**
+	 * Removes all ranges.
+	 */
+	public void clear()
+	{
+		this.bounds = new long[8];
+		this.rangeCount = 0;
+	}
+
+	// -------------------------------------------- //
+	// INSPECT
+	// -------------------------------------------- //
+
+	/**
+	 * Checks whether an integer is in any of the ranges.
+	 * This takes O(log n) time.
+	 * @param value
+	 * The integer to look for.
+	 * @return
+	 * True if the integer is in this set.
+	 */
+	public boolean contains(long value)
+	{
+		// Inside a range, when an odd number of bounds are at or below it.
+		return (this.upperBound(value) & 1) != 0;
+	}
+
+	/**
+	 * Checks whether any integer in the range is in this set.
+	 * This takes O(log n) time.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @return
+	 * True if the range and this set have an integer in common.
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public boolean overlaps(long start, long end) throws IllegalArgumentException
+	{
+		checkRange(start, end);
+		if (start == end) return false;
+
+		int index = this.upperBound(start);
+		if ((index & 1) != 0) return true;
+		return index < 2 * this.rangeCount && this.bounds[index] < end;
+	}
+
+	/**
+	 * Checks whether every integer in the range is in this set.
+	 * This takes O(log n) time.
+	 * @param start
+	 * The first integer in the range. (inclusive)
+	 * @param end
+	 * The integer after the last one in the range. (exclusive)
+	 * @return
+	 * True if the range is entirely in this set.
+	 * @throws IllegalArgumentException
+	 * If start is larger than end.
+	 */
+	public boolean encloses(long start, long end) throws IllegalArgumentException
+	{
+		checkRange(start, end);
+		if (start == end) return true;
+
+		int index = this.upperBound(start);
+		return (index & 1) != 0 && this.bounds[index] >= end;
+	}
+
+	/**
+	 * Gets the number of disjoint ranges in this set.
+	 * @return
+	 * The number of ranges.
+	 */
+	public int getRangeCount()
+	{
+		return this.rangeCount;
+	}
+
+	/**
+	 * Gets the start of a range. Ranges are sorted in ascending order.
+	 * @param index
+	 * The index of the range.
+	 * @return
+	 * The first integer in the range. (inclusive)
+	 * @throws IndexOutOfBoundsException
+	 * If index is negative or not less than the range count.
+	 */
+	public long getStart(int index) throws IndexOutOfBoundsException
+	{
+		this.checkIndex(index);
+		return this.bounds[2 * index];
+	}
+
+	/**
+	 * Gets the end of a range. Ranges are sorted in ascending order.
+	 * @param index
+	 * The index of the range.
+	 * @return
+	 * The integer after the last one in the range. (exclusive)
+	 * @throws IndexOutOfBoundsException
+	 * If index is negative or not less than the range count.
+	 */
+	public long getEnd(int index) throws IndexOutOfBoundsException
+	{
+		this.checkIndex(index);
+		return this.bounds[2 * index + 1];
+	}
+
+	/**
+	 * Counts the integers in this set.
+	 * @return
+	 * The sum of the lengths of all ranges,
+	 * or {@code Long.MAX_VALUE} if it is larger than that.
+	 */
+	public long getCardinality()
+	{
+		long ret = 0;
+		for (int i = 0; i < this.rangeCount; i++)
+		{
+			// Overflow makes the length or sum negative.
+			long length = this.bounds[2 * i + 1] - this.bounds[2 * i];
+			ret += length;
+			if (length < 0 || ret < 0) return Long.MAX_VALUE;
+		}
+		return ret;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.rangeCount == 0;
+	}
+
+	// -------------------------------------------- //
+	// SET OPERATIONS
+	// -------------------------------------------- //
+
+	/**
+	 * Computes the union of two range sets, in O(n + m) time.
+	 * Neither of them is changed.
+	 * @param a
+	 * The first range set.
+	 * @param b
+	 * The second range set.
+	 * @return
+	 * A new range set with the integers in either a or b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static LongRangeSet union(LongRangeSet a, LongRangeSet b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+
+		long[] ret = new long[Math.max(8, 2 * (a.rangeCount + b.rangeCount))];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.rangeCount || j < b.rangeCount)
+		{
+			// Take the range starting first.
+			long start;
+			long end;
+			if (j >= b.rangeCount || (i < a.rangeCount && a.bounds[2 * i] <= b.bounds[2 * j]))
+			{
+				start = a.bounds[2 * i];
+				end = a.bounds[2 * i + 1];
+				i++;
+			}
+			else
+			{
+				start = b.bounds[2 * j];
+				end = b.bounds[2 * j + 1];
+				j++;
+			}
+
+			if (count > 0 && start <= ret[2 * count - 1])
+			{
+				ret[2 * count - 1] = Math.max(ret[2 * count - 1], end);
+			}
+			else
+			{
+				ret[2 * count] = start;
+				ret[2 * count + 1] = end;
+				count++;
+			}
+		}
+		return new LongRangeSet(ret, count);
+	}
+
+	/**
+	 * Computes the intersection of two range sets, in O(n + m) time.
+	 * Neither of them is changed.
+	 * @param a
+	 * The first range set.
+	 * @param b
+	 * The second range set.
+	 * @return
+	 * A new range set with the integers in both a and b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static LongRangeSet intersection(LongRangeSet a, LongRangeSet b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+
+		long[] ret = new long[Math.max(8, 2 * (a.rangeCount + b.rangeCount))];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.rangeCount && j < b.rangeCount)
+		{
+			long start = Math.max(a.bounds[2 * i], b.bounds[2 * j]);
+			long end = Math.min(a.bounds[2 * i + 1], b.bounds[2 * j + 1]);
+			if (start < end)
+			{
+				ret[2 * count] = start;
+				ret[2 * count + 1] = end;
+				count++;
+			}
+
+			// The range ending first can't overlap anything else.
+			if (a.bounds[2 * i + 1] < b.bounds[2 * j + 1])
+			{
+				i++;
+			}
+			else
+			{
+				j++;
+			}
+		}
+		return new LongRangeSet(ret, count);
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof LongRangeSet)) return false;
+		LongRangeSet that = (LongRangeSet) o;
+
+		if (this.rangeCount != that.rangeCount) return false;
+		for (int i = 0; i < 2 * this.rangeCount; i++)
+		{
+			if (this.bounds[i] != that.bounds[i]) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int ret = HashUtil.HASHCODE_START;
+		for (int i = 0; i < 2 * this.rangeCount; i++)
+		{
+			ret = HashUtil.resultAddField(ret, this.bounds[i]);
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringJoiner ret = new StringJoiner(", ", "{", "}");
+		for (int i = 0; i < this.rangeCount; i++)
+		{
+			ret.add("[" + this.bounds[2 * i] + ", " + this.bounds[2 * i + 1] + ")");
+		}
+		return ret.toString();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static void checkRange(long start, long end)
+	{
+		if (start > end) throw new IllegalArgumentException("start (" + start + ") is larger than end (" + end + ")");
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= this.rangeCount) throw new IndexOutOfBoundsException("index: " + index + " range count: " + this.rangeCount);
+	}
+
+	// The index of the first bound not less than value.
+	private int lowerBound(long value)
+	{
+		int low = 0;
+		int high = 2 * this.rangeCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (this.bounds[middle] < value)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// The index of the first bound greater than value.
+	private int upperBound(long value)
+	{
+		int low = 0;
+		int high = 2 * this.rangeCount;
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (this.bounds[middle] <= value)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// Replaces the ranges from low to high (inclusive) with new bounds.
+	// If low is one more than high, the bounds are inserted before low.
+	private void replace(int low, int high, long... replacement)
+	{
+		int removed = 2 * (high - low + 1);
+		int length = 2 * this.rangeCount;
+		int newLength = length - removed + replacement.length;
+		if (newLength > this.bounds.length)
+		{
+			this.bounds = Arrays.copyOf(this.bounds, Math.max(newLength, 2 * this.bounds.length));
+		}
+
+		System.arraycopy(this.bounds, 2 * high + 2, this.bounds, 2 * low + replacement.length, length - 2 * high - 2);
+		System.arraycopy(replacement, 0, this.bounds, 2 * low, replacement.length);
+		this.rangeCount = newLength / 2;
+	}
+
+}
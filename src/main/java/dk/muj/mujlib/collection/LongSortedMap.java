@@ -0,0 +1,1065 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.StringJoiner;
+
+/**
+ * A sorted map from primitive longs to objects, like a {@code TreeMap<Long, V>}
+ * without boxing the keys, or chasing a pointer for every comparison.
+ *
+ * It is a B+-tree. Keys are stored in primitive arrays in the nodes,
+ * so a lookup is a few binary searches in contiguous memory.
+ * All entries are in the leaves, which are linked together,
+ * so iterating a range is a walk along arrays.
+ *
+ * Range iteration doesn't allocate, use {@code forEachInRange}
+ * or a {@code Cursor}, which can seek to the floor or ceiling of a key.
+ * A map can be bulk loaded from sorted arrays in linear time, using {@code fromSorted}.
+ *
+ * Values can't be null. This class is not thread safe.
+ *
+ * @param <V>
+ * Type of the values.
+ */
+public final class LongSortedMap<V>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final int CAPACITY = 64;
+
+	// Nodes smaller than this are merged or refilled from a sibling.
+	private static final int MIN_SIZE = CAPACITY / 4;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private Node root = new Leaf();
+	private int size = 0;
+	private int modCount = 0;
+
+	// Results passed up from the recursive insert and remove.
+	private long splitKey;
+	private Object oldValue;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new empty map.
+	 */
+	public LongSortedMap()
+	{
+
+	}
+
+	/**
+	 * Creates a map from keys and values sorted by key, in linear time.
+	 * This is much faster than putting the entries one by one.
+	 * @param keys
+	 * The keys, in strictly ascending order.
+	 * @param values
+	 * The values, values[i] is mapped to keys[i].
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A new map containing the entries.
+	 * @throws ArgumentNullException
+	 * If keys, values, or any of the values is null.
+	 * @throws IllegalArgumentException
+	 * If keys and values differ in length, or keys are not strictly ascending.
+	 */
+	@Pure
+	public static <V> LongSortedMap<V> fromSorted(long[] keys, V[] values) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(keys, "keys");
+		Argument.handleNull(values, "values");
+		if (keys.length != values.length) throw new IllegalArgumentException("keys and values must have the same length.");
+		for (int i = 0; i < keys.length; i++)
+		{
+			Argument.handleNull(values[i], "values[" + i + "]");
+			if (i > 0 && keys[i - 1] >= keys[i]) throw new IllegalArgumentException("keys are not strictly ascending at index " + i);
+		}
+
+		LongSortedMap<V> ret = new LongSortedMap<>();
+		if (keys.length == 0) return ret;
+
+		// Fill leaves evenly, so none is too small.
+		int leafCount = (keys.length + CAPACITY - 1) / CAPACITY;
+		Node[] level = new Node[leafCount];
+		long[] minKeys = new long[leafCount];
+		Leaf previous = null;
+		int from = 0;
+		for (int i = 0; i < leafCount; i++)
+		{
+			int to = (int) ((long) keys.length * (i + 1) / leafCount);
+			Leaf leaf = new Leaf();
+			leaf.size = to - from;
+			System.arraycopy(keys, from, leaf.keys, 0, leaf.size);
+			System.arraycopy(values, from, leaf.values, 0, leaf.size);
+			leaf.previous = previous;
+			if (previous != null) previous.next = leaf;
+			previous = leaf;
+
+			level[i] = leaf;
+			minKeys[i] = keys[from];
+			from = to;
+		}
+
+		// Then build inner levels on top, the same way.
+		int levelSize = leafCount;
+		while (levelSize > 1)
+		{
+			int parentCount = (levelSize + CAPACITY - 1) / CAPACITY;
+			from = 0;
+			for (int i = 0; i < parentCount; i++)
+			{
+				int to = (int) ((long) levelSize * (i + 1) / parentCount);
+				Inner inner = new Inner();
+				inner.size = to - from;
+				System.arraycopy(level, from, inner.children, 0, inner.size);
+				System.arraycopy(minKeys, from + 1, inner.keys, 0, inner.size - 1);
+
+				minKeys[i] = minKeys[from];
+				level[i] = inner;
+				from = to;
+			}
+			levelSize = parentCount;
+		}
+
+		ret.root = level[0];
+		ret.size = keys.length;
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// ACCESS
+	// -------------------------------------------- //
+
+	/**
+	 * Gets the value mapped to the key.
+	 * @param key
+	 * The key.
+	 * @return
+	 * The value, or null if the key isn't present.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		Leaf leaf = this.findLeaf(key);
+		int index = leaf.indexOf(key);
+		return (index >= 0) ? (V) leaf.values[index] : null;
+	}
+
+	public boolean containsKey(long key)
+	{
+		return this.get(key) != null;
+	}
+
+	public int size()
+	{
+		return this.size;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Maps the key to the value.
+	 * @param key
+	 * The key.
+	 * @param value
+	 * The value.
+	 * @return
+	 * The value previously mapped to the key, or null if there was none.
+	 * @throws ArgumentNullException
+	 * If value is null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) throws ArgumentNullException
+	{
+		Argument.handleNull(value, "value");
+
+		this.oldValue = null;
+		Node split = this.insert(this.root, key, value);
+		if (split != null)
+		{
+			Inner newRoot = new Inner();
+			newRoot.children[0] = this.root;
+			newRoot.children[1] = split;
+			newRoot.keys[0] = this.splitKey;
+			newRoot.size = 2;
+			this.root = newRoot;
+		}
+
+		V ret = (V) this.oldValue;
+		this.oldValue = null;
+		if (ret == null)
+		{
+			this.size++;
+			this.modCount++;
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes the key.
+	 * @param key
+	 * The key.
+	 * @return
+	 * The value that was mapped to the key, or null if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		this.oldValue = null;
+		this.delete(this.root, key);
+
+		V ret = (V) this.oldValue;
+		this.oldValue = null;
+		if (ret == null) return null;
+
+		this.size--;
+		this.modCount++;
+		if (this.root instanceof Inner && this.root.size == 1)
+		{
+			this.root = ((Inner) this.root).children[0];
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear()
+	{
+		this.root = new Leaf();
+		this.size = 0;
+		this.modCount++;
+	}
+
+	// -------------------------------------------- //
+	// NAVIGATION
+	// -------------------------------------------- //
+
+	/**
+	 * @return
+	 * The smallest key, if the map isn't empty.
+	 */
+	public OptionalLong firstKey()
+	{
+		Cursor cursor = this.cursor();
+		cursor.seekFirst();
+		return cursor.toOptionalKey();
+	}
+
+	/**
+	 * @return
+	 * The largest key, if the map isn't empty.
+	 */
+	public OptionalLong lastKey()
+	{
+		Cursor cursor = this.cursor();
+		cursor.seekLast();
+		return cursor.toOptionalKey();
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The largest key less than or equal to the passed key, if any.
+	 */
+	public OptionalLong floorKey(long key)
+	{
+		Cursor cursor = this.cursor();
+		cursor.seekFloor(key);
+		return cursor.toOptionalKey();
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The smallest key greater than or equal to the passed key, if any.
+	 */
+	public OptionalLong ceilingKey(long key)
+	{
+		Cursor cursor = this.cursor();
+		cursor.seekCeiling(key);
+		return cursor.toOptionalKey();
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The largest key strictly less than the passed key, if any.
+	 */
+	public OptionalLong lowerKey(long key)
+	{
+		Cursor cursor = this.cursor();
+		cursor.seekLower(key);
+		return cursor.toOptionalKey();
+	}
+
+	/**
+	 * @param key
+	 * The key to search from.
+	 * @return
+	 * The smallest key strictly greater than the passed key, if any.
+	 */
+	public OptionalLong higherKey(long key)
+	{
+		Cursor cursor = this.cursor();
+		cursor.seekHigher(key);
+		return cursor.toOptionalKey();
+	}
+
+	/**
+	 * Creates a cursor for walking the entries of this map, in either direction.
+	 * It is invalid until it is positioned by one of its seek methods.
+	 * One cursor can be reused for many walks, so iterating doesn't allocate.
+	 * @return
+	 * A new cursor.
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
+	// -------------------------------------------- //
+	// ITERATION
+	// -------------------------------------------- //
+
+	/**
+	 * An action on an entry of a {@code LongSortedMap}.
+	 * @param <V>
+	 * Type of the values.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer<V>
+	{
+		void accept(long key, V value);
+	}
+
+	/**
+	 * Performs the action for every entry, in ascending key order.
+	 * @param action
+	 * The action.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 */
+	public void forEach(EntryConsumer<? super V> action) throws ArgumentNullException
+	{
+		Argument.handleNull(action, "action");
+		Leaf leaf = this.firstLeaf();
+		this.forEachFrom(leaf, 0, Long.MAX_VALUE, true, action);
+	}
+
+	/**
+	 * Performs the action for every entry with a key in the range,
+	 * in ascending key order, without allocating.
+	 * This is the sub map from fromInclusive to toExclusive.
+	 * @param fromInclusive
+	 * The smallest key in the range.
+	 * @param toExclusive
+	 * The key after the largest key in the range.
+	 * @param action
+	 * The action.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 */
+	public void forEachInRange(long fromInclusive, long toExclusive, EntryConsumer<? super V> action) throws ArgumentNullException
+	{
+		Argument.handleNull(action, "action");
+		if (fromInclusive >= toExclusive) return;
+
+		Leaf leaf = this.findLeaf(fromInclusive);
+		this.forEachFrom(leaf, leaf.ceilingIndex(fromInclusive), toExclusive, false, action);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void forEachFrom(Leaf leaf, int index, long toExclusive, boolean toEnd, EntryConsumer<? super V> action)
+	{
+		int expectedModCount = this.modCount;
+		for (; leaf != null; leaf = leaf.next, index = 0)
+		{
+			for (; index < leaf.size; index++)
+			{
+				if ( ! toEnd && leaf.keys[index] >= toExclusive) return;
+				action.accept(leaf.keys[index], (V) leaf.values[index]);
+				if (this.modCount != expectedModCount) throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof LongSortedMap)) return false;
+		LongSortedMap<?> that = (LongSortedMap<?>) o;
+		if (this.size != that.size) return false;
+
+		Leaf a = this.firstLeaf();
+		Leaf b = that.firstLeaf();
+		int i = 0;
+		int j = 0;
+		for (int n = 0; n < this.size; n++)
+		{
+			while (i == a.size)
+			{
+				a = a.next;
+				i = 0;
+			}
+			while (j == b.size)
+			{
+				b = b.next;
+				j = 0;
+			}
+			if (a.keys[i] != b.keys[j] || ! a.values[i].equals(b.values[j])) return false;
+			i++;
+			j++;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		// The same as Map, with the keys boxed.
+		int[] ret = {0};
+		this.forEach((key, value) -> ret[0] += Long.hashCode(key) ^ value.hashCode());
+		return ret[0];
+	}
+
+	@Override
+	public String toString()
+	{
+		StringJoiner ret = new StringJoiner(", ", "{", "}");
+		this.forEach((key, value) -> ret.add(key + "=" + value));
+		return ret.toString();
+	}
+
+	// -------------------------------------------- //
+	// CURSOR
+	// -------------------------------------------- //
+
+	/**
+	 * A position in a {@code LongSortedMap}, which can move in both directions.
+	 * It becomes invalid when stepping past either end.
+	 * If the map is modified, other than through {@code setValue},
+	 * the cursor must be positioned again by a seek method.
+	 */
+	public final class Cursor
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private Leaf leaf = null;
+		private int index = 0;
+		private int expectedModCount = 0;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		private Cursor()
+		{
+
+		}
+
+		// -------------------------------------------- //
+		// SEEK
+		// -------------------------------------------- //
+
+		/**
+		 * Moves to the smallest key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekFirst()
+		{
+			return this.position(LongSortedMap.this.firstLeaf(), 0);
+		}
+
+		/**
+		 * Moves to the largest key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekLast()
+		{
+			Leaf last = LongSortedMap.this.lastLeaf();
+			return this.position(last, last.size - 1);
+		}
+
+		/**
+		 * Moves to the smallest key greater than or equal to the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekCeiling(long key)
+		{
+			Leaf leaf = LongSortedMap.this.findLeaf(key);
+			return this.position(leaf, leaf.ceilingIndex(key));
+		}
+
+		/**
+		 * Moves to the smallest key strictly greater than the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekHigher(long key)
+		{
+			if (key == Long.MAX_VALUE) return this.position(null, 0);
+			return this.seekCeiling(key + 1);
+		}
+
+		/**
+		 * Moves to the largest key less than or equal to the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekFloor(long key)
+		{
+			Leaf leaf = LongSortedMap.this.findLeaf(key);
+			int index = leaf.indexOf(key);
+			return this.position(leaf, (index >= 0) ? index : -index - 2);
+		}
+
+		/**
+		 * Moves to the largest key strictly less than the passed key.
+		 * @param key
+		 * The key.
+		 * @return
+		 * True if the cursor is valid afterwards.
+		 */
+		public boolean seekLower(long key)
+		{
+			Leaf leaf = LongSortedMap.this.findLeaf(key);
+			return this.position(leaf, leaf.ceilingIndex(key) - 1);
+		}
+
+		// -------------------------------------------- //
+		// MOVE
+		// -------------------------------------------- //
+
+		/**
+		 * Moves to the next larger key.
+		 * @return
+		 * True if the cursor is still valid.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public boolean next() throws IllegalStateException
+		{
+			this.checkValid();
+			return this.position(this.leaf, this.index + 1);
+		}
+
+		/**
+		 * Moves to the next smaller key.
+		 * @return
+		 * True if the cursor is still valid.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public boolean previous() throws IllegalStateException
+		{
+			this.checkValid();
+			return this.position(this.leaf, this.index - 1);
+		}
+
+		// -------------------------------------------- //
+		// INSPECT
+		// -------------------------------------------- //
+
+		/**
+		 * @return
+		 * True if the cursor is at an entry.
+		 */
+		public boolean isValid()
+		{
+			return this.leaf != null && this.expectedModCount == LongSortedMap.this.modCount;
+		}
+
+		/**
+		 * @return
+		 * The key at the cursor.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		public long getKey() throws IllegalStateException
+		{
+			this.checkValid();
+			return this.leaf.keys[this.index];
+		}
+
+		/**
+		 * @return
+		 * The value at the cursor.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		@SuppressWarnings("unchecked")
+		public V getValue() throws IllegalStateException
+		{
+			this.checkValid();
+			return (V) this.leaf.values[this.index];
+		}
+
+		/**
+		 * Replaces the value at the cursor, which keeps the cursor valid.
+		 * @param value
+		 * The new value.
+		 * @return
+		 * The old value.
+		 * @throws ArgumentNullException
+		 * If value is null.
+		 * @throws IllegalStateException
+		 * If the cursor is not valid.
+		 */
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) throws ArgumentNullException, IllegalStateException
+		{
+			Argument.handleNull(value, "value");
+			this.checkValid();
+			V ret = (V) this.leaf.values[this.index];
+			this.leaf.values[this.index] = value;
+			return ret;
+		}
+
+		// -------------------------------------------- //
+		// INTERNAL
+		// -------------------------------------------- //
+
+		// Normalises an index which is one past either end of the leaf.
+		private boolean position(Leaf leaf, int index)
+		{
+			this.expectedModCount = LongSortedMap.this.modCount;
+			while (leaf != null && index >= leaf.size)
+			{
+				index -= leaf.size;
+				leaf = leaf.next;
+			}
+			while (leaf != null && index < 0)
+			{
+				leaf = leaf.previous;
+				if (leaf != null) index += leaf.size;
+			}
+			this.leaf = leaf;
+			this.index = index;
+			return leaf != null;
+		}
+
+		private void checkValid()
+		{
+			if (this.leaf == null) throw new IllegalStateException("The cursor is not at an entry.");
+			if (this.expectedModCount != LongSortedMap.this.modCount) throw new ConcurrentModificationException();
+		}
+
+		private OptionalLong toOptionalKey()
+		{
+			return (this.leaf == null) ? OptionalLong.empty() : OptionalLong.of(this.leaf.keys[this.index]);
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL: SEARCH
+	// -------------------------------------------- //
+
+	private Leaf findLeaf(long key)
+	{
+		Node node = this.root;
+		while (node instanceof Inner)
+		{
+			Inner inner = (Inner) node;
+			node = inner.children[inner.childIndex(key)];
+		}
+		return (Leaf) node;
+	}
+
+	private Leaf firstLeaf()
+	{
+		Node node = this.root;
+		while (node instanceof Inner)
+		{
+			node = ((Inner) node).children[0];
+		}
+		return (Leaf) node;
+	}
+
+	private Leaf lastLeaf()
+	{
+		Node node = this.root;
+		while (node instanceof Inner)
+		{
+			node = ((Inner) node).children[node.size - 1];
+		}
+		return (Leaf) node;
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL: INSERT
+	// -------------------------------------------- //
+
+	// Returns the new right sibling if the node split, with its smallest key in splitKey.
+	private Node insert(Node node, long key, Object value)
+	{
+		if (node instanceof Leaf) return this.insertIntoLeaf((Leaf) node, key, value);
+
+		Inner inner = (Inner) node;
+		int index = inner.childIndex(key);
+		Node split = this.insert(inner.children[index], key, value);
+		if (split == null) return null;
+
+		long childSplitKey = this.splitKey;
+		if (inner.size < CAPACITY)
+		{
+			inner.insert(index, childSplitKey, split);
+			return null;
+		}
+
+		// Split the full node in half, and insert into the right half.
+		int middle = CAPACITY / 2;
+		Inner right = new Inner();
+		right.size = CAPACITY - middle;
+		System.arraycopy(inner.children, middle, right.children, 0, right.size);
+		System.arraycopy(inner.keys, middle, right.keys, 0, right.size - 1);
+		long promoted = inner.keys[middle - 1];
+		for (int i = middle; i < CAPACITY; i++)
+		{
+			inner.children[i] = null;
+		}
+		inner.size = middle;
+
+		if (index < middle)
+		{
+			inner.insert(index, childSplitKey, split);
+		}
+		else
+		{
+			right.insert(index - middle, childSplitKey, split);
+		}
+
+		this.splitKey = promoted;
+		return right;
+	}
+
+	private Node insertIntoLeaf(Leaf leaf, long key, Object value)
+	{
+		int index = leaf.indexOf(key);
+		if (index >= 0)
+		{
+			this.oldValue = leaf.values[index];
+			leaf.values[index] = value;
+			return null;
+		}
+		index = -index - 1;
+
+		if (leaf.size < CAPACITY)
+		{
+			leaf.insert(index, key, value);
+			return null;
+		}
+
+		// Split the full leaf in half, and insert into the right half.
+		int middle = CAPACITY / 2;
+		Leaf right = new Leaf();
+		right.size = CAPACITY - middle;
+		System.arraycopy(leaf.keys, middle, right.keys, 0, right.size);
+		System.arraycopy(leaf.values, middle, right.values, 0, right.size);
+		for (int i = middle; i < CAPACITY; i++)
+		{
+			leaf.values[i] = null;
+		}
+		leaf.size = middle;
+
+		right.next = leaf.next;
+		right.previous = leaf;
+		if (leaf.next != null) leaf.next.previous = right;
+		leaf.next = right;
+
+		if (index <= middle)
+		{
+			leaf.insert(index, key, value);
+		}
+		else
+		{
+			right.insert(index - middle, key, value);
+		}
+
+		this.splitKey = right.keys[0];
+		return right;
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL: DELETE
+	// -------------------------------------------- //
+
+	private void delete(Node node, long key)
+	{
+		if (node instanceof Leaf)
+		{
+			Leaf leaf = (Leaf) node;
+			int index = leaf.indexOf(key);
+			if (index < 0) return;
+			this.oldValue = leaf.values[index];
+			leaf.delete(index);
+			return;
+		}
+
+		Inner inner = (Inner) node;
+		int index = inner.childIndex(key);
+		Node child = inner.children[index];
+		this.delete(child, key);
+		if (this.oldValue != null && child.size < MIN_SIZE && inner.size > 1)
+		{
+			rebalance(inner, index);
+		}
+	}
+
+	// Merges the small child with a sibling, or evens them out if they don't fit in one.
+	private static void rebalance(Inner parent, int index)
+	{
+		int leftIndex = (index > 0) ? index - 1 : index;
+		Node left = parent.children[leftIndex];
+		Node right = parent.children[leftIndex + 1];
+		long separator = parent.keys[leftIndex];
+
+		if (left instanceof Leaf)
+		{
+			Leaf leftLeaf = (Leaf) left;
+			Leaf rightLeaf = (Leaf) right;
+			int total = leftLeaf.size + rightLeaf.size;
+			if (total <= CAPACITY)
+			{
+				System.arraycopy(rightLeaf.keys, 0, leftLeaf.keys, leftLeaf.size, rightLeaf.size);
+				System.arraycopy(rightLeaf.values, 0, leftLeaf.values, leftLeaf.size, rightLeaf.size);
+				leftLeaf.size = total;
+				leftLeaf.next = rightLeaf.next;
+				if (rightLeaf.next != null) rightLeaf.next.previous = leftLeaf;
+				parent.delete(leftIndex);
+				return;
+			}
+
+			long[] keys = new long[total];
+			Object[] values = new Object[total];
+			System.arraycopy(leftLeaf.keys, 0, keys, 0, leftLeaf.size);
+			System.arraycopy(rightLeaf.keys, 0, keys, leftLeaf.size, rightLeaf.size);
+			System.arraycopy(leftLeaf.values, 0, values, 0, leftLeaf.size);
+			System.arraycopy(rightLeaf.values, 0, values, leftLeaf.size, rightLeaf.size);
+
+			int half = total / 2;
+			Arrays.fill(leftLeaf.values, null);
+			Arrays.fill(rightLeaf.values, null);
+			System.arraycopy(keys, 0, leftLeaf.keys, 0, half);
+			System.arraycopy(values, 0, leftLeaf.values, 0, half);
+			System.arraycopy(keys, half, rightLeaf.keys, 0, total - half);
+			System.arraycopy(values, half, rightLeaf.values, 0, total - half);
+			leftLeaf.size = half;
+			rightLeaf.size = total - half;
+			parent.keys[leftIndex] = rightLeaf.keys[0];
+			return;
+		}
+
+		Inner leftInner = (Inner) left;
+		Inner rightInner = (Inner) right;
+		int total = leftInner.size + rightInner.size;
+		if (total <= CAPACITY)
+		{
+			leftInner.keys[leftInner.size - 1] = separator;
+			System.arraycopy(rightInner.keys, 0, leftInner.keys, leftInner.size, rightInner.size - 1);
+			System.arraycopy(rightInner.children, 0, leftInner.children, leftInner.size, rightInner.size);
+			leftInner.size = total;
+			parent.delete(leftIndex);
+			return;
+		}
+
+		// The separator moves down between the two, and a new one moves up.
+		long[] keys = new long[total - 1];
+		Node[] children = new Node[total];
+		System.arraycopy(leftInner.keys, 0, keys, 0, leftInner.size - 1);
+		keys[leftInner.size - 1] = separator;
+		System.arraycopy(rightInner.keys, 0, keys, leftInner.size, rightInner.size - 1);
+		System.arraycopy(leftInner.children, 0, children, 0, leftInner.size);
+		System.arraycopy(rightInner.children, 0, children, leftInner.size, rightInner.size);
+
+		int half = total / 2;
+		Arrays.fill(leftInner.children, null);
+		Arrays.fill(rightInner.children, null);
+		System.arraycopy(children, 0, leftInner.children, 0, half);
+		System.arraycopy(keys, 0, leftInner.keys, 0, half - 1);
+		System.arraycopy(children, half, rightInner.children, 0, total - half);
+		System.arraycopy(keys, half, rightInner.keys, 0, total - half - 1);
+		leftInner.size = half;
+		rightInner.size = total - half;
+		parent.keys[leftIndex] = keys[half - 1];
+	}
+
+	// -------------------------------------------- //
+	// NODES
+	// -------------------------------------------- //
+
+	private static abstract class Node
+	{
+		// Entries in a leaf, children in an inner node.
+		int size;
+	}
+
+	private static final class Leaf extends Node
+	{
+		final long[] keys = new long[CAPACITY];
+		final Object[] values = new Object[CAPACITY];
+		Leaf next;
+		Leaf previous;
+
+		int indexOf(long key)
+		{
+			int low = 0;
+			int high = this.size - 1;
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				long middleKey = this.keys[middle];
+				if (middleKey < key)
+				{
+					low = middle + 1;
+				}
+				else if (middleKey > key)
+				{
+					high = middle - 1;
+				}
+				else
+				{
+					return middle;
+				}
+			}
+			return -(low + 1);
+		}
+
+		// The index of the first key not less than the passed one.
+		int ceilingIndex(long key)
+		{
+			int index = this.indexOf(key);
+			return (index >= 0) ? index : -index - 1;
+		}
+
+		void insert(int index, long key, Object value)
+		{
+			System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+			System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+			this.keys[index] = key;
+			this.values[index] = value;
+			this.size++;
+		}
+
+		void delete(int index)
+		{
+			System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+			System.arraycopy(this.values, index + 1, this.values, index, this.size - index - 1);
+			this.size--;
+			this.values[this.size] = null;
+		}
+	}
+
+	private static final class Inner extends Node
+	{
+		// keys[i] is the smallest key under children[i + 1].
+		final long[] keys = new long[CAPACITY - 1];
+		final Node[] children = new Node[CAPACITY];
+
+		int childIndex(long key)
+		{
+			// The number of separators less than or equal to the key.
+			int low = 0;
+			int high = this.size - 1;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (this.keys[middle] <= key)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		// Inserts a child after the child at index, with the passed separator before it.
+		void insert(int index, long key, Node child)
+		{
+			System.arraycopy(this.keys, index, this.keys, index + 1, this.size - 1 - index);
+			System.arraycopy(this.children, index + 1, this.children, index + 2, this.size - 1 - index);
+			this.keys[index] = key;
+			this.children[index + 1] = child;
+			this.size++;
+		}
+
+		// Removes the child after index, with the separator before it.
+		void delete(int index)
+		{
+			System.arraycopy(this.keys, index + 1, this.keys, index, this.size - 2 - index);
+			System.arraycopy(this.children, index + 2, this.children, index + 1, this.size - 2 - index);
+			this.size--;
+			this.children[this.size] = null;
+		}
+	}
+
+}
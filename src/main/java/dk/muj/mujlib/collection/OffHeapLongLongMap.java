@@ -0,0 +1,565 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A hash map from longs to longs, stored outside of the Java heap.
+ * It is meant for huge lookup tables, hundreds of millions of entries,
+ * which would put pressure on the garbage collector even as primitive arrays.
+ *
+ * The table lives either in direct memory, see {@code allocate},
+ * or in a memory mapped file, see {@code create} and {@code open}.
+ * Opening an existing file is near instant, since the table is mapped rather than rebuilt,
+ * and the operating system pages it in as it is used.
+ *
+ * It uses open addressing with linear probing, 16 bytes per slot.
+ * The capacity is fixed when the map is created, entries can be replaced but not removed.
+ *
+ * This class is thread safe. Reads are optimistic and don't block each other,
+ * they only retry if a write happened at the same time.
+ * Writes are serialised.
+ */
+public final class OffHeapLongLongMap implements AutoCloseable
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final long MAGIC = 0x4D554A4C4C4D4150L; // MUJLLMAP
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 8;
+	private static final int HEADER_SLOT_COUNT = 16;
+	private static final int HEADER_SIZE_FIELD = 24;
+	private static final int HEADER_HAS_ZERO_KEY = 32;
+	private static final int HEADER_ZERO_VALUE = 40;
+
+	private static final int SLOT_SIZE = 16;
+
+	// A buffer can hold at most 2GB, so the slots are split into segments of 1GB.
+	private static final int SEGMENT_SHIFT = 26;
+	private static final long SEGMENT_SLOTS = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SLOTS - 1;
+
+	private static final long MIN_SLOTS = 16;
+	private static final long MAX_SLOTS = 1L << 40;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final ByteBuffer header;
+	private final ByteBuffer[] segments;
+	private final long mask;
+	private final long maxSize;
+	private final boolean readOnly;
+	private final FileChannel channel;
+
+	// Key 0 marks an empty slot, so its entry is kept in the header.
+	private volatile boolean hasZeroKey;
+	private volatile long size;
+	private volatile boolean closed = false;
+
+	private final StampedLock lock = new StampedLock();
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private OffHeapLongLongMap(ByteBuffer header, ByteBuffer[] segments, long slotCount, boolean readOnly, FileChannel channel)
+	{
+		this.header = header;
+		this.segments = segments;
+		this.mask = slotCount - 1;
+		this.maxSize = slotCount / 4 * 3;
+		this.readOnly = readOnly;
+		this.channel = channel;
+		this.hasZeroKey = header.getLong(HEADER_HAS_ZERO_KEY) != 0;
+		this.size = header.getLong(HEADER_SIZE_FIELD);
+	}
+
+	/**
+	 * Creates a map in direct memory, outside of the Java heap.
+	 * The memory is released when the map is garbage collected.
+	 * @param expectedSize
+	 * The number of entries the map must be able to hold.
+	 * @return
+	 * A new empty map.
+	 * @throws IllegalArgumentException
+	 * If expectedSize is negative or too large.
+	 */
+	public static OffHeapLongLongMap allocate(long expectedSize) throws IllegalArgumentException
+	{
+		long slotCount = slotCount(expectedSize);
+		ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		writeHeader(header, slotCount);
+
+		ByteBuffer[] segments = new ByteBuffer[segmentCount(slotCount)];
+		for (int i = 0; i < segments.length; i++)
+		{
+			segments[i] = ByteBuffer.allocateDirect(segmentBytes(slotCount, i)).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return new OffHeapLongLongMap(header, segments, slotCount, false, null);
+	}
+
+	/**
+	 * Creates a map in a memory mapped file. An existing file is overwritten.
+	 * The file is sparse where the operating system supports it,
+	 * so empty parts of the table take no disk space.
+	 * @param file
+	 * The file to store the map in.
+	 * @param expectedSize
+	 * The number of entries the map must be able to hold.
+	 * @return
+	 * A new empty map.
+	 * @throws ArgumentNullException
+	 * If file is null.
+	 * @throws IllegalArgumentException
+	 * If expectedSize is negative or too large.
+	 * @throws IOException
+	 * If the file can't be created or mapped.
+	 */
+	public static OffHeapLongLongMap create(Path file, long expectedSize) throws ArgumentNullException, IllegalArgumentException, IOException
+	{
+		Argument.handleNull(file, "file");
+		long slotCount = slotCount(expectedSize);
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer[] segments = mapSegments(channel, FileChannel.MapMode.READ_WRITE, slotCount);
+			writeHeader(header, slotCount);
+			return new OffHeapLongLongMap(header, segments, slotCount, false, channel);
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Opens a map in a file created by {@code create}.
+	 * Nothing is read until it is used, so this is near instant even for huge maps.
+	 * @param file
+	 * The file the map is stored in.
+	 * @param readOnly
+	 * True to open the file read only, then put throws UnsupportedOperationException.
+	 * @return
+	 * The map stored in the file.
+	 * @throws ArgumentNullException
+	 * If file is null.
+	 * @throws IllegalArgumentException
+	 * If the file doesn't contain a map.
+	 * @throws IOException
+	 * If the file can't be opened or mapped.
+	 */
+	public static OffHeapLongLongMap open(Path file, boolean readOnly) throws ArgumentNullException, IllegalArgumentException, IOException
+	{
+		Argument.handleNull(file, "file");
+		FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+
+		FileChannel channel = readOnly ? FileChannel.open(file, StandardOpenOption.READ) : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			if (channel.size() < HEADER_SIZE) throw new IllegalArgumentException("The file is too small to contain a map.");
+			ByteBuffer header = channel.map(mode, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getLong(HEADER_MAGIC) != MAGIC) throw new IllegalArgumentException("The file doesn't contain a map.");
+			if (header.getInt(HEADER_VERSION) != VERSION) throw new IllegalArgumentException("Unsupported version: " + header.getInt(HEADER_VERSION));
+
+			long slotCount = header.getLong(HEADER_SLOT_COUNT);
+			if (slotCount < MIN_SLOTS || slotCount > MAX_SLOTS || Long.bitCount(slotCount) != 1) throw new IllegalArgumentException("Corrupt slot count: " + slotCount);
+			if (channel.size() < HEADER_SIZE + slotCount * SLOT_SIZE) throw new IllegalArgumentException("The file is truncated.");
+
+			ByteBuffer[] segments = mapSegments(channel, mode, slotCount);
+			return new OffHeapLongLongMap(header, segments, slotCount, readOnly, channel);
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			channel.close();
+			throw ex;
+		}
+	}
+
+	// -------------------------------------------- //
+	// ACCESS
+	// -------------------------------------------- //
+
+	/**
+	 * Gets the value mapped to the key.
+	 * @param key
+	 * The key.
+	 * @param defaultValue
+	 * The value to return if the key isn't present.
+	 * @return
+	 * The value mapped to the key, or defaultValue.
+	 * @throws IllegalStateException
+	 * If the map is closed.
+	 */
+	public long get(long key, long defaultValue) throws IllegalStateException
+	{
+		this.checkOpen();
+		if (key == 0)
+		{
+			long stamp = this.lock.readLock();
+			try
+			{
+				return this.hasZeroKey ? this.header.getLong(HEADER_ZERO_VALUE) : defaultValue;
+			}
+			finally
+			{
+				this.lock.unlockRead(stamp);
+			}
+		}
+
+		long stamp = this.lock.tryOptimisticRead();
+		long slot = this.findSlot(key);
+		long ret = (slot < 0) ? defaultValue : this.getValue(slot);
+		if (this.lock.validate(stamp)) return ret;
+
+		// A write happened meanwhile, so read again while holding it off.
+		stamp = this.lock.readLock();
+		try
+		{
+			slot = this.findSlot(key);
+			return (slot < 0) ? defaultValue : this.getValue(slot);
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * @param key
+	 * The key.
+	 * @return
+	 * True if the key is present.
+	 * @throws IllegalStateException
+	 * If the map is closed.
+	 */
+	public boolean containsKey(long key) throws IllegalStateException
+	{
+		this.checkOpen();
+		if (key == 0) return this.hasZeroKey;
+
+		long stamp = this.lock.tryOptimisticRead();
+		boolean ret = this.findSlot(key) >= 0;
+		if (this.lock.validate(stamp)) return ret;
+
+		stamp = this.lock.readLock();
+		try
+		{
+			return this.findSlot(key) >= 0;
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	public long size()
+	{
+		return this.size;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	/**
+	 * @return
+	 * The number of entries this map can hold.
+	 */
+	public long getCapacity()
+	{
+		return this.maxSize;
+	}
+
+	public boolean isReadOnly()
+	{
+		return this.readOnly;
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Maps the key to the value, replacing any previous value.
+	 * @param key
+	 * The key.
+	 * @param value
+	 * The value.
+	 * @return
+	 * True if the key was not present before.
+	 * @throws IllegalStateException
+	 * If the map is closed, or full.
+	 * @throws UnsupportedOperationException
+	 * If the map is read only.
+	 */
+	public boolean put(long key, long value) throws IllegalStateException, UnsupportedOperationException
+	{
+		this.checkOpen();
+		if (this.readOnly) throw new UnsupportedOperationException("This map is read only.");
+
+		long stamp = this.lock.writeLock();
+		try
+		{
+			if (key == 0)
+			{
+				this.header.putLong(HEADER_ZERO_VALUE, value);
+				if (this.hasZeroKey) return false;
+				this.header.putLong(HEADER_HAS_ZERO_KEY, 1);
+				this.hasZeroKey = true;
+				this.setSize(this.size + 1);
+				return true;
+			}
+
+			for (long slot = mix(key) & this.mask; ; slot = (slot + 1) & this.mask)
+			{
+				ByteBuffer segment = this.segments[(int) (slot >>> SEGMENT_SHIFT)];
+				int offset = (int) (slot & SEGMENT_MASK) * SLOT_SIZE;
+				long slotKey = segment.getLong(offset);
+				if (slotKey == key)
+				{
+					segment.putLong(offset + 8, value);
+					return false;
+				}
+				if (slotKey == 0)
+				{
+					if (this.size >= this.maxSize) throw new IllegalStateException("The map is full, capacity: " + this.maxSize);
+					segment.putLong(offset + 8, value);
+					segment.putLong(offset, key);
+					this.setSize(this.size + 1);
+					return true;
+				}
+			}
+		}
+		finally
+		{
+			this.lock.unlockWrite(stamp);
+		}
+	}
+
+	// -------------------------------------------- //
+	// ITERATION
+	// -------------------------------------------- //
+
+	/**
+	 * An action on an entry of an {@code OffHeapLongLongMap}.
+	 */
+	@FunctionalInterface
+	public interface EntryConsumer
+	{
+		void accept(long key, long value);
+	}
+
+	/**
+	 * Performs the action for every entry, in no particular order.
+	 * Writes are held off meanwhile.
+	 * @param action
+	 * The action.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 * @throws IllegalStateException
+	 * If the map is closed.
+	 */
+	public void forEach(EntryConsumer action) throws ArgumentNullException, IllegalStateException
+	{
+		Argument.handleNull(action, "action");
+		this.checkOpen();
+
+		long stamp = this.lock.readLock();
+		try
+		{
+			if (this.hasZeroKey) action.accept(0, this.header.getLong(HEADER_ZERO_VALUE));
+			for (ByteBuffer segment : this.segments)
+			{
+				for (int offset = 0; offset < segment.capacity(); offset += SLOT_SIZE)
+				{
+					long key = segment.getLong(offset);
+					if (key != 0) action.accept(key, segment.getLong(offset + 8));
+				}
+			}
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	// -------------------------------------------- //
+	// LIFECYCLE
+	// -------------------------------------------- //
+
+	/**
+	 * Writes changes of a file backed map to the disk.
+	 * Otherwise the operating system writes them when it sees fit.
+	 * @throws IllegalStateException
+	 * If the map is closed.
+	 */
+	public void force() throws IllegalStateException
+	{
+		this.checkOpen();
+		if (this.channel == null || this.readOnly) return;
+
+		long stamp = this.lock.readLock();
+		try
+		{
+			((MappedByteBuffer) this.header).force();
+			for (ByteBuffer segment : this.segments)
+			{
+				((MappedByteBuffer) segment).force();
+			}
+		}
+		finally
+		{
+			this.lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Closes the map, writing changes of a file backed map to the disk.
+	 * The memory is released when the map is garbage collected.
+	 * @throws IOException
+	 * If the file can't be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (this.closed) return;
+		this.force();
+		this.closed = true;
+		if (this.channel != null) this.channel.close();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	// The slot holding the key, or -1.
+	private long findSlot(long key)
+	{
+		// Bounded, since an optimistic read may see a table which is being written.
+		long slot = mix(key) & this.mask;
+		for (long i = 0; i <= this.mask; i++, slot = (slot + 1) & this.mask)
+		{
+			ByteBuffer segment = this.segments[(int) (slot >>> SEGMENT_SHIFT)];
+			long slotKey = segment.getLong((int) (slot & SEGMENT_MASK) * SLOT_SIZE);
+			if (slotKey == key) return slot;
+			if (slotKey == 0) return -1;
+		}
+		return -1;
+	}
+
+	private long getValue(long slot)
+	{
+		ByteBuffer segment = this.segments[(int) (slot >>> SEGMENT_SHIFT)];
+		return segment.getLong((int) (slot & SEGMENT_MASK) * SLOT_SIZE + 8);
+	}
+
+	private void setSize(long size)
+	{
+		this.header.putLong(HEADER_SIZE_FIELD, size);
+		this.size = size;
+	}
+
+	private void checkOpen()
+	{
+		if (this.closed) throw new IllegalStateException("This map is closed.");
+	}
+
+	// The finaliser of MurmurHash3, so nearby keys spread over the table.
+	private static long mix(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	private static long slotCount(long expectedSize)
+	{
+		if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative.");
+		if (expectedSize > MAX_SLOTS / 4 * 3) throw new IllegalArgumentException("expectedSize is too large: " + expectedSize);
+
+		// At most three quarters full.
+		long needed = Math.max(MIN_SLOTS, (expectedSize * 4 + 2) / 3);
+		return Long.highestOneBit(needed - 1) << 1;
+	}
+
+	private static int segmentCount(long slotCount)
+	{
+		return (int) ((slotCount + SEGMENT_SLOTS - 1) >>> SEGMENT_SHIFT);
+	}
+
+	private static int segmentBytes(long slotCount, int segment)
+	{
+		return (int) (Math.min(SEGMENT_SLOTS, slotCount - ((long) segment << SEGMENT_SHIFT)) * SLOT_SIZE);
+	}
+
+	private static ByteBuffer[] mapSegments(FileChannel channel, FileChannel.MapMode mode, long slotCount) throws IOException
+	{
+		ByteBuffer[] ret = new ByteBuffer[segmentCount(slotCount)];
+		long position = HEADER_SIZE;
+		for (int i = 0; i < ret.length; i++)
+		{
+			int bytes = segmentBytes(slotCount, i);
+			ret[i] = channel.map(mode, position, bytes).order(ByteOrder.LITTLE_ENDIAN);
+			position += bytes;
+		}
+		return ret;
+	}
+
+	private static void writeHeader(ByteBuffer header, long slotCount)
+	{
+		header.putLong(HEADER_MAGIC, MAGIC);
+		header.putInt(HEADER_VERSION, VERSION);
+		header.putLong(HEADER_SLOT_COUNT, slotCount);
+		header.putLong(HEADER_SIZE_FIELD, 0);
+		header.putLong(HEADER_HAS_ZERO_KEY, 0);
+		header.putLong(HEADER_ZERO_VALUE, 0);
+	}
+
+}
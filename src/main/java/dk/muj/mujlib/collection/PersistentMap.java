@@ -0,0 +1,1110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.Builder;
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map, where "modifications" return a new map,
+ * which shares most of its structure with the old one.
+ * So keeping many versions of a large map around is cheap,
+ * and a modification only costs O(log32 n) time and memory,
+ * instead of copying the entire map.
+ *
+ * It is a hash array mapped trie (HAMT), using the compressed
+ * CHAMP layout. Every node has a bitmap for inlined entries
+ * and a bitmap for sub nodes, and they are stored in one compact array.
+ *
+ * The normal mutating methods of {@code Map} all throw an
+ * {@code UnsupportedOperationException}. Use {@code with} and {@code without}
+ * instead. When many entries must be added at once, a {@code Transient}
+ * should be used, it mutates its own nodes in place and is much faster.
+ *
+ * The hash code is maintained on every modification, so it is free.
+ * That makes {@code equals} between two maps that differ very cheap.
+ *
+ * Neither keys nor values can be null.
+ * This class is immutable and thus thread safe.
+ *
+ * @param <K>
+ * Type of the keys.
+ * @param <V>
+ * Type of the values.
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final int BITS = 5;
+	private static final int HASH_LENGTH = 32;
+	private static final int MAX_DEPTH = 8;
+
+	private static final int SIZE_EMPTY = 0;
+	private static final int SIZE_ONE = 1;
+	private static final int SIZE_MORE = 2;
+
+	private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<>(new BitmapNode<>(null, 0, 0, new Object[0]), 0, 0);
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final Node<K, V> root;
+	private final int size;
+	private final int hash;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private PersistentMap(Node<K, V> root, int size, int hash)
+	{
+		this.root = root;
+		this.size = size;
+		this.hash = hash;
+	}
+
+	// -------------------------------------------- //
+	// FACTORY
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the empty persistent map.
+	 * @param <K>
+	 * Type of the keys.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * The empty map.
+	 */
+	@Pure
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> empty()
+	{
+		return (PersistentMap<K, V>) EMPTY;
+	}
+
+	/**
+	 * Creates a persistent map from the passed varargs.
+	 * They are read the same way as in {@code MCollections.map}
+	 * every even element is a key for the following element.
+	 * @param keyClass
+	 * The class for the keys.
+	 * @param valueClass
+	 * The class for the values.
+	 * @param objects
+	 * Alternating keys and values.
+	 * @param <K>
+	 * Type of the keys.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A map containing the passed entries.
+	 * @throws ArgumentNullException
+	 * If keyClass, valueClass, objects or any of the objects is null.
+	 * @throws IllegalArgumentException
+	 * If an uneven number of objects is passed.
+	 * @throws ClassCastException
+	 * If an object cannot be cast to its target type.
+	 */
+	@Pure
+	public static <K, V> PersistentMap<K, V> of(Class<K> keyClass, Class<V> valueClass, Object... objects) throws ArgumentNullException, IllegalArgumentException, ClassCastException
+	{
+		Argument.handleNull(keyClass, "keyClass");
+		Argument.handleNull(valueClass, "valueClass");
+		Argument.handleNull(objects, "objects");
+		if (objects.length % 2 != 0) throw new IllegalArgumentException("An uneven number of objects was passed.");
+
+		Transient<K, V> ret = PersistentMap.<K, V>empty().asTransient();
+		for (int i = 0; i < objects.length; i += 2)
+		{
+			ret.put(keyClass.cast(objects[i]), valueClass.cast(objects[i + 1]));
+		}
+		return ret.build();
+	}
+
+	/**
+	 * Creates a persistent map with the same entries as the passed map.
+	 * @param map
+	 * The map to copy.
+	 * @param <K>
+	 * Type of the keys.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A persistent map equal to the passed map.
+	 * @throws ArgumentNullException
+	 * If map, or any of its keys or values is null.
+	 */
+	@Pure
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) throws ArgumentNullException
+	{
+		Argument.handleNull(map, "map");
+		if (map instanceof PersistentMap) return (PersistentMap<K, V>) map;
+
+		Transient<K, V> ret = PersistentMap.<K, V>empty().asTransient();
+		for (Entry<? extends K, ? extends V> entry : map.entrySet())
+		{
+			ret.put(entry.getKey(), entry.getValue());
+		}
+		return ret.build();
+	}
+
+	// -------------------------------------------- //
+	// PERSISTENT
+	// -------------------------------------------- //
+
+	/**
+	 * Returns a map with the key associated to the value.
+	 * This map is not changed.
+	 * @param key
+	 * The key.
+	 * @param value
+	 * The value.
+	 * @return
+	 * A map with the new mapping. If the key was already
+	 * mapped to the same value, this map is returned.
+	 * @throws ArgumentNullException
+	 * If key or value is null.
+	 */
+	@Pure
+	public PersistentMap<K, V> with(K key, V value) throws ArgumentNullException
+	{
+		Argument.handleNull(key, "key");
+		Argument.handleNull(value, "value");
+
+		Change<V> change = new Change<>();
+		Node<K, V> newRoot = this.root.update(null, key, value, spread(key.hashCode()), 0, change);
+		if ( ! change.isModified()) return this;
+
+		return new PersistentMap<>(newRoot, this.size + change.getSizeDelta(), this.hash + change.getHashDelta(key, value));
+	}
+
+	/**
+	 * Returns a map without the key.
+	 * This map is not changed.
+	 * @param key
+	 * The key to remove.
+	 * @return
+	 * A map without the key. If the key wasn't present,
+	 * this map is returned.
+	 * @throws ArgumentNullException
+	 * If key is null.
+	 */
+	@Pure
+	public PersistentMap<K, V> without(Object key) throws ArgumentNullException
+	{
+		Argument.handleNull(key, "key");
+
+		Change<V> change = new Change<>();
+		Node<K, V> newRoot = this.root.remove(null, key, spread(key.hashCode()), 0, change);
+		if ( ! change.isModified()) return this;
+		if (this.size == 1) return empty();
+
+		return new PersistentMap<>(newRoot, this.size - 1, this.hash - entryHash(key, change.getOldValue()));
+	}
+
+	/**
+	 * Creates a transient version of this map.
+	 * It can be modified in place, and turned back into
+	 * a persistent map, in O(1) time using {@code Transient#build}
+	 * This map is not affected by modifications of the transient.
+	 * @return
+	 * A new transient map, with the same entries as this.
+	 */
+	@Pure
+	public Transient<K, V> asTransient()
+	{
+		return new Transient<>(this.root, this.size, this.hash);
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: MAP
+	// -------------------------------------------- //
+
+	@Override
+	public V get(Object key)
+	{
+		if (key == null) return null;
+		return this.root.find(key, spread(key.hashCode()), 0);
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return this.get(key) != null;
+	}
+
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet()
+	{
+		return new AbstractSet<Entry<K, V>>()
+		{
+			@Override
+			public Iterator<Entry<K, V>> iterator()
+			{
+				return new EntryIterator<>(PersistentMap.this.root);
+			}
+
+			@Override
+			public int size()
+			{
+				return PersistentMap.this.size();
+			}
+		};
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action)
+	{
+		Argument.handleNull(action, "action");
+		this.root.forEach(action);
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if (o instanceof PersistentMap)
+		{
+			PersistentMap<?, ?> that = (PersistentMap<?, ?>) o;
+			if (this.root == that.root) return true;
+			if (this.size != that.size || this.hash != that.hash) return false;
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.hash;
+	}
+
+	// -------------------------------------------- //
+	// TRANSIENT
+	// -------------------------------------------- //
+
+	/**
+	 * A mutable version of a {@code PersistentMap},
+	 * used to efficiently build, or make many changes to a map.
+	 * Nodes created by the transient are edited in place,
+	 * nodes shared with a persistent map are copied first.
+	 *
+	 * After {@code build} has been called, the transient can't be used anymore.
+	 * This class is not thread safe.
+	 *
+	 * @param <K>
+	 * Type of the keys.
+	 * @param <V>
+	 * Type of the values.
+	 */
+	public static final class Transient<K, V> implements Builder<PersistentMap<K, V>>
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private Object owner = new Object();
+		private Node<K, V> root;
+		private int size;
+		private int hash;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		private Transient(Node<K, V> root, int size, int hash)
+		{
+			this.root = root;
+			this.size = size;
+			this.hash = hash;
+		}
+
+		// -------------------------------------------- //
+		// MODIFY
+		// -------------------------------------------- //
+
+		/**
+		 * Associates the key with the value.
+		 * @param key
+		 * The key.
+		 * @param value
+		 * The value.
+		 * @return
+		 * This transient.
+		 * @throws ArgumentNullException
+		 * If key or value is null.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		public Transient<K, V> put(K key, V value) throws ArgumentNullException, IllegalStateException
+		{
+			this.ensureEditable();
+			Argument.handleNull(key, "key");
+			Argument.handleNull(value, "value");
+
+			Change<V> change = new Change<>();
+			this.root = this.root.update(this.owner, key, value, spread(key.hashCode()), 0, change);
+			if (change.isModified())
+			{
+				this.size += change.getSizeDelta();
+				this.hash += change.getHashDelta(key, value);
+			}
+			return this;
+		}
+
+		/**
+		 * Removes the key, if it is present.
+		 * @param key
+		 * The key.
+		 * @return
+		 * This transient.
+		 * @throws ArgumentNullException
+		 * If key is null.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		public Transient<K, V> remove(Object key) throws ArgumentNullException, IllegalStateException
+		{
+			this.ensureEditable();
+			Argument.handleNull(key, "key");
+
+			Change<V> change = new Change<>();
+			this.root = this.root.remove(this.owner, key, spread(key.hashCode()), 0, change);
+			if (change.isModified())
+			{
+				this.size--;
+				this.hash -= entryHash(key, change.getOldValue());
+			}
+			return this;
+		}
+
+		// -------------------------------------------- //
+		// INSPECT
+		// -------------------------------------------- //
+
+		public V get(Object key)
+		{
+			this.ensureEditable();
+			if (key == null) return null;
+			return this.root.find(key, spread(key.hashCode()), 0);
+		}
+
+		public int size()
+		{
+			return this.size;
+		}
+
+		// -------------------------------------------- //
+		// BUILD
+		// -------------------------------------------- //
+
+		/**
+		 * Turns this transient into a persistent map, in O(1) time.
+		 * This transient can't be used afterwards.
+		 * @return
+		 * A persistent map with the entries of this transient.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		@Override
+		public PersistentMap<K, V> build() throws IllegalStateException
+		{
+			this.ensureEditable();
+			this.owner = null;
+			if (this.size == 0) return empty();
+			return new PersistentMap<>(this.root, this.size, this.hash);
+		}
+
+		private void ensureEditable()
+		{
+			if (this.owner == null) throw new IllegalStateException("This transient was already built.");
+		}
+	}
+
+	// -------------------------------------------- //
+	// UTIL
+	// -------------------------------------------- //
+
+	private static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int entryHash(Object key, Object value)
+	{
+		return key.hashCode() ^ value.hashCode();
+	}
+
+	private static int mask(int hash, int shift)
+	{
+		return (hash >>> shift) & 31;
+	}
+
+	private static int bitpos(int mask)
+	{
+		return 1 << mask;
+	}
+
+	// -------------------------------------------- //
+	// CHANGE
+	// -------------------------------------------- //
+
+	// Records what an update or removal did.
+	private static final class Change<V>
+	{
+		private boolean modified = false;
+		private V oldValue = null;
+
+		void setAdded()
+		{
+			this.modified = true;
+		}
+
+		void setReplaced(V oldValue)
+		{
+			this.modified = true;
+			this.oldValue = oldValue;
+		}
+
+		void setRemoved(V oldValue)
+		{
+			this.modified = true;
+			this.oldValue = oldValue;
+		}
+
+		boolean isModified()
+		{
+			return this.modified;
+		}
+
+		V getOldValue()
+		{
+			return this.oldValue;
+		}
+
+		int getSizeDelta()
+		{
+			return (this.getOldValue() == null) ? 1 : 0;
+		}
+
+		int getHashDelta(Object key, Object value)
+		{
+			int ret = entryHash(key, value);
+			if (this.getOldValue() != null) ret -= entryHash(key, this.getOldValue());
+			return ret;
+		}
+	}
+
+	// -------------------------------------------- //
+	// NODE
+	// -------------------------------------------- //
+
+	private static abstract class Node<K, V>
+	{
+		abstract V find(Object key, int hash, int shift);
+		abstract Node<K, V> update(Object owner, K key, V value, int hash, int shift, Change<V> change);
+		abstract Node<K, V> remove(Object owner, Object key, int hash, int shift, Change<V> change);
+
+		abstract int getPayloadArity();
+		abstract K getKey(int index);
+		abstract V getValue(int index);
+
+		abstract int getNodeArity();
+		abstract Node<K, V> getNode(int index);
+
+		abstract int getSizePredicate();
+
+		void forEach(BiConsumer<? super K, ? super V> action)
+		{
+			for (int i = 0; i < this.getPayloadArity(); i++)
+			{
+				action.accept(this.getKey(i), this.getValue(i));
+			}
+			for (int i = 0; i < this.getNodeArity(); i++)
+			{
+				this.getNode(i).forEach(action);
+			}
+		}
+	}
+
+	private static final class BitmapNode<K, V> extends Node<K, V>
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		// The transient which may edit this node in place.
+		private final Object owner;
+		private final int dataMap;
+		private final int nodeMap;
+
+		// Key value pairs from the front, sub nodes from the back.
+		private final Object[] array;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		BitmapNode(Object owner, int dataMap, int nodeMap, Object[] array)
+		{
+			this.owner = owner;
+			this.dataMap = dataMap;
+			this.nodeMap = nodeMap;
+			this.array = array;
+		}
+
+		// -------------------------------------------- //
+		// INDEXES
+		// -------------------------------------------- //
+
+		private int dataIndex(int bit)
+		{
+			return Integer.bitCount(this.dataMap & (bit - 1));
+		}
+
+		private int nodeIndex(int bit)
+		{
+			return Integer.bitCount(this.nodeMap & (bit - 1));
+		}
+
+		private int nodeArrayIndex(int bit)
+		{
+			return this.array.length - 1 - this.nodeIndex(bit);
+		}
+
+		private boolean isEditable(Object owner)
+		{
+			return owner != null && this.owner == owner;
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE: ACCESS
+		// -------------------------------------------- //
+
+		@Override
+		int getPayloadArity()
+		{
+			return Integer.bitCount(this.dataMap);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		K getKey(int index)
+		{
+			return (K) this.array[2 * index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V getValue(int index)
+		{
+			return (V) this.array[2 * index + 1];
+		}
+
+		@Override
+		int getNodeArity()
+		{
+			return Integer.bitCount(this.nodeMap);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Node<K, V> getNode(int index)
+		{
+			return (Node<K, V>) this.array[this.array.length - 1 - index];
+		}
+
+		@Override
+		int getSizePredicate()
+		{
+			if (this.nodeMap != 0) return SIZE_MORE;
+			switch (this.getPayloadArity())
+			{
+				case 0: return SIZE_EMPTY;
+				case 1: return SIZE_ONE;
+				default: return SIZE_MORE;
+			}
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE: OPERATIONS
+		// -------------------------------------------- //
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V find(Object key, int hash, int shift)
+		{
+			int bit = bitpos(mask(hash, shift));
+
+			if ((this.dataMap & bit) != 0)
+			{
+				int index = this.dataIndex(bit);
+				return key.equals(this.array[2 * index]) ? (V) this.array[2 * index + 1] : null;
+			}
+
+			if ((this.nodeMap & bit) != 0)
+			{
+				Node<K, V> node = (Node<K, V>) this.array[this.nodeArrayIndex(bit)];
+				return node.find(key, hash, shift + BITS);
+			}
+
+			return null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Node<K, V> update(Object owner, K key, V value, int hash, int shift, Change<V> change)
+		{
+			int bit = bitpos(mask(hash, shift));
+
+			if ((this.dataMap & bit) != 0)
+			{
+				int index = this.dataIndex(bit);
+				K currentKey = (K) this.array[2 * index];
+				V currentValue = (V) this.array[2 * index + 1];
+
+				if (currentKey.equals(key))
+				{
+					if (currentValue == value) return this;
+					change.setReplaced(currentValue);
+
+					if (this.isEditable(owner))
+					{
+						this.array[2 * index + 1] = value;
+						return this;
+					}
+					Object[] copy = this.array.clone();
+					copy[2 * index + 1] = value;
+					return new BitmapNode<>(owner, this.dataMap, this.nodeMap, copy);
+				}
+
+				// Two different keys in the same slot, push both down a level.
+				Node<K, V> node = mergeTwo(owner, currentKey, currentValue, spread(currentKey.hashCode()), key, value, hash, shift + BITS);
+				change.setAdded();
+				return this.copyAndMigrateFromInlineToNode(owner, bit, node);
+			}
+
+			if ((this.nodeMap & bit) != 0)
+			{
+				int index = this.nodeArrayIndex(bit);
+				Node<K, V> node = (Node<K, V>) this.array[index];
+				Node<K, V> newNode = node.update(owner, key, value, hash, shift + BITS, change);
+				if (newNode == node) return this;
+				return this.copyAndSet(owner, index, newNode);
+			}
+
+			change.setAdded();
+			return this.copyAndInsertValue(owner, bit, key, value);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Node<K, V> remove(Object owner, Object key, int hash, int shift, Change<V> change)
+		{
+			int bit = bitpos(mask(hash, shift));
+
+			if ((this.dataMap & bit) != 0)
+			{
+				int index = this.dataIndex(bit);
+				if ( ! key.equals(this.array[2 * index])) return this;
+				change.setRemoved((V) this.array[2 * index + 1]);
+
+				if (this.getPayloadArity() == 2 && this.getNodeArity() == 0)
+				{
+					// The remaining entry will be inlined by the parent,
+					// unless this is the root, where the bit must be correct.
+					int newDataMap = (shift == 0) ? (this.dataMap ^ bit) : bitpos(mask(hash, 0));
+					int other = (index == 0) ? 1 : 0;
+					return new BitmapNode<>(owner, newDataMap, 0, new Object[]{this.array[2 * other], this.array[2 * other + 1]});
+				}
+				return this.copyAndRemoveValue(owner, bit);
+			}
+
+			if ((this.nodeMap & bit) != 0)
+			{
+				int index = this.nodeArrayIndex(bit);
+				Node<K, V> node = (Node<K, V>) this.array[index];
+				Node<K, V> newNode = node.remove(owner, key, hash, shift + BITS, change);
+				if (newNode == node) return this;
+
+				if (newNode.getSizePredicate() == SIZE_ONE)
+				{
+					// Escalate the single entry, or inline it here.
+					if (this.getPayloadArity() == 0 && this.getNodeArity() == 1) return newNode;
+					return this.copyAndMigrateFromNodeToInline(owner, bit, newNode);
+				}
+				return this.copyAndSet(owner, index, newNode);
+			}
+
+			return this;
+		}
+
+		// -------------------------------------------- //
+		// COPY
+		// -------------------------------------------- //
+
+		private Node<K, V> copyAndSet(Object owner, int index, Object element)
+		{
+			if (this.isEditable(owner))
+			{
+				this.array[index] = element;
+				return this;
+			}
+			Object[] copy = this.array.clone();
+			copy[index] = element;
+			return new BitmapNode<>(owner, this.dataMap, this.nodeMap, copy);
+		}
+
+		private Node<K, V> copyAndInsertValue(Object owner, int bit, K key, V value)
+		{
+			int index = 2 * this.dataIndex(bit);
+			Object[] src = this.array;
+			Object[] dst = new Object[src.length + 2];
+
+			System.arraycopy(src, 0, dst, 0, index);
+			dst[index] = key;
+			dst[index + 1] = value;
+			System.arraycopy(src, index, dst, index + 2, src.length - index);
+
+			return new BitmapNode<>(owner, this.dataMap | bit, this.nodeMap, dst);
+		}
+
+		private Node<K, V> copyAndRemoveValue(Object owner, int bit)
+		{
+			int index = 2 * this.dataIndex(bit);
+			Object[] src = this.array;
+			Object[] dst = new Object[src.length - 2];
+
+			System.arraycopy(src, 0, dst, 0, index);
+			System.arraycopy(src, index + 2, dst, index, src.length - index - 2);
+
+			return new BitmapNode<>(owner, this.dataMap ^ bit, this.nodeMap, dst);
+		}
+
+		private Node<K, V> copyAndMigrateFromInlineToNode(Object owner, int bit, Node<K, V> node)
+		{
+			int oldIndex = 2 * this.dataIndex(bit);
+			int newIndex = this.array.length - 2 - this.nodeIndex(bit);
+			Object[] src = this.array;
+			Object[] dst = new Object[src.length - 1];
+
+			System.arraycopy(src, 0, dst, 0, oldIndex);
+			System.arraycopy(src, oldIndex + 2, dst, oldIndex, newIndex - oldIndex);
+			dst[newIndex] = node;
+			System.arraycopy(src, newIndex + 2, dst, newIndex + 1, src.length - newIndex - 2);
+
+			return new BitmapNode<>(owner, this.dataMap ^ bit, this.nodeMap | bit, dst);
+		}
+
+		private Node<K, V> copyAndMigrateFromNodeToInline(Object owner, int bit, Node<K, V> node)
+		{
+			int oldIndex = this.array.length - 1 - this.nodeIndex(bit);
+			int newIndex = 2 * this.dataIndex(bit);
+			Object[] src = this.array;
+			Object[] dst = new Object[src.length + 1];
+
+			System.arraycopy(src, 0, dst, 0, newIndex);
+			dst[newIndex] = node.getKey(0);
+			dst[newIndex + 1] = node.getValue(0);
+			System.arraycopy(src, newIndex, dst, newIndex + 2, oldIndex - newIndex);
+			System.arraycopy(src, oldIndex + 1, dst, oldIndex + 2, src.length - oldIndex - 1);
+
+			return new BitmapNode<>(owner, this.dataMap | bit, this.nodeMap ^ bit, dst);
+		}
+
+		private static <K, V> Node<K, V> mergeTwo(Object owner, K key0, V value0, int hash0, K key1, V value1, int hash1, int shift)
+		{
+			if (shift >= HASH_LENGTH)
+			{
+				return new CollisionNode<>(hash0, new Object[]{key0, key1}, new Object[]{value0, value1});
+			}
+
+			int mask0 = mask(hash0, shift);
+			int mask1 = mask(hash1, shift);
+
+			if (mask0 != mask1)
+			{
+				int dataMap = bitpos(mask0) | bitpos(mask1);
+				Object[] array = (mask0 < mask1) ? new Object[]{key0, value0, key1, value1} : new Object[]{key1, value1, key0, value0};
+				return new BitmapNode<>(owner, dataMap, 0, array);
+			}
+
+			Node<K, V> node = mergeTwo(owner, key0, value0, hash0, key1, value1, hash1, shift + BITS);
+			return new BitmapNode<>(owner, 0, bitpos(mask0), new Object[]{node});
+		}
+	}
+
+	// Used when the full 32 bit hashes of several keys are equal.
+	private static final class CollisionNode<K, V> extends Node<K, V>
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private final int hash;
+		private final Object[] keys;
+		private final Object[] values;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		CollisionNode(int hash, Object[] keys, Object[] values)
+		{
+			this.hash = hash;
+			this.keys = keys;
+			this.values = values;
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE: ACCESS
+		// -------------------------------------------- //
+
+		@Override
+		int getPayloadArity()
+		{
+			return this.keys.length;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		K getKey(int index)
+		{
+			return (K) this.keys[index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V getValue(int index)
+		{
+			return (V) this.values[index];
+		}
+
+		@Override
+		int getNodeArity()
+		{
+			return 0;
+		}
+
+		@Override
+		Node<K, V> getNode(int index)
+		{
+			throw new IndexOutOfBoundsException("index: " + index);
+		}
+
+		@Override
+		int getSizePredicate()
+		{
+			return SIZE_MORE;
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE: OPERATIONS
+		// -------------------------------------------- //
+
+		private int indexOf(Object key)
+		{
+			for (int i = 0; i < this.keys.length; i++)
+			{
+				if (key.equals(this.keys[i])) return i;
+			}
+			return -1;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		V find(Object key, int hash, int shift)
+		{
+			int index = this.indexOf(key);
+			return (index == -1) ? null : (V) this.values[index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Node<K, V> update(Object owner, K key, V value, int hash, int shift, Change<V> change)
+		{
+			assert hash == this.hash;
+
+			int index = this.indexOf(key);
+			if (index != -1)
+			{
+				if (this.values[index] == value) return this;
+				change.setReplaced((V) this.values[index]);
+				Object[] newValues = this.values.clone();
+				newValues[index] = value;
+				return new CollisionNode<>(this.hash, this.keys, newValues);
+			}
+
+			change.setAdded();
+			Object[] newKeys = Arrays.copyOf(this.keys, this.keys.length + 1);
+			Object[] newValues = Arrays.copyOf(this.values, this.values.length + 1);
+			newKeys[this.keys.length] = key;
+			newValues[this.values.length] = value;
+			return new CollisionNode<>(this.hash, newKeys, newValues);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		Node<K, V> remove(Object owner, Object key, int hash, int shift, Change<V> change)
+		{
+			int index = this.indexOf(key);
+			if (index == -1) return this;
+			change.setRemoved((V) this.values[index]);
+
+			if (this.keys.length == 2)
+			{
+				int other = (index == 0) ? 1 : 0;
+				return new BitmapNode<>(owner, bitpos(mask(hash, 0)), 0, new Object[]{this.keys[other], this.values[other]});
+			}
+
+			Object[] newKeys = new Object[this.keys.length - 1];
+			Object[] newValues = new Object[this.values.length - 1];
+			System.arraycopy(this.keys, 0, newKeys, 0, index);
+			System.arraycopy(this.keys, index + 1, newKeys, index, newKeys.length - index);
+			System.arraycopy(this.values, 0, newValues, 0, index);
+			System.arraycopy(this.values, index + 1, newValues, index, newValues.length - index);
+			return new CollisionNode<>(this.hash, newKeys, newValues);
+		}
+	}
+
+	// -------------------------------------------- //
+	// ITERATOR
+	// -------------------------------------------- //
+
+	private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>>
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		@SuppressWarnings("unchecked")
+		private final Node<K, V>[] nodes = (Node<K, V>[]) new Node<?, ?>[MAX_DEPTH];
+		private final int[] nodeCursors = new int[MAX_DEPTH];
+		private int depth = -1;
+
+		private Node<K, V> payloadNode = null;
+		private int payloadCursor = 0;
+		private int payloadLength = 0;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		EntryIterator(Node<K, V> root)
+		{
+			if (root.getNodeArity() > 0)
+			{
+				this.depth = 0;
+				this.nodes[0] = root;
+				this.nodeCursors[0] = 0;
+			}
+			if (root.getPayloadArity() > 0)
+			{
+				this.payloadNode = root;
+				this.payloadLength = root.getPayloadArity();
+			}
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE
+		// -------------------------------------------- //
+
+		@Override
+		public boolean hasNext()
+		{
+			if (this.payloadCursor < this.payloadLength) return true;
+
+			// Depth first search for the next node with entries.
+			while (this.depth >= 0)
+			{
+				Node<K, V> node = this.nodes[this.depth];
+				int cursor = this.nodeCursors[this.depth];
+				if (cursor >= node.getNodeArity())
+				{
+					this.depth--;
+					continue;
+				}
+
+				this.nodeCursors[this.depth]++;
+				Node<K, V> child = node.getNode(cursor);
+				if (child.getNodeArity() > 0)
+				{
+					this.depth++;
+					this.nodes[this.depth] = child;
+					this.nodeCursors[this.depth] = 0;
+				}
+				if (child.getPayloadArity() > 0)
+				{
+					this.payloadNode = child;
+					this.payloadCursor = 0;
+					this.payloadLength = child.getPayloadArity();
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Entry<K, V> next()
+		{
+			if ( ! this.hasNext()) throw new NoSuchElementException("No next element in iterator.");
+			int index = this.payloadCursor++;
+			return new SimpleImmutableEntry<>(this.payloadNode.getKey(index), this.payloadNode.getValue(index));
+		}
+	}
+
+}
@@ -0,0 +1,363 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.Builder;
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * An immutable set, where "modifications" return a new set,
+ * which shares most of its structure with the old one.
+ * It is backed by a {@code PersistentMap}, see that for details.
+ *
+ * The normal mutating methods of {@code Set} all throw an
+ * {@code UnsupportedOperationException}. Use {@code with} and {@code without}
+ * instead, or a {@code Transient} for many changes at once.
+ *
+ * Elements can't be null.
+ * This class is immutable and thus thread safe.
+ *
+ * @param <E>
+ * Type of the elements.
+ */
+public final class PersistentSet<E> extends AbstractSet<E>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final PersistentSet<Object> EMPTY = new PersistentSet<>(PersistentMap.empty(), 0);
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final PersistentMap<E, Boolean> map;
+
+	// The set hash code, the map one is different.
+	private final int hash;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private PersistentSet(PersistentMap<E, Boolean> map, int hash)
+	{
+		this.map = map;
+		this.hash = hash;
+	}
+
+	// -------------------------------------------- //
+	// FACTORY
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the empty persistent set.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * The empty set.
+	 */
+	@Pure
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentSet<E> empty()
+	{
+		return (PersistentSet<E>) EMPTY;
+	}
+
+	/**
+	 * Creates a persistent set containing the passed elements.
+	 * @param elements
+	 * The elements.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A set containing the passed elements.
+	 * @throws ArgumentNullException
+	 * If elements, or any of them, is null.
+	 */
+	@Pure
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <E> PersistentSet<E> of(E... elements) throws ArgumentNullException
+	{
+		Argument.handleNull(elements, "elements");
+
+		Transient<E> ret = PersistentSet.<E>empty().asTransient();
+		for (E element : elements)
+		{
+			ret.add(element);
+		}
+		return ret.build();
+	}
+
+	/**
+	 * Creates a persistent set with the same elements as the passed collection.
+	 * @param collection
+	 * The collection to copy.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A persistent set containing the elements of the collection.
+	 * @throws ArgumentNullException
+	 * If collection, or any of its elements, is null.
+	 */
+	@Pure
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentSet<E> copyOf(Collection<? extends E> collection) throws ArgumentNullException
+	{
+		Argument.handleNull(collection, "collection");
+		if (collection instanceof PersistentSet) return (PersistentSet<E>) collection;
+
+		Transient<E> ret = PersistentSet.<E>empty().asTransient();
+		for (E element : collection)
+		{
+			ret.add(element);
+		}
+		return ret.build();
+	}
+
+	// -------------------------------------------- //
+	// PERSISTENT
+	// -------------------------------------------- //
+
+	/**
+	 * Returns a set which also contains the element.
+	 * This set is not changed.
+	 * @param element
+	 * The element to add.
+	 * @return
+	 * A set containing the element. If it was already present, this set is returned.
+	 * @throws ArgumentNullException
+	 * If element is null.
+	 */
+	@Pure
+	public PersistentSet<E> with(E element) throws ArgumentNullException
+	{
+		PersistentMap<E, Boolean> newMap = this.map.with(element, Boolean.TRUE);
+		if (newMap == this.map) return this;
+		return new PersistentSet<>(newMap, this.hash + element.hashCode());
+	}
+
+	/**
+	 * Returns a set which doesn't contain the element.
+	 * This set is not changed.
+	 * @param element
+	 * The element to remove.
+	 * @return
+	 * A set without the element. If it wasn't present, this set is returned.
+	 * @throws ArgumentNullException
+	 * If element is null.
+	 */
+	@Pure
+	public PersistentSet<E> without(Object element) throws ArgumentNullException
+	{
+		PersistentMap<E, Boolean> newMap = this.map.without(element);
+		if (newMap == this.map) return this;
+		if (newMap.isEmpty()) return empty();
+		return new PersistentSet<>(newMap, this.hash - element.hashCode());
+	}
+
+	/**
+	 * Creates a transient version of this set.
+	 * It can be modified in place, and turned back into
+	 * a persistent set in O(1) time, using {@code Transient#build}
+	 * This set is not affected by modifications of the transient.
+	 * @return
+	 * A new transient set, with the same elements as this.
+	 */
+	@Pure
+	public Transient<E> asTransient()
+	{
+		return new Transient<>(this.map.asTransient(), this.hash);
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: SET
+	// -------------------------------------------- //
+
+	@Override
+	public boolean contains(Object o)
+	{
+		return this.map.containsKey(o);
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return this.map.keySet().iterator();
+	}
+
+	@Override
+	public int size()
+	{
+		return this.map.size();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return this.map.isEmpty();
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if (o instanceof PersistentSet)
+		{
+			PersistentSet<?> that = (PersistentSet<?>) o;
+			return this.hash == that.hash && this.map.equals(that.map);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.hash;
+	}
+
+	// -------------------------------------------- //
+	// TRANSIENT
+	// -------------------------------------------- //
+
+	/**
+	 * A mutable version of a {@code PersistentSet},
+	 * used to efficiently build, or make many changes to a set.
+	 *
+	 * After {@code build} has been called, the transient can't be used anymore.
+	 * This class is not thread safe.
+	 *
+	 * @param <E>
+	 * Type of the elements.
+	 */
+	public static final class Transient<E> implements Builder<PersistentSet<E>>
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private final PersistentMap.Transient<E, Boolean> map;
+		private int hash;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		private Transient(PersistentMap.Transient<E, Boolean> map, int hash)
+		{
+			this.map = map;
+			this.hash = hash;
+		}
+
+		// -------------------------------------------- //
+		// MODIFY
+		// -------------------------------------------- //
+
+		/**
+		 * Adds the element, if it isn't already present.
+		 * @param element
+		 * The element.
+		 * @return
+		 * This transient.
+		 * @throws ArgumentNullException
+		 * If element is null.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		public Transient<E> add(E element) throws ArgumentNullException, IllegalStateException
+		{
+			int size = this.map.size();
+			this.map.put(element, Boolean.TRUE);
+			if (this.map.size() != size) this.hash += element.hashCode();
+			return this;
+		}
+
+		/**
+		 * Removes the element, if it is present.
+		 * @param element
+		 * The element.
+		 * @return
+		 * This transient.
+		 * @throws ArgumentNullException
+		 * If element is null.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		public Transient<E> remove(Object element) throws ArgumentNullException, IllegalStateException
+		{
+			int size = this.map.size();
+			this.map.remove(element);
+			if (this.map.size() != size) this.hash -= element.hashCode();
+			return this;
+		}
+
+		// -------------------------------------------- //
+		// INSPECT
+		// -------------------------------------------- //
+
+		public boolean contains(Object element)
+		{
+			return this.map.get(element) != null;
+		}
+
+		public int size()
+		{
+			return this.map.size();
+		}
+
+		// -------------------------------------------- //
+		// BUILD
+		// -------------------------------------------- //
+
+		/**
+		 * Turns this transient into a persistent set, in O(1) time.
+		 * This transient can't be used afterwards.
+		 * @return
+		 * A persistent set with the elements of this transient.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		@Override
+		public PersistentSet<E> build() throws IllegalStateException
+		{
+			PersistentMap<E, Boolean> built = this.map.build();
+			if (built.isEmpty()) return empty();
+			return new PersistentSet<>(built, this.hash);
+		}
+	}
+
+}
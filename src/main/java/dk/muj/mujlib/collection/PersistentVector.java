@@ -0,0 +1,714 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.Builder;
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list, where "modifications" return a new list,
+ * which shares most of its structure with the old one.
+ * Indexing, setting, appending and removing the last element
+ * take O(log32 n) time, which is practically constant.
+ *
+ * It is a radix balanced trie with a branching factor of 32,
+ * where the last up to 32 elements are kept in a separate tail array.
+ * So appending only touches the trie once every 32 elements.
+ *
+ * The normal mutating methods of {@code List} all throw an
+ * {@code UnsupportedOperationException}. Use {@code with}, {@code withAppended}
+ * and {@code withoutLast} instead, or a {@code Transient} for many changes at once.
+ *
+ * The hash code is maintained on every modification, so it is free.
+ *
+ * Elements can't be null.
+ * This class is immutable and thus thread safe.
+ *
+ * @param <E>
+ * Type of the elements.
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final int BITS = 5;
+	private static final int WIDTH = 1 << BITS;
+	private static final int MASK = WIDTH - 1;
+
+	// The multiplicative inverse of 31 modulo 2^32,
+	// used to undo the last step of the list hash code.
+	private static final int INVERSE_31 = 0xBDEF7BDF;
+
+	private static final VectorNode EMPTY_NODE = new VectorNode(null, new Object[WIDTH]);
+	private static final PersistentVector<Object> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0], 1);
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final int size;
+	private final int shift;
+	private final VectorNode root;
+	private final Object[] tail;
+	private final int hash;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private PersistentVector(int size, int shift, VectorNode root, Object[] tail, int hash)
+	{
+		this.size = size;
+		this.shift = shift;
+		this.root = root;
+		this.tail = tail;
+		this.hash = hash;
+	}
+
+	// -------------------------------------------- //
+	// FACTORY
+	// -------------------------------------------- //
+
+	/**
+	 * Returns the empty persistent vector.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * The empty vector.
+	 */
+	@Pure
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> empty()
+	{
+		return (PersistentVector<E>) EMPTY;
+	}
+
+	/**
+	 * Creates a persistent vector containing the passed elements, in order.
+	 * @param elements
+	 * The elements.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A vector containing the passed elements.
+	 * @throws ArgumentNullException
+	 * If elements, or any of them, is null.
+	 */
+	@Pure
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <E> PersistentVector<E> of(E... elements) throws ArgumentNullException
+	{
+		Argument.handleNull(elements, "elements");
+		return copyOf(Arrays.asList(elements));
+	}
+
+	/**
+	 * Creates a persistent vector with the same elements as the passed collection,
+	 * in the order of its iterator.
+	 * @param collection
+	 * The collection to copy.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A persistent vector containing the elements of the collection.
+	 * @throws ArgumentNullException
+	 * If collection, or any of its elements, is null.
+	 */
+	@Pure
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> copyOf(Collection<? extends E> collection) throws ArgumentNullException
+	{
+		Argument.handleNull(collection, "collection");
+		if (collection instanceof PersistentVector) return (PersistentVector<E>) collection;
+
+		Transient<E> ret = PersistentVector.<E>empty().asTransient();
+		for (E element : collection)
+		{
+			ret.add(element);
+		}
+		return ret.build();
+	}
+
+	// -------------------------------------------- //
+	// PERSISTENT
+	// -------------------------------------------- //
+
+	/**
+	 * Returns a vector with the element appended.
+	 * This vector is not changed.
+	 * @param element
+	 * The element to append.
+	 * @return
+	 * A vector one longer than this.
+	 * @throws ArgumentNullException
+	 * If element is null.
+	 */
+	@Pure
+	public PersistentVector<E> withAppended(E element) throws ArgumentNullException
+	{
+		Argument.handleNull(element, "element");
+		int newHash = 31 * this.hash + element.hashCode();
+
+		// Room in the tail.
+		if (this.size - this.tailOffset() < WIDTH)
+		{
+			Object[] newTail = Arrays.copyOf(this.tail, this.tail.length + 1);
+			newTail[this.tail.length] = element;
+			return new PersistentVector<>(this.size + 1, this.shift, this.root, newTail, newHash);
+		}
+
+		// Full tail, push it into the trie.
+		VectorNode tailNode = new VectorNode(null, this.tail);
+		int newShift = this.shift;
+		VectorNode newRoot;
+		if ((this.size >>> BITS) > (1 << this.shift))
+		{
+			newRoot = new VectorNode(null, new Object[WIDTH]);
+			newRoot.array[0] = this.root;
+			newRoot.array[1] = newPath(null, this.shift, tailNode);
+			newShift += BITS;
+		}
+		else
+		{
+			newRoot = pushTail(null, this.shift, this.root, tailNode, this.size);
+		}
+		return new PersistentVector<>(this.size + 1, newShift, newRoot, new Object[]{element}, newHash);
+	}
+
+	/**
+	 * Returns a vector with the element at index replaced.
+	 * This vector is not changed.
+	 * @param index
+	 * The index to replace.
+	 * @param element
+	 * The new element.
+	 * @return
+	 * A vector with the element replaced. If it was already there, this vector is returned.
+	 * @throws ArgumentNullException
+	 * If element is null.
+	 * @throws IndexOutOfBoundsException
+	 * If index is negative, or not less than size.
+	 */
+	@Pure
+	public PersistentVector<E> with(int index, E element) throws ArgumentNullException, IndexOutOfBoundsException
+	{
+		Argument.handleNull(element, "element");
+		E old = this.get(index);
+		if (old == element) return this;
+		int newHash = this.hash + (element.hashCode() - old.hashCode()) * pow31(this.size - 1 - index);
+
+		if (index >= this.tailOffset())
+		{
+			Object[] newTail = this.tail.clone();
+			newTail[index & MASK] = element;
+			return new PersistentVector<>(this.size, this.shift, this.root, newTail, newHash);
+		}
+		return new PersistentVector<>(this.size, this.shift, assoc(null, this.shift, this.root, index, element), this.tail, newHash);
+	}
+
+	/**
+	 * Returns a vector without the last element.
+	 * This vector is not changed.
+	 * @return
+	 * A vector one shorter than this.
+	 * @throws IllegalStateException
+	 * If this vector is empty.
+	 */
+	@Pure
+	public PersistentVector<E> withoutLast() throws IllegalStateException
+	{
+		if (this.size == 0) throw new IllegalStateException("Can't remove from an empty vector.");
+		if (this.size == 1) return empty();
+
+		E last = this.get(this.size - 1);
+		int newHash = (this.hash - last.hashCode()) * INVERSE_31;
+
+		// More than one element in the tail.
+		if (this.size - this.tailOffset() > 1)
+		{
+			Object[] newTail = Arrays.copyOf(this.tail, this.tail.length - 1);
+			return new PersistentVector<>(this.size - 1, this.shift, this.root, newTail, newHash);
+		}
+
+		// The last leaf becomes the new tail.
+		Object[] newTail = this.arrayFor(this.size - 2);
+		VectorNode newRoot = popTail(null, this.shift, this.root, this.size);
+		int newShift = this.shift;
+		if (newRoot == null) newRoot = EMPTY_NODE;
+		if (this.shift > BITS && newRoot.array[1] == null)
+		{
+			newRoot = (VectorNode) newRoot.array[0];
+			newShift -= BITS;
+		}
+		return new PersistentVector<>(this.size - 1, newShift, newRoot, newTail, newHash);
+	}
+
+	/**
+	 * Creates a transient version of this vector.
+	 * It can be modified in place, and turned back into
+	 * a persistent vector in O(1) time, using {@code Transient#build}
+	 * This vector is not affected by modifications of the transient.
+	 * @return
+	 * A new transient vector, with the same elements as this.
+	 */
+	@Pure
+	public Transient<E> asTransient()
+	{
+		return new Transient<>(this);
+	}
+
+	// -------------------------------------------- //
+	// OVERRIDE: LIST
+	// -------------------------------------------- //
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E get(int index) throws IndexOutOfBoundsException
+	{
+		return (E) this.arrayFor(index)[index & MASK];
+	}
+
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return new ChunkIterator();
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if (o instanceof PersistentVector)
+		{
+			PersistentVector<?> that = (PersistentVector<?>) o;
+			if (this.size != that.size || this.hash != that.hash) return false;
+			if (this.root == that.root && this.tail == that.tail) return true;
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.hash;
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private int tailOffset()
+	{
+		return tailOffset(this.size);
+	}
+
+	private static int tailOffset(int size)
+	{
+		if (size < WIDTH) return 0;
+		return ((size - 1) >>> BITS) << BITS;
+	}
+
+	private Object[] arrayFor(int index)
+	{
+		if (index < 0 || index >= this.size) throw new IndexOutOfBoundsException("index: " + index + " size: " + this.size);
+		if (index >= this.tailOffset()) return this.tail;
+		return leafFor(this.root, this.shift, index);
+	}
+
+	private static Object[] leafFor(VectorNode root, int shift, int index)
+	{
+		VectorNode node = root;
+		for (int level = shift; level > 0; level -= BITS)
+		{
+			node = (VectorNode) node.array[(index >>> level) & MASK];
+		}
+		return node.array;
+	}
+
+	// 31^exponent with overflow, as in the list hash code.
+	private static int pow31(int exponent)
+	{
+		int ret = 1;
+		int base = 31;
+		while (exponent > 0)
+		{
+			if ((exponent & 1) != 0) ret *= base;
+			base *= base;
+			exponent >>>= 1;
+		}
+		return ret;
+	}
+
+	private static VectorNode newPath(Object owner, int level, VectorNode node)
+	{
+		if (level == 0) return node;
+		VectorNode ret = new VectorNode(owner, new Object[WIDTH]);
+		ret.array[0] = newPath(owner, level - BITS, node);
+		return ret;
+	}
+
+	private static VectorNode pushTail(Object owner, int level, VectorNode parent, VectorNode tailNode, int size)
+	{
+		int index = ((size - 1) >>> level) & MASK;
+		VectorNode ret = parent.editable(owner);
+		VectorNode insert;
+		if (level == BITS)
+		{
+			insert = tailNode;
+		}
+		else
+		{
+			VectorNode child = (VectorNode) parent.array[index];
+			insert = (child != null) ? pushTail(owner, level - BITS, child, tailNode, size) : newPath(owner, level - BITS, tailNode);
+		}
+		ret.array[index] = insert;
+		return ret;
+	}
+
+	private static VectorNode popTail(Object owner, int level, VectorNode node, int size)
+	{
+		int index = ((size - 2) >>> level) & MASK;
+		if (level > BITS)
+		{
+			VectorNode newChild = popTail(owner, level - BITS, (VectorNode) node.array[index], size);
+			if (newChild == null && index == 0) return null;
+			VectorNode ret = node.editable(owner);
+			ret.array[index] = newChild;
+			return ret;
+		}
+		if (index == 0) return null;
+		VectorNode ret = node.editable(owner);
+		ret.array[index] = null;
+		return ret;
+	}
+
+	private static VectorNode assoc(Object owner, int level, VectorNode node, int index, Object element)
+	{
+		VectorNode ret = node.editable(owner);
+		if (level == 0)
+		{
+			ret.array[index & MASK] = element;
+		}
+		else
+		{
+			int subIndex = (index >>> level) & MASK;
+			ret.array[subIndex] = assoc(owner, level - BITS, (VectorNode) node.array[subIndex], index, element);
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// TRANSIENT
+	// -------------------------------------------- //
+
+	/**
+	 * A mutable version of a {@code PersistentVector},
+	 * used to efficiently build, or make many changes to a vector.
+	 * Nodes created by the transient are edited in place,
+	 * nodes shared with a persistent vector are copied first.
+	 *
+	 * After {@code build} has been called, the transient can't be used anymore.
+	 * This class is not thread safe.
+	 *
+	 * @param <E>
+	 * Type of the elements.
+	 */
+	public static final class Transient<E> implements Builder<PersistentVector<E>>
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private Object owner = new Object();
+		private int size;
+		private int shift;
+		private VectorNode root;
+
+		// Always full width, so appending is a store.
+		private Object[] tail;
+		private int hash;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		private Transient(PersistentVector<E> vector)
+		{
+			this.size = vector.size;
+			this.shift = vector.shift;
+			this.root = vector.root.editable(this.owner);
+			this.tail = Arrays.copyOf(vector.tail, WIDTH);
+			this.hash = vector.hash;
+		}
+
+		// -------------------------------------------- //
+		// MODIFY
+		// -------------------------------------------- //
+
+		/**
+		 * Appends the element.
+		 * @param element
+		 * The element.
+		 * @return
+		 * This transient.
+		 * @throws ArgumentNullException
+		 * If element is null.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		public Transient<E> add(E element) throws ArgumentNullException, IllegalStateException
+		{
+			this.ensureEditable();
+			Argument.handleNull(element, "element");
+
+			if (this.size - tailOffset(this.size) < WIDTH)
+			{
+				this.tail[this.size & MASK] = element;
+			}
+			else
+			{
+				VectorNode tailNode = new VectorNode(this.owner, this.tail);
+				this.tail = new Object[WIDTH];
+				this.tail[0] = element;
+				if ((this.size >>> BITS) > (1 << this.shift))
+				{
+					VectorNode newRoot = new VectorNode(this.owner, new Object[WIDTH]);
+					newRoot.array[0] = this.root;
+					newRoot.array[1] = newPath(this.owner, this.shift, tailNode);
+					this.root = newRoot;
+					this.shift += BITS;
+				}
+				else
+				{
+					this.root = pushTail(this.owner, this.shift, this.root, tailNode, this.size);
+				}
+			}
+
+			this.size++;
+			this.hash = 31 * this.hash + element.hashCode();
+			return this;
+		}
+
+		/**
+		 * Replaces the element at index.
+		 * @param index
+		 * The index.
+		 * @param element
+		 * The new element.
+		 * @return
+		 * This transient.
+		 * @throws ArgumentNullException
+		 * If element is null.
+		 * @throws IndexOutOfBoundsException
+		 * If index is negative, or not less than size.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		public Transient<E> set(int index, E element) throws ArgumentNullException, IndexOutOfBoundsException, IllegalStateException
+		{
+			Argument.handleNull(element, "element");
+			E old = this.get(index);
+			this.hash += (element.hashCode() - old.hashCode()) * pow31(this.size - 1 - index);
+
+			if (index >= tailOffset(this.size))
+			{
+				this.tail[index & MASK] = element;
+			}
+			else
+			{
+				this.root = assoc(this.owner, this.shift, this.root, index, element);
+			}
+			return this;
+		}
+
+		/**
+		 * Removes the last element.
+		 * @return
+		 * This transient.
+		 * @throws IllegalStateException
+		 * If this transient is empty or was already built.
+		 */
+		public Transient<E> removeLast() throws IllegalStateException
+		{
+			this.ensureEditable();
+			if (this.size == 0) throw new IllegalStateException("Can't remove from an empty vector.");
+
+			int index = this.size - 1;
+			E last = this.get(index);
+			this.hash = (this.hash - last.hashCode()) * INVERSE_31;
+
+			// More than one element in the tail, or the tail is all there is.
+			if ((index & MASK) > 0 || this.size == 1)
+			{
+				this.tail[index & MASK] = null;
+				this.size--;
+				return this;
+			}
+
+			// The last leaf becomes the new tail.
+			Object[] newTail = Arrays.copyOf(leafFor(this.root, this.shift, this.size - 2), WIDTH);
+			VectorNode newRoot = popTail(this.owner, this.shift, this.root, this.size);
+			if (newRoot == null) newRoot = new VectorNode(this.owner, new Object[WIDTH]);
+			if (this.shift > BITS && newRoot.array[1] == null)
+			{
+				newRoot = ((VectorNode) newRoot.array[0]).editable(this.owner);
+				this.shift -= BITS;
+			}
+			this.root = newRoot;
+			this.tail = newTail;
+			this.size--;
+			return this;
+		}
+
+		// -------------------------------------------- //
+		// INSPECT
+		// -------------------------------------------- //
+
+		@SuppressWarnings("unchecked")
+		public E get(int index) throws IndexOutOfBoundsException, IllegalStateException
+		{
+			this.ensureEditable();
+			if (index < 0 || index >= this.size) throw new IndexOutOfBoundsException("index: " + index + " size: " + this.size);
+			if (index >= tailOffset(this.size)) return (E) this.tail[index & MASK];
+			return (E) leafFor(this.root, this.shift, index)[index & MASK];
+		}
+
+		public int size()
+		{
+			return this.size;
+		}
+
+		// -------------------------------------------- //
+		// BUILD
+		// -------------------------------------------- //
+
+		/**
+		 * Turns this transient into a persistent vector, in O(log32 n) time.
+		 * This transient can't be used afterwards.
+		 * @return
+		 * A persistent vector with the elements of this transient.
+		 * @throws IllegalStateException
+		 * If this transient was already built.
+		 */
+		@Override
+		public PersistentVector<E> build() throws IllegalStateException
+		{
+			this.ensureEditable();
+			this.owner = null;
+			if (this.size == 0) return empty();
+
+			Object[] trimmedTail = Arrays.copyOf(this.tail, this.size - tailOffset(this.size));
+			return new PersistentVector<>(this.size, this.shift, this.root, trimmedTail, this.hash);
+		}
+
+		private void ensureEditable()
+		{
+			if (this.owner == null) throw new IllegalStateException("This transient was already built.");
+		}
+	}
+
+	// -------------------------------------------- //
+	// NODE
+	// -------------------------------------------- //
+
+	private static final class VectorNode
+	{
+		// The transient which may edit this node in place.
+		private final Object owner;
+		private final Object[] array;
+
+		VectorNode(Object owner, Object[] array)
+		{
+			this.owner = owner;
+			this.array = array;
+		}
+
+		VectorNode editable(Object owner)
+		{
+			if (owner != null && this.owner == owner) return this;
+			return new VectorNode(owner, this.array.clone());
+		}
+	}
+
+	// -------------------------------------------- //
+	// ITERATOR
+	// -------------------------------------------- //
+
+	// Walks one leaf array at a time, instead of descending the trie for every element.
+	private final class ChunkIterator implements Iterator<E>
+	{
+		private int index = 0;
+		private int chunkStart = 0;
+		private Object[] chunk = (PersistentVector.this.size > 0) ? PersistentVector.this.arrayFor(0) : null;
+
+		@Override
+		public boolean hasNext()
+		{
+			return this.index < PersistentVector.this.size;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E next()
+		{
+			if ( ! this.hasNext()) throw new NoSuchElementException("No next element in iterator.");
+			if (this.index - this.chunkStart == WIDTH)
+			{
+				this.chunk = PersistentVector.this.arrayFor(this.index);
+				this.chunkStart = this.index;
+			}
+			return (E) this.chunk[this.index++ - this.chunkStart];
+		}
+	}
+
+}
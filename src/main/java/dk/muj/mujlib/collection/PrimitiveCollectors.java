@@ -0,0 +1,495 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.Arrays;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Collectors into the primitive collections of this package,
+ * so streams can build them without boxing every element.
+ *
+ * Primitive streams can't use a {@code Collector},
+ * so {@code IntStream} and {@code LongStream} are collected by the static methods taking them.
+ *
+ * All of them support parallel streams.
+ * Partial results are merged in bulk, container by container for bitmaps,
+ * or by appending primitive buffers which are bulk loaded at the end for maps.
+ * Nothing is re-inserted one element at a time.
+ * The map collectors take a size hint, which pre-sizes their buffers.
+ */
+public final class PrimitiveCollectors
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private PrimitiveCollectors()
+	{
+
+	}
+
+	// -------------------------------------------- //
+	// BITMAPS AND RANGE SETS
+	// -------------------------------------------- //
+
+	/**
+	 * @param stream
+	 * The stream to collect.
+	 * @return
+	 * A new bitmap with all integers of the stream.
+	 * @throws ArgumentNullException
+	 * If stream is null.
+	 */
+	public static RoaringBitmap toRoaringBitmap(IntStream stream) throws ArgumentNullException
+	{
+		Argument.handleNull(stream, "stream");
+		return stream.collect(RoaringBitmap::new, RoaringBitmap::add, RoaringBitmap::addAll);
+	}
+
+	/**
+	 * @param mapper
+	 * Maps the elements to integers.
+	 * @param <T>
+	 * Type of the elements.
+	 * @return
+	 * A collector into a new bitmap with the integers of all elements.
+	 * @throws ArgumentNullException
+	 * If mapper is null.
+	 */
+	@Pure
+	public static <T> Collector<T, ?, RoaringBitmap> toRoaringBitmap(ToIntFunction<? super T> mapper) throws ArgumentNullException
+	{
+		Argument.handleNull(mapper, "mapper");
+		return Collector.of(
+			RoaringBitmap::new,
+			(bitmap, element) -> bitmap.add(mapper.applyAsInt(element)),
+			(a, b) ->
+			{
+				a.addAll(b);
+				return a;
+			},
+			Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+	}
+
+	/**
+	 * @param stream
+	 * The stream to collect.
+	 * @return
+	 * A new range set with all integers of the stream, coalesced into ranges.
+	 * @throws ArgumentNullException
+	 * If stream is null.
+	 */
+	public static IntRangeSet toIntRangeSet(IntStream stream) throws ArgumentNullException
+	{
+		Argument.handleNull(stream, "stream");
+		return stream.collect(IntRangeSet::new, IntRangeSet::add, IntRangeSet::addAll);
+	}
+
+	/**
+	 * @param stream
+	 * The stream to collect.
+	 * @return
+	 * A new range set with all longs of the stream, coalesced into ranges.
+	 * @throws ArgumentNullException
+	 * If stream is null.
+	 */
+	public static LongRangeSet toLongRangeSet(LongStream stream) throws ArgumentNullException
+	{
+		Argument.handleNull(stream, "stream");
+		return stream.collect(LongRangeSet::new, LongRangeSet::add, LongRangeSet::addAll);
+	}
+
+	// -------------------------------------------- //
+	// MULTIMAP
+	// -------------------------------------------- //
+
+	/**
+	 * @param keyMapper
+	 * Maps the elements to keys.
+	 * @param valueMapper
+	 * Maps the elements to values.
+	 * @param <T>
+	 * Type of the elements.
+	 * @return
+	 * A collector into a new multimap with a pair for every element.
+	 * @throws ArgumentNullException
+	 * If keyMapper or valueMapper is null.
+	 */
+	@Pure
+	public static <T> Collector<T, ?, IntIntMultimap> toIntIntMultimap(ToIntFunction<? super T> keyMapper, ToIntFunction<? super T> valueMapper) throws ArgumentNullException
+	{
+		return toIntIntMultimap(keyMapper, valueMapper, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param keyMapper
+	 * Maps the elements to keys.
+	 * @param valueMapper
+	 * Maps the elements to values.
+	 * @param expectedSize
+	 * The expected number of elements, buffers start at this size.
+	 * In a parallel stream every partial result starts at this size,
+	 * so pass the expected size of each part.
+	 * @param <T>
+	 * Type of the elements.
+	 * @return
+	 * A collector into a new multimap with a pair for every element.
+	 * @throws ArgumentNullException
+	 * If keyMapper or valueMapper is null.
+	 * @throws IllegalArgumentException
+	 * If expectedSize is negative.
+	 */
+	@Pure
+	public static <T> Collector<T, ?, IntIntMultimap> toIntIntMultimap(ToIntFunction<? super T> keyMapper, ToIntFunction<? super T> valueMapper, int expectedSize) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(keyMapper, "keyMapper");
+		Argument.handleNull(valueMapper, "valueMapper");
+		if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative.");
+
+		return Collector.of(
+			() -> new IntPairBuffer(expectedSize),
+			(buffer, element) -> buffer.add(keyMapper.applyAsInt(element), valueMapper.applyAsInt(element)),
+			IntPairBuffer::merge,
+			buffer -> IntIntMultimap.of(Arrays.copyOf(buffer.keys, buffer.size), Arrays.copyOf(buffer.values, buffer.size)),
+			Collector.Characteristics.UNORDERED);
+	}
+
+	// -------------------------------------------- //
+	// SORTED MAPS
+	// -------------------------------------------- //
+
+	/**
+	 * Like {@code Collectors.toMap}, duplicate keys are not allowed.
+	 * @param keyMapper
+	 * Maps the elements to keys.
+	 * @param valueMapper
+	 * Maps the elements to values, which must not be null.
+	 * @param <T>
+	 * Type of the elements.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A collector into a new sorted map. It throws IllegalStateException on duplicate keys.
+	 * @throws ArgumentNullException
+	 * If keyMapper or valueMapper is null.
+	 */
+	@Pure
+	public static <T, V> Collector<T, ?, LongSortedMap<V>> toLongSortedMap(ToLongFunction<? super T> keyMapper, Function<? super T, ? extends V> valueMapper) throws ArgumentNullException
+	{
+		return toLongSortedMap(keyMapper, valueMapper, null, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Collects the entries into primitive buffers,
+	 * which are sorted and bulk loaded into the map at the end.
+	 * @param keyMapper
+	 * Maps the elements to keys.
+	 * @param valueMapper
+	 * Maps the elements to values, which must not be null.
+	 * @param mergeFunction
+	 * Merges values of the same key, in encounter order.
+	 * If it is null, duplicate keys throw IllegalStateException.
+	 * @param expectedSize
+	 * The expected number of elements, buffers start at this size.
+	 * In a parallel stream every partial result starts at this size,
+	 * so pass the expected size of each part.
+	 * @param <T>
+	 * Type of the elements.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A collector into a new sorted map.
+	 * @throws ArgumentNullException
+	 * If keyMapper or valueMapper is null.
+	 * @throws IllegalArgumentException
+	 * If expectedSize is negative.
+	 */
+	@Pure
+	public static <T, V> Collector<T, ?, LongSortedMap<V>> toLongSortedMap(ToLongFunction<? super T> keyMapper, Function<? super T, ? extends V> valueMapper, BinaryOperator<V> mergeFunction, int expectedSize) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(keyMapper, "keyMapper");
+		Argument.handleNull(valueMapper, "valueMapper");
+		if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative.");
+
+		return Collector.of(
+			() -> new LongEntryBuffer(expectedSize),
+			(buffer, element) ->
+			{
+				V value = valueMapper.apply(element);
+				Argument.handleNull(value, "value");
+				buffer.add(keyMapper.applyAsLong(element), value);
+			},
+			LongEntryBuffer::merge,
+			buffer -> buffer.toMap(mergeFunction));
+	}
+
+	/**
+	 * Like {@code Collectors.toMap}, duplicate keys are not allowed.
+	 * @param keyMapper
+	 * Maps the elements to keys.
+	 * @param valueMapper
+	 * Maps the elements to values, which must not be null.
+	 * @param <T>
+	 * Type of the elements.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A collector into a new sorted map. It throws IllegalStateException on duplicate keys.
+	 * @throws ArgumentNullException
+	 * If keyMapper or valueMapper is null.
+	 */
+	@Pure
+	public static <T, V> Collector<T, ?, IntSortedMap<V>> toIntSortedMap(ToIntFunction<? super T> keyMapper, Function<? super T, ? extends V> valueMapper) throws ArgumentNullException
+	{
+		return toIntSortedMap(keyMapper, valueMapper, null, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Collects the entries into primitive buffers,
+	 * which are sorted and bulk loaded into the map at the end.
+	 * @param keyMapper
+	 * Maps the elements to keys.
+	 * @param valueMapper
+	 * Maps the elements to values, which must not be null.
+	 * @param mergeFunction
+	 * Merges values of the same key, in encounter order.
+	 * If it is null, duplicate keys throw IllegalStateException.
+	 * @param expectedSize
+	 * The expected number of elements, buffers start at this size.
+	 * In a parallel stream every partial result starts at this size,
+	 * so pass the expected size of each part.
+	 * @param <T>
+	 * Type of the elements.
+	 * @param <V>
+	 * Type of the values.
+	 * @return
+	 * A collector into a new sorted map.
+	 * @throws ArgumentNullException
+	 * If keyMapper or valueMapper is null.
+	 * @throws IllegalArgumentException
+	 * If expectedSize is negative.
+	 */
+	@Pure
+	public static <T, V> Collector<T, ?, IntSortedMap<V>> toIntSortedMap(ToIntFunction<? super T> keyMapper, Function<? super T, ? extends V> valueMapper, BinaryOperator<V> mergeFunction, int expectedSize) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(keyMapper, "keyMapper");
+		Argument.handleNull(valueMapper, "valueMapper");
+		if (expectedSize < 0) throw new IllegalArgumentException("expectedSize must not be negative.");
+
+		// Int keys are widened, the order is the same.
+		return Collector.of(
+			() -> new LongEntryBuffer(expectedSize),
+			(buffer, element) ->
+			{
+				V value = valueMapper.apply(element);
+				Argument.handleNull(value, "value");
+				buffer.add(keyMapper.applyAsInt(element), value);
+			},
+			LongEntryBuffer::merge,
+			buffer -> buffer.toIntMap(mergeFunction));
+	}
+
+	// -------------------------------------------- //
+	// BUFFERS
+	// -------------------------------------------- //
+
+	private static final class IntPairBuffer
+	{
+		int[] keys;
+		int[] values;
+		int size = 0;
+
+		IntPairBuffer(int capacity)
+		{
+			this.keys = new int[capacity];
+			this.values = new int[capacity];
+		}
+
+		void add(int key, int value)
+		{
+			if (this.size == this.keys.length) this.grow(this.size + 1);
+			this.keys[this.size] = key;
+			this.values[this.size] = value;
+			this.size++;
+		}
+
+		IntPairBuffer merge(IntPairBuffer that)
+		{
+			this.grow(this.size + that.size);
+			System.arraycopy(that.keys, 0, this.keys, this.size, that.size);
+			System.arraycopy(that.values, 0, this.values, this.size, that.size);
+			this.size += that.size;
+			return this;
+		}
+
+		private void grow(int minCapacity)
+		{
+			if (minCapacity <= this.keys.length) return;
+			int capacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, this.keys.length + (this.keys.length >> 1)));
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+	}
+
+	private static final class LongEntryBuffer
+	{
+		long[] keys;
+		Object[] values;
+		int size = 0;
+
+		LongEntryBuffer(int capacity)
+		{
+			this.keys = new long[capacity];
+			this.values = new Object[capacity];
+		}
+
+		void add(long key, Object value)
+		{
+			if (this.size == this.keys.length) this.grow(this.size + 1);
+			this.keys[this.size] = key;
+			this.values[this.size] = value;
+			this.size++;
+		}
+
+		LongEntryBuffer merge(LongEntryBuffer that)
+		{
+			// Encounter order is kept, the right part is appended to the left.
+			this.grow(this.size + that.size);
+			System.arraycopy(that.keys, 0, this.keys, this.size, that.size);
+			System.arraycopy(that.values, 0, this.values, this.size, that.size);
+			this.size += that.size;
+			return this;
+		}
+
+		<V> LongSortedMap<V> toMap(BinaryOperator<V> mergeFunction)
+		{
+			int distinct = this.sortAndMerge(mergeFunction);
+			@SuppressWarnings("unchecked")
+			V[] values = (V[]) Arrays.copyOf(this.values, distinct);
+			return LongSortedMap.fromSorted(Arrays.copyOf(this.keys, distinct), values);
+		}
+
+		// The keys were widened from ints, so they are already in the int range.
+		<V> IntSortedMap<V> toIntMap(BinaryOperator<V> mergeFunction)
+		{
+			return new IntSortedMap<>(this.toMap(mergeFunction));
+		}
+
+		// Sorts the entries by key, keeping encounter order for equal keys, then merges those.
+		@SuppressWarnings("unchecked")
+		private <V> int sortAndMerge(BinaryOperator<V> mergeFunction)
+		{
+			if ( ! this.isSorted())
+			{
+				long[] keys = new long[this.size];
+				Object[] values = new Object[this.size];
+				mergeSort(this.keys, this.values, keys, values, 0, this.size);
+			}
+
+			int ret = 0;
+			for (int i = 0; i < this.size; i++)
+			{
+				if (ret > 0 && this.keys[ret - 1] == this.keys[i])
+				{
+					if (mergeFunction == null) throw new IllegalStateException("Duplicate key " + this.keys[i]);
+					V merged = mergeFunction.apply((V) this.values[ret - 1], (V) this.values[i]);
+					Argument.handleNull(merged, "merged value");
+					this.values[ret - 1] = merged;
+				}
+				else
+				{
+					this.keys[ret] = this.keys[i];
+					this.values[ret] = this.values[i];
+					ret++;
+				}
+			}
+			return ret;
+		}
+
+		private boolean isSorted()
+		{
+			for (int i = 1; i < this.size; i++)
+			{
+				if (this.keys[i - 1] > this.keys[i]) return false;
+			}
+			return true;
+		}
+
+		private void grow(int minCapacity)
+		{
+			if (minCapacity <= this.keys.length) return;
+			int capacity = Math.max(minCapacity, Math.max(DEFAULT_CAPACITY, this.keys.length + (this.keys.length >> 1)));
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+
+		// A stable merge sort of the keys, moving the values along.
+		private static void mergeSort(long[] keys, Object[] values, long[] keysTemp, Object[] valuesTemp, int from, int to)
+		{
+			if (to - from <= 1) return;
+
+			int middle = (from + to) >>> 1;
+			mergeSort(keys, values, keysTemp, valuesTemp, from, middle);
+			mergeSort(keys, values, keysTemp, valuesTemp, middle, to);
+			if (keys[middle - 1] <= keys[middle]) return;
+
+			System.arraycopy(keys, from, keysTemp, from, to - from);
+			System.arraycopy(values, from, valuesTemp, from, to - from);
+			int i = from;
+			int j = middle;
+			for (int k = from; k < to; k++)
+			{
+				if (j == to || (i < middle && keysTemp[i] <= keysTemp[j]))
+				{
+					keys[k] = keysTemp[i];
+					values[k] = valuesTemp[i++];
+				}
+				else
+				{
+					keys[k] = keysTemp[j];
+					values[k] = valuesTemp[j++];
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,676 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, lock free queue, backed by an array used as a ring buffer.
+ * Unlike {@code LinkedBlockingQueue} it allocates nothing per element.
+ *
+ * There are three variants, which differ in how many threads may use each end.
+ * Using a variant from more threads than it allows, is undefined behaviour.
+ * <ul>
+ * <li>{@code spsc}: One producer thread, one consumer thread. The fastest.</li>
+ * <li>{@code mpsc}: Many producer threads, one consumer thread.</li>
+ * <li>{@code mpmc}: Many producer threads, many consumer threads.</li>
+ * </ul>
+ *
+ * The producer and consumer counters are padded,
+ * so they don't share a cache line, which would make
+ * producers and consumers slow each other down.
+ *
+ * The blocking methods {@code put} and {@code take} wait
+ * using the queue's {@code WaitStrategy}.
+ *
+ * Elements can't be null. The capacity is rounded up to a power of two, of at least 2.
+ * Iteration is weakly consistent, the iterator is a snapshot of the elements
+ * in the queue when it is created, and may miss elements added or removed meanwhile.
+ * It can't remove elements, so neither can {@code remove(Object)} or the bulk removals.
+ *
+ * @param <E>
+ * Type of the elements.
+ */
+public abstract class RingQueue<E> extends AbstractQueue<E>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	/**
+	 * The maximum capacity of a queue.
+	 */
+	public static final int MAX_CAPACITY = 1 << 30;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final int capacity;
+	private final int mask;
+	private final WaitStrategy waitStrategy;
+
+	final AtomicReferenceArray<E> buffer;
+	final AtomicLong producerIndex = new PaddedAtomicLong();
+	final AtomicLong consumerIndex = new PaddedAtomicLong();
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private RingQueue(int capacity, WaitStrategy waitStrategy)
+	{
+		Argument.handleNull(waitStrategy, "waitStrategy");
+		if (capacity < 1 || capacity > MAX_CAPACITY) throw new IllegalArgumentException("capacity must be from 1 to " + MAX_CAPACITY + ": " + capacity);
+
+		this.capacity = (capacity == 1) ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.waitStrategy = waitStrategy;
+		this.buffer = new AtomicReferenceArray<>(this.capacity);
+	}
+
+	// -------------------------------------------- //
+	// FACTORY
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a queue for a single producer thread and a single consumer thread.
+	 * @param capacity
+	 * The minimum capacity.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new empty queue.
+	 * @throws IllegalArgumentException
+	 * If capacity is not from 1 to {@code MAX_CAPACITY}.
+	 */
+	@Pure
+	public static <E> RingQueue<E> spsc(int capacity) throws IllegalArgumentException
+	{
+		return spsc(capacity, WaitStrategy.backingOff());
+	}
+
+	/**
+	 * Creates a queue for a single producer thread and a single consumer thread.
+	 * @param capacity
+	 * The minimum capacity.
+	 * @param waitStrategy
+	 * How {@code put} and {@code take} wait.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new empty queue.
+	 * @throws ArgumentNullException
+	 * If waitStrategy is null.
+	 * @throws IllegalArgumentException
+	 * If capacity is not from 1 to {@code MAX_CAPACITY}.
+	 */
+	@Pure
+	public static <E> RingQueue<E> spsc(int capacity, WaitStrategy waitStrategy) throws ArgumentNullException, IllegalArgumentException
+	{
+		return new SpscQueue<>(capacity, waitStrategy);
+	}
+
+	/**
+	 * Creates a queue for many producer threads and a single consumer thread.
+	 * @param capacity
+	 * The minimum capacity.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new empty queue.
+	 * @throws IllegalArgumentException
+	 * If capacity is not from 1 to {@code MAX_CAPACITY}.
+	 */
+	@Pure
+	public static <E> RingQueue<E> mpsc(int capacity) throws IllegalArgumentException
+	{
+		return mpsc(capacity, WaitStrategy.backingOff());
+	}
+
+	/**
+	 * Creates a queue for many producer threads and a single consumer thread.
+	 * @param capacity
+	 * The minimum capacity.
+	 * @param waitStrategy
+	 * How {@code put} and {@code take} wait.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new empty queue.
+	 * @throws ArgumentNullException
+	 * If waitStrategy is null.
+	 * @throws IllegalArgumentException
+	 * If capacity is not from 1 to {@code MAX_CAPACITY}.
+	 */
+	@Pure
+	public static <E> RingQueue<E> mpsc(int capacity, WaitStrategy waitStrategy) throws ArgumentNullException, IllegalArgumentException
+	{
+		return new MpscQueue<>(capacity, waitStrategy);
+	}
+
+	/**
+	 * Creates a queue for many producer threads and many consumer threads.
+	 * @param capacity
+	 * The minimum capacity.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new empty queue.
+	 * @throws IllegalArgumentException
+	 * If capacity is not from 1 to {@code MAX_CAPACITY}.
+	 */
+	@Pure
+	public static <E> RingQueue<E> mpmc(int capacity) throws IllegalArgumentException
+	{
+		return mpmc(capacity, WaitStrategy.backingOff());
+	}
+
+	/**
+	 * Creates a queue for many producer threads and many consumer threads.
+	 * @param capacity
+	 * The minimum capacity.
+	 * @param waitStrategy
+	 * How {@code put} and {@code take} wait.
+	 * @param <E>
+	 * Type of the elements.
+	 * @return
+	 * A new empty queue.
+	 * @throws ArgumentNullException
+	 * If waitStrategy is null.
+	 * @throws IllegalArgumentException
+	 * If capacity is not from 1 to {@code MAX_CAPACITY}.
+	 */
+	@Pure
+	public static <E> RingQueue<E> mpmc(int capacity, WaitStrategy waitStrategy) throws ArgumentNullException, IllegalArgumentException
+	{
+		return new MpmcQueue<>(capacity, waitStrategy);
+	}
+
+	// -------------------------------------------- //
+	// BATCH
+	// -------------------------------------------- //
+
+	/**
+	 * Removes up to limit elements, and passes them to the consumer, in order.
+	 * This doesn't wait if the queue becomes empty.
+	 * @param consumer
+	 * Receives the elements.
+	 * @param limit
+	 * The maximum number of elements to remove.
+	 * @return
+	 * The number of elements removed.
+	 * @throws ArgumentNullException
+	 * If consumer is null.
+	 * @throws IllegalArgumentException
+	 * If limit is negative.
+	 */
+	public int drain(Consumer<? super E> consumer, int limit) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(consumer, "consumer");
+		if (limit < 0) throw new IllegalArgumentException("limit must not be negative: " + limit);
+
+		int ret = 0;
+		while (ret < limit)
+		{
+			E element = this.poll();
+			if (element == null) break;
+			consumer.accept(element);
+			ret++;
+		}
+		return ret;
+	}
+
+	/**
+	 * Removes all elements currently in the queue,
+	 * and passes them to the consumer, in order.
+	 * @param consumer
+	 * Receives the elements.
+	 * @return
+	 * The number of elements removed.
+	 * @throws ArgumentNullException
+	 * If consumer is null.
+	 */
+	public int drain(Consumer<? super E> consumer) throws ArgumentNullException
+	{
+		return this.drain(consumer, this.capacity);
+	}
+
+	/**
+	 * Adds up to limit elements from the supplier, while there is room.
+	 * The supplier is only asked for an element when there is room for it.
+	 * With several producers, the room can be taken between the check and the insertion,
+	 * then this waits for room using the wait strategy, rather than dropping the element.
+	 * @param supplier
+	 * Supplies the elements, which can't be null.
+	 * @param limit
+	 * The maximum number of elements to add.
+	 * @return
+	 * The number of elements added.
+	 * @throws ArgumentNullException
+	 * If supplier, or an element it supplies, is null.
+	 * @throws IllegalArgumentException
+	 * If limit is negative.
+	 */
+	public int fill(Supplier<? extends E> supplier, int limit) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(supplier, "supplier");
+		if (limit < 0) throw new IllegalArgumentException("limit must not be negative: " + limit);
+
+		int ret = 0;
+		while (ret < limit && this.size() < this.capacity)
+		{
+			E element = supplier.get();
+			Argument.handleNull(element, "element");
+
+			int idleCounter = 0;
+			while ( ! this.offer(element))
+			{
+				idleCounter = this.waitStrategy.idle(idleCounter);
+			}
+			ret++;
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// BLOCKING
+	// -------------------------------------------- //
+
+	/**
+	 * Adds the element, waiting for room if the queue is full.
+	 * @param element
+	 * The element to add.
+	 * @throws ArgumentNullException
+	 * If element is null.
+	 * @throws InterruptedException
+	 * If the thread is interrupted while waiting.
+	 */
+	public void put(E element) throws ArgumentNullException, InterruptedException
+	{
+		int idleCounter = 0;
+		while ( ! this.offer(element))
+		{
+			if (Thread.interrupted()) throw new InterruptedException();
+			idleCounter = this.waitStrategy.idle(idleCounter);
+		}
+	}
+
+	/**
+	 * Removes the head of the queue, waiting for an element if the queue is empty.
+	 * @return
+	 * The removed element.
+	 * @throws InterruptedException
+	 * If the thread is interrupted while waiting.
+	 */
+	public E take() throws InterruptedException
+	{
+		int idleCounter = 0;
+		E ret;
+		while ((ret = this.poll()) == null)
+		{
+			if (Thread.interrupted()) throw new InterruptedException();
+			idleCounter = this.waitStrategy.idle(idleCounter);
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// INSPECT
+	// -------------------------------------------- //
+
+	/**
+	 * Gets the capacity of this queue,
+	 * which is the passed capacity rounded up to a power of two.
+	 * @return
+	 * The maximum number of elements in the queue.
+	 */
+	public int getCapacity()
+	{
+		return this.capacity;
+	}
+
+	/**
+	 * Estimates the number of elements in the queue.
+	 * It is exact when no other threads use the queue.
+	 * @return
+	 * The number of elements.
+	 */
+	@Override
+	public int size()
+	{
+		// Read the consumer index on both sides, until it is stable.
+		long after = this.consumerIndex.get();
+		while (true)
+		{
+			long before = after;
+			long producer = this.producerIndex.get();
+			after = this.consumerIndex.get();
+			if (before == after) return (int) Math.max(0, Math.min(producer - after, this.capacity));
+		}
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return this.size() == 0;
+	}
+
+	/**
+	 * Copies the elements from the consumer to the producer end,
+	 * safely while other threads use the queue.
+	 * Slots which are being stored or removed meanwhile, may be missed.
+	 * @return
+	 * An iterator over the copied elements, in queue order. It can't remove elements.
+	 */
+	@Override
+	public Iterator<E> iterator()
+	{
+		long consumer = this.consumerIndex.get();
+		long end = Math.min(this.producerIndex.get(), consumer + this.capacity);
+
+		List<E> ret = new ArrayList<>((int) Math.max(0, end - consumer));
+		for (long index = consumer; index < end; index++)
+		{
+			E element = this.buffer.get(this.offset(index));
+			if (element != null) ret.add(element);
+		}
+		return Collections.unmodifiableList(ret).iterator();
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.getClass().getSimpleName() + "[size=" + this.size() + ", capacity=" + this.capacity + "]";
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	int offset(long index)
+	{
+		return (int) index & this.mask;
+	}
+
+	// Fields after the value keep other hot fields off its cache line.
+	@SuppressWarnings("unused")
+	private static final class PaddedAtomicLong extends AtomicLong
+	{
+		private static final long serialVersionUID = 1L;
+
+		long p01, p02, p03, p04, p05, p06, p07;
+		long p08, p09, p10, p11, p12, p13, p14, p15;
+	}
+
+	// -------------------------------------------- //
+	// SINGLE PRODUCER SINGLE CONSUMER
+	// -------------------------------------------- //
+
+	// Each side only checks whether its next slot is free or filled,
+	// so it never reads the other side's counter.
+	private static final class SpscQueue<E> extends RingQueue<E>
+	{
+		SpscQueue(int capacity, WaitStrategy waitStrategy)
+		{
+			super(capacity, waitStrategy);
+		}
+
+		@Override
+		public boolean offer(E element)
+		{
+			Argument.handleNull(element, "element");
+
+			long producer = this.producerIndex.get();
+			int offset = this.offset(producer);
+			if (this.buffer.get(offset) != null) return false;
+
+			this.buffer.lazySet(offset, element);
+			this.producerIndex.lazySet(producer + 1);
+			return true;
+		}
+
+		@Override
+		public E poll()
+		{
+			long consumer = this.consumerIndex.get();
+			int offset = this.offset(consumer);
+			E ret = this.buffer.get(offset);
+			if (ret == null) return null;
+
+			this.buffer.lazySet(offset, null);
+			this.consumerIndex.lazySet(consumer + 1);
+			return ret;
+		}
+
+		@Override
+		public E peek()
+		{
+			return this.buffer.get(this.offset(this.consumerIndex.get()));
+		}
+
+		@Override
+		public int fill(Supplier<? extends E> supplier, int limit)
+		{
+			Argument.handleNull(supplier, "supplier");
+			if (limit < 0) throw new IllegalArgumentException("limit must not be negative: " + limit);
+
+			// Being the only producer, room can't be taken by others.
+			long producer = this.producerIndex.get();
+			int ret = 0;
+			while (ret < limit && this.buffer.get(this.offset(producer)) == null)
+			{
+				E element = supplier.get();
+				Argument.handleNull(element, "element");
+				this.buffer.lazySet(this.offset(producer), element);
+				producer++;
+				this.producerIndex.lazySet(producer);
+				ret++;
+			}
+			return ret;
+		}
+	}
+
+	// -------------------------------------------- //
+	// MULTI PRODUCER SINGLE CONSUMER
+	// -------------------------------------------- //
+
+	// Producers claim an index with a compare and swap, then store the element.
+	// The consumer waits for a claimed element to be stored.
+	private static final class MpscQueue<E> extends RingQueue<E>
+	{
+		// Producers only read the consumer index, when they pass this.
+		private volatile long producerLimit;
+
+		MpscQueue(int capacity, WaitStrategy waitStrategy)
+		{
+			super(capacity, waitStrategy);
+			this.producerLimit = this.getCapacity();
+		}
+
+		@Override
+		public boolean offer(E element)
+		{
+			Argument.handleNull(element, "element");
+
+			long limit = this.producerLimit;
+			long producer;
+			do
+			{
+				producer = this.producerIndex.get();
+				if (producer >= limit)
+				{
+					limit = this.consumerIndex.get() + this.getCapacity();
+					if (producer >= limit) return false;
+					this.producerLimit = limit;
+				}
+			}
+			while ( ! this.producerIndex.compareAndSet(producer, producer + 1));
+
+			this.buffer.lazySet(this.offset(producer), element);
+			return true;
+		}
+
+		@Override
+		public E poll()
+		{
+			long consumer = this.consumerIndex.get();
+			int offset = this.offset(consumer);
+			E ret = this.awaitElement(consumer, offset);
+			if (ret == null) return null;
+
+			this.buffer.lazySet(offset, null);
+			this.consumerIndex.lazySet(consumer + 1);
+			return ret;
+		}
+
+		@Override
+		public E peek()
+		{
+			long consumer = this.consumerIndex.get();
+			return this.awaitElement(consumer, this.offset(consumer));
+		}
+
+		private E awaitElement(long consumer, int offset)
+		{
+			E ret = this.buffer.get(offset);
+			if (ret != null || consumer == this.producerIndex.get()) return ret;
+
+			// Claimed, but not stored yet. That is only a moment.
+			while ((ret = this.buffer.get(offset)) == null)
+			{
+				Thread.yield();
+			}
+			return ret;
+		}
+	}
+
+	// -------------------------------------------- //
+	// MULTI PRODUCER MULTI CONSUMER
+	// -------------------------------------------- //
+
+	// Every slot has a sequence number, telling which lap
+	// it is on, and whether it is free or filled.
+	private static final class MpmcQueue<E> extends RingQueue<E>
+	{
+		private final AtomicLongArray sequences;
+
+		MpmcQueue(int capacity, WaitStrategy waitStrategy)
+		{
+			super(capacity, waitStrategy);
+			this.sequences = new AtomicLongArray(this.getCapacity());
+			for (int i = 0; i < this.getCapacity(); i++)
+			{
+				this.sequences.set(i, i);
+			}
+		}
+
+		@Override
+		public boolean offer(E element)
+		{
+			Argument.handleNull(element, "element");
+
+			while (true)
+			{
+				long producer = this.producerIndex.get();
+				int offset = this.offset(producer);
+				long sequence = this.sequences.get(offset);
+
+				if (sequence < producer)
+				{
+					// The slot is filled from the last lap.
+					// Full, unless a consumer is removing it right now.
+					if (producer - this.getCapacity() >= this.consumerIndex.get()) return false;
+				}
+				else if (sequence == producer && this.producerIndex.compareAndSet(producer, producer + 1))
+				{
+					this.buffer.lazySet(offset, element);
+					this.sequences.lazySet(offset, producer + 1);
+					return true;
+				}
+			}
+		}
+
+		@Override
+		public E poll()
+		{
+			while (true)
+			{
+				long consumer = this.consumerIndex.get();
+				int offset = this.offset(consumer);
+				long sequence = this.sequences.get(offset);
+
+				if (sequence < consumer + 1)
+				{
+					// The slot is free.
+					// Empty, unless a producer is storing it right now.
+					if (consumer >= this.producerIndex.get()) return null;
+				}
+				else if (sequence == consumer + 1 && this.consumerIndex.compareAndSet(consumer, consumer + 1))
+				{
+					E ret = this.buffer.get(offset);
+					this.buffer.lazySet(offset, null);
+					this.sequences.lazySet(offset, consumer + this.getCapacity());
+					return ret;
+				}
+			}
+		}
+
+		@Override
+		public E peek()
+		{
+			while (true)
+			{
+				long consumer = this.consumerIndex.get();
+				int offset = this.offset(consumer);
+				long sequence = this.sequences.get(offset);
+
+				if (sequence < consumer + 1)
+				{
+					if (consumer >= this.producerIndex.get()) return null;
+				}
+				else if (sequence == consumer + 1)
+				{
+					E ret = this.buffer.get(offset);
+					if (ret != null && this.consumerIndex.get() == consumer) return ret;
+				}
+			}
+		}
+	}
+
+}
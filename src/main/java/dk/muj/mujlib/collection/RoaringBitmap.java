@@ -0,0 +1,1804 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.hash.HashUtil;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of integers, much smaller and faster than a {@code Set<Integer>}.
+ *
+ * The integers are split by their upper 16 bits into chunks,
+ * and each chunk is stored in the container best suited for it.
+ * Sparse chunks are a sorted array of the lower 16 bits,
+ * dense chunks are a bitmap of 65536 bits, and chunks
+ * containing long consecutive sequences can be stored as runs.
+ * Call {@code runOptimize} to convert chunks to runs, where it saves space.
+ *
+ * The integers are ordered as unsigned, so negative numbers come
+ * after all the positive ones, when iterating.
+ *
+ * The serialized form of {@code toBytes} is the portable Roaring format,
+ * so it can be read by Roaring implementations in other languages as well.
+ *
+ * This class is not thread safe.
+ */
+public final class RoaringBitmap implements Iterable<Integer>
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	// Array containers larger than this become bitmaps.
+	private static final int MAX_ARRAY_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1024;
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	private static final int SERIAL_COOKIE_NO_RUNCONTAINER = 12346;
+	private static final int SERIAL_COOKIE = 12347;
+	private static final int NO_OFFSET_THRESHOLD = 4;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	// Sorted upper 16 bits, and the container for each.
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int size = 0;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates a new empty bitmap.
+	 */
+	public RoaringBitmap()
+	{
+
+	}
+
+	/**
+	 * Creates a bitmap containing the passed values.
+	 * @param values
+	 * The values.
+	 * @return
+	 * A new bitmap containing the values.
+	 * @throws ArgumentNullException
+	 * If values is null.
+	 */
+	@Pure
+	public static RoaringBitmap of(int... values) throws ArgumentNullException
+	{
+		Argument.handleNull(values, "values");
+
+		RoaringBitmap ret = new RoaringBitmap();
+		for (int value : values)
+		{
+			ret.add(value);
+		}
+		return ret;
+	}
+
+	/**
+	 * Creates a copy of the passed bitmap.
+	 * Changes to either won't affect the other.
+	 * @param bitmap
+	 * The bitmap to copy.
+	 * @return
+	 * A new bitmap equal to the passed one.
+	 * @throws ArgumentNullException
+	 * If bitmap is null.
+	 */
+	@Pure
+	public static RoaringBitmap copyOf(RoaringBitmap bitmap) throws ArgumentNullException
+	{
+		Argument.handleNull(bitmap, "bitmap");
+
+		RoaringBitmap ret = new RoaringBitmap();
+		for (int i = 0; i < bitmap.size; i++)
+		{
+			ret.append(bitmap.keys[i], bitmap.containers[i].copy());
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// MODIFY
+	// -------------------------------------------- //
+
+	/**
+	 * Adds the value to this bitmap.
+	 * @param value
+	 * The value to add.
+	 */
+	public void add(int value)
+	{
+		char high = highBits(value);
+		int index = this.getIndex(high);
+		if (index >= 0)
+		{
+			this.containers[index] = this.containers[index].add(lowBits(value));
+		}
+		else
+		{
+			this.insert(-index - 1, high, new ArrayContainer().add(lowBits(value)));
+		}
+	}
+
+	/**
+	 * Adds a range of values to this bitmap.
+	 * The values are treated as unsigned,
+	 * so the range can cover the full 32 bits.
+	 * Full chunks are stored as a single run.
+	 * @param fromInclusive
+	 * The first value to add, from 0 to 2^32.
+	 * @param toExclusive
+	 * One more than the last value to add, from 0 to 2^32.
+	 * @throws IllegalArgumentException
+	 * If the range is outside of 0 to 2^32, or fromInclusive is larger than toExclusive.
+	 */
+	public void addRange(long fromInclusive, long toExclusive) throws IllegalArgumentException
+	{
+		if (fromInclusive < 0 || toExclusive > (1L << 32) || fromInclusive > toExclusive)
+		{
+			throw new IllegalArgumentException("Illegal range: [" + fromInclusive + ", " + toExclusive + ")");
+		}
+		if (fromInclusive == toExclusive) return;
+
+		int firstHigh = (int) (fromInclusive >>> 16);
+		int lastHigh = (int) ((toExclusive - 1) >>> 16);
+		for (int high = firstHigh; high <= lastHigh; high++)
+		{
+			int begin = (high == firstHigh) ? (int) (fromInclusive & 0xFFFF) : 0;
+			int end = (high == lastHigh) ? (int) ((toExclusive - 1) & 0xFFFF) + 1 : CHUNK_SIZE;
+
+			int index = this.getIndex((char) high);
+			if (index >= 0)
+			{
+				this.containers[index] = this.containers[index].addRange(begin, end);
+			}
+			else
+			{
+				this.insert(-index - 1, (char) high, RunContainer.ofRange(begin, end));
+			}
+		}
+	}
+
+	/**
+	 * Adds all values of another bitmap to this bitmap.
+	 * It merges container by container, reusing the containers of this bitmap
+	 * where the other has no values.
+	 * @param bitmap
+	 * The bitmap to add the values of. It is not changed.
+	 * @throws ArgumentNullException
+	 * If bitmap is null.
+	 */
+	public void addAll(RoaringBitmap bitmap) throws ArgumentNullException
+	{
+		Argument.handleNull(bitmap, "bitmap");
+
+		int capacity = Math.max(4, Math.min(CHUNK_SIZE, this.size + bitmap.size));
+		char[] keys = new char[capacity];
+		Container[] containers = new Container[capacity];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < this.size || j < bitmap.size)
+		{
+			if (j == bitmap.size || (i < this.size && this.keys[i] < bitmap.keys[j]))
+			{
+				keys[size] = this.keys[i];
+				containers[size++] = this.containers[i++];
+			}
+			else if (i == this.size || this.keys[i] > bitmap.keys[j])
+			{
+				keys[size] = bitmap.keys[j];
+				containers[size++] = bitmap.containers[j++].copy();
+			}
+			else
+			{
+				keys[size] = this.keys[i];
+				containers[size++] = or(this.containers[i++], bitmap.containers[j++]);
+			}
+		}
+
+		this.keys = keys;
+		this.containers = containers;
+		this.size = size;
+	}
+
+	/**
+	 * Removes the value from this bitmap.
+	 * @param value
+	 * The value to remove.
+	 */
+	public void remove(int value)
+	{
+		int index = this.getIndex(highBits(value));
+		if (index < 0) return;
+
+		Container container = this.containers[index].remove(lowBits(value));
+		if (container.getCardinality() == 0)
+		{
+			this.delete(index);
+		}
+		else
+		{
+			this.containers[index] = container;
+		}
+	}
+
+	/**
+	 * Removes all values from this bitmap.
+	 */
+	public void clear()
+	{
+		this.keys = new char[4];
+		this.containers = new Container[4];
+		this.size = 0;
+	}
+
+	/**
+	 * Converts chunks to runs where that uses less space,
+	 * and runs back to arrays or bitmaps where it doesn't.
+	 * @return
+	 * True if any chunk was converted.
+	 */
+	public boolean runOptimize()
+	{
+		boolean ret = false;
+		for (int i = 0; i < this.size; i++)
+		{
+			Container optimized = this.containers[i].runOptimize();
+			if (optimized != this.containers[i]) ret = true;
+			this.containers[i] = optimized;
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// INSPECT
+	// -------------------------------------------- //
+
+	/**
+	 * Checks whether the value is in this bitmap.
+	 * @param value
+	 * The value to look for.
+	 * @return
+	 * True if the value is present.
+	 */
+	public boolean contains(int value)
+	{
+		int index = this.getIndex(highBits(value));
+		return index >= 0 && this.containers[index].contains(lowBits(value));
+	}
+
+	/**
+	 * Counts the values in this bitmap,
+	 * which are less than or equal to the passed value, as unsigned.
+	 * @param value
+	 * The upper bound.
+	 * @return
+	 * The number of values less than or equal to value.
+	 */
+	public long rank(int value)
+	{
+		char high = highBits(value);
+		long ret = 0;
+		for (int i = 0; i < this.size; i++)
+		{
+			if (this.keys[i] < high)
+			{
+				ret += this.containers[i].getCardinality();
+			}
+			else
+			{
+				if (this.keys[i] == high) ret += this.containers[i].rank(lowBits(value));
+				break;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Counts the values in this bitmap.
+	 * @return
+	 * The number of values, which can be up to 2^32.
+	 */
+	public long getCardinality()
+	{
+		long ret = 0;
+		for (int i = 0; i < this.size; i++)
+		{
+			ret += this.containers[i].getCardinality();
+		}
+		return ret;
+	}
+
+	public boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns the values of this bitmap in an array,
+	 * sorted as unsigned integers.
+	 * @return
+	 * A new array with all the values.
+	 * @throws IllegalStateException
+	 * If there are too many values to fit in an array.
+	 */
+	public int[] toArray() throws IllegalStateException
+	{
+		long cardinality = this.getCardinality();
+		if (cardinality > Integer.MAX_VALUE - 8) throw new IllegalStateException("Too many values for an array: " + cardinality);
+
+		int[] ret = new int[(int) cardinality];
+		int index = 0;
+		for (PrimitiveIterator.OfInt it = this.iterator(); it.hasNext(); )
+		{
+			ret[index++] = it.nextInt();
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// ITERATION
+	// -------------------------------------------- //
+
+	/**
+	 * Iterates the values in unsigned order, without boxing them
+	 * if {@code nextInt} is used.
+	 * @return
+	 * An iterator of the values.
+	 */
+	@Override
+	public PrimitiveIterator.OfInt iterator()
+	{
+		return new BitmapIterator();
+	}
+
+	/**
+	 * Performs the action for every value, in unsigned order.
+	 * @param action
+	 * The action to perform.
+	 * @throws ArgumentNullException
+	 * If action is null.
+	 */
+	public void forEachInt(IntConsumer action) throws ArgumentNullException
+	{
+		Argument.handleNull(action, "action");
+		this.iterator().forEachRemaining(action);
+	}
+
+	// -------------------------------------------- //
+	// SET OPERATIONS
+	// -------------------------------------------- //
+
+	/**
+	 * Computes the intersection of two bitmaps.
+	 * Neither of them is changed.
+	 * @param a
+	 * The first bitmap.
+	 * @param b
+	 * The second bitmap.
+	 * @return
+	 * A new bitmap with the values in both a and b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+
+		RoaringBitmap ret = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size)
+		{
+			if (a.keys[i] < b.keys[j])
+			{
+				i++;
+			}
+			else if (a.keys[i] > b.keys[j])
+			{
+				j++;
+			}
+			else
+			{
+				ret.appendNonEmpty(a.keys[i], and(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Computes the union of two bitmaps.
+	 * Neither of them is changed.
+	 * @param a
+	 * The first bitmap.
+	 * @param b
+	 * The second bitmap.
+	 * @return
+	 * A new bitmap with the values in either a or b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+
+		RoaringBitmap ret = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size && j < b.size)
+		{
+			if (a.keys[i] < b.keys[j])
+			{
+				ret.append(a.keys[i], a.containers[i].copy());
+				i++;
+			}
+			else if (a.keys[i] > b.keys[j])
+			{
+				ret.append(b.keys[j], b.containers[j].copy());
+				j++;
+			}
+			else
+			{
+				ret.append(a.keys[i], or(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		for (; i < a.size; i++)
+		{
+			ret.append(a.keys[i], a.containers[i].copy());
+		}
+		for (; j < b.size; j++)
+		{
+			ret.append(b.keys[j], b.containers[j].copy());
+		}
+		return ret;
+	}
+
+	/**
+	 * Computes the difference of two bitmaps.
+	 * Neither of them is changed.
+	 * @param a
+	 * The bitmap to remove values from.
+	 * @param b
+	 * The values to remove.
+	 * @return
+	 * A new bitmap with the values in a, but not in b.
+	 * @throws ArgumentNullException
+	 * If a or b is null.
+	 */
+	@Pure
+	public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) throws ArgumentNullException
+	{
+		Argument.handleNull(a, "a");
+		Argument.handleNull(b, "b");
+
+		RoaringBitmap ret = new RoaringBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size)
+		{
+			if (j >= b.size || a.keys[i] < b.keys[j])
+			{
+				ret.append(a.keys[i], a.containers[i].copy());
+				i++;
+			}
+			else if (a.keys[i] > b.keys[j])
+			{
+				j++;
+			}
+			else
+			{
+				ret.appendNonEmpty(a.keys[i], andNot(a.containers[i], b.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return ret;
+	}
+
+	private static Container and(Container a, Container b)
+	{
+		a = a.materialize();
+		b = b.materialize();
+		if (a instanceof ArrayContainer)
+		{
+			if (b instanceof ArrayContainer) return ((ArrayContainer) a).and((ArrayContainer) b);
+			return ((ArrayContainer) a).filter((BitmapContainer) b, true);
+		}
+		if (b instanceof ArrayContainer) return ((ArrayContainer) b).filter((BitmapContainer) a, true);
+		return ((BitmapContainer) a).combine((BitmapContainer) b, BitmapContainer.AND);
+	}
+
+	private static Container or(Container a, Container b)
+	{
+		a = a.materialize();
+		b = b.materialize();
+		if (a instanceof ArrayContainer)
+		{
+			if (b instanceof ArrayContainer) return ((ArrayContainer) a).or((ArrayContainer) b);
+			return ((BitmapContainer) b).copy().addAll((ArrayContainer) a);
+		}
+		if (b instanceof ArrayContainer) return ((BitmapContainer) a).copy().addAll((ArrayContainer) b);
+		return ((BitmapContainer) a).combine((BitmapContainer) b, BitmapContainer.OR);
+	}
+
+	private static Container andNot(Container a, Container b)
+	{
+		a = a.materialize();
+		b = b.materialize();
+		if (a instanceof ArrayContainer)
+		{
+			if (b instanceof ArrayContainer) return ((ArrayContainer) a).andNot((ArrayContainer) b);
+			return ((ArrayContainer) a).filter((BitmapContainer) b, false);
+		}
+		if (b instanceof ArrayContainer) return ((BitmapContainer) a).copy().removeAll((ArrayContainer) b);
+		return ((BitmapContainer) a).combine((BitmapContainer) b, BitmapContainer.AND_NOT);
+	}
+
+	// -------------------------------------------- //
+	// SERIALIZATION
+	// -------------------------------------------- //
+
+	/**
+	 * Calculates the length of the array returned by {@code toBytes}.
+	 * @return
+	 * The serialized size in bytes.
+	 */
+	public int getSerializedSize()
+	{
+		boolean hasRun = this.hasRunContainer();
+		int ret = this.getHeaderSize(hasRun);
+		for (int i = 0; i < this.size; i++)
+		{
+			ret += this.containers[i].getSerializedSize();
+		}
+		return ret;
+	}
+
+	/**
+	 * Serializes this bitmap in the portable Roaring format.
+	 * @return
+	 * The serialized bitmap.
+	 */
+	public byte[] toBytes()
+	{
+		boolean hasRun = this.hasRunContainer();
+		ByteBuffer buffer = ByteBuffer.allocate(this.getSerializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+
+		if (hasRun)
+		{
+			buffer.putInt(SERIAL_COOKIE | ((this.size - 1) << 16));
+			byte[] runMarkers = new byte[(this.size + 7) / 8];
+			for (int i = 0; i < this.size; i++)
+			{
+				if (this.containers[i] instanceof RunContainer) runMarkers[i / 8] |= (byte) (1 << (i % 8));
+			}
+			buffer.put(runMarkers);
+		}
+		else
+		{
+			buffer.putInt(SERIAL_COOKIE_NO_RUNCONTAINER);
+			buffer.putInt(this.size);
+		}
+
+		for (int i = 0; i < this.size; i++)
+		{
+			buffer.putChar(this.keys[i]);
+			buffer.putChar((char) (this.containers[i].getCardinality() - 1));
+		}
+
+		if ( ! hasRun || this.size >= NO_OFFSET_THRESHOLD)
+		{
+			int offset = this.getHeaderSize(hasRun);
+			for (int i = 0; i < this.size; i++)
+			{
+				buffer.putInt(offset);
+				offset += this.containers[i].getSerializedSize();
+			}
+		}
+
+		for (int i = 0; i < this.size; i++)
+		{
+			this.containers[i].serialize(buffer);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Reads a bitmap serialized in the portable Roaring format.
+	 * @param bytes
+	 * The serialized bitmap.
+	 * @return
+	 * A new bitmap.
+	 * @throws ArgumentNullException
+	 * If bytes is null.
+	 * @throws IllegalArgumentException
+	 * If bytes is not a valid serialized bitmap.
+	 */
+	@Pure
+	public static RoaringBitmap fromBytes(byte[] bytes) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(bytes, "bytes");
+		ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+		try
+		{
+			int cookie = buffer.getInt();
+			int size;
+			byte[] runMarkers = null;
+			if ((cookie & 0xFFFF) == SERIAL_COOKIE)
+			{
+				size = (cookie >>> 16) + 1;
+				runMarkers = new byte[(size + 7) / 8];
+				buffer.get(runMarkers);
+			}
+			else if (cookie == SERIAL_COOKIE_NO_RUNCONTAINER)
+			{
+				size = buffer.getInt();
+				if (size < 0 || size > CHUNK_SIZE) throw new IllegalArgumentException("Illegal number of containers: " + size);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Unknown cookie: " + cookie);
+			}
+
+			char[] keys = new char[size];
+			int[] cardinalities = new int[size];
+			for (int i = 0; i < size; i++)
+			{
+				keys[i] = buffer.getChar();
+				cardinalities[i] = buffer.getChar() + 1;
+			}
+
+			// The offsets are only needed for random access, skip them.
+			if (runMarkers == null || size >= NO_OFFSET_THRESHOLD) buffer.position(buffer.position() + 4 * size);
+
+			RoaringBitmap ret = new RoaringBitmap();
+			for (int i = 0; i < size; i++)
+			{
+				if (i > 0 && keys[i] <= keys[i - 1]) throw new IllegalArgumentException("Keys are not sorted.");
+
+				Container container;
+				if (runMarkers != null && (runMarkers[i / 8] & (1 << (i % 8))) != 0)
+				{
+					container = RunContainer.deserialize(buffer);
+				}
+				else if (cardinalities[i] > MAX_ARRAY_SIZE)
+				{
+					container = BitmapContainer.deserialize(buffer, cardinalities[i]);
+				}
+				else
+				{
+					container = ArrayContainer.deserialize(buffer, cardinalities[i]);
+				}
+				ret.append(keys[i], container);
+			}
+			return ret;
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException ex)
+		{
+			throw new IllegalArgumentException("The serialized bitmap is truncated.", ex);
+		}
+	}
+
+	private boolean hasRunContainer()
+	{
+		for (int i = 0; i < this.size; i++)
+		{
+			if (this.containers[i] instanceof RunContainer) return true;
+		}
+		return false;
+	}
+
+	private int getHeaderSize(boolean hasRun)
+	{
+		if (hasRun)
+		{
+			int ret = 4 + (this.size + 7) / 8 + 4 * this.size;
+			if (this.size >= NO_OFFSET_THRESHOLD) ret += 4 * this.size;
+			return ret;
+		}
+		return 4 + 4 + 8 * this.size;
+	}
+
+	// -------------------------------------------- //
+	// EQUALS AND HASHCODE
+	// -------------------------------------------- //
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o) return true;
+		if ( ! (o instanceof RoaringBitmap)) return false;
+		RoaringBitmap that = (RoaringBitmap) o;
+
+		if (this.size != that.size) return false;
+		for (int i = 0; i < this.size; i++)
+		{
+			if (this.keys[i] != that.keys[i]) return false;
+			if ( ! this.containers[i].contentEquals(that.containers[i])) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int ret = HashUtil.HASHCODE_START;
+		for (PrimitiveIterator.OfInt it = this.iterator(); it.hasNext(); )
+		{
+			ret = HashUtil.resultAddField(ret, it.nextInt());
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringJoiner ret = new StringJoiner(", ", "[", "]");
+		for (PrimitiveIterator.OfInt it = this.iterator(); it.hasNext(); )
+		{
+			ret.add(Integer.toUnsignedString(it.nextInt()));
+		}
+		return ret.toString();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static char highBits(int value)
+	{
+		return (char) (value >>> 16);
+	}
+
+	private static char lowBits(int value)
+	{
+		return (char) value;
+	}
+
+	private int getIndex(char key)
+	{
+		// Most additions are to the last chunk.
+		if (this.size > 0 && this.keys[this.size - 1] == key) return this.size - 1;
+		return Arrays.binarySearch(this.keys, 0, this.size, key);
+	}
+
+	private void insert(int index, char key, Container container)
+	{
+		this.ensureCapacity();
+		System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+		System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+		this.keys[index] = key;
+		this.containers[index] = container;
+		this.size++;
+	}
+
+	private void delete(int index)
+	{
+		System.arraycopy(this.keys, index + 1, this.keys, index, this.size - index - 1);
+		System.arraycopy(this.containers, index + 1, this.containers, index, this.size - index - 1);
+		this.size--;
+		this.containers[this.size] = null;
+	}
+
+	private void append(char key, Container container)
+	{
+		this.insert(this.size, key, container);
+	}
+
+	private void appendNonEmpty(char key, Container container)
+	{
+		if (container.getCardinality() > 0) this.append(key, container);
+	}
+
+	private void ensureCapacity()
+	{
+		if (this.size < this.keys.length) return;
+		int capacity = Math.min(CHUNK_SIZE, this.keys.length * 2);
+		this.keys = Arrays.copyOf(this.keys, capacity);
+		this.containers = Arrays.copyOf(this.containers, capacity);
+	}
+
+	// -------------------------------------------- //
+	// ITERATOR
+	// -------------------------------------------- //
+
+	private final class BitmapIterator implements PrimitiveIterator.OfInt
+	{
+		private int index = 0;
+		private int high = 0;
+		private PrimitiveIterator.OfInt current = null;
+
+		@Override
+		public boolean hasNext()
+		{
+			while ((this.current == null || ! this.current.hasNext()) && this.index < RoaringBitmap.this.size)
+			{
+				this.high = RoaringBitmap.this.keys[this.index] << 16;
+				this.current = RoaringBitmap.this.containers[this.index].iterator();
+				this.index++;
+			}
+			return this.current != null && this.current.hasNext();
+		}
+
+		@Override
+		public int nextInt()
+		{
+			if ( ! this.hasNext()) throw new NoSuchElementException("No next element in iterator.");
+			return this.high | this.current.nextInt();
+		}
+	}
+
+	// -------------------------------------------- //
+	// CONTAINER
+	// -------------------------------------------- //
+
+	// Holds the lower 16 bits of the values in one chunk.
+	// Modifying methods return the container to use afterwards,
+	// which can be a different type.
+	private static abstract class Container
+	{
+		abstract int getCardinality();
+		abstract boolean contains(char value);
+		abstract Container add(char value);
+		abstract Container addRange(int begin, int end);
+		abstract Container remove(char value);
+		abstract int rank(char value);
+		abstract PrimitiveIterator.OfInt iterator();
+		abstract Container copy();
+		abstract Container runOptimize();
+		abstract int getSerializedSize();
+		abstract void serialize(ByteBuffer buffer);
+
+		// Runs are turned into arrays or bitmaps before set operations.
+		Container materialize()
+		{
+			return this;
+		}
+
+		boolean contentEquals(Container that)
+		{
+			if (this.getCardinality() != that.getCardinality()) return false;
+			PrimitiveIterator.OfInt a = this.iterator();
+			PrimitiveIterator.OfInt b = that.iterator();
+			while (a.hasNext())
+			{
+				if (a.nextInt() != b.nextInt()) return false;
+			}
+			return true;
+		}
+	}
+
+	private static final class ArrayContainer extends Container
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private char[] content;
+		private int cardinality;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		ArrayContainer()
+		{
+			this(new char[4], 0);
+		}
+
+		ArrayContainer(char[] content, int cardinality)
+		{
+			this.content = content;
+			this.cardinality = cardinality;
+		}
+
+		static ArrayContainer deserialize(ByteBuffer buffer, int cardinality)
+		{
+			char[] content = new char[cardinality];
+			buffer.asCharBuffer().get(content);
+			buffer.position(buffer.position() + 2 * cardinality);
+			for (int i = 1; i < cardinality; i++)
+			{
+				if (content[i] <= content[i - 1]) throw new IllegalArgumentException("Array container values are not sorted and distinct.");
+			}
+			return new ArrayContainer(content, cardinality);
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE
+		// -------------------------------------------- //
+
+		@Override
+		int getCardinality()
+		{
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(char value)
+		{
+			return Arrays.binarySearch(this.content, 0, this.cardinality, value) >= 0;
+		}
+
+		@Override
+		Container add(char value)
+		{
+			int index = Arrays.binarySearch(this.content, 0, this.cardinality, value);
+			if (index >= 0) return this;
+			if (this.cardinality >= MAX_ARRAY_SIZE) return this.toBitmap().add(value);
+
+			index = -index - 1;
+			if (this.cardinality == this.content.length)
+			{
+				this.content = Arrays.copyOf(this.content, Math.min(MAX_ARRAY_SIZE, Math.max(4, this.cardinality * 2)));
+			}
+			System.arraycopy(this.content, index, this.content, index + 1, this.cardinality - index);
+			this.content[index] = value;
+			this.cardinality++;
+			return this;
+		}
+
+		@Override
+		Container addRange(int begin, int end)
+		{
+			int low = this.lowerBound(begin);
+			int high = this.lowerBound(end);
+			int newCardinality = low + (end - begin) + (this.cardinality - high);
+			if (newCardinality > MAX_ARRAY_SIZE) return this.toBitmap().addRange(begin, end);
+
+			char[] newContent = new char[newCardinality];
+			System.arraycopy(this.content, 0, newContent, 0, low);
+			for (int i = 0; i < end - begin; i++)
+			{
+				newContent[low + i] = (char) (begin + i);
+			}
+			System.arraycopy(this.content, high, newContent, low + end - begin, this.cardinality - high);
+
+			this.content = newContent;
+			this.cardinality = newCardinality;
+			return this;
+		}
+
+		@Override
+		Container remove(char value)
+		{
+			int index = Arrays.binarySearch(this.content, 0, this.cardinality, value);
+			if (index < 0) return this;
+
+			System.arraycopy(this.content, index + 1, this.content, index, this.cardinality - index - 1);
+			this.cardinality--;
+			return this;
+		}
+
+		@Override
+		int rank(char value)
+		{
+			int index = Arrays.binarySearch(this.content, 0, this.cardinality, value);
+			return (index >= 0) ? index + 1 : -index - 1;
+		}
+
+		@Override
+		PrimitiveIterator.OfInt iterator()
+		{
+			return new PrimitiveIterator.OfInt()
+			{
+				private int index = 0;
+
+				@Override
+				public boolean hasNext()
+				{
+					return this.index < ArrayContainer.this.cardinality;
+				}
+
+				@Override
+				public int nextInt()
+				{
+					if ( ! this.hasNext()) throw new NoSuchElementException("No next element in iterator.");
+					return ArrayContainer.this.content[this.index++];
+				}
+			};
+		}
+
+		@Override
+		Container copy()
+		{
+			return new ArrayContainer(Arrays.copyOf(this.content, this.cardinality), this.cardinality);
+		}
+
+		@Override
+		Container runOptimize()
+		{
+			int runs = 0;
+			for (int i = 0; i < this.cardinality; i++)
+			{
+				if (i == 0 || this.content[i] != this.content[i - 1] + 1) runs++;
+			}
+			if (RunContainer.getSerializedSize(runs) >= this.getSerializedSize()) return this;
+			return RunContainer.of(this.iterator(), runs);
+		}
+
+		@Override
+		int getSerializedSize()
+		{
+			return 2 * this.cardinality;
+		}
+
+		@Override
+		void serialize(ByteBuffer buffer)
+		{
+			for (int i = 0; i < this.cardinality; i++)
+			{
+				buffer.putChar(this.content[i]);
+			}
+		}
+
+		// -------------------------------------------- //
+		// SET OPERATIONS
+		// -------------------------------------------- //
+
+		ArrayContainer and(ArrayContainer that)
+		{
+			char[] ret = new char[Math.min(this.cardinality, that.cardinality)];
+			int size = 0;
+			int i = 0;
+			int j = 0;
+			while (i < this.cardinality && j < that.cardinality)
+			{
+				if (this.content[i] < that.content[j])
+				{
+					i++;
+				}
+				else if (this.content[i] > that.content[j])
+				{
+					j++;
+				}
+				else
+				{
+					ret[size++] = this.content[i];
+					i++;
+					j++;
+				}
+			}
+			return new ArrayContainer(ret, size);
+		}
+
+		Container or(ArrayContainer that)
+		{
+			if (this.cardinality + that.cardinality > MAX_ARRAY_SIZE)
+			{
+				BitmapContainer ret = this.toBitmap().addAll(that);
+				return (ret.cardinality > MAX_ARRAY_SIZE) ? ret : ret.toArray();
+			}
+
+			char[] ret = new char[this.cardinality + that.cardinality];
+			int size = 0;
+			int i = 0;
+			int j = 0;
+			while (i < this.cardinality && j < that.cardinality)
+			{
+				if (this.content[i] < that.content[j])
+				{
+					ret[size++] = this.content[i++];
+				}
+				else if (this.content[i] > that.content[j])
+				{
+					ret[size++] = that.content[j++];
+				}
+				else
+				{
+					ret[size++] = this.content[i];
+					i++;
+					j++;
+				}
+			}
+			while (i < this.cardinality) ret[size++] = this.content[i++];
+			while (j < that.cardinality) ret[size++] = that.content[j++];
+			return new ArrayContainer(ret, size);
+		}
+
+		ArrayContainer andNot(ArrayContainer that)
+		{
+			char[] ret = new char[this.cardinality];
+			int size = 0;
+			int j = 0;
+			for (int i = 0; i < this.cardinality; i++)
+			{
+				while (j < that.cardinality && that.content[j] < this.content[i]) j++;
+				if (j < that.cardinality && that.content[j] == this.content[i]) continue;
+				ret[size++] = this.content[i];
+			}
+			return new ArrayContainer(ret, size);
+		}
+
+		// Keeps the values which are, or are not, in the bitmap.
+		ArrayContainer filter(BitmapContainer bitmap, boolean keep)
+		{
+			char[] ret = new char[this.cardinality];
+			int size = 0;
+			for (int i = 0; i < this.cardinality; i++)
+			{
+				if (bitmap.contains(this.content[i]) == keep) ret[size++] = this.content[i];
+			}
+			return new ArrayContainer(ret, size);
+		}
+
+		// -------------------------------------------- //
+		// INTERNAL
+		// -------------------------------------------- //
+
+		BitmapContainer toBitmap()
+		{
+			BitmapContainer ret = new BitmapContainer();
+			return ret.addAll(this);
+		}
+
+		// The index of the first value not less than the passed one.
+		private int lowerBound(int value)
+		{
+			int low = 0;
+			int high = this.cardinality;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (this.content[middle] < value)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	private static final class BitmapContainer extends Container
+	{
+		// -------------------------------------------- //
+		// CONSTANTS
+		// -------------------------------------------- //
+
+		static final int AND = 0;
+		static final int OR = 1;
+		static final int AND_NOT = 2;
+
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		private final long[] words;
+		private int cardinality;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		BitmapContainer()
+		{
+			this(new long[BITMAP_WORDS], 0);
+		}
+
+		BitmapContainer(long[] words, int cardinality)
+		{
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		static BitmapContainer deserialize(ByteBuffer buffer, int cardinality)
+		{
+			long[] words = new long[BITMAP_WORDS];
+			buffer.asLongBuffer().get(words);
+			buffer.position(buffer.position() + 8 * BITMAP_WORDS);
+			int count = 0;
+			for (long word : words)
+			{
+				count += Long.bitCount(word);
+			}
+			if (count != cardinality) throw new IllegalArgumentException("Bitmap container has " + count + " values, but its header says " + cardinality + ".");
+			return new BitmapContainer(words, cardinality);
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE
+		// -------------------------------------------- //
+
+		@Override
+		int getCardinality()
+		{
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(char value)
+		{
+			return (this.words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		Container add(char value)
+		{
+			long before = this.words[value >>> 6];
+			long after = before | (1L << value);
+			this.words[value >>> 6] = after;
+			if (before != after) this.cardinality++;
+			return this;
+		}
+
+		@Override
+		Container addRange(int begin, int end)
+		{
+			int first = begin >>> 6;
+			int last = (end - 1) >>> 6;
+			for (int i = first; i <= last; i++)
+			{
+				long mask = ~0L;
+				if (i == first) mask &= ~0L << begin;
+				if (i == last) mask &= ~0L >>> (63 - ((end - 1) & 63));
+				this.words[i] |= mask;
+			}
+			this.cardinality = this.countBits();
+			return this;
+		}
+
+		@Override
+		Container remove(char value)
+		{
+			long before = this.words[value >>> 6];
+			long after = before & ~(1L << value);
+			if (before == after) return this;
+
+			this.words[value >>> 6] = after;
+			this.cardinality--;
+			return (this.cardinality > MAX_ARRAY_SIZE) ? this : this.toArray();
+		}
+
+		@Override
+		int rank(char value)
+		{
+			int ret = 0;
+			int index = value >>> 6;
+			for (int i = 0; i < index; i++)
+			{
+				ret += Long.bitCount(this.words[i]);
+			}
+			return ret + Long.bitCount(this.words[index] & (~0L >>> (63 - (value & 63))));
+		}
+
+		@Override
+		PrimitiveIterator.OfInt iterator()
+		{
+			return new PrimitiveIterator.OfInt()
+			{
+				private int index = 0;
+				private long word = BitmapContainer.this.words[0];
+
+				@Override
+				public boolean hasNext()
+				{
+					while (this.word == 0 && this.index < BITMAP_WORDS - 1)
+					{
+						this.word = BitmapContainer.this.words[++this.index];
+					}
+					return this.word != 0;
+				}
+
+				@Override
+				public int nextInt()
+				{
+					if ( ! this.hasNext()) throw new NoSuchElementException("No next element in iterator.");
+					int ret = (this.index << 6) + Long.numberOfTrailingZeros(this.word);
+					this.word &= this.word - 1;
+					return ret;
+				}
+			};
+		}
+
+		@Override
+		BitmapContainer copy()
+		{
+			return new BitmapContainer(this.words.clone(), this.cardinality);
+		}
+
+		@Override
+		Container runOptimize()
+		{
+			// A run starts at every set bit, whose previous bit is clear.
+			int runs = 0;
+			long carry = 0;
+			for (long word : this.words)
+			{
+				runs += Long.bitCount(word & ~((word << 1) | carry));
+				carry = word >>> 63;
+			}
+			if (RunContainer.getSerializedSize(runs) >= this.getSerializedSize()) return this;
+			return RunContainer.of(this.iterator(), runs);
+		}
+
+		@Override
+		int getSerializedSize()
+		{
+			return 8 * BITMAP_WORDS;
+		}
+
+		@Override
+		void serialize(ByteBuffer buffer)
+		{
+			for (long word : this.words)
+			{
+				buffer.putLong(word);
+			}
+		}
+
+		// -------------------------------------------- //
+		// SET OPERATIONS
+		// -------------------------------------------- //
+
+		Container combine(BitmapContainer that, int operation)
+		{
+			long[] ret = new long[BITMAP_WORDS];
+			for (int i = 0; i < BITMAP_WORDS; i++)
+			{
+				switch (operation)
+				{
+					case AND: ret[i] = this.words[i] & that.words[i]; break;
+					case OR: ret[i] = this.words[i] | that.words[i]; break;
+					case AND_NOT: ret[i] = this.words[i] & ~that.words[i]; break;
+					default: throw new AssertionError(operation);
+				}
+			}
+			BitmapContainer container = new BitmapContainer(ret, 0);
+			container.cardinality = container.countBits();
+			return (container.cardinality > MAX_ARRAY_SIZE) ? container : container.toArray();
+		}
+
+		BitmapContainer addAll(ArrayContainer array)
+		{
+			for (int i = 0; i < array.cardinality; i++)
+			{
+				this.add(array.content[i]);
+			}
+			return this;
+		}
+
+		Container removeAll(ArrayContainer array)
+		{
+			for (int i = 0; i < array.cardinality; i++)
+			{
+				char value = array.content[i];
+				if (this.contains(value))
+				{
+					this.words[value >>> 6] &= ~(1L << value);
+					this.cardinality--;
+				}
+			}
+			return (this.cardinality > MAX_ARRAY_SIZE) ? this : this.toArray();
+		}
+
+		// -------------------------------------------- //
+		// INTERNAL
+		// -------------------------------------------- //
+
+		ArrayContainer toArray()
+		{
+			char[] content = new char[this.cardinality];
+			int size = 0;
+			for (PrimitiveIterator.OfInt it = this.iterator(); it.hasNext(); )
+			{
+				content[size++] = (char) it.nextInt();
+			}
+			return new ArrayContainer(content, size);
+		}
+
+		private int countBits()
+		{
+			int ret = 0;
+			for (long word : this.words)
+			{
+				ret += Long.bitCount(word);
+			}
+			return ret;
+		}
+	}
+
+	private static final class RunContainer extends Container
+	{
+		// -------------------------------------------- //
+		// FIELDS
+		// -------------------------------------------- //
+
+		// Pairs of the start of a run, and its length minus one.
+		private char[] runs;
+		private int numberOfRuns;
+		private int cardinality;
+
+		// -------------------------------------------- //
+		// CONSTRUCT
+		// -------------------------------------------- //
+
+		RunContainer(char[] runs, int numberOfRuns)
+		{
+			this.runs = runs;
+			this.numberOfRuns = numberOfRuns;
+			this.cardinality = this.countValues();
+		}
+
+		static RunContainer ofRange(int begin, int end)
+		{
+			return new RunContainer(new char[]{(char) begin, (char) (end - begin - 1)}, 1);
+		}
+
+		// Builds the runs from sorted values.
+		static RunContainer of(PrimitiveIterator.OfInt values, int numberOfRuns)
+		{
+			char[] runs = new char[2 * numberOfRuns];
+			int run = -1;
+			int previous = -2;
+			while (values.hasNext())
+			{
+				int value = values.nextInt();
+				if (value != previous + 1)
+				{
+					run++;
+					runs[2 * run] = (char) value;
+				}
+				else
+				{
+					runs[2 * run + 1]++;
+				}
+				previous = value;
+			}
+			return new RunContainer(runs, numberOfRuns);
+		}
+
+		static RunContainer deserialize(ByteBuffer buffer)
+		{
+			int numberOfRuns = buffer.getChar();
+			if (numberOfRuns == 0) throw new IllegalArgumentException("Run container has no runs.");
+			char[] runs = new char[2 * numberOfRuns];
+			buffer.asCharBuffer().get(runs);
+			buffer.position(buffer.position() + 4 * numberOfRuns);
+
+			// Each run is a start and a length minus one, sorted and not overlapping.
+			int previousEnd = -1;
+			for (int run = 0; run < numberOfRuns; run++)
+			{
+				int start = runs[2 * run];
+				int end = start + runs[2 * run + 1];
+				if (start <= previousEnd) throw new IllegalArgumentException("Runs are not sorted.");
+				if (end > Character.MAX_VALUE) throw new IllegalArgumentException("Run overflows the container: " + start + " + " + (int) runs[2 * run + 1]);
+				previousEnd = end;
+			}
+			return new RunContainer(runs, numberOfRuns);
+		}
+
+		static int getSerializedSize(int numberOfRuns)
+		{
+			return 2 + 4 * numberOfRuns;
+		}
+
+		// -------------------------------------------- //
+		// OVERRIDE
+		// -------------------------------------------- //
+
+		@Override
+		int getCardinality()
+		{
+			return this.cardinality;
+		}
+
+		@Override
+		boolean contains(char value)
+		{
+			int index = this.findRun(value);
+			return index >= 0 && value <= this.getLast(index);
+		}
+
+		@Override
+		Container add(char value)
+		{
+			int index = this.findRun(value);
+			if (index >= 0 && value <= this.getLast(index)) return this;
+			this.cardinality++;
+
+			boolean joinsPrevious = index >= 0 && value == this.getLast(index) + 1;
+			boolean joinsNext = index + 1 < this.numberOfRuns && value + 1 == this.getStart(index + 1);
+
+			if (joinsPrevious && joinsNext)
+			{
+				this.runs[2 * index + 1] = (char) (this.getLast(index + 1) - this.getStart(index));
+				this.deleteRun(index + 1);
+			}
+			else if (joinsPrevious)
+			{
+				this.runs[2 * index + 1]++;
+			}
+			else if (joinsNext)
+			{
+				this.runs[2 * (index + 1)] = value;
+				this.runs[2 * (index + 1) + 1]++;
+			}
+			else
+			{
+				this.insertRun(index + 1, value, 0);
+			}
+			return this;
+		}
+
+		@Override
+		Container addRange(int begin, int end)
+		{
+			char[] newRuns = new char[2 * (this.numberOfRuns + 1)];
+			int size = 0;
+			int start = begin;
+			int last = end - 1;
+			boolean inserted = false;
+
+			for (int i = 0; i < this.numberOfRuns; i++)
+			{
+				int runStart = this.getStart(i);
+				int runLast = this.getLast(i);
+				if (runLast + 1 < start)
+				{
+					// Entirely before the range.
+					newRuns[2 * size] = (char) runStart;
+					newRuns[2 * size + 1] = (char) (runLast - runStart);
+					size++;
+				}
+				else if (runStart > last + 1)
+				{
+					// Entirely after the range.
+					if ( ! inserted)
+					{
+						newRuns[2 * size] = (char) start;
+						newRuns[2 * size + 1] = (char) (last - start);
+						size++;
+						inserted = true;
+					}
+					newRuns[2 * size] = (char) runStart;
+					newRuns[2 * size + 1] = (char) (runLast - runStart);
+					size++;
+				}
+				else
+				{
+					// Overlapping or adjacent, merge it into the range.
+					start = Math.min(start, runStart);
+					last = Math.max(last, runLast);
+				}
+			}
+			if ( ! inserted)
+			{
+				newRuns[2 * size] = (char) start;
+				newRuns[2 * size + 1] = (char) (last - start);
+				size++;
+			}
+
+			this.runs = newRuns;
+			this.numberOfRuns = size;
+			this.cardinality = this.countValues();
+			return this;
+		}
+
+		@Override
+		Container remove(char value)
+		{
+			if ( ! this.contains(value)) return this;
+			return this.materialize().remove(value);
+		}
+
+		@Override
+		int rank(char value)
+		{
+			int index = this.findRun(value);
+			int ret = 0;
+			for (int i = 0; i < index; i++)
+			{
+				ret += this.getLength(i);
+			}
+			if (index >= 0) ret += Math.min(value, this.getLast(index)) - this.getStart(index) + 1;
+			return ret;
+		}
+
+		@Override
+		PrimitiveIterator.OfInt iterator()
+		{
+			return new PrimitiveIterator.OfInt()
+			{
+				private int run = 0;
+				private int next = (RunContainer.this.numberOfRuns > 0) ? RunContainer.this.getStart(0) : 0;
+
+				@Override
+				public boolean hasNext()
+				{
+					return this.run < RunContainer.this.numberOfRuns;
+				}
+
+				@Override
+				public int nextInt()
+				{
+					if ( ! this.hasNext()) throw new NoSuchElementException("No next element in iterator.");
+					int ret = this.next;
+					if (ret == RunContainer.this.getLast(this.run))
+					{
+						this.run++;
+						if (this.run < RunContainer.this.numberOfRuns) this.next = RunContainer.this.getStart(this.run);
+					}
+					else
+					{
+						this.next++;
+					}
+					return ret;
+				}
+			};
+		}
+
+		@Override
+		Container copy()
+		{
+			return new RunContainer(Arrays.copyOf(this.runs, 2 * this.numberOfRuns), this.numberOfRuns);
+		}
+
+		@Override
+		Container runOptimize()
+		{
+			int materializedSize = (this.cardinality > MAX_ARRAY_SIZE) ? 8 * BITMAP_WORDS : 2 * this.cardinality;
+			return (this.getSerializedSize() > materializedSize) ? this.materialize() : this;
+		}
+
+		@Override
+		int getSerializedSize()
+		{
+			return getSerializedSize(this.numberOfRuns);
+		}
+
+		@Override
+		void serialize(ByteBuffer buffer)
+		{
+			buffer.putChar((char) this.numberOfRuns);
+			for (int i = 0; i < 2 * this.numberOfRuns; i++)
+			{
+				buffer.putChar(this.runs[i]);
+			}
+		}
+
+		@Override
+		Container materialize()
+		{
+			if (this.cardinality > MAX_ARRAY_SIZE)
+			{
+				BitmapContainer ret = new BitmapContainer();
+				for (int i = 0; i < this.numberOfRuns; i++)
+				{
+					ret.addRange(this.getStart(i), this.getLast(i) + 1);
+				}
+				return ret;
+			}
+
+			char[] content = new char[this.cardinality];
+			int size = 0;
+			for (PrimitiveIterator.OfInt it = this.iterator(); it.hasNext(); )
+			{
+				content[size++] = (char) it.nextInt();
+			}
+			return new ArrayContainer(content, size);
+		}
+
+		// -------------------------------------------- //
+		// INTERNAL
+		// -------------------------------------------- //
+
+		private int getStart(int index)
+		{
+			return this.runs[2 * index];
+		}
+
+		private int getLast(int index)
+		{
+			return this.runs[2 * index] + this.runs[2 * index + 1];
+		}
+
+		private int getLength(int index)
+		{
+			return this.runs[2 * index + 1] + 1;
+		}
+
+		// The index of the last run starting at or before value, or -1.
+		private int findRun(int value)
+		{
+			int low = 0;
+			int high = this.numberOfRuns - 1;
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+				if (this.getStart(middle) <= value)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle - 1;
+				}
+			}
+			return low - 1;
+		}
+
+		private void insertRun(int index, int start, int lengthMinusOne)
+		{
+			if (2 * (this.numberOfRuns + 1) > this.runs.length)
+			{
+				this.runs = Arrays.copyOf(this.runs, Math.max(4, 2 * this.runs.length));
+			}
+			System.arraycopy(this.runs, 2 * index, this.runs, 2 * index + 2, 2 * (this.numberOfRuns - index));
+			this.runs[2 * index] = (char) start;
+			this.runs[2 * index + 1] = (char) lengthMinusOne;
+			this.numberOfRuns++;
+		}
+
+		private void deleteRun(int index)
+		{
+			System.arraycopy(this.runs, 2 * index + 2, this.runs, 2 * index, 2 * (this.numberOfRuns - index - 1));
+			this.numberOfRuns--;
+		}
+
+		private int countValues()
+		{
+			int ret = 0;
+			for (int i = 0; i < this.numberOfRuns; i++)
+			{
+				ret += this.getLength(i);
+			}
+			return ret;
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides how a thread waits, when a {@code RingQueue} is full or empty.
+ * Spinning has the lowest latency but burns a core, parking is the
+ * other way around, and yielding is in between.
+ */
+@FunctionalInterface
+public interface WaitStrategy
+{
+	// -------------------------------------------- //
+	// ABSTRACT
+	// -------------------------------------------- //
+
+	/**
+	 * Waits a little, before the operation is retried.
+	 * @param idleCounter
+	 * The number of times this wait has idled in a row, starting at 0.
+	 * @return
+	 * The counter to pass in the next call, usually idleCounter + 1.
+	 */
+	int idle(int idleCounter);
+
+	// -------------------------------------------- //
+	// FACTORY
+	// -------------------------------------------- //
+
+	/**
+	 * Busy spins, without giving up the core.
+	 * @return
+	 * A spinning wait strategy.
+	 */
+	@Pure
+	static WaitStrategy spinning()
+	{
+		return idleCounter -> idleCounter + 1;
+	}
+
+	/**
+	 * Yields the core to other threads, on every wait.
+	 * @return
+	 * A yielding wait strategy.
+	 */
+	@Pure
+	static WaitStrategy yielding()
+	{
+		return idleCounter ->
+		{
+			Thread.yield();
+			return idleCounter + 1;
+		};
+	}
+
+	/**
+	 * Parks the thread for a fixed time, on every wait.
+	 * @param nanos
+	 * The time to park for, in nanoseconds.
+	 * @return
+	 * A parking wait strategy.
+	 * @throws IllegalArgumentException
+	 * If nanos is not positive.
+	 */
+	@Pure
+	static WaitStrategy parking(long nanos) throws IllegalArgumentException
+	{
+		if (nanos <= 0) throw new IllegalArgumentException("nanos must be positive: " + nanos);
+		return idleCounter ->
+		{
+			LockSupport.parkNanos(nanos);
+			return idleCounter + 1;
+		};
+	}
+
+	/**
+	 * Spins at first, then yields, and parks when waiting for long.
+	 * This is a good default, when latency and cpu usage are both important.
+	 * @return
+	 * A backing off wait strategy.
+	 */
+	@Pure
+	static WaitStrategy backingOff()
+	{
+		return idleCounter ->
+		{
+			if (idleCounter < 100)
+			{
+				// Spin
+			}
+			else if (idleCounter < 200)
+			{
+				Thread.yield();
+			}
+			else
+			{
+				LockSupport.parkNanos(1000L);
+			}
+			return idleCounter + 1;
+		};
+	}
+
+}
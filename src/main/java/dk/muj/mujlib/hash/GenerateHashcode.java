@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This annotation is used to have a hashcode and equals helper
+ * generated for a class at compile time, by the {@link HashcodeProcessor}.
+ *
+ * For a class {@code Point} a class {@code Point_Hashcode} is generated,
+ * in the same package, with the static methods
+ * {@code hashCode(Point)} and {@code equals(Point, Object)}.
+ * They give the same results as {@code HashUtil.reflectionHash}
+ * and {@code HashUtil.reflectionEquals}, but without reflection.
+ * So the class can simply implement its methods as
+ * <pre>
+ * public int hashCode() { return Point_Hashcode.hashCode(this); }
+ * public boolean equals(Object obj) { return Point_Hashcode.equals(this, obj); }
+ * </pre>
+ *
+ * The generated class reads the fields directly,
+ * so they must not be private, unless marked with {@code ExcludeFromHashcode}.
+ * Nested classes must be static.
+ *
+ * @see HashUtil
+ * @see ExcludeFromHashcode
+ *
+ * @author Magnus Ulf Jørgensen
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateHashcode
+{
+}
@@ -24,11 +24,13 @@
 
 package dk.muj.mujlib.hash;
 
-import dk.muj.mujlib.ExceptionHandler;
-import dk.muj.mujlib.MujLib;
-import dk.muj.mujlib.util.ReflectionUtil;
-
-import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * All parameters to method in this class are nullable, unless otherwise stated.
@@ -97,6 +99,9 @@ public final class HashUtil
 	 */
 	public static final int HASHCODE_MULTIPLIER = 31;
 
+	// Below this many elements deepHashParallel isn't parallel.
+	private static final int DEEP_HASH_PARALLEL_THRESHOLD = 1 << 12;
+
 	// -------------------------------------------- //
 	// RESULT ADD FIELD
 	// -------------------------------------------- //
@@ -238,41 +243,206 @@ public final class HashUtil
 		return result;
 	}
 
+	// -------------------------------------------- //
+	// 64 BIT HASH
+	// -------------------------------------------- //
+	// Unlike hashCode these are well mixed, every input bit affects every output bit.
+	// That makes them fit for probabilistic structures such as HyperLogLog.
+
+	private static final long MURMUR_MULTIPLIER = 0xc6a4a7935bd1e995L;
+	private static final int MURMUR_SHIFT = 47;
+
+	/**
+	 * Calculates a strong 64 bit hash of a long,
+	 * using the MurmurHash3 finaliser. It is a bijection,
+	 * so different longs never collide.
+	 * @param f
+	 * The value to hash.
+	 * @return
+	 * A 64 bit hash of the value.
+	 */
+	public static long hash64(long f)
+	{
+		f ^= f >>> 33;
+		f *= 0xff51afd7ed558ccdL;
+		f ^= f >>> 33;
+		f *= 0xc4ceb9fe1a85ec53L;
+		f ^= f >>> 33;
+		return f;
+	}
+
+	/**
+	 * Calculates a strong 64 bit hash of an int.
+	 * It is the same as for the int as a long.
+	 * @param f
+	 * The value to hash.
+	 * @return
+	 * A 64 bit hash of the value.
+	 */
+	public static long hash64(int f)
+	{
+		return hash64((long) f);
+	}
+
+	/**
+	 * Calculates a strong 64 bit hash of a byte array,
+	 * using MurmurHash64A.
+	 * @param arr
+	 * The bytes to hash.
+	 * @return
+	 * A 64 bit hash of the bytes, or {@code HASHCODE_NULL} if null.
+	 */
+	public static long hash64(byte[] arr)
+	{
+		if (arr == null) return HASHCODE_NULL;
+
+		long result = arr.length * MURMUR_MULTIPLIER;
+		int blocks = arr.length & ~7;
+		for (int i = 0; i < blocks; i += 8)
+		{
+			long k = (arr[i] & 0xFFL)
+				| (arr[i + 1] & 0xFFL) << 8
+				| (arr[i + 2] & 0xFFL) << 16
+				| (arr[i + 3] & 0xFFL) << 24
+				| (arr[i + 4] & 0xFFL) << 32
+				| (arr[i + 5] & 0xFFL) << 40
+				| (arr[i + 6] & 0xFFL) << 48
+				| (arr[i + 7] & 0xFFL) << 56;
+			result = murmurBlock(result, k);
+		}
+
+		if (blocks < arr.length)
+		{
+			long k = 0;
+			for (int i = arr.length - 1; i >= blocks; i--)
+			{
+				k = (k << 8) | (arr[i] & 0xFFL);
+			}
+			result ^= k;
+			result *= MURMUR_MULTIPLIER;
+		}
+		return murmurFinish(result);
+	}
+
+	/**
+	 * Calculates a strong 64 bit hash of the chars of a sequence,
+	 * using MurmurHash64A on four chars at a time.
+	 * It doesn't depend on the encoding, but neither is it
+	 * the same as the hash of the sequence as bytes.
+	 * @param str
+	 * The chars to hash.
+	 * @return
+	 * A 64 bit hash of the chars, or {@code HASHCODE_NULL} if null.
+	 */
+	public static long hash64(CharSequence str)
+	{
+		if (str == null) return HASHCODE_NULL;
+
+		int length = str.length();
+		long result = (2L * length) * MURMUR_MULTIPLIER;
+		int blocks = length & ~3;
+		for (int i = 0; i < blocks; i += 4)
+		{
+			long k = str.charAt(i)
+				| (long) str.charAt(i + 1) << 16
+				| (long) str.charAt(i + 2) << 32
+				| (long) str.charAt(i + 3) << 48;
+			result = murmurBlock(result, k);
+		}
+
+		if (blocks < length)
+		{
+			long k = 0;
+			for (int i = length - 1; i >= blocks; i--)
+			{
+				k = (k << 16) | str.charAt(i);
+			}
+			result ^= k;
+			result *= MURMUR_MULTIPLIER;
+		}
+		return murmurFinish(result);
+	}
+
+	private static long murmurBlock(long result, long k)
+	{
+		k *= MURMUR_MULTIPLIER;
+		k ^= k >>> MURMUR_SHIFT;
+		k *= MURMUR_MULTIPLIER;
+		result ^= k;
+		return result * MURMUR_MULTIPLIER;
+	}
+
+	private static long murmurFinish(long result)
+	{
+		result ^= result >>> MURMUR_SHIFT;
+		result *= MURMUR_MULTIPLIER;
+		result ^= result >>> MURMUR_SHIFT;
+		return result;
+	}
+
 	// -------------------------------------------- //
 	// DEEP HASH
 	// -------------------------------------------- //
 
-	// TODO: What to do with this?
-	/*
+	/**
+	 * Calculates the hashcode of an object,
+	 * where arrays are hashed by their content, at any depth.
+	 * Primitive arrays use the {@code hash} overloads,
+	 * arrays of objects add the deep hash of each element with {@code resultAddField},
+	 * and other objects use their own hashCode.
+	 *
+	 * Unlike {@code Arrays.deepHashCode} it is not recursive,
+	 * so any depth of nesting is fine.
+	 * An array containing itself, directly or deeper down,
+	 * is detected, and that reference counts as {@code HASHCODE_NULL}.
+	 *
+	 * @param obj
+	 * The object to calculate hashcode for.
+	 * @return
+	 * The deep hashcode of the object.
+	 */
 	public static int deepHash(Object obj)
 	{
-		Arrays.deepHashCode()
-		if (obj == null) return HASHCODE_NULL;
+		if ( ! (obj instanceof Object[])) return deepHashElement(obj);
 
-		if (obj instanceof Object[]) return deepHash((Object[]) obj);
-		if (obj instanceof boolean[]) return hash((boolean[]) obj);
-		if (obj instanceof byte[]) return hash((byte[]) obj);
-		if (obj instanceof char[]) return hash((char[]) obj);
-		if (obj instanceof short[]) return hash((short[]) obj);
-		if (obj instanceof int[]) return hash((int[]) obj);
-		if (obj instanceof long[]) return hash((long[]) obj);
-		if (obj instanceof float[]) return hash((float[]) obj);
-		if (obj instanceof double[]) return hash((double[]) obj);
-		return hash(obj);
+		Object[] arr = (Object[]) obj;
+		return deepHash(arr, 0, arr.length, HASHCODE_START);
 	}
 
-	public static int deepHash(Object[] obj)
+	/**
+	 * The same as {@code deepHash},
+	 * but the elements of a wide array are hashed in parallel.
+	 * It is worth it for huge arrays, or arrays of big nested arrays.
+	 *
+	 * @param obj
+	 * The object to calculate hashcode for.
+	 * @return
+	 * The deep hashcode of the object, the same as {@code deepHash}.
+	 */
+	public static int deepHashParallel(Object obj)
 	{
-		if (obj == null) return HASHCODE_NULL;
-		int result = HASHCODE_START;
+		if ( ! (obj instanceof Object[])) return deepHashElement(obj);
 
-		for (Object element : obj)
+		Object[] arr = (Object[]) obj;
+		if (arr.length < DEEP_HASH_PARALLEL_THRESHOLD) return deepHash(arr, 0, arr.length, HASHCODE_START);
+
+		// Each chunk is hashed as if starting from zero, then they are joined.
+		// Shifting a chunk's result past the following chunk,
+		// is the same as adding each of its fields would have been.
+		int chunk = Math.max(DEEP_HASH_PARALLEL_THRESHOLD / 4, arr.length / (ForkJoinPool.getCommonPoolParallelism() * 4));
+		int chunks = (arr.length + chunk - 1) / chunk;
+		int[] partials = IntStream.range(0, chunks).parallel()
+			.map(i -> deepHash(arr, i * chunk, Math.min(arr.length, (i + 1) * chunk), 0))
+			.toArray();
+
+		int result = HASHCODE_START;
+		for (int i = 0; i < chunks; i++)
 		{
-			result = resultAddField(result, deepHash(element));
+			int length = Math.min(arr.length, (i + 1) * chunk) - i * chunk;
+			result = result * multiplierPow(length) + partials[i];
 		}
-
 		return result;
-	}*/
+	}
 
 	// -------------------------------------------- //
 	// EASY HASH
@@ -318,36 +488,205 @@ public final class HashUtil
 	 * all objects not used in the equals method, must be marked
 	 * with {@code ExcludeFromHashcode} in order for the
 	 * equals and hashcode contracts to be followed.
+	 *
+	 * The fields of a class are found the first time,
+	 * and compiled into a method handle, which is cached.
+	 * So later calls are close to a hand written hashCode,
+	 * and allocate nothing.
 	 * 
 	 * @param obj
 	 * The object to calculate hashcode for.
 	 * @return
 	 * Reflectively generated hashcode for object.
+	 * It is the same as adding every field with {@code resultAddField},
+	 * in the order of {@code getDeclaredFields}, to {@code HASHCODE_START}.
+	 * Synthetic fields, which are added by the compiler or tools, are skipped.
+	 * @throws IllegalArgumentException
+	 * If a field can't be read, as in classes of modules not open to MujLib.
 	 */
 	public static int reflectionHash(Object obj)
 	{
 		if (obj == null) return HASHCODE_NULL;
+		return ReflectionPlan.of(obj.getClass()).hash(obj);
+	}
 
-		int result = HASHCODE_START;
+	// -------------------------------------------- //
+	// REFLECTIVE EQUALS, COMPARE & TO STRING
+	// -------------------------------------------- //
 
-		for (Field field : obj.getClass().getDeclaredFields())
-		{
-			// Is it excluded?
-			if (ReflectionUtil.hasAnnotation(field, ExcludeFromHashcode.class)) continue;
+	/**
+	 * Checks if two objects are equal reflectively.
+	 * They are equal if they are of the same class,
+	 * and all their instance fields are equal.
+	 *
+	 * Fields with the annotation {@code ExcludeFromHashcode} are ignored,
+	 * so this method matches {@code reflectionHash}.
+	 * Fields are compared as by {@code Mujtil.equals}.
+	 * So arrays are compared by identity, and floats and doubles by their bits.
+	 *
+	 * It is as fast as a hand written equals.
+	 * Primitive fields are compared before other fields,
+	 * string fields are first compared by their cached hashcode,
+	 * and the comparison stops at the first difference.
+	 *
+	 * @param one
+	 * The first object.
+	 * @param two
+	 * The second object.
+	 * @return
+	 * True if the objects are the same, both null,
+	 * or of the same class with equal fields.
+	 * @throws IllegalArgumentException
+	 * If a field can't be read, as in classes of modules not open to MujLib.
+	 */
+	public static boolean reflectionEquals(Object one, Object two)
+	{
+		if (one == two) return true;
+		if (one == null || two == null) return false;
+		if (one.getClass() != two.getClass()) return false;
+		return ReflectionPlan.of(one.getClass()).equals(one, two);
+	}
+
+	/**
+	 * Compares two objects reflectively.
+	 * They are compared by their instance fields,
+	 * in the order of {@code getDeclaredFields},
+	 * and the first field which is different decides.
+	 *
+	 * Fields with the annotation {@code ExcludeFromHashcode} are ignored.
+	 * Primitive fields are compared as by their wrapper's compare method,
+	 * other fields must be comparable, and null comes first.
+	 *
+	 * @param one
+	 * The first object.
+	 * @param two
+	 * The second object.
+	 * @return
+	 * A negative number, zero or a positive number
+	 * if the first object is less than, equal to or greater than the second.
+	 * @throws ClassCastException
+	 * If the objects are of different classes,
+	 * or a compared field is not comparable.
+	 * @throws IllegalArgumentException
+	 * If a field can't be read, as in classes of modules not open to MujLib.
+	 */
+	public static <T> int reflectionCompare(T one, T two)
+	{
+		if (one == two) return 0;
+		if (one == null) return -1;
+		if (two == null) return 1;
+		if (one.getClass() != two.getClass()) throw new ClassCastException(two.getClass().getName() + " can't be compared to " + one.getClass().getName());
+		return ReflectionPlan.of(one.getClass()).compare(one, two);
+	}
+
+	/**
+	 * Describes an object reflectively,
+	 * by its simple class name and instance fields,
+	 * such as {@code Point{x=1, y=2, values=[1, 2]}}.
+	 *
+	 * Fields with the annotation {@code ExcludeFromHashcode} are ignored.
+	 * Arrays are described by their content.
+	 *
+	 * @param obj
+	 * The object to describe.
+	 * @return
+	 * The description, or "null" if null.
+	 * @throws IllegalArgumentException
+	 * If a field can't be read, as in classes of modules not open to MujLib.
+	 */
+	public static String reflectionToString(Object obj)
+	{
+		if (obj == null) return "null";
+		return ReflectionPlan.of(obj.getClass()).toString(obj);
+	}
 
-			// Must be accessible.
-			// TODO: Should this be done here?
-			field.setAccessible(true);
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
 
-			// Fetch object.
-			ExceptionHandler<AssertionError> action = MujLib.isDebugEnabled() ? ExceptionHandler.PRINT : ExceptionHandler.SILENT;
-			Object f = ReflectionUtil.getFieldValue(field, obj, action);
+	// A partly hashed array, on the stack of deepHash.
+	private static final class DeepHashFrame
+	{
+		private final Object[] array;
+		private final int end;
+		private int index;
+		private int result;
 
-			// Add to result
-			result = resultAddField(result, f);
+		private DeepHashFrame(Object[] array, int from, int to, int start)
+		{
+			this.array = array;
+			this.index = from;
+			this.end = to;
+			this.result = start;
 		}
+	}
 
-		return result;
+	// Hashes the range of the array, adding to the start value.
+	// The arrays currently being hashed are kept in an identity set to find cycles.
+	private static int deepHash(Object[] arr, int from, int to, int start)
+	{
+		Deque<DeepHashFrame> stack = new ArrayDeque<>();
+		Set<Object> path = Collections.newSetFromMap(new IdentityHashMap<>());
+		stack.push(new DeepHashFrame(arr, from, to, start));
+		path.add(arr);
+
+		while (true)
+		{
+			DeepHashFrame frame = stack.peek();
+			if (frame.index == frame.end)
+			{
+				stack.pop();
+				path.remove(frame.array);
+				if (stack.isEmpty()) return frame.result;
+
+				DeepHashFrame parent = stack.peek();
+				parent.result = resultAddField(parent.result, frame.result);
+				continue;
+			}
+
+			Object element = frame.array[frame.index++];
+			if ( ! (element instanceof Object[]))
+			{
+				frame.result = resultAddField(frame.result, deepHashElement(element));
+			}
+			else if (path.add(element))
+			{
+				Object[] child = (Object[]) element;
+				stack.push(new DeepHashFrame(child, 0, child.length, HASHCODE_START));
+			}
+			else
+			{
+				frame.result = resultAddField(frame.result, HASHCODE_NULL);
+			}
+		}
+	}
+
+	// The hash of anything but an Object[].
+	private static int deepHashElement(Object obj)
+	{
+		if (obj == null) return HASHCODE_NULL;
+		if (obj instanceof boolean[]) return hash((boolean[]) obj);
+		if (obj instanceof byte[]) return hash((byte[]) obj);
+		if (obj instanceof char[]) return hash((char[]) obj);
+		if (obj instanceof short[]) return hash((short[]) obj);
+		if (obj instanceof int[]) return hash((int[]) obj);
+		if (obj instanceof long[]) return hash((long[]) obj);
+		if (obj instanceof float[]) return hash((float[]) obj);
+		if (obj instanceof double[]) return hash((double[]) obj);
+		return hash(obj);
+	}
+
+	// HASHCODE_MULTIPLIER to the power, overflowing like the hashcode does.
+	private static int multiplierPow(int exponent)
+	{
+		int ret = 1;
+		int base = HASHCODE_MULTIPLIER;
+		for (; exponent != 0; exponent >>>= 1)
+		{
+			if ((exponent & 1) != 0) ret *= base;
+			base *= base;
+		}
+		return ret;
 	}
 
 }
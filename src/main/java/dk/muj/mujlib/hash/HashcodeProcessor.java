@@ -0,0 +1,279 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the hashcode and equals helpers
+ * for classes annotated with {@link GenerateHashcode}.
+ *
+ * The generated hashCode adds every field declared in the class,
+ * in the order they are declared, with {@code HashUtil.resultAddField},
+ * just like {@code HashUtil.reflectionHash}.
+ * Static fields are included, and fields marked with {@code ExcludeFromHashcode} are not.
+ * The generated equals compares the instance fields as {@code HashUtil.reflectionEquals}.
+ *
+ * This processor is registered as a service,
+ * so it runs whenever this library is on the compile classpath.
+ */
+public final class HashcodeProcessor extends AbstractProcessor
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	public static final String SUFFIX = "_Hashcode";
+
+	private static final String HASH_UTIL = "dk.muj.mujlib.hash.HashUtil";
+	private static final String MUJTIL = "dk.muj.mujlib.util.Mujtil";
+
+	// -------------------------------------------- //
+	// OVERRIDE
+	// -------------------------------------------- //
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes()
+	{
+		return Collections.singleton(GenerateHashcode.class.getCanonicalName());
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+	{
+		for (Element element : roundEnv.getElementsAnnotatedWith(GenerateHashcode.class))
+		{
+			if ( ! this.isValid(element)) continue;
+
+			TypeElement type = (TypeElement) element;
+			List<VariableElement> fields = this.getFields(type);
+			if (fields == null) continue;
+
+			this.write(type, fields);
+		}
+		return true;
+	}
+
+	// -------------------------------------------- //
+	// VALIDATE
+	// -------------------------------------------- //
+
+	private boolean isValid(Element element)
+	{
+		if (element.getKind() != ElementKind.CLASS)
+		{
+			this.error(element, "@GenerateHashcode can only be used on classes.");
+			return false;
+		}
+
+		TypeElement type = (TypeElement) element;
+		for (TypeElement outer = type; outer.getNestingKind() != NestingKind.TOP_LEVEL; outer = (TypeElement) outer.getEnclosingElement())
+		{
+			// Inner classes have a hidden field for the outer instance, which we can't see.
+			if (outer.getNestingKind() != NestingKind.MEMBER || ! outer.getModifiers().contains(Modifier.STATIC))
+			{
+				this.error(element, "@GenerateHashcode can only be used on top level or static nested classes.");
+				return false;
+			}
+			if (outer.getModifiers().contains(Modifier.PRIVATE))
+			{
+				this.error(element, "@GenerateHashcode can't be used on private classes.");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The fields in the order they are declared, or null if one of them is private.
+	private List<VariableElement> getFields(TypeElement type)
+	{
+		List<VariableElement> ret = new ArrayList<>();
+		boolean valid = true;
+		for (Element member : type.getEnclosedElements())
+		{
+			if (member.getKind() != ElementKind.FIELD) continue;
+			if (member.getAnnotation(ExcludeFromHashcode.class) != null) continue;
+
+			if (member.getModifiers().contains(Modifier.PRIVATE))
+			{
+				this.error(member, "Private fields can't be read by the generated hashcode, make it package private or mark it with @ExcludeFromHashcode.");
+				valid = false;
+			}
+			ret.add((VariableElement) member);
+		}
+		return valid ? ret : null;
+	}
+
+	// -------------------------------------------- //
+	// WRITE
+	// -------------------------------------------- //
+
+	private void write(TypeElement type, List<VariableElement> fields)
+	{
+		PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? null : pkg.getQualifiedName().toString();
+		String typeName = this.getTypeName(type, packageName);
+		String name = typeName.replace('.', '_') + SUFFIX;
+		String generic = type.getTypeParameters().isEmpty() ? typeName : typeName + "<" + wildcards(type.getTypeParameters().size()) + ">";
+
+		try (Writer writer = this.processingEnv.getFiler().createSourceFile(packageName == null ? name : packageName + "." + name, type).openWriter();
+			 PrintWriter out = new PrintWriter(writer))
+		{
+			if (packageName != null)
+			{
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * Hashcode and equals of {@link " + typeName + "}.");
+			out.println(" * Generated by " + HashcodeProcessor.class.getName() + ", do not edit.");
+			out.println(" */");
+			out.println("final class " + name);
+			out.println("{");
+			out.println("\tprivate " + name + "() { throw new AssertionError(); }");
+			out.println();
+
+			this.writeHashCode(out, typeName, generic, fields);
+			out.println();
+			this.writeEquals(out, generic, fields);
+
+			out.println("}");
+		}
+		catch (IOException ex)
+		{
+			this.error(type, "Could not generate " + name + ": " + ex.getMessage());
+		}
+	}
+
+	private void writeHashCode(PrintWriter out, String typeName, String generic, List<VariableElement> fields)
+	{
+		out.println("\tstatic int hashCode(" + generic + " obj)");
+		out.println("\t{");
+		out.println("\t\tif (obj == null) return " + HASH_UTIL + ".HASHCODE_NULL;");
+		out.println("\t\tint result = " + HASH_UTIL + ".HASHCODE_START;");
+		for (VariableElement field : fields)
+		{
+			String owner = field.getModifiers().contains(Modifier.STATIC) ? typeName : "obj";
+			out.println("\t\tresult = " + HASH_UTIL + ".resultAddField(result, " + owner + "." + field.getSimpleName() + ");");
+		}
+		out.println("\t\treturn result;");
+		out.println("\t}");
+	}
+
+	// Same order as HashUtil.reflectionEquals, primitives, string hashcodes and lastly objects.
+	private void writeEquals(PrintWriter out, String generic, List<VariableElement> fields)
+	{
+		List<String> primitives = new ArrayList<>();
+		List<String> strings = new ArrayList<>();
+		List<String> objects = new ArrayList<>();
+		TypeMirror string = this.processingEnv.getElementUtils().getTypeElement(String.class.getName()).asType();
+		for (VariableElement field : fields)
+		{
+			if (field.getModifiers().contains(Modifier.STATIC)) continue;
+
+			String name = field.getSimpleName().toString();
+			String equals = MUJTIL + ".equals(one." + name + ", two." + name + ")";
+			TypeMirror fieldType = field.asType();
+			if (fieldType.getKind().isPrimitive())
+			{
+				primitives.add(equals);
+				continue;
+			}
+			if (this.processingEnv.getTypeUtils().isSameType(fieldType, string))
+			{
+				strings.add(HASH_UTIL + ".hash(one." + name + ") == " + HASH_UTIL + ".hash(two." + name + ")");
+			}
+			objects.add(equals);
+		}
+
+		List<String> checks = new ArrayList<>(primitives);
+		checks.addAll(strings);
+		checks.addAll(objects);
+
+		out.println("\tstatic boolean equals(" + generic + " one, Object obj)");
+		out.println("\t{");
+		out.println("\t\tif (one == obj) return true;");
+		out.println("\t\tif (one == null || obj == null) return false;");
+		out.println("\t\tif (one.getClass() != obj.getClass()) return false;");
+		if (checks.isEmpty())
+		{
+			out.println("\t\treturn true;");
+		}
+		else
+		{
+			out.println("\t\t" + generic + " two = (" + generic + ") obj;");
+			out.println("\t\treturn " + String.join("\n\t\t\t&& ", checks) + ";");
+		}
+		out.println("\t}");
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	// Name relative to the package, such as Outer.Inner
+	private String getTypeName(TypeElement type, String packageName)
+	{
+		String name = type.getQualifiedName().toString();
+		if (packageName == null) return name;
+		return name.substring(packageName.length() + 1);
+	}
+
+	private static String wildcards(int count)
+	{
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
+	private void error(Element element, String message)
+	{
+		this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
@@ -0,0 +1,562 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog++ sketch, which estimates the number of distinct values added,
+ * in a few kilobytes no matter how many there are.
+ *
+ * Values are hashed with the 64 bit hashes of {@code HashUtil}.
+ * The first bits of the hash pick a register,
+ * which keeps the longest run of leading zeros seen in the rest.
+ * The standard error is {@code 1.04 / sqrt(2^precision)},
+ * 0.81% for the default precision of 14, which uses 16KB.
+ *
+ * Small cardinalities are kept in a sparse list of hashes with 25 bit precision,
+ * which is both smaller and more accurate, until it would be larger than the registers.
+ * The estimate uses Ertl's improved estimator, which is unbiased
+ * across the whole range without the empirical bias tables of HyperLogLog++.
+ *
+ * Sketches of the same precision can be merged, to count the union,
+ * and serialized into a compact byte array.
+ *
+ * This class is not thread safe.
+ */
+public final class HyperLogLog
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	/**
+	 * The precision used by the default constructor.
+	 */
+	public static final int DEFAULT_PRECISION = 14;
+
+	public static final int MIN_PRECISION = 4;
+	public static final int MAX_PRECISION = 18;
+
+	// The precision of the sparse list, an entry is the index in the top 25 bits and the rank in the low 6.
+	private static final int SPARSE_PRECISION = 25;
+	private static final int RANK_BITS = 6;
+	private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+	private static final byte SERIAL_VERSION = 1;
+	private static final byte SERIAL_SPARSE = 0;
+	private static final byte SERIAL_DENSE = 1;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final int precision;
+
+	// Null while sparse.
+	private byte[] registers = null;
+
+	// Sorted, with one entry per index. Null when dense.
+	private int[] sparse = new int[0];
+	private int sparseSize = 0;
+
+	// Entries added since the sparse list was last merged, unsorted.
+	private int[] pending = null;
+	private int pendingSize = 0;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates an empty sketch, with the default precision.
+	 */
+	public HyperLogLog()
+	{
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * Creates an empty sketch.
+	 * @param precision
+	 * The number of bits used to pick a register,
+	 * so there are 2^precision registers of a byte.
+	 * From {@code MIN_PRECISION} to {@code MAX_PRECISION}.
+	 * @throws IllegalArgumentException
+	 * If precision is out of range.
+	 */
+	public HyperLogLog(int precision) throws IllegalArgumentException
+	{
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) throw new IllegalArgumentException("precision: " + precision);
+		this.precision = precision;
+	}
+
+	// -------------------------------------------- //
+	// ADD
+	// -------------------------------------------- //
+
+	/**
+	 * Adds a value, hashed by {@code HashUtil.hash64(long)}.
+	 * @param value
+	 * The value to add.
+	 */
+	public void add(long value)
+	{
+		this.addHash(HashUtil.hash64(value));
+	}
+
+	/**
+	 * Adds a value, hashed by {@code HashUtil.hash64(int)}.
+	 * It counts as the same value, as the int as a long.
+	 * @param value
+	 * The value to add.
+	 */
+	public void add(int value)
+	{
+		this.addHash(HashUtil.hash64(value));
+	}
+
+	/**
+	 * Adds a value, hashed by {@code HashUtil.hash64(CharSequence)}.
+	 * @param value
+	 * The value to add.
+	 * @throws ArgumentNullException
+	 * If value is null.
+	 */
+	public void add(CharSequence value) throws ArgumentNullException
+	{
+		Argument.handleNull(value, "value");
+		this.addHash(HashUtil.hash64(value));
+	}
+
+	/**
+	 * Adds a value, hashed by {@code HashUtil.hash64(byte[])}.
+	 * @param value
+	 * The value to add.
+	 * @throws ArgumentNullException
+	 * If value is null.
+	 */
+	public void add(byte[] value) throws ArgumentNullException
+	{
+		Argument.handleNull(value, "value");
+		this.addHash(HashUtil.hash64(value));
+	}
+
+	/**
+	 * Adds a value, which has already been hashed.
+	 * The hash must be well mixed, such as those of {@code HashUtil.hash64},
+	 * for the estimate to be correct.
+	 * @param hash
+	 * The 64 bit hash of the value.
+	 */
+	public void addHash(long hash)
+	{
+		if (this.registers != null)
+		{
+			int index = (int) (hash >>> (64 - this.precision));
+			int rank = rank(hash, this.precision);
+			if (rank > this.registers[index]) this.registers[index] = (byte) rank;
+			return;
+		}
+		this.addSparseEntry(sparseEntry(hash));
+	}
+
+	// -------------------------------------------- //
+	// MERGE
+	// -------------------------------------------- //
+
+	/**
+	 * Adds every value of another sketch to this,
+	 * so this counts the union of both.
+	 * @param other
+	 * The sketch to merge into this, it is not changed.
+	 * @throws ArgumentNullException
+	 * If other is null.
+	 * @throws IllegalArgumentException
+	 * If the precision of other is different.
+	 */
+	public void merge(HyperLogLog other) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(other, "other");
+		if (other.precision != this.precision) throw new IllegalArgumentException("precision: " + other.precision + " expected: " + this.precision);
+		if (other == this) return;
+
+		if (other.registers == null)
+		{
+			for (int i = 0; i < other.sparseSize; i++)
+			{
+				this.addSparseEntry(other.sparse[i]);
+			}
+			for (int i = 0; i < other.pendingSize; i++)
+			{
+				this.addSparseEntry(other.pending[i]);
+			}
+			return;
+		}
+
+		this.toDense();
+		for (int i = 0; i < this.registers.length; i++)
+		{
+			this.registers[i] = (byte) Math.max(this.registers[i], other.registers[i]);
+		}
+	}
+
+	// -------------------------------------------- //
+	// ESTIMATE
+	// -------------------------------------------- //
+
+	/**
+	 * Estimates the number of distinct values added.
+	 * @return
+	 * The estimated cardinality.
+	 */
+	public long cardinality()
+	{
+		// Merging may switch the sketch to registers.
+		this.mergePending();
+		if (this.registers == null)
+		{
+			// Linear counting, with the many registers of the sparse precision.
+			double m = 1 << SPARSE_PRECISION;
+			return Math.round(m * Math.log(m / (m - this.sparseSize)));
+		}
+
+		int q = 64 - this.precision;
+		int[] histogram = new int[q + 2];
+		for (byte register : this.registers)
+		{
+			histogram[register]++;
+		}
+		return Math.round(estimate(histogram, this.registers.length, q));
+	}
+
+	// -------------------------------------------- //
+	// GET
+	// -------------------------------------------- //
+
+	/**
+	 * @return
+	 * The precision this sketch was created with.
+	 */
+	@Pure
+	public int getPrecision()
+	{
+		return this.precision;
+	}
+
+	/**
+	 * @return
+	 * True if the sketch still uses the sparse list,
+	 * false if it has switched to registers.
+	 */
+	@Pure
+	public boolean isSparse()
+	{
+		return this.registers == null;
+	}
+
+	// -------------------------------------------- //
+	// SERIALIZATION
+	// -------------------------------------------- //
+
+	/**
+	 * Serializes the sketch into a byte array.
+	 * Sparse sketches are stored as delta encoded entries,
+	 * dense ones as 6 bits per register.
+	 * @return
+	 * The sketch as bytes, read by {@code fromBytes}.
+	 */
+	public byte[] toBytes()
+	{
+		this.mergePending();
+		if (this.registers == null)
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(3 + 4 + 5 * this.sparseSize);
+			buffer.put(SERIAL_VERSION);
+			buffer.put((byte) this.precision);
+			buffer.put(SERIAL_SPARSE);
+			buffer.putInt(this.sparseSize);
+			int previous = 0;
+			for (int i = 0; i < this.sparseSize; i++)
+			{
+				putVarInt(buffer, this.sparse[i] - previous);
+				previous = this.sparse[i];
+			}
+			return Arrays.copyOf(buffer.array(), buffer.position());
+		}
+
+		byte[] ret = new byte[3 + (this.registers.length * RANK_BITS + 7) / 8];
+		ret[0] = SERIAL_VERSION;
+		ret[1] = (byte) this.precision;
+		ret[2] = SERIAL_DENSE;
+		for (int i = 0; i < this.registers.length; i++)
+		{
+			int bit = i * RANK_BITS;
+			int value = this.registers[i] << (bit & 7);
+			ret[3 + (bit >>> 3)] |= (byte) value;
+			if ((bit & 7) > 8 - RANK_BITS) ret[4 + (bit >>> 3)] |= (byte) (value >>> 8);
+		}
+		return ret;
+	}
+
+	/**
+	 * Reads a sketch serialized by {@code toBytes}.
+	 * @param bytes
+	 * The serialized sketch.
+	 * @return
+	 * The sketch, which can be added to and merged as usual.
+	 * @throws ArgumentNullException
+	 * If bytes is null.
+	 * @throws IllegalArgumentException
+	 * If bytes is not a serialized sketch.
+	 */
+	@Pure
+	public static HyperLogLog fromBytes(byte[] bytes) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(bytes, "bytes");
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			byte version = buffer.get();
+			if (version != SERIAL_VERSION) throw new IllegalArgumentException("Unknown HyperLogLog version: " + version);
+			HyperLogLog ret = new HyperLogLog(buffer.get());
+			byte mode = buffer.get();
+
+			if (mode == SERIAL_SPARSE)
+			{
+				int size = buffer.getInt();
+				if (size < 0 || size > ret.sparseLimit()) throw new IllegalArgumentException("Malformed HyperLogLog, size: " + size);
+				ret.sparse = new int[size];
+				int previous = 0;
+				for (int i = 0; i < size; i++)
+				{
+					int entry = previous + getVarInt(buffer);
+					int rank = entry & RANK_MASK;
+					if ((i > 0 && entry >>> RANK_BITS <= previous >>> RANK_BITS) || entry < 0 || rank == 0 || rank > 64 - SPARSE_PRECISION + 1)
+					{
+						throw new IllegalArgumentException("Malformed HyperLogLog, entry: " + i);
+					}
+					ret.sparse[i] = entry;
+					previous = entry;
+				}
+				ret.sparseSize = size;
+			}
+			else if (mode == SERIAL_DENSE)
+			{
+				int count = 1 << ret.precision;
+				if (bytes.length != 3 + (count * RANK_BITS + 7) / 8) throw new IllegalArgumentException("Malformed HyperLogLog, length: " + bytes.length);
+				ret.toDense();
+				int max = 64 - ret.precision + 1;
+				for (int i = 0; i < count; i++)
+				{
+					int bit = i * RANK_BITS;
+					int value = (bytes[3 + (bit >>> 3)] & 0xFF) >>> (bit & 7);
+					if ((bit & 7) > 8 - RANK_BITS) value |= (bytes[4 + (bit >>> 3)] & 0xFF) << (8 - (bit & 7));
+					value &= RANK_MASK;
+					if (value > max) throw new IllegalArgumentException("Malformed HyperLogLog, register: " + i);
+					ret.registers[i] = (byte) value;
+				}
+				return ret;
+			}
+			else
+			{
+				throw new IllegalArgumentException("Malformed HyperLogLog, mode: " + mode);
+			}
+
+			if (buffer.hasRemaining()) throw new IllegalArgumentException("Malformed HyperLogLog, trailing bytes");
+			return ret;
+		}
+		catch (BufferUnderflowException ex)
+		{
+			throw new IllegalArgumentException("Malformed HyperLogLog, too short", ex);
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	// One plus the leading zeros after the first precision bits, at most 65 - precision.
+	private static int rank(long hash, int precision)
+	{
+		return Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+	}
+
+	private static int sparseEntry(long hash)
+	{
+		int index = (int) (hash >>> (64 - SPARSE_PRECISION));
+		return (index << RANK_BITS) | rank(hash, SPARSE_PRECISION);
+	}
+
+	// The registers have a lower precision than the sparse entries.
+	private void addToRegisters(int entry)
+	{
+		int sparseIndex = entry >>> RANK_BITS;
+		int shift = SPARSE_PRECISION - this.precision;
+		int index = sparseIndex >>> shift;
+
+		// The bits below the register index are the first bits of the rank.
+		int low = sparseIndex & ((1 << shift) - 1);
+		int rank = (low != 0) ? Integer.numberOfLeadingZeros(low) - (32 - shift) + 1 : shift + (entry & RANK_MASK);
+		if (rank > this.registers[index]) this.registers[index] = (byte) rank;
+	}
+
+	private void addSparseEntry(int entry)
+	{
+		if (this.registers != null)
+		{
+			this.addToRegisters(entry);
+			return;
+		}
+		if (this.pending == null) this.pending = new int[this.sparseLimit() / 4 + 4];
+		this.pending[this.pendingSize++] = entry;
+		if (this.pendingSize == this.pending.length) this.mergePending();
+	}
+
+	// Beyond this many entries, the sparse list would be larger than the registers.
+	private int sparseLimit()
+	{
+		return (1 << this.precision) / 4;
+	}
+
+	// Sorts the pending entries into the sparse list, keeping the highest rank per index.
+	private void mergePending()
+	{
+		if (this.pendingSize == 0) return;
+		Arrays.sort(this.pending, 0, this.pendingSize);
+
+		int[] merged = new int[this.sparseSize + this.pendingSize];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < this.sparseSize || j < this.pendingSize)
+		{
+			int entry = (j >= this.pendingSize || (i < this.sparseSize && this.sparse[i] <= this.pending[j])) ? this.sparse[i++] : this.pending[j++];
+			// Equal indices are adjacent, ascending by rank, so the last one wins.
+			if (size > 0 && merged[size - 1] >>> RANK_BITS == entry >>> RANK_BITS)
+			{
+				merged[size - 1] = entry;
+			}
+			else
+			{
+				merged[size++] = entry;
+			}
+		}
+		this.sparse = merged;
+		this.sparseSize = size;
+		this.pendingSize = 0;
+
+		if (this.sparseSize > this.sparseLimit()) this.toDense();
+	}
+
+	private void toDense()
+	{
+		if (this.registers != null) return;
+		this.registers = new byte[1 << this.precision];
+		for (int i = 0; i < this.sparseSize; i++)
+		{
+			this.addToRegisters(this.sparse[i]);
+		}
+		for (int i = 0; i < this.pendingSize; i++)
+		{
+			this.addToRegisters(this.pending[i]);
+		}
+		this.sparse = null;
+		this.sparseSize = 0;
+		this.pending = null;
+		this.pendingSize = 0;
+	}
+
+	// Ertl, "New cardinality estimation algorithms for HyperLogLog sketches", 2017.
+	private static double estimate(int[] histogram, int m, int q)
+	{
+		double z = m * tau(1D - (double) histogram[q + 1] / m);
+		for (int k = q; k >= 1; k--)
+		{
+			z = 0.5D * (z + histogram[k]);
+		}
+		z += m * sigma((double) histogram[0] / m);
+		return m / (2D * Math.log(2D)) * m / z;
+	}
+
+	private static double sigma(double x)
+	{
+		if (x == 1D) return Double.POSITIVE_INFINITY;
+		double y = 1D;
+		double z = x;
+		while (true)
+		{
+			x *= x;
+			double previous = z;
+			z += x * y;
+			y += y;
+			if (z == previous) return z;
+		}
+	}
+
+	private static double tau(double x)
+	{
+		if (x == 0D || x == 1D) return 0D;
+		double y = 1D;
+		double z = 1D - x;
+		while (true)
+		{
+			x = Math.sqrt(x);
+			double previous = z;
+			y *= 0.5D;
+			z -= (1D - x) * (1D - x) * y;
+			if (z == previous) return z / 3D;
+		}
+	}
+
+	private static void putVarInt(ByteBuffer buffer, int value)
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static int getVarInt(ByteBuffer buffer)
+	{
+		int ret = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			byte b = buffer.get();
+			ret |= (b & 0x7F) << shift;
+			if (b >= 0) return ret;
+		}
+		throw new IllegalArgumentException("Malformed HyperLogLog, var int too long");
+	}
+
+}
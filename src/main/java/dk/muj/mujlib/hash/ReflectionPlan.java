@@ -0,0 +1,401 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import dk.muj.mujlib.util.Mujtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * The fields of a class, as used by the reflective methods in {@code HashUtil},
+ * found once per class and cached.
+ *
+ * The fields are read through method handles, which are combined
+ * into a single handle per operation, such as calculating the whole hashcode.
+ * So after the first call, nothing is looked up,
+ * no field array is cloned, and primitives are not boxed.
+ *
+ * The hashcode uses every declared field, except synthetic ones,
+ * such as {@code $assertionsDisabled} or fields added by coverage agents.
+ * Those aren't in the source, so {@code HashcodeProcessor} can't see them either.
+ * Equals, compare and toString only use the instance fields,
+ * static fields are the same for every instance anyway.
+ *
+ * If a field can't be read, there is no plan,
+ * since skipping it would make unequal objects equal.
+ */
+final class ReflectionPlan
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	private static final ClassValue<ReflectionPlan> PLANS = new ClassValue<ReflectionPlan>()
+	{
+		@Override
+		protected ReflectionPlan computeValue(Class<?> type)
+		{
+			return new ReflectionPlan(type);
+		}
+	};
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	// (int result, int fieldHash) int
+	private static final MethodHandle COMBINE = findStatic(ReflectionPlan.class, "combine", int.class, int.class, int.class);
+
+	// (int) boolean
+	private static final MethodHandle NON_ZERO = findStatic(ReflectionPlan.class, "nonZero", boolean.class, int.class);
+
+	// (Object, Object) int, for fields which aren't primitive.
+	private static final MethodHandle COMPARE_OBJECTS = findStatic(ReflectionPlan.class, "compareObjects", int.class, Object.class, Object.class);
+
+	private static final MethodType BINARY_BOOLEAN = MethodType.methodType(boolean.class, Object.class, Object.class);
+	private static final MethodType BINARY_INT = MethodType.methodType(int.class, Object.class, Object.class);
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final String name;
+
+	// The fields which are not static, and their getters, (Object) Object.
+	private final String[] names;
+	private final MethodHandle[] getters;
+
+	// (Object) int
+	private final MethodHandle hash;
+
+	// (Object, Object) boolean
+	private final MethodHandle equals;
+
+	// (Object, Object) int
+	private final MethodHandle compare;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	private ReflectionPlan(Class<?> type)
+	{
+		this.name = type.getSimpleName();
+
+		List<Field> fields = new ArrayList<>();
+		for (Field field : type.getDeclaredFields())
+		{
+			if (field.isSynthetic()) continue;
+			if (field.isAnnotationPresent(ExcludeFromHashcode.class)) continue;
+			fields.add(field);
+		}
+
+		MethodHandle hash = MethodHandles.dropArguments(MethodHandles.constant(int.class, HashUtil.HASHCODE_START), 0, Object.class);
+		List<Field> instanceFields = new ArrayList<>();
+		List<MethodHandle> instanceGetters = new ArrayList<>();
+		for (Field field : fields)
+		{
+			MethodHandle getter = getter(field);
+
+			// hash(obj) = combine(hash(obj), fieldHash(obj))
+			MethodHandle combined = MethodHandles.filterArguments(COMBINE, 0, hash, fieldHash(field, getter));
+			hash = MethodHandles.permuteArguments(combined, MethodType.methodType(int.class, Object.class), 0, 0);
+
+			if (Modifier.isStatic(field.getModifiers())) continue;
+			instanceFields.add(field);
+			instanceGetters.add(getter);
+		}
+		this.hash = hash;
+
+		this.names = new String[instanceFields.size()];
+		this.getters = new MethodHandle[instanceFields.size()];
+		for (int i = 0; i < this.names.length; i++)
+		{
+			this.names[i] = instanceFields.get(i).getName();
+			this.getters[i] = instanceGetters.get(i).asType(MethodType.methodType(Object.class, Object.class));
+		}
+
+		this.equals = equalsHandle(instanceFields, instanceGetters);
+		this.compare = compareHandle(instanceFields, instanceGetters);
+	}
+
+	/**
+	 * Gets the plan of a class, creating it the first time.
+	 */
+	static ReflectionPlan of(Class<?> type)
+	{
+		return PLANS.get(type);
+	}
+
+	// -------------------------------------------- //
+	// HASH
+	// -------------------------------------------- //
+
+	/**
+	 * Calculates the hashcode of an object of the planned class.
+	 * Every field is added with {@code HashUtil.resultAddField}.
+	 */
+	int hash(Object obj)
+	{
+		try
+		{
+			return (int) this.hash.invokeExact(obj);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	// -------------------------------------------- //
+	// EQUALS
+	// -------------------------------------------- //
+
+	/**
+	 * Checks if two objects of the planned class have equal fields.
+	 * Primitives are compared first, then strings by their cached hashcode,
+	 * then by equals, and lastly every other field by equals.
+	 */
+	boolean equals(Object one, Object two)
+	{
+		try
+		{
+			return (boolean) this.equals.invokeExact(one, two);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	// -------------------------------------------- //
+	// COMPARE
+	// -------------------------------------------- //
+
+	/**
+	 * Compares two objects of the planned class,
+	 * by their fields in the order of {@code getDeclaredFields}.
+	 * The first field which is different decides.
+	 */
+	int compare(Object one, Object two)
+	{
+		try
+		{
+			return (int) this.compare.invokeExact(one, two);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+	}
+
+	// -------------------------------------------- //
+	// TO STRING
+	// -------------------------------------------- //
+
+	/**
+	 * Describes an object of the planned class,
+	 * such as {@code Point{x=1, y=2, values=[1, 2]}}.
+	 */
+	String toString(Object obj)
+	{
+		StringJoiner ret = new StringJoiner(", ", this.name + "{", "}");
+		for (int i = 0; i < this.names.length; i++)
+		{
+			ret.add(this.names[i] + "=" + this.describe(i, obj));
+		}
+		return ret.toString();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private String describe(int index, Object obj)
+	{
+		Object value;
+		try
+		{
+			value = (Object) this.getters[index].invokeExact(obj);
+		}
+		catch (Throwable t)
+		{
+			throw rethrow(t);
+		}
+
+		// Arrays are described by their content, not their identity.
+		if (value == null || ! value.getClass().isArray()) return String.valueOf(value);
+		String ret = Arrays.deepToString(new Object[] {value});
+		return ret.substring(1, ret.length() - 1);
+	}
+
+	// (Object) int, using the HashUtil.hash overload of the field type.
+	private static MethodHandle fieldHash(Field field, MethodHandle getter)
+	{
+		Class<?> type = erase(field.getType());
+		MethodHandle hasher = findStatic(HashUtil.class, "hash", int.class, type);
+		return MethodHandles.filterReturnValue(getter.asType(MethodType.methodType(type, Object.class)), hasher);
+	}
+
+	// Cheap fields first, so a difference is found as soon as possible.
+	private static MethodHandle equalsHandle(List<Field> fields, List<MethodHandle> getters)
+	{
+		List<MethodHandle> primitives = new ArrayList<>();
+		List<MethodHandle> strings = new ArrayList<>();
+		List<MethodHandle> objects = new ArrayList<>();
+		for (int i = 0; i < fields.size(); i++)
+		{
+			MethodHandle getter = getters.get(i);
+
+			Class<?> type = erase(fields.get(i).getType());
+			getter = getter.asType(MethodType.methodType(type, Object.class));
+			MethodHandle equals = MethodHandles.filterArguments(findStatic(Mujtil.class, "equals", boolean.class, type, type), 0, getter, getter);
+
+			if (type.isPrimitive())
+			{
+				primitives.add(equals);
+			}
+			else if (fields.get(i).getType() == String.class)
+			{
+				// Strings cache their hashcode, unequal hashcodes are a quick no.
+				MethodHandle hash = MethodHandles.filterReturnValue(getter, findStatic(HashUtil.class, "hash", int.class, Object.class));
+				strings.add(MethodHandles.filterArguments(findStatic(Mujtil.class, "equals", boolean.class, int.class, int.class), 0, hash, hash));
+				objects.add(equals);
+			}
+			else
+			{
+				objects.add(equals);
+			}
+		}
+
+		List<MethodHandle> ordered = new ArrayList<>(primitives);
+		ordered.addAll(strings);
+		ordered.addAll(objects);
+
+		// Built from the last check, each check guards the rest.
+		MethodHandle ret = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, true), 0, Object.class, Object.class);
+		MethodHandle notEqual = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, Object.class, Object.class);
+		for (int i = ordered.size() - 1; i >= 0; i--)
+		{
+			ret = MethodHandles.guardWithTest(ordered.get(i).asType(BINARY_BOOLEAN), ret, notEqual);
+		}
+		return ret;
+	}
+
+	private static MethodHandle compareHandle(List<Field> fields, List<MethodHandle> getters)
+	{
+		// Built from the last field, each comparison returns if non zero, or continues with the rest.
+		MethodHandle ret = MethodHandles.dropArguments(MethodHandles.constant(int.class, 0), 0, Object.class, Object.class);
+		MethodHandle test = MethodHandles.dropArguments(NON_ZERO, 1, Object.class, Object.class);
+		MethodHandle target = MethodHandles.dropArguments(MethodHandles.identity(int.class), 1, Object.class, Object.class);
+		for (int i = fields.size() - 1; i >= 0; i--)
+		{
+			MethodHandle getter = getters.get(i);
+
+			Class<?> type = erase(fields.get(i).getType());
+			getter = getter.asType(MethodType.methodType(type, Object.class));
+			MethodHandle comparator = type.isPrimitive() ? findStatic(wrapper(type), "compare", int.class, type, type) : COMPARE_OBJECTS;
+			MethodHandle compare = MethodHandles.filterArguments(comparator, 0, getter, getter).asType(BINARY_INT);
+
+			MethodHandle select = MethodHandles.guardWithTest(test, target, MethodHandles.dropArguments(ret, 0, int.class));
+			ret = MethodHandles.foldArguments(select, compare);
+		}
+		return ret;
+	}
+
+	private static int combine(int result, int fieldHash)
+	{
+		return HashUtil.HASHCODE_MULTIPLIER * result + fieldHash;
+	}
+
+	private static boolean nonZero(int value)
+	{
+		return value != 0;
+	}
+
+	// Nulls first, other values must be comparable.
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static int compareObjects(Object one, Object two)
+	{
+		if (one == two) return 0;
+		if (one == null) return -1;
+		if (two == null) return 1;
+		return ((Comparable) one).compareTo(two);
+	}
+
+	// (Object) type of the field.
+	// Fields that can't be read, as in classes of modules not open to us, fail loudly
+	// rather than silently counting as null and equal.
+	private static MethodHandle getter(Field field)
+	{
+		try
+		{
+			field.setAccessible(true);
+			MethodHandle ret = LOOKUP.unreflectGetter(field);
+			if (Modifier.isStatic(field.getModifiers())) return MethodHandles.dropArguments(ret, 0, Object.class);
+			return ret.asType(ret.type().changeParameterType(0, Object.class));
+		}
+		catch (ReflectiveOperationException | RuntimeException ex)
+		{
+			throw new IllegalArgumentException("Can't read field " + field, ex);
+		}
+	}
+
+	private static Class<?> erase(Class<?> type)
+	{
+		return type.isPrimitive() ? type : Object.class;
+	}
+
+	private static Class<?> wrapper(Class<?> primitive)
+	{
+		return MethodType.methodType(primitive).wrap().returnType();
+	}
+
+	private static MethodHandle findStatic(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes)
+	{
+		try
+		{
+			return LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+		}
+		catch (ReflectiveOperationException ex)
+		{
+			throw new AssertionError(ex);
+		}
+	}
+
+	// Throws the throwable as is, the return type lets callers write "throw rethrow(t)".
+	private static AssertionError rethrow(Throwable t)
+	{
+		Mujtil.sneakyThrow(t);
+		return new AssertionError(t);
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.doc.Pure;
+
+/**
+ * This class has utility methods for arithmetic modulo a long.
+ *
+ * All methods take a positive modulus,
+ * and return results between 0 and the modulus exclusive.
+ * They never overflow, even for moduli close to {@code Long.MAX_VALUE}.
+ * For many multiplications by the same large odd modulus,
+ * a {@code Montgomery} is faster.
+ */
+public final class ModularArithmetic
+{
+	// -------------------------------------------- //
+	// CONSTRUCTOR (FORBIDDEN)
+	// -------------------------------------------- //
+
+	private ModularArithmetic()
+	{
+		throw new AssertionError();
+	}
+
+	// -------------------------------------------- //
+	// ARITHMETIC
+	// -------------------------------------------- //
+
+	/**
+	 * Calculates a mod m, which is never negative, unlike {@code a % m}.
+	 * @param a
+	 * The number.
+	 * @param m
+	 * The modulus.
+	 * @return
+	 * a mod m, from 0 to m exclusive.
+	 * @throws IllegalArgumentException
+	 * If m is not positive.
+	 */
+	@Pure
+	public static long mod(long a, long m) throws IllegalArgumentException
+	{
+		checkModulus(m);
+		long ret = a % m;
+		return (ret < 0) ? ret + m : ret;
+	}
+
+	/**
+	 * Calculates (a * b) mod m, without overflowing.
+	 * @param a
+	 * The first factor.
+	 * @param b
+	 * The second factor.
+	 * @param m
+	 * The modulus.
+	 * @return
+	 * (a * b) mod m, from 0 to m exclusive.
+	 * @throws IllegalArgumentException
+	 * If m is not positive.
+	 */
+	@Pure
+	public static long mulMod(long a, long b, long m) throws IllegalArgumentException
+	{
+		a = mod(a, m);
+		b = mod(b, m);
+
+		// Both below 2^31, so the product fits.
+		if (((a | b) >>> 31) == 0) return (a * b) % m;
+
+		long ret = 0;
+		while (b > 0)
+		{
+			if ((b & 1) == 1) ret = addMod(ret, a, m);
+			a = addMod(a, a, m);
+			b >>>= 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Calculates (base ^ exponent) mod m, by repeated squaring.
+	 * @param base
+	 * The base.
+	 * @param exponent
+	 * The exponent.
+	 * @param m
+	 * The modulus.
+	 * @return
+	 * (base ^ exponent) mod m, from 0 to m exclusive.
+	 * @throws IllegalArgumentException
+	 * If m is not positive, or exponent is negative.
+	 */
+	@Pure
+	public static long modPow(long base, long exponent, long m) throws IllegalArgumentException
+	{
+		if (exponent < 0) throw new IllegalArgumentException("exponent: " + exponent);
+		base = mod(base, m);
+		long ret = 1 % m;
+		while (exponent > 0)
+		{
+			if ((exponent & 1) == 1) ret = mulMod(ret, base, m);
+			base = mulMod(base, base, m);
+			exponent >>>= 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * Calculates the inverse of a modulo m,
+	 * the number x so (a * x) mod m is 1.
+	 * It uses the extended Euclidean algorithm.
+	 * @param a
+	 * The number to invert.
+	 * @param m
+	 * The modulus.
+	 * @return
+	 * The inverse, from 0 to m exclusive.
+	 * @throws IllegalArgumentException
+	 * If m is not positive.
+	 * @throws ArithmeticException
+	 * If a and m are not coprime, so a has no inverse.
+	 */
+	@Pure
+	public static long modInverse(long a, long m) throws IllegalArgumentException, ArithmeticException
+	{
+		a = mod(a, m);
+		if (m == 1) return 0;
+
+		// Invariant: oldS * a = oldR and s * a = r (mod m).
+		long oldR = a;
+		long r = m;
+		long oldS = 1;
+		long s = 0;
+		while (r != 0)
+		{
+			long quotient = oldR / r;
+			long t = oldR - quotient * r;
+			oldR = r;
+			r = t;
+			t = oldS - mulMod(quotient, s, m);
+			oldS = s;
+			s = mod(t, m);
+		}
+		if (oldR != 1) throw new ArithmeticException(a + " has no inverse modulo " + m);
+		return mod(oldS, m);
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static long addMod(long a, long b, long m)
+	{
+		// a + b may overflow, so compare with the room left instead.
+		return (a >= m - b) ? a - (m - b) : a + b;
+	}
+
+	static void checkModulus(long m)
+	{
+		if (m <= 0) throw new IllegalArgumentException("m must be positive: " + m);
+	}
+
+	// The upper 64 bits of the unsigned 128 bit product.
+	static long multiplyHighUnsigned(long a, long b)
+	{
+		long aLow = a & 0xFFFFFFFFL;
+		long aHigh = a >>> 32;
+		long bLow = b & 0xFFFFFFFFL;
+		long bHigh = b >>> 32;
+
+		long lowLow = aLow * bLow;
+		long highLow = aHigh * bLow;
+		long lowHigh = aLow * bHigh;
+		long carry = ((lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + (lowHigh & 0xFFFFFFFFL)) >>> 32;
+		return aHigh * bHigh + (highLow >>> 32) + (lowHigh >>> 32) + carry;
+	}
+
+}
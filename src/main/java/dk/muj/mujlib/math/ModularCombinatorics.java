@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.util.Mth;
+
+/**
+ * Combinatorics modulo a prime, for numbers far too large
+ * for {@code Mth.binomialPrecise} to build.
+ *
+ * Factorials and their inverses are precomputed up to a chosen bound,
+ * so binomial coefficients below it take O(1) time.
+ * Beyond the bound it uses Lucas' theorem, which splits n and r into digits
+ * in base p, and multiplies the binomial coefficients of the digits.
+ *
+ * The modulus must be prime, otherwise the inverses don't exist.
+ * That is checked using {@code Mth.isPrime}.
+ * Instances are immutable, and thread safe.
+ */
+public final class ModularCombinatorics
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	// Products of numbers below this fit in a long.
+	private static final long SMALL_PRIME_LIMIT = 1L << 31;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final long prime;
+	private final long[] factorials;
+	private final long[] inverseFactorials;
+
+	// Used for multiplication when the prime is large.
+	private final Montgomery montgomery;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Precomputes the tables, this takes O(tableSize) time.
+	 * @param prime
+	 * The prime modulus.
+	 * @param tableSize
+	 * The number of factorials to precompute. More than the prime is never needed.
+	 * @throws IllegalArgumentException
+	 * If prime is not a prime, or tableSize is not positive.
+	 */
+	public ModularCombinatorics(long prime, int tableSize) throws IllegalArgumentException
+	{
+		if ( ! Mth.isPrime(prime)) throw new IllegalArgumentException("prime is not a prime: " + prime);
+		if (tableSize <= 0) throw new IllegalArgumentException("tableSize: " + tableSize);
+
+		this.prime = prime;
+		this.montgomery = (prime < SMALL_PRIME_LIMIT) ? null : new Montgomery(prime);
+
+		int size = (int) Math.min(tableSize, prime);
+		this.factorials = new long[size];
+		this.inverseFactorials = new long[size];
+		this.factorials[0] = 1;
+		for (int i = 1; i < size; i++)
+		{
+			this.factorials[i] = this.multiply(this.factorials[i - 1], i);
+		}
+
+		// One inversion, then (i-1)!^-1 = i!^-1 * i
+		this.inverseFactorials[size - 1] = ModularArithmetic.modInverse(this.factorials[size - 1], prime);
+		for (int i = size - 1; i > 0; i--)
+		{
+			this.inverseFactorials[i - 1] = this.multiply(this.inverseFactorials[i], i);
+		}
+	}
+
+	// -------------------------------------------- //
+	// COMBINATORICS
+	// -------------------------------------------- //
+
+	/**
+	 * Calculates n! mod p.
+	 * Below the table size it is a lookup, from p and up it is 0,
+	 * in between it takes O(n - tableSize) time.
+	 * @param n
+	 * The number to calculate factorial for.
+	 * @return
+	 * n! mod p
+	 * @throws IllegalArgumentException
+	 * If n is negative.
+	 */
+	@Pure
+	public long factorial(long n) throws IllegalArgumentException
+	{
+		if (n < 0) throw new IllegalArgumentException("n: " + n);
+		if (n >= this.prime) return 0;
+		if (n < this.factorials.length) return this.factorials[(int) n];
+
+		long ret = this.factorials[this.factorials.length - 1];
+		for (long i = this.factorials.length; i <= n; i++)
+		{
+			ret = this.multiply(ret, i);
+		}
+		return ret;
+	}
+
+	/**
+	 * Calculates the binomial coefficient n over r mod p.
+	 * It is 0 if r is larger than n.
+	 * Below the table size it takes O(1) time.
+	 * Beyond it Lucas' theorem is used, taking O(log n / log p) time
+	 * when the prime is within the table, otherwise up to O(min(r, n - r)).
+	 * @param n
+	 * n in binomial coefficient
+	 * @param r
+	 * r in binomial coefficient
+	 * @return
+	 * Binomial coefficient for n over r, mod p.
+	 * @throws IllegalArgumentException
+	 * If n or r is negative.
+	 */
+	@Pure
+	public long binomial(long n, long r) throws IllegalArgumentException
+	{
+		if (n < 0 || r < 0) throw new IllegalArgumentException("r: " + r + " n: " + n);
+		if (r > n) return 0;
+		if (n < this.factorials.length) return this.tableBinomial((int) n, (int) r);
+
+		long ret = 1;
+		while (n > 0 && ret != 0)
+		{
+			long nDigit = n % this.prime;
+			long rDigit = r % this.prime;
+			if (rDigit > nDigit) return 0;
+			ret = this.multiply(ret, this.digitBinomial(nDigit, rDigit));
+			n /= this.prime;
+			r /= this.prime;
+		}
+		return ret;
+	}
+
+	/**
+	 * Calculates the inverse of a mod p.
+	 * @param a
+	 * The number to invert.
+	 * @return
+	 * The number x, so (a * x) mod p is 1.
+	 * @throws ArithmeticException
+	 * If a is divisible by p.
+	 */
+	@Pure
+	public long inverse(long a) throws ArithmeticException
+	{
+		a = ModularArithmetic.mod(a, this.prime);
+		if (a == 0) throw new ArithmeticException("0 has no inverse.");
+
+		// a^-1 = (a-1)! / a!
+		if (a < this.factorials.length) return this.multiply(this.factorials[(int) a - 1], this.inverseFactorials[(int) a]);
+		return ModularArithmetic.modInverse(a, this.prime);
+	}
+
+	public long getPrime()
+	{
+		return this.prime;
+	}
+
+	/**
+	 * @return
+	 * The number of precomputed factorials.
+	 */
+	public int getTableSize()
+	{
+		return this.factorials.length;
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private long tableBinomial(int n, int r)
+	{
+		return this.multiply(this.factorials[n], this.multiply(this.inverseFactorials[r], this.inverseFactorials[n - r]));
+	}
+
+	// A binomial coefficient where n is less than p, so nothing is divisible by p.
+	private long digitBinomial(long n, long r)
+	{
+		if (n < this.factorials.length) return this.tableBinomial((int) n, (int) r);
+
+		r = Math.min(r, n - r);
+		long numerator = 1;
+		for (long i = 0; i < r; i++)
+		{
+			numerator = this.multiply(numerator, n - i);
+		}
+		long denominator = (r < this.factorials.length) ? this.inverseFactorials[(int) r] : ModularArithmetic.modInverse(this.factorial(r), this.prime);
+		return this.multiply(numerator, denominator);
+	}
+
+	private long multiply(long a, long b)
+	{
+		if (this.montgomery == null) return (a * b) % this.prime;
+		return this.montgomery.mulMod(a, b);
+	}
+
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.doc.Pure;
+
+/**
+ * Montgomery multiplication modulo a fixed odd long.
+ *
+ * Numbers are converted into Montgomery form, {@code a * 2^64 mod m},
+ * where a multiplication needs no division, just two 128 bit products.
+ * That is much faster than {@code ModularArithmetic.mulMod} for large moduli,
+ * when many multiplications are done, such as in {@code pow}.
+ *
+ * Instances are immutable.
+ */
+public final class Montgomery
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final long modulus;
+
+	// -modulus^-1 mod 2^64
+	private final long negativeInverse;
+
+	// 2^128 mod modulus, converts into Montgomery form.
+	private final long rSquared;
+
+	// 1 in Montgomery form, 2^64 mod modulus.
+	private final long one;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * @param modulus
+	 * The modulus, which must be odd and positive.
+	 * @throws IllegalArgumentException
+	 * If modulus is even or not positive.
+	 */
+	public Montgomery(long modulus) throws IllegalArgumentException
+	{
+		ModularArithmetic.checkModulus(modulus);
+		if ((modulus & 1) == 0) throw new IllegalArgumentException("modulus must be odd: " + modulus);
+		this.modulus = modulus;
+
+		// Newton's iteration, every step doubles the number of correct bits.
+		long inverse = modulus;
+		for (int i = 0; i < 5; i++)
+		{
+			inverse *= 2 - modulus * inverse;
+		}
+		this.negativeInverse = -inverse;
+
+		this.one = (Long.remainderUnsigned(-1L, modulus) + 1) % modulus;
+		this.rSquared = ModularArithmetic.mulMod(this.one, this.one, modulus);
+	}
+
+	// -------------------------------------------- //
+	// CONVERSION
+	// -------------------------------------------- //
+
+	/**
+	 * @param a
+	 * A number.
+	 * @return
+	 * a mod modulus, in Montgomery form.
+	 */
+	@Pure
+	public long toMontgomery(long a)
+	{
+		return this.multiply(ModularArithmetic.mod(a, this.modulus), this.rSquared);
+	}
+
+	/**
+	 * @param a
+	 * A number in Montgomery form.
+	 * @return
+	 * The number in normal form, from 0 to the modulus exclusive.
+	 */
+	@Pure
+	public long fromMontgomery(long a)
+	{
+		return this.reduce(0, a);
+	}
+
+	// -------------------------------------------- //
+	// ARITHMETIC
+	// -------------------------------------------- //
+
+	/**
+	 * @param a
+	 * A number in Montgomery form.
+	 * @param b
+	 * A number in Montgomery form.
+	 * @return
+	 * Their product modulo the modulus, in Montgomery form.
+	 */
+	@Pure
+	public long multiply(long a, long b)
+	{
+		return this.reduce(ModularArithmetic.multiplyHighUnsigned(a, b), a * b);
+	}
+
+	/**
+	 * Multiplies numbers in normal form, going through Montgomery form.
+	 * @param a
+	 * The first factor.
+	 * @param b
+	 * The second factor.
+	 * @return
+	 * (a * b) mod modulus, in normal form.
+	 */
+	@Pure
+	public long mulMod(long a, long b)
+	{
+		a = ModularArithmetic.mod(a, this.modulus);
+		b = ModularArithmetic.mod(b, this.modulus);
+		return this.multiply(this.multiply(a, b), this.rSquared);
+	}
+
+	/**
+	 * @param base
+	 * The base, in normal form.
+	 * @param exponent
+	 * The exponent.
+	 * @return
+	 * (base ^ exponent) mod modulus, in normal form.
+	 * @throws IllegalArgumentException
+	 * If exponent is negative.
+	 */
+	@Pure
+	public long pow(long base, long exponent) throws IllegalArgumentException
+	{
+		if (exponent < 0) throw new IllegalArgumentException("exponent: " + exponent);
+		long b = this.toMontgomery(base);
+		long ret = this.one;
+		while (exponent > 0)
+		{
+			if ((exponent & 1) == 1) ret = this.multiply(ret, b);
+			b = this.multiply(b, b);
+			exponent >>>= 1;
+		}
+		return this.fromMontgomery(ret);
+	}
+
+	public long getModulus()
+	{
+		return this.modulus;
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	// Montgomery reduction, (high * 2^64 + low) / 2^64 mod modulus, for inputs below modulus * 2^64.
+	private long reduce(long high, long low)
+	{
+		long u = low * this.negativeInverse;
+		long uHigh = ModularArithmetic.multiplyHighUnsigned(u, this.modulus);
+
+		// low + u * modulus is divisible by 2^64, so it only carries if low isn't 0.
+		long ret = high + uHigh + ((low != 0) ? 1 : 0);
+		return (Long.compareUnsigned(ret, this.modulus) >= 0) ? ret - this.modulus : ret;
+	}
+
+}
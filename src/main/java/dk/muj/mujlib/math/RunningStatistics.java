@@ -0,0 +1,406 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.StringJoiner;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Running statistics of a stream of doubles,
+ * the count, sum, min, max, mean, variance, skewness and kurtosis.
+ *
+ * Values are added one at a time, or in bulk from an array,
+ * and nothing is allocated while doing so.
+ * The mean and central moments are updated with Welford's method,
+ * and the sum with Kahan (Neumaier) compensation,
+ * so they stay accurate for long streams of similar values.
+ *
+ * Two instances can be merged, which is associative,
+ * so each thread can keep its own and they can be combined afterwards.
+ * It works as a collector for streams:
+ * {@code stream.collect(RunningStatistics::new, RunningStatistics::accept, RunningStatistics::merge)}
+ *
+ * This class is not thread safe.
+ */
+public final class RunningStatistics implements DoubleConsumer
+{
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private long count = 0;
+
+	private double sum = 0D;
+	// The low order bits lost from sum.
+	private double compensation = 0D;
+	// Without compensation, used when the compensated sum overflows to NaN.
+	private double simpleSum = 0D;
+
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	private double mean = 0D;
+	// Sums of the powers of the differences from the mean.
+	private double m2 = 0D;
+	private double m3 = 0D;
+	private double m4 = 0D;
+
+	// -------------------------------------------- //
+	// ACCEPT
+	// -------------------------------------------- //
+
+	/**
+	 * Adds a value.
+	 * @param value
+	 * The value to add.
+	 */
+	@Override
+	public void accept(double value)
+	{
+		long n1 = this.count;
+		this.count++;
+		double n = this.count;
+
+		double delta = value - this.mean;
+		double deltaN = delta / n;
+		double deltaN2 = deltaN * deltaN;
+		double term = delta * deltaN * n1;
+
+		// Higher moments first, they use the previous lower ones.
+		this.mean += deltaN;
+		this.m4 += term * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * this.m2 - 4 * deltaN * this.m3;
+		this.m3 += term * deltaN * (n - 2) - 3 * deltaN * this.m2;
+		this.m2 += term;
+
+		this.addToSum(value);
+		this.min = Math.min(this.min, value);
+		this.max = Math.max(this.max, value);
+	}
+
+	/**
+	 * Adds every value in the array.
+	 * @param values
+	 * The values to add.
+	 * @throws ArgumentNullException
+	 * If values is null.
+	 */
+	public void accept(double[] values) throws ArgumentNullException
+	{
+		Argument.handleNull(values, "values");
+		this.accept(values, 0, values.length);
+	}
+
+	/**
+	 * Adds the values in a range of the array.
+	 * This is faster than adding them one at a time,
+	 * the moments of the range are found in two passes
+	 * without divisions, and then merged.
+	 * @param values
+	 * The values to add.
+	 * @param fromInclusive
+	 * The start of the range.
+	 * @param toExclusive
+	 * The end of the range.
+	 * @throws ArgumentNullException
+	 * If values is null.
+	 * @throws ArrayIndexOutOfBoundsException
+	 * If the range is not within the array.
+	 */
+	public void accept(double[] values, int fromInclusive, int toExclusive) throws ArgumentNullException, ArrayIndexOutOfBoundsException
+	{
+		Argument.handleNull(values, "values");
+		if (fromInclusive < 0 || toExclusive > values.length || fromInclusive > toExclusive)
+		{
+			throw new ArrayIndexOutOfBoundsException("from: " + fromInclusive + " to: " + toExclusive + " length: " + values.length);
+		}
+		if (fromInclusive == toExclusive) return;
+
+		double n = toExclusive - fromInclusive;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		double rawSum = 0D;
+		for (int i = fromInclusive; i < toExclusive; i++)
+		{
+			double value = values[i];
+			rawSum += value;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			this.addToSum(value);
+		}
+
+		// The second pass corrects the rounding error of the first mean.
+		double mean = rawSum / n;
+		double correction = 0D;
+		double m2 = 0D;
+		double m3 = 0D;
+		double m4 = 0D;
+		for (int i = fromInclusive; i < toExclusive; i++)
+		{
+			double delta = values[i] - mean;
+			double delta2 = delta * delta;
+			correction += delta;
+			m2 += delta2;
+			m3 += delta2 * delta;
+			m4 += delta2 * delta2;
+		}
+		// Moving the mean by c changes the moments by terms of c, which are tiny here.
+		double shift = correction / n;
+		m4 += -4 * shift * m3 + 6 * shift * shift * m2 - 3 * n * shift * shift * shift * shift;
+		m3 += -3 * shift * m2 + 2 * n * shift * shift * shift;
+		m2 -= n * shift * shift;
+		mean += shift;
+
+		this.mergeMoments(toExclusive - fromInclusive, mean, m2, m3, m4);
+		this.min = Math.min(this.min, min);
+		this.max = Math.max(this.max, max);
+	}
+
+	/**
+	 * Adds every value added to another instance.
+	 * The result is the same, up to rounding,
+	 * as if the values had been added to this directly.
+	 * @param other
+	 * The statistics to merge into this, it is not changed.
+	 * @throws ArgumentNullException
+	 * If other is null.
+	 */
+	public void merge(RunningStatistics other) throws ArgumentNullException
+	{
+		Argument.handleNull(other, "other");
+		if (other.count == 0) return;
+
+		this.mergeMoments(other.count, other.mean, other.m2, other.m3, other.m4);
+		this.addToCompensatedSum(other.sum);
+		this.addToCompensatedSum(other.compensation);
+		this.simpleSum += other.simpleSum;
+		this.min = Math.min(this.min, other.min);
+		this.max = Math.max(this.max, other.max);
+	}
+
+	// -------------------------------------------- //
+	// GET
+	// -------------------------------------------- //
+
+	/**
+	 * @return
+	 * The number of values added.
+	 */
+	@Pure
+	public long getCount()
+	{
+		return this.count;
+	}
+
+	/**
+	 * @return
+	 * The sum of the values, with Kahan compensation.
+	 * 0 if nothing was added, and infinite if the values were.
+	 */
+	@Pure
+	public double getSum()
+	{
+		double ret = this.sum + this.compensation;
+
+		// Infinite values make the compensation NaN, infinity minus infinity.
+		if (Double.isNaN(ret) && Double.isInfinite(this.simpleSum)) return this.simpleSum;
+		return ret;
+	}
+
+	/**
+	 * @return
+	 * The smallest value.
+	 * Positive infinity if nothing was added.
+	 */
+	@Pure
+	public double getMin()
+	{
+		return this.min;
+	}
+
+	/**
+	 * @return
+	 * The largest value.
+	 * Negative infinity if nothing was added.
+	 */
+	@Pure
+	public double getMax()
+	{
+		return this.max;
+	}
+
+	/**
+	 * @return
+	 * The mean of the values.
+	 * NaN if nothing was added.
+	 */
+	@Pure
+	public double getMean()
+	{
+		if (this.count == 0) return Double.NaN;
+		return this.mean;
+	}
+
+	/**
+	 * @return
+	 * The population variance of the values, dividing by n.
+	 * NaN if nothing was added.
+	 */
+	@Pure
+	public double getVariance()
+	{
+		if (this.count == 0) return Double.NaN;
+		return this.m2 / this.count;
+	}
+
+	/**
+	 * @return
+	 * The sample variance of the values, dividing by n - 1.
+	 * NaN if less than two values were added.
+	 */
+	@Pure
+	public double getSampleVariance()
+	{
+		if (this.count < 2) return Double.NaN;
+		return this.m2 / (this.count - 1);
+	}
+
+	/**
+	 * @return
+	 * The population standard deviation of the values.
+	 * NaN if nothing was added.
+	 */
+	@Pure
+	public double getStandardDeviation()
+	{
+		return Math.sqrt(this.getVariance());
+	}
+
+	/**
+	 * @return
+	 * The population skewness of the values.
+	 * NaN if nothing was added, or if all values are equal.
+	 */
+	@Pure
+	public double getSkewness()
+	{
+		if (this.count == 0 || this.m2 == 0) return Double.NaN;
+		return Math.sqrt(this.count) * this.m3 / Math.pow(this.m2, 1.5);
+	}
+
+	/**
+	 * @return
+	 * The population excess kurtosis of the values,
+	 * which is 0 for a normal distribution.
+	 * NaN if nothing was added, or if all values are equal.
+	 */
+	@Pure
+	public double getKurtosis()
+	{
+		if (this.count == 0 || this.m2 == 0) return Double.NaN;
+		return this.count * this.m4 / (this.m2 * this.m2) - 3;
+	}
+
+	// -------------------------------------------- //
+	// TO STRING
+	// -------------------------------------------- //
+
+	@Override
+	public String toString()
+	{
+		StringJoiner ret = new StringJoiner(", ", "{", "}");
+		ret.add("count=" + this.getCount());
+		ret.add("sum=" + this.getSum());
+		ret.add("min=" + this.getMin());
+		ret.add("max=" + this.getMax());
+		ret.add("mean=" + this.getMean());
+		ret.add("variance=" + this.getVariance());
+		return ret.toString();
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private void addToSum(double value)
+	{
+		this.addToCompensatedSum(value);
+		this.simpleSum += value;
+	}
+
+	// Neumaier's variant, which also works when value is larger than the sum.
+	private void addToCompensatedSum(double value)
+	{
+		double total = this.sum + value;
+		if (Math.abs(this.sum) >= Math.abs(value))
+		{
+			this.compensation += (this.sum - total) + value;
+		}
+		else
+		{
+			this.compensation += (value - total) + this.sum;
+		}
+		this.sum = total;
+	}
+
+	// Chan's and Pébay's formulas for combining the moments of two parts.
+	private void mergeMoments(long countB, double meanB, double m2B, double m3B, double m4B)
+	{
+		if (this.count == 0)
+		{
+			this.count = countB;
+			this.mean = meanB;
+			this.m2 = m2B;
+			this.m3 = m3B;
+			this.m4 = m4B;
+			return;
+		}
+
+		double a = this.count;
+		double b = countB;
+		double n = a + b;
+		double delta = meanB - this.mean;
+		double delta2 = delta * delta;
+
+		double m4 = this.m4 + m4B
+			+ delta2 * delta2 * a * b * (a * a - a * b + b * b) / (n * n * n)
+			+ 6 * delta2 * (a * a * m2B + b * b * this.m2) / (n * n)
+			+ 4 * delta * (a * m3B - b * this.m3) / n;
+		double m3 = this.m3 + m3B
+			+ delta2 * delta * a * b * (a - b) / (n * n)
+			+ 3 * delta * (a * m2B - b * this.m2) / n;
+		double m2 = this.m2 + m2B + delta2 * a * b / n;
+
+		this.count += countB;
+		this.mean += delta * b / n;
+		this.m2 = m2;
+		this.m3 = m3;
+		this.m4 = m4;
+	}
+
+}
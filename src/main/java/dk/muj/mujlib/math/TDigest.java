@@ -0,0 +1,595 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.arg.ArgumentStrangeException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * A t-digest, a sketch of a distribution of doubles,
+ * which estimates quantiles and the cumulative distribution
+ * in bounded memory, no matter how many values are added.
+ *
+ * Values are summarised as centroids, a mean and a weight,
+ * which are small near the tails and large near the median.
+ * So extreme quantiles such as p99.9 are the most accurate.
+ * The compression bounds the number of centroids to about itself,
+ * and the error of a quantile q is roughly proportional to
+ * {@code q * (1 - q) / compression}.
+ *
+ * Added values are buffered and merged into the centroids in batches,
+ * so adding is amortised O(log compression).
+ * Digests can be merged, to combine the ones of several threads or nodes,
+ * and serialized into a compact byte array.
+ *
+ * This class is not thread safe, queries also merge the buffer.
+ */
+public final class TDigest
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	/**
+	 * The compression used by the default constructor.
+	 */
+	public static final double DEFAULT_COMPRESSION = 100D;
+
+	/**
+	 * The lowest allowed compression.
+	 */
+	public static final double MIN_COMPRESSION = 10D;
+
+	private static final byte SERIAL_VERSION = 1;
+
+	// -------------------------------------------- //
+	// FIELDS
+	// -------------------------------------------- //
+
+	private final double compression;
+
+	// The centroids, sorted by mean.
+	private double[] means;
+	private long[] weights;
+	private int size = 0;
+
+	// Added, but not yet merged into the centroids.
+	private final double[] bufferMeans;
+	private final long[] bufferWeights;
+	private int bufferSize = 0;
+
+	// Where merging writes to, swapped with the centroids afterwards.
+	private double[] mergeMeans;
+	private long[] mergeWeights;
+
+	private long count = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	// -------------------------------------------- //
+	// CONSTRUCT
+	// -------------------------------------------- //
+
+	/**
+	 * Creates an empty digest, with the default compression.
+	 */
+	public TDigest()
+	{
+		this(DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates an empty digest.
+	 * @param compression
+	 * The accuracy, higher is more accurate but uses more memory.
+	 * At least {@code MIN_COMPRESSION}, 100 to 500 is typical.
+	 * @throws IllegalArgumentException
+	 * If compression is below {@code MIN_COMPRESSION} or NaN.
+	 */
+	public TDigest(double compression) throws IllegalArgumentException
+	{
+		if ( ! (compression >= MIN_COMPRESSION) || compression > 100_000D) throw new IllegalArgumentException("compression: " + compression);
+		this.compression = compression;
+
+		// Adjacent centroids could always be merged otherwise, so there are at most compression + 2.
+		int capacity = (int) Math.ceil(compression) + 3;
+		int bufferCapacity = 5 * capacity;
+		this.means = new double[capacity + bufferCapacity];
+		this.weights = new long[capacity + bufferCapacity];
+		this.mergeMeans = new double[capacity + bufferCapacity];
+		this.mergeWeights = new long[capacity + bufferCapacity];
+		this.bufferMeans = new double[bufferCapacity];
+		this.bufferWeights = new long[bufferCapacity];
+	}
+
+	// -------------------------------------------- //
+	// ADD
+	// -------------------------------------------- //
+
+	/**
+	 * Adds a value to the distribution.
+	 * @param value
+	 * The value to add.
+	 * @throws ArgumentStrangeException
+	 * If value is infinite or NaN.
+	 */
+	public void add(double value) throws ArgumentStrangeException
+	{
+		Argument.handleStrange(value, "value");
+		this.addCentroid(value, 1);
+		this.min = Math.min(this.min, value);
+		this.max = Math.max(this.max, value);
+	}
+
+	/**
+	 * Adds every value of another digest to this.
+	 * The result is about as accurate as if
+	 * the values had been added to this directly.
+	 * @param other
+	 * The digest to merge into this, its values are kept.
+	 * @throws ArgumentNullException
+	 * If other is null.
+	 */
+	public void merge(TDigest other) throws ArgumentNullException
+	{
+		Argument.handleNull(other, "other");
+		if (other == this)
+		{
+			this.compress();
+			other = TDigest.fromBytes(this.toBytes());
+		}
+
+		for (int i = 0; i < other.size; i++)
+		{
+			this.addCentroid(other.means[i], other.weights[i]);
+		}
+		for (int i = 0; i < other.bufferSize; i++)
+		{
+			this.addCentroid(other.bufferMeans[i], other.bufferWeights[i]);
+		}
+		this.min = Math.min(this.min, other.min);
+		this.max = Math.max(this.max, other.max);
+	}
+
+	// -------------------------------------------- //
+	// QUERY
+	// -------------------------------------------- //
+
+	/**
+	 * Estimates the value at a quantile of the distribution,
+	 * the value which a fraction q of the values are below.
+	 * @param q
+	 * The quantile, from 0 to 1. 0.99 is the 99th percentile.
+	 * @return
+	 * The estimated value, between the min and max.
+	 * NaN if nothing was added.
+	 * @throws IllegalArgumentException
+	 * If q is not from 0 to 1.
+	 */
+	public double quantile(double q) throws IllegalArgumentException
+	{
+		if ( ! (q >= 0D && q <= 1D)) throw new IllegalArgumentException("q must be from 0 to 1: " + q);
+		this.compress();
+		if (this.size == 0) return Double.NaN;
+
+		// Linear between the centres of the centroids, and the min and max at the ends.
+		double index = q * this.count;
+		double previousPosition = 0D;
+		double previousValue = this.min;
+		double position = 0D;
+		for (int i = 0; i < this.size; i++)
+		{
+			double centre = position + this.weights[i] / 2D;
+			if (index <= centre) return interpolate(index, previousPosition, previousValue, centre, this.means[i]);
+			position += this.weights[i];
+			previousPosition = centre;
+			previousValue = this.means[i];
+		}
+		return interpolate(index, previousPosition, previousValue, this.count, this.max);
+	}
+
+	/**
+	 * Estimates the cumulative distribution function at x,
+	 * the fraction of the values which are below x.
+	 * This is the inverse of {@code quantile}.
+	 * @param x
+	 * The value to find the fraction below.
+	 * @return
+	 * The estimated fraction, from 0 to 1.
+	 * NaN if nothing was added.
+	 * @throws ArgumentStrangeException
+	 * If x is NaN.
+	 */
+	public double cdf(double x) throws ArgumentStrangeException
+	{
+		Argument.handleNaN(x, "x");
+		this.compress();
+		if (this.size == 0) return Double.NaN;
+		if (x < this.min) return 0D;
+		if (x > this.max) return 1D;
+
+		// The same points as quantile. Where several equal x, the middle of them is used.
+		int points = this.size + 2;
+		double lowPosition = 0D;
+		double lowValue = this.min;
+		double equalFirst = Double.NaN;
+		double equalLast = Double.NaN;
+		double position = 0D;
+		for (int i = 0; i < points; i++)
+		{
+			double pointPosition;
+			double pointValue;
+			if (i == 0)
+			{
+				pointPosition = 0D;
+				pointValue = this.min;
+			}
+			else if (i == points - 1)
+			{
+				pointPosition = this.count;
+				pointValue = this.max;
+			}
+			else
+			{
+				long weight = this.weights[i - 1];
+				pointPosition = position + weight / 2D;
+				pointValue = this.means[i - 1];
+				position += weight;
+			}
+
+			if (pointValue < x)
+			{
+				lowPosition = pointPosition;
+				lowValue = pointValue;
+			}
+			else if (pointValue == x)
+			{
+				if (Double.isNaN(equalFirst)) equalFirst = pointPosition;
+				equalLast = pointPosition;
+			}
+			else
+			{
+				if ( ! Double.isNaN(equalFirst)) return (equalFirst + equalLast) / 2D / this.count;
+				double fraction = (x - lowValue) / (pointValue - lowValue);
+				return (lowPosition + fraction * (pointPosition - lowPosition)) / this.count;
+			}
+		}
+		return (equalFirst + equalLast) / 2D / this.count;
+	}
+
+	// -------------------------------------------- //
+	// GET
+	// -------------------------------------------- //
+
+	/**
+	 * @return
+	 * The number of values added.
+	 */
+	@Pure
+	public long getCount()
+	{
+		return this.count;
+	}
+
+	/**
+	 * @return
+	 * The smallest value added.
+	 * Positive infinity if nothing was added.
+	 */
+	@Pure
+	public double getMin()
+	{
+		return this.min;
+	}
+
+	/**
+	 * @return
+	 * The largest value added.
+	 * Negative infinity if nothing was added.
+	 */
+	@Pure
+	public double getMax()
+	{
+		return this.max;
+	}
+
+	/**
+	 * @return
+	 * The compression this digest was created with.
+	 */
+	@Pure
+	public double getCompression()
+	{
+		return this.compression;
+	}
+
+	/**
+	 * @return
+	 * The number of centroids, which bounds the memory used.
+	 */
+	public int getCentroidCount()
+	{
+		this.compress();
+		return this.size;
+	}
+
+	// -------------------------------------------- //
+	// SERIALIZATION
+	// -------------------------------------------- //
+
+	/**
+	 * Serializes the digest into a byte array,
+	 * about 9 or 10 bytes per centroid.
+	 * @return
+	 * The digest as bytes, read by {@code fromBytes}.
+	 */
+	public byte[] toBytes()
+	{
+		this.compress();
+
+		int length = 1 + 8 + 8 + 8 + 8 + 4;
+		for (int i = 0; i < this.size; i++)
+		{
+			length += 8 + varLongLength(this.weights[i]);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.put(SERIAL_VERSION);
+		buffer.putDouble(this.compression);
+		buffer.putLong(this.count);
+		buffer.putDouble(this.min);
+		buffer.putDouble(this.max);
+		buffer.putInt(this.size);
+		for (int i = 0; i < this.size; i++)
+		{
+			buffer.putDouble(this.means[i]);
+			putVarLong(buffer, this.weights[i]);
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Reads a digest serialized by {@code toBytes}.
+	 * @param bytes
+	 * The serialized digest.
+	 * @return
+	 * The digest, which can be added to and merged as usual.
+	 * @throws ArgumentNullException
+	 * If bytes is null.
+	 * @throws IllegalArgumentException
+	 * If bytes is not a serialized digest.
+	 */
+	@Pure
+	public static TDigest fromBytes(byte[] bytes) throws ArgumentNullException, IllegalArgumentException
+	{
+		Argument.handleNull(bytes, "bytes");
+		try
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			byte version = buffer.get();
+			if (version != SERIAL_VERSION) throw new IllegalArgumentException("Unknown t-digest version: " + version);
+
+			TDigest ret = new TDigest(buffer.getDouble());
+			long count = buffer.getLong();
+			double min = buffer.getDouble();
+			double max = buffer.getDouble();
+			int size = buffer.getInt();
+			if (size < 0 || size > ret.means.length) throw new IllegalArgumentException("Malformed t-digest, centroids: " + size);
+
+			long total = 0;
+			for (int i = 0; i < size; i++)
+			{
+				double mean = buffer.getDouble();
+				long weight = getVarLong(buffer);
+				if (weight <= 0 || ! (mean >= min && mean <= max) || (i > 0 && mean < ret.means[i - 1]))
+				{
+					throw new IllegalArgumentException("Malformed t-digest, centroid: " + i);
+				}
+				ret.means[i] = mean;
+				ret.weights[i] = weight;
+				total += weight;
+			}
+			if (total != count || buffer.hasRemaining()) throw new IllegalArgumentException("Malformed t-digest, count: " + count);
+
+			ret.size = size;
+			ret.count = count;
+			if (size > 0)
+			{
+				ret.min = min;
+				ret.max = max;
+			}
+			return ret;
+		}
+		catch (BufferUnderflowException ex)
+		{
+			throw new IllegalArgumentException("Malformed t-digest, too short", ex);
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private void addCentroid(double mean, long weight)
+	{
+		if (this.bufferSize == this.bufferMeans.length) this.compress();
+		this.bufferMeans[this.bufferSize] = mean;
+		this.bufferWeights[this.bufferSize] = weight;
+		this.bufferSize++;
+		this.count += weight;
+	}
+
+	// Merges the buffer into the centroids, in one pass over both in order.
+	private void compress()
+	{
+		if (this.bufferSize == 0) return;
+		sort(this.bufferMeans, this.bufferWeights, 0, this.bufferSize - 1);
+
+		double total = this.count;
+		double[] outMeans = this.mergeMeans;
+		long[] outWeights = this.mergeWeights;
+		int out = -1;
+		long before = 0; // The weight before the current output centroid.
+		double limit = 0D; // The weight, at which the current output centroid is full.
+
+		int i = 0;
+		int j = 0;
+		while (i < this.size || j < this.bufferSize)
+		{
+			double mean;
+			long weight;
+			if (j >= this.bufferSize || (i < this.size && this.means[i] <= this.bufferMeans[j]))
+			{
+				mean = this.means[i];
+				weight = this.weights[i++];
+			}
+			else
+			{
+				mean = this.bufferMeans[j];
+				weight = this.bufferWeights[j++];
+			}
+
+			if (out >= 0 && before + outWeights[out] + weight <= limit)
+			{
+				long merged = outWeights[out] + weight;
+				outMeans[out] += (mean - outMeans[out]) * weight / merged;
+				outWeights[out] = merged;
+			}
+			else
+			{
+				if (out >= 0) before += outWeights[out];
+				out++;
+				outMeans[out] = mean;
+				outWeights[out] = weight;
+				// The centroid may grow until its k scale spans 1.
+				limit = total * this.inverseScale(this.scale(before / total) + 1D);
+			}
+		}
+
+		this.mergeMeans = this.means;
+		this.mergeWeights = this.weights;
+		this.means = outMeans;
+		this.weights = outWeights;
+		this.size = out + 1;
+		this.bufferSize = 0;
+	}
+
+	// The k1 scale function, which makes centroids small near the tails.
+	private double scale(double q)
+	{
+		return this.compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+	}
+
+	private double inverseScale(double k)
+	{
+		if (k >= this.compression / 4) return 1D;
+		return (Math.sin(k * (2 * Math.PI) / this.compression) + 1) / 2;
+	}
+
+	private static double interpolate(double index, double fromPosition, double fromValue, double toPosition, double toValue)
+	{
+		if (toPosition <= fromPosition) return toValue;
+		double fraction = (index - fromPosition) / (toPosition - fromPosition);
+		return fromValue + fraction * (toValue - fromValue);
+	}
+
+	// Quicksort of both arrays by the means, inclusive bounds.
+	private static void sort(double[] means, long[] weights, int low, int high)
+	{
+		while (high - low > 16)
+		{
+			double pivot = means[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j)
+			{
+				while (means[i] < pivot) i++;
+				while (means[j] > pivot) j--;
+				if (i <= j) swap(means, weights, i++, j--);
+			}
+			// Recurse into the smaller part, loop on the larger.
+			if (j - low < high - i)
+			{
+				sort(means, weights, low, j);
+				low = i;
+			}
+			else
+			{
+				sort(means, weights, i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++)
+		{
+			for (int j = i; j > low && means[j - 1] > means[j]; j--)
+			{
+				swap(means, weights, j - 1, j);
+			}
+		}
+	}
+
+	private static void swap(double[] means, long[] weights, int i, int j)
+	{
+		double mean = means[i];
+		means[i] = means[j];
+		means[j] = mean;
+		long weight = weights[i];
+		weights[i] = weights[j];
+		weights[j] = weight;
+	}
+
+	private static int varLongLength(long value)
+	{
+		return Math.max(1, (64 - Long.numberOfLeadingZeros(value) + 6) / 7);
+	}
+
+	private static void putVarLong(ByteBuffer buffer, long value)
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static long getVarLong(ByteBuffer buffer)
+	{
+		long ret = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			byte b = buffer.get();
+			ret |= (long) (b & 0x7F) << shift;
+			if (b >= 0) return ret;
+		}
+		throw new IllegalArgumentException("Malformed t-digest, var long too long");
+	}
+
+}
@@ -26,6 +26,7 @@ package dk.muj.mujlib.util;
 
 import dk.muj.mujlib.arg.Argument;
 import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.collection.ConcurrentAppendList;
 import dk.muj.mujlib.doc.Pure;
 
 import java.util.*;
@@ -33,7 +34,7 @@ import java.util.*;
 /**
  * This is a static utility class for dealing with Collections.
  * It has some easy constructors for some kinds of collections,
- * more specifically, list, set, linkedSet and map.
+ * more specifically, list, set, linkedSet, map and appendList.
  *
  * It also has a range list. Which is a list of integers,
  * in a specific range.
@@ -145,6 +146,30 @@ public final class MCollections
 		return list;
 	}
 
+	/**
+	 * Creates a new append only list from the passed varargs.
+	 * Many threads can append to it at once, without locking.
+	 * See {@code ConcurrentAppendList} for details.
+	 * If the array is modified afterwards, the list won't be affected.
+	 *
+	 * @param elements
+	 * The array to base this list of.
+	 * @param <E>
+	 * Type of the varargs, and the type for the list.
+	 * @return list
+	 * A list only containing the passed elements,
+	 * in the order they were passed.
+	 * @throws ArgumentNullException
+	 * If elements, or any of its contents, is null.
+	 */
+	@Pure
+	@SafeVarargs
+	@SuppressWarnings("varargs")
+	public static <E> ConcurrentAppendList<E> appendList(E... elements) throws ArgumentNullException
+	{
+		return ConcurrentAppendList.of(elements);
+	}
+
 	/**
 	 * Creates a map from the passed varargs.
 	 * The passed classes, are provided, so that
@@ -24,9 +24,25 @@
 
 package dk.muj.mujlib.util;
 
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.arg.ArgumentStrangeException;
 import dk.muj.mujlib.doc.Pure;
+import dk.muj.mujlib.math.Montgomery;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class has some utility methods,
@@ -66,124 +82,1639 @@ public final class Mth
 	// FACTORIAL
 	// -------------------------------------------- //
 
+	// Every factorial which fits in a long.
+	private static final long[] FACTORIALS = {
+		1L, 1L, 2L, 6L, 24L, 120L, 720L, 5040L, 40320L, 362880L, 3628800L,
+		39916800L, 479001600L, 6227020800L, 87178291200L, 1307674368000L,
+		20922789888000L, 355687428096000L, 6402373705728000L,
+		121645100408832000L, 2432902008176640000L,
+	};
+
+	// Large factorials recently calculated. Smaller ones are cheaper to redo than to keep.
+	// They are calculated outside of the map, so no lock is held meanwhile,
+	// and the map is simply emptied when full.
+	private static final int FACTORIAL_MEMO_MIN = 1000;
+	private static final int FACTORIAL_MEMO_MAX = 16;
+	private static final ConcurrentHashMap<Long, BigInteger> FACTORIAL_MEMO = new ConcurrentHashMap<>();
+
+	// Below this many packed factors, a product is not worth splitting between threads.
+	private static final int PRODUCT_PARALLEL_THRESHOLD = 128;
+
+	/**
+	 * Calculates factorial of n.
+	 * This method uses BigInteger, it so is slow,
+	 * but can handle very large numbers.
+	 *
+	 * It uses the prime swing algorithm, so the result is built from
+	 * a few large multiplications of similar size, which run in parallel,
+	 * rather than n multiplications by a small number.
+	 * Large results are remembered, so asking again is cheap.
+	 * @param n
+	 * The number to calculate factorial for.
+	 * @return
+	 * Factorial of n
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 * @throws ArithmeticException
+	 * If the result is too large for a BigInteger.
+	 */
+	public static BigInteger factorialPrecise(long n) throws IllegalArgumentException, ArithmeticException
+	{
+		if (n < 0) throw new IllegalArgumentException("n must be positive.");
+		if (n < FACTORIALS.length) return BigInteger.valueOf(FACTORIALS[(int) n]);
+		if (n > Integer.MAX_VALUE) throw new ArithmeticException("Cannot calculate factorial for n higher than " + Integer.MAX_VALUE);
+		if (n < FACTORIAL_MEMO_MIN) return factorialPrimeSwing((int) n);
+
+		BigInteger ret = FACTORIAL_MEMO.get(n);
+		if (ret != null) return ret;
+
+		ret = factorialPrimeSwing((int) n);
+		if (FACTORIAL_MEMO.size() >= FACTORIAL_MEMO_MAX) FACTORIAL_MEMO.clear();
+		BigInteger previous = FACTORIAL_MEMO.putIfAbsent(n, ret);
+		return previous != null ? previous : ret;
+	}
+
+	/**
+	 * Calculates factorial of n
+	 * This method uses long, so it is fast,
+	 * but can't handle very large numbers.
+	 * It is a lookup in a table.
+	 * @param n
+	 * The number to calculate factorial for.
+	 * @return
+	 * Factorial of n
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 * @throws ArithmeticException
+	 * If an overflow occurs.
+	 * An overflow will occur if n is more than 20
+	 */
+	@Pure
+	public static long factorialExact(int n) throws IllegalArgumentException, ArithmeticException
+	{
+		if (n < 0) throw new IllegalArgumentException("n:" + n);
+		if (n > 20) throw new ArithmeticException("Cannot calculate factorial for n higher than 20.");
+		return FACTORIALS[n];
+	}
+
+	// n! = (n/2)!^2 * swing(n), where swing(n) is a product of few prime powers.
+	// The powers of two are counted separately and shifted in at the end.
+	private static BigInteger factorialPrimeSwing(int n)
+	{
+		int[] primes = primesUpTo(n);
+		return oddFactorial(n, primes).shiftLeft(n - Integer.bitCount(n));
+	}
+
+	private static BigInteger oddFactorial(int n, int[] primes)
+	{
+		if (n < 3) return BigInteger.ONE;
+		BigInteger half = oddFactorial(n / 2, primes);
+		return half.multiply(half).multiply(oddSwing(n, primes));
+	}
+
+	// The odd part of n! / (n/2)!^2. The exponent of p is the number of odd n / p^k.
+	private static BigInteger oddSwing(int n, int[] primes)
+	{
+		long[] factors = new long[primes.length];
+		int count = 0;
+		for (int i = 1; i < primes.length && primes[i] <= n; i++)
+		{
+			int p = primes[i];
+			long power = 1;
+			for (int q = n / p; q > 0; q /= p)
+			{
+				if ((q & 1) == 1) power *= p;
+			}
+			if (power > 1) factors[count++] = power;
+		}
+		return product(factors, count);
+	}
+
+	// -------------------------------------------- //
+	// BINOMIAL COEFFICIENT
+	// -------------------------------------------- //
+
+	// Every binomial coefficient with n up to this fits in a long.
+	private static final int PASCAL_MAX_N = 66;
+
+	// Rows of Pascal's triangle, up to the middle, computed when first needed.
+	private static final AtomicReferenceArray<long[]> PASCAL_ROWS = new AtomicReferenceArray<>(PASCAL_MAX_N + 1);
+
+	/**
+	 * Calculates binomial coefficient
+	 * for n over r.
+	 * This method uses BigInteger, so it is slow,
+	 * but can handle very large numbers.
+	 * It multiplies the prime factors of the result,
+	 * found using Legendre's formula, rather than dividing factorials.
+	 * @param n
+	 * n in binomial coefficient
+	 * @param r
+	 * r in binomial coefficient
+	 * @return
+	 * Binomial coefficient for n over r.
+	 * @throws IllegalArgumentException
+	 * If r is higher than n, or if n or r is not positive.
+	 */
+	@Pure
+	public static BigInteger binomialPrecise(int n, int r) throws IllegalArgumentException
+	{
+		if (r > n || n <= 0 || r <= 0) throw new IllegalArgumentException("r: " + r + " n: " + n);
+		if (n == r) return BigInteger.ONE;
+		if (r == n - 1 || r == 1) return BigInteger.valueOf(n);
+		if (n <= PASCAL_MAX_N) return BigInteger.valueOf(pascal(n, r));
+
+		// The exponent of p is the number of borrows when subtracting r from n in base p.
+		// So every prime power is at most n, and fits in a long.
+		long[] factors = new long[n];
+		int count = 0;
+		for (int p : primesUpTo(n))
+		{
+			long power = 1;
+			for (long pk = p; pk <= n; pk *= p)
+			{
+				if ((n / pk) - (r / pk) - ((n - r) / pk) > 0) power *= p;
+			}
+			if (power > 1) factors[count++] = power;
+		}
+		return product(factors, count);
+	}
+
+	/**
+	 * Calculates binomial coefficient
+	 * for n over r.
+	 * This uses long, so is fast,
+	 * but can't handle very large numbers.
+	 * Small n are looked up in a cached Pascal's triangle.
+	 * Otherwise it multiplies and divides one factor at a time,
+	 * cancelling common divisors first, so it overflows
+	 * only if the result doesn't fit in a long.
+	 * @param n
+	 * n in binomial coefficient
+	 * @param r
+	 * r in binomial coefficient
+	 * @return
+	 * Binomial coefficient for n over r.
+	 * @throws IllegalArgumentException
+	 * if r is higher than n, or if n or r is not positive.
+	 * @throws ArithmeticException
+	 * if the result doesn't fit in a long.
+	 */
+	@Pure
+	public static long binomialExact(int n, int r) throws IllegalArgumentException, ArithmeticException
+	{
+		if (r > n || n <= 0 || r <= 0) throw new IllegalArgumentException("r: " + r + " n: " + n);
+		if (n == r) return 1;
+		if (r == n - 1 || r == 1) return n;
+		if (n <= PASCAL_MAX_N) return pascal(n, r);
+
+		// After step i the result is binomial(n - r + i, i), which only grows.
+		r = Math.min(r, n - r);
+		long ret = 1;
+		for (int i = 1; i <= r; i++)
+		{
+			long factor = n - r + i;
+			long divisor = i;
+			long gcd = gcd(ret, divisor);
+			ret /= gcd;
+			divisor /= gcd;
+			ret = Math.multiplyExact(ret, factor / divisor);
+		}
+		return ret;
+	}
+
+	private static long pascal(int n, int r)
+	{
+		long[] row = pascalRow(n);
+		return row[Math.min(r, n - r)];
+	}
+
+	private static long[] pascalRow(int n)
+	{
+		long[] ret = PASCAL_ROWS.get(n);
+		if (ret != null) return ret;
+
+		// Rows are only ever set to the same values, so racing threads are harmless.
+		int known = n;
+		while (known > 0 && PASCAL_ROWS.get(known - 1) == null)
+		{
+			known--;
+		}
+		long[] previous = (known == 0) ? null : PASCAL_ROWS.get(known - 1);
+		for (int i = known; i <= n; i++)
+		{
+			long[] row = new long[i / 2 + 1];
+			row[0] = 1;
+			for (int j = 1; j < row.length; j++)
+			{
+				// The element right of the middle of the previous row mirrors the one left of it.
+				long right = (j < previous.length) ? previous[j] : previous[i - 1 - j];
+				row[j] = previous[j - 1] + right;
+			}
+			PASCAL_ROWS.set(i, row);
+			previous = row;
+		}
+		return previous;
+	}
+
+	// -------------------------------------------- //
+	// LOGARITHMS OF FACTORIALS
+	// -------------------------------------------- //
+	// For likelihoods, where the factorials themselves are far too large.
+
+	// ln(n!) for small n, from the exact factorials, so they are correctly rounded.
+	private static final double[] LOG_FACTORIALS = logFactorialTable(256);
+
+	private static final double HALF_LOG_TWO_PI = 0.9189385332046727;
+
+	// Below this, the Stirling series isn't accurate enough.
+	private static final double STIRLING_MIN = 16D;
+
+	// 1 minus the Euler-Mascheroni constant.
+	private static final double ONE_MINUS_EULER = 0.42278433509846713;
+
+	// (-1)^k (zeta(k) - 1) / k for k from 2, enough for t up to 0.5.
+	private static final double[] LOG_GAMMA_SERIES = {
+		0.3224670334241132, -0.0673523010531981, 0.020580808427784546, -0.007385551028673986,
+		0.0028905103307415234, -0.001192753911703261, 0.0005096695247430425, -0.00022315475845357939,
+		9.945751278180853e-05, -4.492623673813314e-05, 2.050721277567069e-05, -9.439488275268397e-06,
+		4.374866789907488e-06, -2.039215753801366e-06, 9.55141213040742e-07, -4.492469198764566e-07,
+		2.1207184805554665e-07, -1.0043224823968099e-07, 4.7698101693639804e-08, -2.2711094608943164e-08,
+		1.0838659214896955e-08, -5.183475041970047e-09, 2.4836745438024785e-09, -1.1921401405860912e-09,
+		5.731367241678862e-10, -2.7595228851242334e-10, 1.330476437424449e-10, -6.4229645638381e-11,
+		3.1044247747322276e-11,
+	};
+
+	// Binomial coefficients with r up to this are calculated as a product instead.
+	private static final int LOG_BINOMIAL_PRODUCT_MAX_R = 16;
+
+	/**
+	 * Calculates the natural logarithm of n!.
+	 * Small n are looked up in a table,
+	 * larger n use the Stirling series.
+	 * It is accurate to a few ulps, and takes nanoseconds.
+	 * @param n
+	 * The number to find the log factorial of.
+	 * @return
+	 * ln(n!)
+	 * @throws IllegalArgumentException
+	 * If n is negative.
+	 */
+	@Pure
+	public static double logFactorial(long n) throws IllegalArgumentException
+	{
+		if (n < 0) throw new IllegalArgumentException("n: " + n);
+		if (n < LOG_FACTORIALS.length) return LOG_FACTORIALS[(int) n];
+
+		double x = n;
+		double log = Math.log(x);
+		return x * (log - 1D) + 0.5D * log + HALF_LOG_TWO_PI + stirlingCorrection(x);
+	}
+
+	/**
+	 * Calculates the natural logarithm of n! for every n.
+	 * @param n
+	 * The numbers to find the log factorial of.
+	 * @return
+	 * An array where element i is ln(n[i]!).
+	 * @throws IllegalArgumentException
+	 * If any n is negative.
+	 */
+	@Pure
+	public static double[] logFactorial(long[] n) throws IllegalArgumentException
+	{
+		Argument.handleNull(n, "n");
+		double[] ret = new double[n.length];
+		for (int i = 0; i < n.length; i++)
+		{
+			ret[i] = logFactorial(n[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Calculates the natural logarithm of the binomial coefficient n over r,
+	 * without calculating any factorials,
+	 * so it works for any n and is accurate to a few ulps.
+	 * Small r are a product of fractions,
+	 * larger use Loader's saddle point form of Stirling's series,
+	 * which has no cancellation.
+	 * @param n
+	 * n in binomial coefficient
+	 * @param r
+	 * r in binomial coefficient
+	 * @return
+	 * ln(binomial(n, r))
+	 * @throws IllegalArgumentException
+	 * If r is higher than n, or if n or r is negative.
+	 */
+	@Pure
+	public static double logBinomial(long n, long r) throws IllegalArgumentException
+	{
+		if (r > n || r < 0) throw new IllegalArgumentException("r: " + r + " n: " + n);
+		long k = Math.min(r, n - r);
+		if (k == 0) return 0D;
+		if (n <= PASCAL_MAX_N) return Math.log(binomialExact((int) n, (int) k));
+
+		if (k <= LOG_BINOMIAL_PRODUCT_MAX_R)
+		{
+			double product = 1D;
+			for (long i = 1; i <= k; i++)
+			{
+				product *= (double) (n - k + i) / i;
+			}
+			return Math.log(product);
+		}
+
+		double x = n;
+		double y = k;
+		double z = n - k;
+		return y * Math.log(x / y) - z * Math.log1p(-y / x)
+			- 0.5D * Math.log(y * (z / x)) - HALF_LOG_TWO_PI
+			+ stirlingError(n) - stirlingError(k) - stirlingError(n - k);
+	}
+
+	/**
+	 * Calculates the natural logarithm of the binomial coefficient n over r,
+	 * for every r.
+	 * @param n
+	 * n in binomial coefficient
+	 * @param r
+	 * The r in binomial coefficient, of each result.
+	 * @return
+	 * An array where element i is ln(binomial(n, r[i])).
+	 * @throws IllegalArgumentException
+	 * If any r is higher than n, or if n or any r is negative.
+	 */
+	@Pure
+	public static double[] logBinomial(long n, long[] r) throws IllegalArgumentException
+	{
+		Argument.handleNull(r, "r");
+		double[] ret = new double[r.length];
+		for (int i = 0; i < r.length; i++)
+		{
+			ret[i] = logBinomial(n, r[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Calculates the natural logarithm of the gamma function,
+	 * which is ln((x-1)!) extended to all positive numbers.
+	 * Large x use the Stirling series, smaller are moved next to 2
+	 * by {@code gamma(x + 1) = x gamma(x)}, where a Taylor series is used.
+	 * It is accurate to a few ulps, but only absolutely,
+	 * not relatively, close to 1 and 2 where the result is 0.
+	 * @param x
+	 * The number to find the log gamma of.
+	 * @return
+	 * ln(gamma(x))
+	 * @throws ArgumentStrangeException
+	 * If x is infinite or NaN.
+	 * @throws IllegalArgumentException
+	 * If x is not positive.
+	 */
+	@Pure
+	public static double logGamma(double x) throws ArgumentStrangeException, IllegalArgumentException
+	{
+		Argument.handleStrange(x, "x");
+		if (x <= 0D) throw new IllegalArgumentException("x: " + x);
+
+		if (x >= STIRLING_MIN)
+		{
+			double log = Math.log(x);
+			return (x - 0.5D) * log - x + HALF_LOG_TWO_PI + stirlingCorrection(x);
+		}
+
+		if (x < 1.5D)
+		{
+			double divisor = 1D;
+			while (x < 1.5D)
+			{
+				divisor *= x;
+				x += 1D;
+			}
+			return logGammaNearTwo(x - 2D) - Math.log(divisor);
+		}
+
+		double product = 1D;
+		while (x >= 2.5D)
+		{
+			x -= 1D;
+			product *= x;
+		}
+		return logGammaNearTwo(x - 2D) + Math.log(product);
+	}
+
+	// ln(gamma(2 + t)) for t from -0.5 to 0.5, the Taylor series with coefficients (-1)^k (zeta(k) - 1) / k.
+	private static double logGammaNearTwo(double t)
+	{
+		double sum = 0D;
+		for (int i = LOG_GAMMA_SERIES.length - 1; i >= 0; i--)
+		{
+			sum = sum * t + LOG_GAMMA_SERIES[i];
+		}
+		return t * (ONE_MINUS_EULER + t * sum);
+	}
+
+	// ln(m!) minus Stirling's approximation of it, (m + 1/2) ln(m) - m + ln(2 pi) / 2.
+	private static double stirlingError(long m)
+	{
+		if (m >= STIRLING_MIN) return stirlingCorrection(m);
+		return LOG_FACTORIALS[(int) m] - (m + 0.5D) * Math.log(m) + m - HALF_LOG_TWO_PI;
+	}
+
+	// The terms of the Stirling series after the approximation, accurate from STIRLING_MIN.
+	private static double stirlingCorrection(double x)
+	{
+		double inverse = 1D / x;
+		double inverse2 = inverse * inverse;
+		return inverse * (1D / 12 - inverse2 * (1D / 360 - inverse2 * (1D / 1260 - inverse2 * (1D / 1680 - inverse2 * (1D / 1188 - inverse2 * (691D / 360360))))));
+	}
+
+	private static double[] logFactorialTable(int max)
+	{
+		double[] ret = new double[max + 1];
+		BigInteger factorial = BigInteger.ONE;
+		for (int n = 1; n <= max; n++)
+		{
+			factorial = factorial.multiply(BigInteger.valueOf(n));
+			// The 62 highest bits are exact as a double, up to rounding.
+			int shift = Math.max(0, factorial.bitLength() - 62);
+			ret[n] = Math.log(factorial.shiftRight(shift).doubleValue()) + shift * Math.log(2D);
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// COMBINATIONS
+	// -------------------------------------------- //
+
+	/**
+	 * Finds the next larger number with the same number of 1 bits,
+	 * using Gosper's hack.
+	 * When the bits of a number are a subset of up to 64 elements,
+	 * this enumerates every subset of the same size, in increasing order.
+	 * Bits are treated as unsigned, so bit 63 is an element too.
+	 * @param bits
+	 * The current subset.
+	 * @return
+	 * The next subset of the same size.
+	 * @throws IllegalArgumentException
+	 * If bits is 0, it has no next.
+	 * @throws ArithmeticException
+	 * If bits is the last subset of its size, its 1 bits are all at the top.
+	 */
+	@Pure
+	public static long nextCombination(long bits) throws IllegalArgumentException, ArithmeticException
+	{
+		if (bits == 0) throw new IllegalArgumentException("bits must not be 0");
+
+		long lowest = bits & -bits;
+		long ripple = bits + lowest;
+		if (ripple == 0) throw new ArithmeticException("no next combination of: " + Long.toBinaryString(bits));
+
+		// The bits which moved, shifted back down to the bottom.
+		long ones = ((ripple ^ bits) >>> 2) >>> Long.numberOfTrailingZeros(lowest);
+		return ripple | ones;
+	}
+
+	/**
+	 * Steps to the next k-combination of the numbers from 0 to n,
+	 * in lexicographic order, where k is the length of the array.
+	 * The array is changed in place, so nothing is allocated.
+	 * The combination must be ascending and every element less than n.
+	 * @param combination
+	 * The current combination, which is changed into the next.
+	 * @param n
+	 * The number of elements to choose from.
+	 * @return
+	 * True if there was a next combination,
+	 * false if combination was the last, then it is left unchanged.
+	 * @throws ArgumentNullException
+	 * If combination is null.
+	 */
+	public static boolean nextCombination(int[] combination, int n) throws ArgumentNullException
+	{
+		Argument.handleNull(combination, "combination");
+
+		// Find the rightmost element which can still grow, and reset the ones after it.
+		int k = combination.length;
+		int i = k - 1;
+		while (i >= 0 && combination[i] == n - k + i)
+		{
+			i--;
+		}
+		if (i < 0) return false;
+
+		int value = combination[i];
+		for (int j = i; j < k; j++)
+		{
+			combination[j] = ++value;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the position of a k-combination of the numbers from 0 to n,
+	 * among all of them in lexicographic order,
+	 * where k is the length of the array.
+	 * This is the inverse of {@code unrankCombination}.
+	 * @param combination
+	 * The combination, ascending and every element less than n.
+	 * @param n
+	 * The number of elements to choose from.
+	 * @return
+	 * The rank of the combination, from 0 to binomial(n, k).
+	 * @throws ArgumentNullException
+	 * If combination is null.
+	 * @throws IllegalArgumentException
+	 * If combination is not an ascending combination of numbers from 0 to n.
+	 * @throws ArithmeticException
+	 * If binomial(n, k) doesn't fit in a long.
+	 */
+	@Pure
+	public static long rankCombination(int[] combination, int n) throws ArgumentNullException, IllegalArgumentException, ArithmeticException
+	{
+		Argument.handleNull(combination, "combination");
+		int k = combination.length;
+		if (k > n) throw new IllegalArgumentException("k: " + k + " n: " + n);
+
+		// Counts the combinations after this one, the combinadic of its mirror image.
+		long after = 0;
+		int previous = -1;
+		for (int i = 0; i < k; i++)
+		{
+			int element = combination[i];
+			if (element <= previous || element >= n) throw new IllegalArgumentException("combination is not ascending below n: " + Arrays.toString(combination));
+			previous = element;
+			after += choose(n - 1 - element, k - i);
+		}
+		return choose(n, k) - 1 - after;
+	}
+
+	/**
+	 * Finds the k-combination of the numbers from 0 to n,
+	 * at a position among all of them in lexicographic order,
+	 * where k is the length of the array.
+	 * This is the inverse of {@code rankCombination},
+	 * and can be used to split the combinations into ranges.
+	 * @param rank
+	 * The position of the combination.
+	 * @param n
+	 * The number of elements to choose from.
+	 * @param combination
+	 * The array to write the combination into.
+	 * @throws ArgumentNullException
+	 * If combination is null.
+	 * @throws IllegalArgumentException
+	 * If rank is negative or not less than binomial(n, k).
+	 * @throws ArithmeticException
+	 * If binomial(n, k) doesn't fit in a long.
+	 */
+	public static void unrankCombination(long rank, int n, int[] combination) throws ArgumentNullException, IllegalArgumentException, ArithmeticException
+	{
+		Argument.handleNull(combination, "combination");
+		int k = combination.length;
+		if (k > n) throw new IllegalArgumentException("k: " + k + " n: " + n);
+		long count = choose(n, k);
+		if (rank < 0 || rank >= count) throw new IllegalArgumentException("rank: " + rank + " count: " + count);
+
+		// Greedily the largest mirrored element whose combinations still fit.
+		long after = count - 1 - rank;
+		int mirrored = n - 1;
+		for (int i = 0; i < k; i++)
+		{
+			long below;
+			while ((below = choose(mirrored, k - i)) > after)
+			{
+				mirrored--;
+			}
+			after -= below;
+			combination[i] = n - 1 - mirrored;
+			mirrored--;
+		}
+	}
+
+	/**
+	 * Gets every k-combination of the numbers from 0 to n,
+	 * in lexicographic order.
+	 * The same array is passed for every combination,
+	 * changed in place, so copy it to keep it.
+	 * The stream can be made parallel,
+	 * it is split into ranges of ranks, each with its own array.
+	 * @param n
+	 * The number of elements to choose from.
+	 * @param k
+	 * The number of elements in each combination.
+	 * @return
+	 * A sized stream of the combinations.
+	 * @throws IllegalArgumentException
+	 * If k is higher than n, or if either is negative.
+	 * @throws ArithmeticException
+	 * If binomial(n, k) doesn't fit in a long.
+	 */
+	@Pure
+	public static Stream<int[]> combinations(int n, int k) throws IllegalArgumentException, ArithmeticException
+	{
+		if (k > n || k < 0) throw new IllegalArgumentException("k: " + k + " n: " + n);
+		return StreamSupport.stream(new CombinationSpliterator(n, k, 0, choose(n, k)), false);
+	}
+
+	// Like binomialExact, but also defined when r is 0 or higher than n.
+	private static long choose(int n, int r)
+	{
+		if (r > n) return 0;
+		if (r == 0 || r == n) return 1;
+		return binomialExact(n, r);
+	}
+
+	private static final class CombinationSpliterator implements Spliterator<int[]>
+	{
+		private final int n;
+		private final int k;
+		private long index;
+		private long end;
+
+		// Created when first advanced, so splitting allocates nothing.
+		private int[] combination = null;
+
+		private CombinationSpliterator(int n, int k, long index, long end)
+		{
+			this.n = n;
+			this.k = k;
+			this.index = index;
+			this.end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super int[]> action)
+		{
+			if (this.index >= this.end) return false;
+
+			if (this.combination == null)
+			{
+				this.combination = new int[this.k];
+				unrankCombination(this.index, this.n, this.combination);
+			}
+			else
+			{
+				nextCombination(this.combination, this.n);
+			}
+			this.index++;
+			action.accept(this.combination);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super int[]> action)
+		{
+			while (this.tryAdvance(action))
+			{
+				// Every call steps to the next combination.
+			}
+		}
+
+		@Override
+		public Spliterator<int[]> trySplit()
+		{
+			long size = this.end - this.index;
+			if (size < 2) return null;
+
+			long middle = this.index + size / 2;
+			CombinationSpliterator ret = new CombinationSpliterator(this.n, this.k, middle, this.end);
+			// Only the end moves, so the current combination stays valid.
+			this.end = middle;
+			return ret;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			return this.end - this.index;
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED | SIZED | SUBSIZED | NONNULL;
+		}
+	}
+
+	// -------------------------------------------- //
+	// PERMUTATIONS
+	// -------------------------------------------- //
+
+	/**
+	 * Rearranges the array into the next permutation in lexicographic order.
+	 * Equal elements are handled, so every distinct permutation is found once.
+	 * The array is changed in place, so nothing is allocated.
+	 * @param array
+	 * The current permutation, which is changed into the next.
+	 * @return
+	 * True if there was a next permutation,
+	 * false if array was the last, then it is sorted into the first.
+	 * @throws ArgumentNullException
+	 * If array is null.
+	 */
+	public static boolean nextPermutation(int[] array) throws ArgumentNullException
+	{
+		Argument.handleNull(array, "array");
+
+		// The rightmost element smaller than its successor, everything after it is descending.
+		int i = array.length - 2;
+		while (i >= 0 && array[i] >= array[i + 1])
+		{
+			i--;
+		}
+		if (i >= 0)
+		{
+			int j = array.length - 1;
+			while (array[j] <= array[i])
+			{
+				j--;
+			}
+			swap(array, i, j);
+		}
+		reverse(array, i + 1, array.length);
+		return i >= 0;
+	}
+
+	/**
+	 * Passes every permutation of the array to the action,
+	 * using Heap's algorithm, which makes one swap between permutations.
+	 * The array itself is passed, changed in place,
+	 * so copy it to keep it. The order is not lexicographic,
+	 * and equal elements give repeated permutations.
+	 * Afterwards the array is left as the last permutation.
+	 * @param array
+	 * The elements to permute, the first permutation is the array as is.
+	 * @param action
+	 * The action to pass every permutation to.
+	 * It must not change the array.
+	 * @throws ArgumentNullException
+	 * If array or action is null.
+	 */
+	public static void forEachPermutation(int[] array, Consumer<int[]> action) throws ArgumentNullException
+	{
+		Argument.handleNull(array, "array");
+		Argument.handleNull(action, "action");
+
+		action.accept(array);
+
+		// The loop counters of the recursive algorithm.
+		int[] counters = new int[array.length];
+		int i = 1;
+		while (i < array.length)
+		{
+			if (counters[i] < i)
+			{
+				swap(array, ((i & 1) == 0) ? 0 : counters[i], i);
+				action.accept(array);
+				counters[i]++;
+				i = 1;
+			}
+			else
+			{
+				counters[i] = 0;
+				i++;
+			}
+		}
+	}
+
+	private static void swap(int[] array, int i, int j)
+	{
+		int temp = array[i];
+		array[i] = array[j];
+		array[j] = temp;
+	}
+
+	private static void reverse(int[] array, int from, int to)
+	{
+		for (int i = from, j = to - 1; i < j; i++, j--)
+		{
+			swap(array, i, j);
+		}
+	}
+
+	// -------------------------------------------- //
+	// INTEGER ROOTS AND LOGARITHMS
+	// -------------------------------------------- //
+
+	// The largest long whose square fits in a long.
+	private static final long SQRT_MAX_LONG = 3037000499L;
+
+	private static final int[] POWERS_OF_TEN_INT = {
+		1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+	};
+
+	private static final long[] POWERS_OF_TEN_LONG = {
+		1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+		10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+		1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+	};
+
+	/**
+	 * Calculates the integer square root,
+	 * the largest number whose square is at most n.
+	 * A double holds every int exactly, so one square root is exact.
+	 * @param n
+	 * The number to find the square root of.
+	 * @return
+	 * The square root of n, rounded down.
+	 * @throws IllegalArgumentException
+	 * If n is negative.
+	 */
+	@Pure
+	public static int isqrt(int n) throws IllegalArgumentException
+	{
+		if (n < 0) throw new IllegalArgumentException("n: " + n);
+		return (int) Math.sqrt(n);
+	}
+
+	/**
+	 * Calculates the integer square root,
+	 * the largest number whose square is at most n.
+	 * The double square root is off by at most one, which is corrected.
+	 * @param n
+	 * The number to find the square root of.
+	 * @return
+	 * The square root of n, rounded down.
+	 * @throws IllegalArgumentException
+	 * If n is negative.
+	 */
+	@Pure
+	public static long isqrt(long n) throws IllegalArgumentException
+	{
+		if (n < 0) throw new IllegalArgumentException("n: " + n);
+		long ret = (long) Math.sqrt(n);
+		if (ret * ret > n) return ret - 1;
+		if (ret < SQRT_MAX_LONG && (ret + 1) * (ret + 1) <= n) return ret + 1;
+		return ret;
+	}
+
+	/**
+	 * Calculates the base 2 logarithm, rounded down.
+	 * That is the index of the highest 1 bit.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded down.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int floorLog2(int n) throws IllegalArgumentException
+	{
+		if (n <= 0) throw new IllegalArgumentException("n: " + n);
+		return 31 - Integer.numberOfLeadingZeros(n);
+	}
+
+	/**
+	 * Calculates the base 2 logarithm, rounded down.
+	 * That is the index of the highest 1 bit.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded down.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int floorLog2(long n) throws IllegalArgumentException
+	{
+		if (n <= 0) throw new IllegalArgumentException("n: " + n);
+		return 63 - Long.numberOfLeadingZeros(n);
+	}
+
+	/**
+	 * Calculates the base 2 logarithm, rounded up.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded up.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int ceilLog2(int n) throws IllegalArgumentException
+	{
+		if (n <= 0) throw new IllegalArgumentException("n: " + n);
+		return 32 - Integer.numberOfLeadingZeros(n - 1);
+	}
+
+	/**
+	 * Calculates the base 2 logarithm, rounded up.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded up.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int ceilLog2(long n) throws IllegalArgumentException
+	{
+		if (n <= 0) throw new IllegalArgumentException("n: " + n);
+		return 64 - Long.numberOfLeadingZeros(n - 1);
+	}
+
+	/**
+	 * Calculates the base 10 logarithm, rounded down.
+	 * That is one less than the number of decimal digits.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded down.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int floorLog10(int n) throws IllegalArgumentException
+	{
+		int log2 = floorLog2(n);
+		// 1233 / 4096 is just below log10(2), so this is the answer or one too high.
+		int ret = ((log2 + 1) * 1233) >>> 12;
+		return (n < POWERS_OF_TEN_INT[ret]) ? ret - 1 : ret;
+	}
+
+	/**
+	 * Calculates the base 10 logarithm, rounded down.
+	 * That is one less than the number of decimal digits.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded down.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int floorLog10(long n) throws IllegalArgumentException
+	{
+		int log2 = floorLog2(n);
+		// 1233 / 4096 is just below log10(2), so this is the answer or one too high.
+		int ret = ((log2 + 1) * 1233) >>> 12;
+		return (n < POWERS_OF_TEN_LONG[ret]) ? ret - 1 : ret;
+	}
+
+	/**
+	 * Calculates the base 10 logarithm, rounded up.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded up.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int ceilLog10(int n) throws IllegalArgumentException
+	{
+		int ret = floorLog10(n);
+		return (n > POWERS_OF_TEN_INT[ret]) ? ret + 1 : ret;
+	}
+
+	/**
+	 * Calculates the base 10 logarithm, rounded up.
+	 * @param n
+	 * The number to find the logarithm of.
+	 * @return
+	 * The logarithm of n, rounded up.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 */
+	@Pure
+	public static int ceilLog10(long n) throws IllegalArgumentException
+	{
+		int ret = floorLog10(n);
+		return (n > POWERS_OF_TEN_LONG[ret]) ? ret + 1 : ret;
+	}
+
+	// -------------------------------------------- //
+	// POWERS
+	// -------------------------------------------- //
+
+	/**
+	 * Finds the smallest power of two, which is at least n.
+	 * That is useful for sizing hash tables and buffers.
+	 * @param n
+	 * The number to round up.
+	 * @return
+	 * The smallest power of two, at least n.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 * @throws ArithmeticException
+	 * If the result doesn't fit in an int, n is above 2^30.
+	 */
+	@Pure
+	public static int ceilPow2Exact(int n) throws IllegalArgumentException, ArithmeticException
+	{
+		int log2 = ceilLog2(n);
+		if (log2 > 30) throw new ArithmeticException("no power of two above: " + n);
+		return 1 << log2;
+	}
+
+	/**
+	 * Finds the smallest power of two, which is at least n.
+	 * That is useful for sizing hash tables and buffers.
+	 * @param n
+	 * The number to round up.
+	 * @return
+	 * The smallest power of two, at least n.
+	 * @throws IllegalArgumentException
+	 * If n is not positive.
+	 * @throws ArithmeticException
+	 * If the result doesn't fit in a long, n is above 2^62.
+	 */
+	@Pure
+	public static long ceilPow2Exact(long n) throws IllegalArgumentException, ArithmeticException
+	{
+		int log2 = ceilLog2(n);
+		if (log2 > 62) throw new ArithmeticException("no power of two above: " + n);
+		return 1L << log2;
+	}
+
 	/**
-	 * Calculates factorial of n.
-	 * This method uses BigInteger, it so is slow,
-	 * but can handle very large numbers.
-	 * @param n
-	 * The number to calculate factorial for.
+	 * Raises base to a power, by repeated squaring.
+	 * @param base
+	 * The base.
+	 * @param exponent
+	 * The exponent.
 	 * @return
-	 * Factorial of n
+	 * base to the power of exponent, 1 if exponent is 0.
 	 * @throws IllegalArgumentException
-	 * If n is not positive.
+	 * If exponent is negative.
+	 * @throws ArithmeticException
+	 * If the result doesn't fit in an int.
 	 */
 	@Pure
-	public static BigInteger factorialPrecise(long n) throws IllegalArgumentException
+	public static int powExact(int base, int exponent) throws IllegalArgumentException, ArithmeticException
 	{
-		if (n < 0) throw new IllegalArgumentException("n must be positive.");
-		if (n == 0 || n == 1) return BigInteger.ONE;
-		BigInteger ret = BigInteger.valueOf(n);
+		return Math.toIntExact(powExact((long) base, exponent));
+	}
+
+	/**
+	 * Raises base to a power, by repeated squaring.
+	 * @param base
+	 * The base.
+	 * @param exponent
+	 * The exponent.
+	 * @return
+	 * base to the power of exponent, 1 if exponent is 0.
+	 * @throws IllegalArgumentException
+	 * If exponent is negative.
+	 * @throws ArithmeticException
+	 * If the result doesn't fit in a long.
+	 */
+	@Pure
+	public static long powExact(long base, int exponent) throws IllegalArgumentException, ArithmeticException
+	{
+		if (exponent < 0) throw new IllegalArgumentException("exponent: " + exponent);
 
-		while (n-- > 1)
+		// Powers of two, and the bases which never grow, are found directly.
+		if (base == 2)
 		{
-			ret = ret.multiply(BigInteger.valueOf(n));
+			if (exponent > 62) throw new ArithmeticException("2^" + exponent + " doesn't fit in a long");
+			return 1L << exponent;
 		}
+		if (base == 0) return (exponent == 0) ? 1 : 0;
+		if (base == 1) return 1;
+		if (base == -1) return ((exponent & 1) == 0) ? 1 : -1;
 
-		assert n == 0 : n;
+		long ret = 1;
+		while (true)
+		{
+			if ((exponent & 1) == 1) ret = Math.multiplyExact(ret, base);
+			exponent >>>= 1;
+			if (exponent == 0) return ret;
+			base = Math.multiplyExact(base, base);
+		}
+	}
 
-		return ret;
+	// -------------------------------------------- //
+	// GREATEST COMMON DIVISOR
+	// -------------------------------------------- //
+
+	/**
+	 * Calculates the greatest common divisor,
+	 * using the binary algorithm, which needs no division.
+	 * @param a
+	 * The first number.
+	 * @param b
+	 * The second number.
+	 * @return
+	 * The greatest common divisor of a and b, 0 if both are 0.
+	 * @throws IllegalArgumentException
+	 * If a or b is negative.
+	 */
+	@Pure
+	public static int gcd(int a, int b) throws IllegalArgumentException
+	{
+		return (int) gcd((long) a, (long) b);
 	}
 
 	/**
-	 * Calculates factorial of n
-	 * This method uses long, so it is fast,
-	 * but can't handle very large numbers.
-	 * @param n
-	 * The number to calculate factorial for.
+	 * Calculates the greatest common divisor,
+	 * using the binary algorithm, which needs no division.
+	 * @param a
+	 * The first number.
+	 * @param b
+	 * The second number.
 	 * @return
-	 * Factorial of n
+	 * The greatest common divisor of a and b, 0 if both are 0.
 	 * @throws IllegalArgumentException
-	 * If n is not positive.
+	 * If a or b is negative.
+	 */
+	@Pure
+	public static long gcd(long a, long b) throws IllegalArgumentException
+	{
+		if (a < 0 || b < 0) throw new IllegalArgumentException("a: " + a + " b: " + b);
+		if (a == 0) return b;
+		if (b == 0) return a;
+
+		// The common factors of two, then subtract the smaller odd number from the larger.
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>= Long.numberOfTrailingZeros(a);
+		while (b != 0)
+		{
+			b >>= Long.numberOfTrailingZeros(b);
+			long difference = b - a;
+			// Branch free min and absolute difference.
+			long sign = difference >> 63;
+			a += difference & sign;
+			b = (difference ^ sign) - sign;
+		}
+		return a << shift;
+	}
+
+	/**
+	 * Calculates the least common multiple.
+	 * @param a
+	 * The first number.
+	 * @param b
+	 * The second number.
+	 * @return
+	 * The least common multiple of a and b, 0 if either is 0.
+	 * @throws IllegalArgumentException
+	 * If a or b is negative.
 	 * @throws ArithmeticException
-	 * If an overflow occurs.
-	 * An overflow will occur if n is more than 20
+	 * If the result doesn't fit in an int.
 	 */
 	@Pure
-	public static long factorialExact(int n) throws IllegalArgumentException, ArithmeticException
+	public static int lcmExact(int a, int b) throws IllegalArgumentException, ArithmeticException
 	{
-		if (n < 0) throw new IllegalArgumentException("n:" + n);
-		if (n > 20) throw new ArithmeticException("Cannot calculate factorial for n higher than 20.");
-		if (n == 0 || n == 1) return 1;
-		long ret = n;
+		return Math.toIntExact(lcmExact((long) a, (long) b));
+	}
 
-		while (n-- > 1)
+	/**
+	 * Calculates the least common multiple.
+	 * @param a
+	 * The first number.
+	 * @param b
+	 * The second number.
+	 * @return
+	 * The least common multiple of a and b, 0 if either is 0.
+	 * @throws IllegalArgumentException
+	 * If a or b is negative.
+	 * @throws ArithmeticException
+	 * If the result doesn't fit in a long.
+	 */
+	@Pure
+	public static long lcmExact(long a, long b) throws IllegalArgumentException, ArithmeticException
+	{
+		if (a == 0 || b == 0)
 		{
-			ret *= n;
+			if (a < 0 || b < 0) throw new IllegalArgumentException("a: " + a + " b: " + b);
+			return 0;
 		}
+		return Math.multiplyExact(a / gcd(a, b), b);
+	}
 
-		assert ret > 0 : ret;
-		assert n == 0 : n;
+	// -------------------------------------------- //
+	// DIVISION
+	// -------------------------------------------- //
+	// Math has floorDiv and floorMod, these are the missing variants.
+
+	/**
+	 * Divides, rounding towards positive infinity.
+	 * @param x
+	 * The dividend.
+	 * @param y
+	 * The divisor.
+	 * @return
+	 * x / y rounded up.
+	 * @throws ArithmeticException
+	 * If y is 0.
+	 */
+	@Pure
+	public static int ceilDiv(int x, int y) throws ArithmeticException
+	{
+		int ret = x / y;
+		// Rounded towards zero, so up is one more when the signs agree.
+		if ((x ^ y) >= 0 && ret * y != x) ret++;
+		return ret;
+	}
 
+	/**
+	 * Divides, rounding towards positive infinity.
+	 * @param x
+	 * The dividend.
+	 * @param y
+	 * The divisor.
+	 * @return
+	 * x / y rounded up.
+	 * @throws ArithmeticException
+	 * If y is 0.
+	 */
+	@Pure
+	public static long ceilDiv(long x, long y) throws ArithmeticException
+	{
+		long ret = x / y;
+		// Rounded towards zero, so up is one more when the signs agree.
+		if ((x ^ y) >= 0 && ret * y != x) ret++;
 		return ret;
 	}
 
+	/**
+	 * The remainder of {@code ceilDiv}, which is 0 or has the opposite sign of y.
+	 * @param x
+	 * The dividend.
+	 * @param y
+	 * The divisor.
+	 * @return
+	 * {@code x - ceilDiv(x, y) * y}
+	 * @throws ArithmeticException
+	 * If y is 0.
+	 */
+	@Pure
+	public static int ceilMod(int x, int y) throws ArithmeticException
+	{
+		return x - ceilDiv(x, y) * y;
+	}
+
+	/**
+	 * The remainder of {@code ceilDiv}, which is 0 or has the opposite sign of y.
+	 * @param x
+	 * The dividend.
+	 * @param y
+	 * The divisor.
+	 * @return
+	 * {@code x - ceilDiv(x, y) * y}
+	 * @throws ArithmeticException
+	 * If y is 0.
+	 */
+	@Pure
+	public static long ceilMod(long x, long y) throws ArithmeticException
+	{
+		return x - ceilDiv(x, y) * y;
+	}
+
+	/**
+	 * The remainder of {@code Math.floorDiv}, for a long divided by an int.
+	 * It has the sign of y, so it fits in an int.
+	 * @param x
+	 * The dividend.
+	 * @param y
+	 * The divisor.
+	 * @return
+	 * {@code Math.floorMod(x, (long) y)} as an int.
+	 * @throws ArithmeticException
+	 * If y is 0.
+	 */
+	@Pure
+	public static int floorMod(long x, int y) throws ArithmeticException
+	{
+		return (int) Math.floorMod(x, (long) y);
+	}
+
 	// -------------------------------------------- //
-	// BINOMIAL COEFFICIENT
+	// PRIMES
 	// -------------------------------------------- //
 
+	// Bits sieved at a time, 32KB fits in the L1 cache.
+	private static final int SIEVE_SEGMENT_BITS = 1 << 18;
+
+	// Testing a candidate with isPrime costs about this many times more than sieving it.
+	// Ranges with fewer odd numbers than the square root of their end divided by this,
+	// are tested one by one, rather than sieving all primes up to the square root.
+	private static final int PRIMES_TEST_COST = 64;
+
+	// Below this, products fit in a long, and these bases are enough for Miller-Rabin.
+	private static final long MILLER_RABIN_SMALL_LIMIT = 3037000499L;
+	private static final long[] MILLER_RABIN_SMALL_BASES = {2, 7, 61};
+
+	// Enough for every long.
+	private static final long[] MILLER_RABIN_BASES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+
+	private static final int[] SMALL_PRIMES = {3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47};
+
+	// The largest prime which fits in a long.
+	private static final long LARGEST_LONG_PRIME = 9223372036854775783L;
+
 	/**
-	 * Calculates binomial coefficient
-	 * for n over r.
-	 * This method uses BigInteger, so it is slow,
-	 * but can handle very large numbers.
+	 * Checks whether n is prime, using a deterministic Miller-Rabin test.
+	 * It is exact for every long, and takes microseconds.
 	 * @param n
-	 * n in binomial coefficient
-	 * @param r
-	 * r in binomial coefficient
+	 * Value to check.
 	 * @return
-	 * Binomial coefficient for n over r.
-	 * @throws IllegalArgumentException
-	 * If r is higher than n, or if n or r is not positive.
+	 * True if and only if n is prime.
+	 * False otherwise
+	 * @see java.util.function.LongPredicate
 	 */
 	@Pure
-	public static BigInteger binomialPrecise(int n, int r) throws IllegalArgumentException
+	public static boolean isPrime(long n)
 	{
-		if (r > n || n <= 0 || r <= 0) throw new IllegalArgumentException("r: " + r + " n: " + n);
-		if (n == r) return BigInteger.ONE;
-		if (r == n - 1 || r == 1) return BigInteger.valueOf(n);
+		if (n < 2) return false;
+		if ((n & 1) == 0) return n == 2;
+		for (int p : SMALL_PRIMES)
+		{
+			if (n % p == 0) return n == p;
+		}
+		if (n < 49 * 49) return true;
+
+		// n - 1 = d * 2^s, with d odd
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>= s;
 
-		//TODO: Optimise
-		return factorialPrecise(n).divide(factorialPrecise(r).multiply(factorialPrecise(n - r)));
+		if (n < MILLER_RABIN_SMALL_LIMIT)
+		{
+			for (long base : MILLER_RABIN_SMALL_BASES)
+			{
+				if ( ! millerRabinSmall(n, base, d, s)) return false;
+			}
+			return true;
+		}
+
+		Montgomery montgomery = new Montgomery(n);
+		for (long base : MILLER_RABIN_BASES)
+		{
+			if ( ! millerRabin(montgomery, n, base, d, s)) return false;
+		}
+		return true;
 	}
 
 	/**
-	 * Calculates binomial coefficient
-	 * for n over r.
-	 * This uses long, so is fast,
-	 * but can't handle very large numbers.
-	 * It is calculated as
-	 * n! / ( r! * (n-r)! )
-	 * keep that in mind, when looking for overflows.
+	 * Finds the smallest prime larger than n.
 	 * @param n
-	 * n in binomial coefficient
-	 * @param r
-	 * r in binomial coefficient
+	 * The number to search from.
 	 * @return
-	 * Binomial coefficient for n over r.
-	 * @throws IllegalArgumentException
-	 * if r is higher than n, or if n or r is not positive.
+	 * The smallest prime larger than n.
 	 * @throws ArithmeticException
-	 * if an overflow occurs.
+	 * If there is no larger prime which fits in a long.
 	 */
 	@Pure
-	public static long binomialExact(int n, int r) throws IllegalArgumentException, ArithmeticException
+	public static long nextPrime(long n) throws ArithmeticException
 	{
-		if (r > n || n <= 0 || r <= 0) throw new IllegalArgumentException("r: " + r + " n: " + n);
-		if (n == r) return 1;
-		if (r == n - 1 || r == 1) return n;
+		if (n >= LARGEST_LONG_PRIME) throw new ArithmeticException("There is no prime larger than " + n + " which fits in a long.");
+		if (n < 2) return 2;
+
+		// Only odd candidates, the prime gaps are small.
+		long ret = (n + 1) | 1;
+		while ( ! isPrime(ret))
+		{
+			ret += 2;
+		}
+		return ret;
+	}
+
+	/**
+	 * Streams the primes in a range, in ascending order.
+	 * It uses a segmented sieve of Eratosthenes, storing only odd numbers, one bit each.
+	 * The range is sieved one cache sized segment at a time,
+	 * and segments are sieved in parallel, if the stream is made parallel.
+	 * Memory use is proportional to the square root of toExclusive.
+	 * Narrow ranges far up, where sieving the primes up to that square root
+	 * would cost more than the range itself, test every odd number with {@code isPrime} instead.
+	 * @param fromInclusive
+	 * The start of the range.
+	 * @param toExclusive
+	 * The end of the range, at most 2^62.
+	 * @return
+	 * The primes from fromInclusive to toExclusive.
+	 * @throws IllegalArgumentException
+	 * If toExclusive is more than 2^62.
+	 */
+	@Pure
+	public static LongStream primes(long fromInclusive, long toExclusive) throws IllegalArgumentException
+	{
+		if (toExclusive > (1L << 62)) throw new IllegalArgumentException("toExclusive must be at most 2^62: " + toExclusive);
+
+		boolean includeTwo = fromInclusive <= 2 && 2 < toExclusive;
+		long start = Math.max(3, fromInclusive) | 1;
+		long bitCount = (toExclusive > start) ? (toExclusive - start + 1) / 2 : 0;
+		long segments = (bitCount + SIEVE_SEGMENT_BITS - 1) / SIEVE_SEGMENT_BITS;
+
+		if (bitCount == 0) return includeTwo ? LongStream.of(2) : LongStream.empty();
+
+		long root = isqrt(toExclusive - 1);
+		if (bitCount < root / PRIMES_TEST_COST)
+		{
+			LongStream odd = LongStream.range(0, bitCount).map(i -> start + 2 * i).filter(Mth::isPrime);
+			return includeTwo ? LongStream.concat(LongStream.of(2), odd) : odd;
+		}
+
+		int[] basePrimes = oddPrimesUpTo((int) root);
+		return StreamSupport.longStream(new PrimeSpliterator(basePrimes, start, bitCount, 0, segments, includeTwo), false);
+	}
+
+	private static boolean millerRabinSmall(long n, long base, long d, int s)
+	{
+		long x = 1;
+		long b = base % n;
+		for (long e = d; e > 0; e >>= 1)
+		{
+			if ((e & 1) == 1) x = x * b % n;
+			b = b * b % n;
+		}
+		if (x == 1 || x == n - 1) return true;
+		for (int i = 1; i < s; i++)
+		{
+			x = x * x % n;
+			if (x == n - 1) return true;
+		}
+		return false;
+	}
+
+	private static boolean millerRabin(Montgomery montgomery, long n, long base, long d, int s)
+	{
+		long one = montgomery.toMontgomery(1);
+		long minusOne = montgomery.toMontgomery(n - 1);
+		long x = montgomery.toMontgomery(montgomery.pow(base, d));
+		if (x == one || x == minusOne) return true;
+		for (int i = 1; i < s; i++)
+		{
+			x = montgomery.multiply(x, x);
+			if (x == minusOne) return true;
+		}
+		return false;
+	}
+
+	// The odd primes up to and including n, using a plain sieve of odd numbers.
+	private static int[] oddPrimesUpTo(int n)
+	{
+		if (n < 3) return new int[0];
+		int bits = (n - 1) / 2; // Bit i is 2i + 3
+		long[] composite = new long[(bits + 63) >>> 6];
+		for (long i = 0; ; i++)
+		{
+			long p = 2 * i + 3;
+			if (p * p > n) break;
+			if ((composite[(int) (i >>> 6)] & (1L << i)) != 0) continue;
+			for (long j = (p * p - 3) / 2; j < bits; j += p)
+			{
+				composite[(int) (j >>> 6)] |= 1L << j;
+			}
+		}
+
+		int[] ret = new int[bits - bitCount(composite)];
+		int count = 0;
+		for (int i = 0; i < bits; i++)
+		{
+			if ((composite[i >>> 6] & (1L << i)) == 0) ret[count++] = 2 * i + 3;
+		}
+		return ret;
+	}
+
+	private static int bitCount(long[] words)
+	{
+		int ret = 0;
+		for (long word : words)
+		{
+			ret += Long.bitCount(word);
+		}
+		return ret;
+	}
+
+	// Splits at segment boundaries, every part sieves its own segments.
+	private static final class PrimeSpliterator implements Spliterator.OfLong
+	{
+		private final int[] basePrimes;
+		private final long start;
+		private final long bitCount;
+		private long segment;
+		private final long segmentEnd;
+		private boolean includeTwo;
+
+		// The sieve of the current segment, 1 bits are composite.
+		private long[] bits = null;
+		private long firstBit;
+		private int segmentBits;
+		private int index;
+
+		private PrimeSpliterator(int[] basePrimes, long start, long bitCount, long segment, long segmentEnd, boolean includeTwo)
+		{
+			this.basePrimes = basePrimes;
+			this.start = start;
+			this.bitCount = bitCount;
+			this.segment = segment;
+			this.segmentEnd = segmentEnd;
+			this.includeTwo = includeTwo;
+		}
+
+		@Override
+		public boolean tryAdvance(LongConsumer action)
+		{
+			if (this.includeTwo)
+			{
+				this.includeTwo = false;
+				action.accept(2);
+				return true;
+			}
+
+			while (true)
+			{
+				if (this.bits != null)
+				{
+					int next = this.nextPrimeIndex();
+					if (next < this.segmentBits)
+					{
+						this.index = next + 1;
+						action.accept(this.start + 2 * (this.firstBit + next));
+						return true;
+					}
+					this.bits = null;
+				}
+				if (this.segment >= this.segmentEnd) return false;
+				this.sieve(this.segment++);
+			}
+		}
+
+		@Override
+		public void forEachRemaining(LongConsumer action)
+		{
+			while (this.tryAdvance(action))
+			{
+				// Every call finds the next prime.
+			}
+		}
+
+		@Override
+		public Spliterator.OfLong trySplit()
+		{
+			if (this.bits != null || this.segmentEnd - this.segment < 2) return null;
+
+			long middle = (this.segment + this.segmentEnd) >>> 1;
+			PrimeSpliterator ret = new PrimeSpliterator(this.basePrimes, this.start, this.bitCount, this.segment, middle, this.includeTwo);
+			this.segment = middle;
+			this.includeTwo = false;
+			return ret;
+		}
+
+		@Override
+		public long estimateSize()
+		{
+			// Numbers, not primes, it is only an upper bound.
+			return (this.segmentEnd - this.segment) * SIEVE_SEGMENT_BITS + (this.includeTwo ? 1 : 0);
+		}
+
+		@Override
+		public int characteristics()
+		{
+			return ORDERED | SORTED | DISTINCT | NONNULL | IMMUTABLE;
+		}
+
+		@Override
+		public Comparator<? super Long> getComparator()
+		{
+			return null;
+		}
+
+		private void sieve(long segment)
+		{
+			this.firstBit = segment * SIEVE_SEGMENT_BITS;
+			this.segmentBits = (int) Math.min(SIEVE_SEGMENT_BITS, this.bitCount - this.firstBit);
+			this.index = 0;
+			this.bits = new long[(this.segmentBits + 63) >>> 6];
+
+			long low = this.start + 2 * this.firstBit;
+			long high = low + 2L * this.segmentBits;
+			for (int p : this.basePrimes)
+			{
+				long square = (long) p * p;
+				if (square >= high) break;
+
+				// The first odd multiple of p in the segment, but not p itself.
+				long multiple = Math.max(square, (low + p - 1) / p * p);
+				if ((multiple & 1) == 0) multiple += p;
+				for (long i = (multiple - low) >>> 1; i < this.segmentBits; i += p)
+				{
+					this.bits[(int) (i >>> 6)] |= 1L << i;
+				}
+			}
+		}
 
-		//TODO: Optimise
-		return factorialExact(n)/Math.multiplyExact(factorialExact(r), factorialExact(n - r));
+		private int nextPrimeIndex()
+		{
+			int word = this.index >>> 6;
+			if (word >= this.bits.length) return this.segmentBits;
+			long primes = ~this.bits[word] & (-1L << this.index);
+			while (primes == 0)
+			{
+				if (++word == this.bits.length) return this.segmentBits;
+				primes = ~this.bits[word];
+			}
+			return Math.min(this.segmentBits, (word << 6) + Long.numberOfTrailingZeros(primes));
+		}
 	}
 
 	// -------------------------------------------- //
@@ -362,4 +1893,73 @@ public final class Mth
 		return ! isEven(i);
 	}
 
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	// The primes up to and including n.
+	private static int[] primesUpTo(int n)
+	{
+		return primes(2, n + 1L).mapToInt(p -> (int) p).toArray();
+	}
+
+	// Multiplies the factors, packing them into longs first, then as a balanced tree,
+	// so the large multiplications are between numbers of similar size.
+	private static BigInteger product(long[] factors, int count)
+	{
+		BigInteger[] products = new BigInteger[count];
+		int size = 0;
+		long packed = 1;
+		for (int i = 0; i < count; i++)
+		{
+			long factor = factors[i];
+			if (packed > Long.MAX_VALUE / factor)
+			{
+				products[size++] = BigInteger.valueOf(packed);
+				packed = 1;
+			}
+			packed *= factor;
+		}
+		if (packed > 1 || size == 0) products[size++] = BigInteger.valueOf(packed);
+
+		if (size <= PRODUCT_PARALLEL_THRESHOLD) return product(products, 0, size);
+		return ForkJoinPool.commonPool().invoke(new ProductTask(products, 0, size));
+	}
+
+	private static BigInteger product(BigInteger[] products, int from, int to)
+	{
+		if (to - from == 1) return products[from];
+		if (to - from == 2) return products[from].multiply(products[from + 1]);
+		int middle = (from + to) >>> 1;
+		return product(products, from, middle).multiply(product(products, middle, to));
+	}
+
+	private static final class ProductTask extends RecursiveTask<BigInteger>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final BigInteger[] products;
+		private final int from;
+		private final int to;
+
+		private ProductTask(BigInteger[] products, int from, int to)
+		{
+			this.products = products;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected BigInteger compute()
+		{
+			if (this.to - this.from <= PRODUCT_PARALLEL_THRESHOLD) return product(this.products, this.from, this.to);
+
+			int middle = (this.from + this.to) >>> 1;
+			ProductTask left = new ProductTask(this.products, this.from, middle);
+			left.fork();
+			BigInteger right = new ProductTask(this.products, middle, this.to).compute();
+			return left.join().multiply(right);
+		}
+	}
+
 }
@@ -0,0 +1,848 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.util;
+
+import dk.muj.mujlib.arg.Argument;
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.doc.Pure;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * This class has bulk versions of the predicates in {@code Mth},
+ * which classify a whole array at once.
+ *
+ * The result is either a count, a bitmap or a list of the matching indices.
+ * The loops are free of branches, so the JIT can vectorise them,
+ * and the parallel versions split large arrays between threads.
+ *
+ * @author Magnus Ulf Jørgensen
+ */
+public final class MthArrays
+{
+	// -------------------------------------------- //
+	// CONSTANTS
+	// -------------------------------------------- //
+
+	// Below this many elements, the parallel versions don't split.
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	// -------------------------------------------- //
+	// CONSTRUCTOR (FORBIDDEN)
+	// -------------------------------------------- //
+
+	private MthArrays()
+	{
+		throw new AssertionError();
+	}
+
+	// -------------------------------------------- //
+	// CLASSIFICATION
+	// -------------------------------------------- //
+
+	/**
+	 * The predicates of {@code Mth}, which arrays can be classified by.
+	 */
+	public enum Classification
+	{
+		/** Like {@code Mth.isEven} */
+		EVEN,
+		/** Like {@code Mth.isOdd} */
+		ODD,
+		/** Like {@code Mth.isPositive} */
+		POSITIVE,
+		/** Like {@code Mth.isNegative} */
+		NEGATIVE,
+		;
+	}
+
+	// -------------------------------------------- //
+	// INT
+	// -------------------------------------------- //
+
+	/**
+	 * Counts the elements matching the classification.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to count.
+	 * @return
+	 * The number of matching elements.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int count(int[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		return count(array, 0, array.length, classification);
+	}
+
+	/**
+	 * Classifies the elements into a bitmap.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * A bitmap where bit i is set if element i matches,
+	 * in the format of {@code BitSet.toLongArray()}.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static long[] bitmap(int[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		long[] ret = new long[(array.length + 63) >>> 6];
+		bitmap(array, 0, array.length, classification, ret);
+		return ret;
+	}
+
+	/**
+	 * Finds the indices of the elements matching the classification.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * The indices of the matching elements, ascending.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int[] indices(int[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		int[] ret = new int[array.length];
+		int size = indices(array, 0, array.length, classification, ret, 0);
+		return (size == ret.length) ? ret : Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Like {@code count}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to count.
+	 * @return
+	 * The number of matching elements.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int parallelCount(int[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		if (array.length < PARALLEL_THRESHOLD) return count(array, 0, array.length, classification);
+
+		int chunk = chunkSize(array.length);
+		return IntStream.range(0, chunkCount(array.length, chunk)).parallel()
+			.map(c -> count(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification))
+			.sum();
+	}
+
+	/**
+	 * Like {@code bitmap}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * A bitmap where bit i is set if element i matches.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static long[] parallelBitmap(int[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		long[] ret = new long[(array.length + 63) >>> 6];
+		if (array.length < PARALLEL_THRESHOLD)
+		{
+			bitmap(array, 0, array.length, classification, ret);
+			return ret;
+		}
+
+		// Chunks are whole words, so threads never write the same word.
+		int chunk = chunkSize(array.length);
+		IntStream.range(0, chunkCount(array.length, chunk)).parallel()
+			.forEach(c -> bitmap(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification, ret));
+		return ret;
+	}
+
+	/**
+	 * Like {@code indices}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * The indices of the matching elements, ascending.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int[] parallelIndices(int[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		if (array.length < PARALLEL_THRESHOLD) return indices(array, classification);
+
+		// Every chunk compacts into its own part, then they are joined.
+		int chunk = chunkSize(array.length);
+		int chunks = chunkCount(array.length, chunk);
+		int[] ret = new int[array.length];
+		int[] sizes = new int[chunks];
+		IntStream.range(0, chunks).parallel()
+			.forEach(c -> sizes[c] = indices(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification, ret, c * chunk));
+		return join(ret, chunk, sizes);
+	}
+
+	// -------------------------------------------- //
+	// LONG
+	// -------------------------------------------- //
+
+	/**
+	 * Counts the elements matching the classification.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to count.
+	 * @return
+	 * The number of matching elements.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int count(long[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		return count(array, 0, array.length, classification);
+	}
+
+	/**
+	 * Classifies the elements into a bitmap.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * A bitmap where bit i is set if element i matches,
+	 * in the format of {@code BitSet.toLongArray()}.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static long[] bitmap(long[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		long[] ret = new long[(array.length + 63) >>> 6];
+		bitmap(array, 0, array.length, classification, ret);
+		return ret;
+	}
+
+	/**
+	 * Finds the indices of the elements matching the classification.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * The indices of the matching elements, ascending.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int[] indices(long[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		int[] ret = new int[array.length];
+		int size = indices(array, 0, array.length, classification, ret, 0);
+		return (size == ret.length) ? ret : Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Like {@code count}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to count.
+	 * @return
+	 * The number of matching elements.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int parallelCount(long[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		if (array.length < PARALLEL_THRESHOLD) return count(array, 0, array.length, classification);
+
+		int chunk = chunkSize(array.length);
+		return IntStream.range(0, chunkCount(array.length, chunk)).parallel()
+			.map(c -> count(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification))
+			.sum();
+	}
+
+	/**
+	 * Like {@code bitmap}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * A bitmap where bit i is set if element i matches.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static long[] parallelBitmap(long[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		long[] ret = new long[(array.length + 63) >>> 6];
+		if (array.length < PARALLEL_THRESHOLD)
+		{
+			bitmap(array, 0, array.length, classification, ret);
+			return ret;
+		}
+
+		// Chunks are whole words, so threads never write the same word.
+		int chunk = chunkSize(array.length);
+		IntStream.range(0, chunkCount(array.length, chunk)).parallel()
+			.forEach(c -> bitmap(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification, ret));
+		return ret;
+	}
+
+	/**
+	 * Like {@code indices}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * The indices of the matching elements, ascending.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 */
+	@Pure
+	public static int[] parallelIndices(long[] array, Classification classification) throws ArgumentNullException
+	{
+		check(array, classification);
+		if (array.length < PARALLEL_THRESHOLD) return indices(array, classification);
+
+		// Every chunk compacts into its own part, then they are joined.
+		int chunk = chunkSize(array.length);
+		int chunks = chunkCount(array.length, chunk);
+		int[] ret = new int[array.length];
+		int[] sizes = new int[chunks];
+		IntStream.range(0, chunks).parallel()
+			.forEach(c -> sizes[c] = indices(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification, ret, c * chunk));
+		return join(ret, chunk, sizes);
+	}
+
+	// -------------------------------------------- //
+	// DOUBLE
+	// -------------------------------------------- //
+
+	/**
+	 * Counts the elements matching the classification.
+	 * Only POSITIVE and NEGATIVE are supported for doubles.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to count.
+	 * @return
+	 * The number of matching elements.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 * @throws IllegalArgumentException
+	 * If classification is EVEN or ODD.
+	 */
+	@Pure
+	public static int count(double[] array, Classification classification) throws ArgumentNullException, IllegalArgumentException
+	{
+		check(array, classification);
+		return count(array, 0, array.length, classification);
+	}
+
+	/**
+	 * Classifies the elements into a bitmap.
+	 * Only POSITIVE and NEGATIVE are supported for doubles.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * A bitmap where bit i is set if element i matches,
+	 * in the format of {@code BitSet.toLongArray()}.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 * @throws IllegalArgumentException
+	 * If classification is EVEN or ODD.
+	 */
+	@Pure
+	public static long[] bitmap(double[] array, Classification classification) throws ArgumentNullException, IllegalArgumentException
+	{
+		check(array, classification);
+		long[] ret = new long[(array.length + 63) >>> 6];
+		bitmap(array, 0, array.length, classification, ret);
+		return ret;
+	}
+
+	/**
+	 * Finds the indices of the elements matching the classification.
+	 * Only POSITIVE and NEGATIVE are supported for doubles.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * The indices of the matching elements, ascending.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 * @throws IllegalArgumentException
+	 * If classification is EVEN or ODD.
+	 */
+	@Pure
+	public static int[] indices(double[] array, Classification classification) throws ArgumentNullException, IllegalArgumentException
+	{
+		check(array, classification);
+		int[] ret = new int[array.length];
+		int size = indices(array, 0, array.length, classification, ret, 0);
+		return (size == ret.length) ? ret : Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Like {@code count}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to count.
+	 * @return
+	 * The number of matching elements.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 * @throws IllegalArgumentException
+	 * If classification is EVEN or ODD.
+	 */
+	@Pure
+	public static int parallelCount(double[] array, Classification classification) throws ArgumentNullException, IllegalArgumentException
+	{
+		check(array, classification);
+		if (array.length < PARALLEL_THRESHOLD) return count(array, 0, array.length, classification);
+
+		int chunk = chunkSize(array.length);
+		return IntStream.range(0, chunkCount(array.length, chunk)).parallel()
+			.map(c -> count(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification))
+			.sum();
+	}
+
+	/**
+	 * Like {@code bitmap}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * A bitmap where bit i is set if element i matches.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 * @throws IllegalArgumentException
+	 * If classification is EVEN or ODD.
+	 */
+	@Pure
+	public static long[] parallelBitmap(double[] array, Classification classification) throws ArgumentNullException, IllegalArgumentException
+	{
+		check(array, classification);
+		long[] ret = new long[(array.length + 63) >>> 6];
+		if (array.length < PARALLEL_THRESHOLD)
+		{
+			bitmap(array, 0, array.length, classification, ret);
+			return ret;
+		}
+
+		// Chunks are whole words, so threads never write the same word.
+		int chunk = chunkSize(array.length);
+		IntStream.range(0, chunkCount(array.length, chunk)).parallel()
+			.forEach(c -> bitmap(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification, ret));
+		return ret;
+	}
+
+	/**
+	 * Like {@code indices}, but large arrays are split between threads.
+	 * @param array
+	 * The array to classify.
+	 * @param classification
+	 * The classification to test.
+	 * @return
+	 * The indices of the matching elements, ascending.
+	 * @throws ArgumentNullException
+	 * If array or classification is null.
+	 * @throws IllegalArgumentException
+	 * If classification is EVEN or ODD.
+	 */
+	@Pure
+	public static int[] parallelIndices(double[] array, Classification classification) throws ArgumentNullException, IllegalArgumentException
+	{
+		check(array, classification);
+		if (array.length < PARALLEL_THRESHOLD) return indices(array, classification);
+
+		// Every chunk compacts into its own part, then they are joined.
+		int chunk = chunkSize(array.length);
+		int chunks = chunkCount(array.length, chunk);
+		int[] ret = new int[array.length];
+		int[] sizes = new int[chunks];
+		IntStream.range(0, chunks).parallel()
+			.forEach(c -> sizes[c] = indices(array, c * chunk, Math.min(array.length, (c + 1) * chunk), classification, ret, c * chunk));
+		return join(ret, chunk, sizes);
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static int count(int[] array, int from, int to, Classification classification)
+	{
+		int ret = 0;
+		switch (classification)
+		{
+			case EVEN:
+				for (int i = from; i < to; i++)
+				{
+					ret += ~array[i] & 1;
+				}
+				return ret;
+			case ODD:
+				for (int i = from; i < to; i++)
+				{
+					ret += array[i] & 1;
+				}
+				return ret;
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret += (-array[i] & ~array[i]) >>> 31;
+				}
+				return ret;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret += array[i] >>> 31;
+				}
+				return ret;
+			default:
+				throw unsupported(classification, "int");
+		}
+	}
+
+	private static void bitmap(int[] array, int from, int to, Classification classification, long[] ret)
+	{
+		switch (classification)
+		{
+			case EVEN:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (long) (~array[i] & 1) << i;
+				}
+				return;
+			case ODD:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (long) (array[i] & 1) << i;
+				}
+				return;
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (long) ((-array[i] & ~array[i]) >>> 31) << i;
+				}
+				return;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (long) (array[i] >>> 31) << i;
+				}
+				return;
+			default:
+				throw unsupported(classification, "int");
+		}
+	}
+
+	// Writes every index, but only advances past matching ones, so there is no branch.
+	private static int indices(int[] array, int from, int to, Classification classification, int[] ret, int offset)
+	{
+		int size = offset;
+		switch (classification)
+		{
+			case EVEN:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += ~array[i] & 1;
+				}
+				return size - offset;
+			case ODD:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += array[i] & 1;
+				}
+				return size - offset;
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (-array[i] & ~array[i]) >>> 31;
+				}
+				return size - offset;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += array[i] >>> 31;
+				}
+				return size - offset;
+			default:
+				throw unsupported(classification, "int");
+		}
+	}
+
+	private static int count(long[] array, int from, int to, Classification classification)
+	{
+		int ret = 0;
+		switch (classification)
+		{
+			case EVEN:
+				for (int i = from; i < to; i++)
+				{
+					ret += (int) (~array[i] & 1);
+				}
+				return ret;
+			case ODD:
+				for (int i = from; i < to; i++)
+				{
+					ret += (int) (array[i] & 1);
+				}
+				return ret;
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret += (int) ((-array[i] & ~array[i]) >>> 63);
+				}
+				return ret;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret += (int) (array[i] >>> 63);
+				}
+				return ret;
+			default:
+				throw unsupported(classification, "long");
+		}
+	}
+
+	private static void bitmap(long[] array, int from, int to, Classification classification, long[] ret)
+	{
+		switch (classification)
+		{
+			case EVEN:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (~array[i] & 1) << i;
+				}
+				return;
+			case ODD:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (array[i] & 1) << i;
+				}
+				return;
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= ((-array[i] & ~array[i]) >>> 63) << i;
+				}
+				return;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (array[i] >>> 63) << i;
+				}
+				return;
+			default:
+				throw unsupported(classification, "long");
+		}
+	}
+
+	// Writes every index, but only advances past matching ones, so there is no branch.
+	private static int indices(long[] array, int from, int to, Classification classification, int[] ret, int offset)
+	{
+		int size = offset;
+		switch (classification)
+		{
+			case EVEN:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (int) (~array[i] & 1);
+				}
+				return size - offset;
+			case ODD:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (int) (array[i] & 1);
+				}
+				return size - offset;
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (int) ((-array[i] & ~array[i]) >>> 63);
+				}
+				return size - offset;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (int) (array[i] >>> 63);
+				}
+				return size - offset;
+			default:
+				throw unsupported(classification, "long");
+		}
+	}
+
+	private static int count(double[] array, int from, int to, Classification classification)
+	{
+		int ret = 0;
+		switch (classification)
+		{
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret += (array[i] > 0D) ? 1 : 0;
+				}
+				return ret;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret += (array[i] < 0D) ? 1 : 0;
+				}
+				return ret;
+			default:
+				throw unsupported(classification, "double");
+		}
+	}
+
+	private static void bitmap(double[] array, int from, int to, Classification classification, long[] ret)
+	{
+		switch (classification)
+		{
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (long) ((array[i] > 0D) ? 1 : 0) << i;
+				}
+				return;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[i >>> 6] |= (long) ((array[i] < 0D) ? 1 : 0) << i;
+				}
+				return;
+			default:
+				throw unsupported(classification, "double");
+		}
+	}
+
+	// Writes every index, but only advances past matching ones, so there is no branch.
+	private static int indices(double[] array, int from, int to, Classification classification, int[] ret, int offset)
+	{
+		int size = offset;
+		switch (classification)
+		{
+			case POSITIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (array[i] > 0D) ? 1 : 0;
+				}
+				return size - offset;
+			case NEGATIVE:
+				for (int i = from; i < to; i++)
+				{
+					ret[size] = i;
+					size += (array[i] < 0D) ? 1 : 0;
+				}
+				return size - offset;
+			default:
+				throw unsupported(classification, "double");
+		}
+	}
+
+	private static void check(Object array, Classification classification)
+	{
+		Argument.handleNull(array, "array");
+		Argument.handleNull(classification, "classification");
+		if (array instanceof double[] && (classification == Classification.EVEN || classification == Classification.ODD))
+		{
+			throw unsupported(classification, "double");
+		}
+	}
+
+	private static IllegalArgumentException unsupported(Classification classification, String type)
+	{
+		return new IllegalArgumentException(classification + " is not supported for " + type);
+	}
+
+	// A multiple of 64, so bitmap chunks are whole words, giving every thread a few chunks.
+	private static int chunkSize(int length)
+	{
+		int chunks = ForkJoinPool.getCommonPoolParallelism() * 4;
+		int size = Math.max(PARALLEL_THRESHOLD / 4, length / chunks);
+		return (size + 63) & ~63;
+	}
+
+	private static int chunkCount(int length, int chunkSize)
+	{
+		return (int) (((long) length + chunkSize - 1) / chunkSize);
+	}
+
+	// Moves the compacted parts, which start at multiples of chunk, together.
+	private static int[] join(int[] parts, int chunk, int[] sizes)
+	{
+		int size = sizes[0];
+		for (int c = 1; c < sizes.length; c++)
+		{
+			System.arraycopy(parts, c * chunk, parts, size, sizes[c]);
+			size += sizes[c];
+		}
+		return (size == parts.length) ? parts : Arrays.copyOf(parts, size);
+	}
+
+}
@@ -0,0 +1,376 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.cache;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CacheTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testPutAndGet()
+	{
+		Cache<String, Integer> cache = new CacheBuilder<String, Integer>().setMaxSize(10).build();
+
+		assertFalse(cache.getIfPresent("one").isPresent());
+		cache.put("one", 1);
+		cache.put("two", 2);
+		assertEquals(Integer.valueOf(1), cache.getIfPresent("one").get());
+		assertEquals(Integer.valueOf(2), cache.getIfPresent("two").get());
+		assertEquals(2, cache.size());
+
+		// Replace
+		cache.put("one", 11);
+		assertEquals(Integer.valueOf(11), cache.getIfPresent("one").get());
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testInvalidate()
+	{
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>().setMaxSize(100).build();
+		for (int i = 0; i < 50; i++)
+		{
+			cache.put(i, i);
+		}
+
+		cache.invalidate(3);
+		assertFalse(cache.getIfPresent(3).isPresent());
+		assertEquals(49, cache.size());
+
+		cache.invalidateAll();
+		assertEquals(0, cache.size());
+		assertFalse(cache.getIfPresent(4).isPresent());
+
+		// Still usable afterwards
+		cache.put(4, 4);
+		assertEquals(Integer.valueOf(4), cache.getIfPresent(4).get());
+	}
+
+	@Test
+	public void testIllegalArguments()
+	{
+		Cache<String, String> cache = new CacheBuilder<String, String>().setMaxSize(10).build();
+
+		try { cache.put(null, "value"); fail(); } catch (ArgumentNullException ex) { }
+		try { cache.put("key", null); fail(); } catch (ArgumentNullException ex) { }
+		try { cache.getIfPresent(null); fail(); } catch (ArgumentNullException ex) { }
+		try { new CacheBuilder<String, String>().setMaxSize(0); fail(); } catch (IllegalArgumentException ex) { }
+		try { new CacheBuilder<String, String>().build(); fail(); } catch (IllegalStateException ex) { }
+	}
+
+	// -------------------------------------------- //
+	// EVICTION
+	// -------------------------------------------- //
+
+	@Test
+	public void testMaxSize()
+	{
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>().setMaxSize(100).build();
+		for (int i = 0; i < 1000; i++)
+		{
+			cache.put(i, i);
+			assertTrue(cache.size() <= 100);
+		}
+
+		assertEquals(100, cache.size());
+		assertEquals(900, cache.getStats().getEvictionCount());
+	}
+
+	@Test
+	public void testMaxSizeOne()
+	{
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>().setMaxSize(1).build();
+		for (int i = 0; i < 10; i++)
+		{
+			cache.put(i, i);
+			assertEquals(1, cache.size());
+		}
+	}
+
+	@Test
+	public void testFrequentEntriesSurviveScan()
+	{
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>().setMaxSize(100).build();
+
+		// Make the first 50 entries popular.
+		for (int i = 0; i < 100; i++)
+		{
+			cache.put(i, i);
+		}
+		for (int round = 0; round < 10; round++)
+		{
+			for (int i = 0; i < 50; i++)
+			{
+				assertTrue(cache.getIfPresent(i).isPresent());
+			}
+		}
+
+		// A scan of entries which are only used once,
+		// would flush a plain LRU cache completely.
+		for (int i = 1000; i < 11000; i++)
+		{
+			cache.put(i, i);
+		}
+
+		int survivors = 0;
+		for (int i = 0; i < 50; i++)
+		{
+			if (cache.getIfPresent(i).isPresent()) survivors++;
+		}
+		assertTrue("survivors: " + survivors, survivors >= 45);
+	}
+
+	// -------------------------------------------- //
+	// EXPIRY
+	// -------------------------------------------- //
+
+	@Test
+	public void testExpireAfterWrite()
+	{
+		AtomicLong time = new AtomicLong(0);
+		Cache<String, String> cache = new CacheBuilder<String, String>()
+			.setMaxSize(100)
+			.setExpireAfterWrite(1, TimeUnit.MINUTES)
+			.setTicker(time::get)
+			.build();
+
+		cache.put("key", "value");
+		time.addAndGet(TimeUnit.SECONDS.toNanos(59));
+		assertEquals("value", cache.getIfPresent("key").get());
+
+		// Reading doesn't extend the lifetime.
+		time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertFalse(cache.getIfPresent("key").isPresent());
+
+		// But writing does.
+		cache.put("key", "value2");
+		time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		cache.put("key", "value3");
+		time.addAndGet(TimeUnit.SECONDS.toNanos(45));
+		assertEquals("value3", cache.getIfPresent("key").get());
+	}
+
+	@Test
+	public void testExpireAfterAccess()
+	{
+		AtomicLong time = new AtomicLong(0);
+		Cache<String, String> cache = new CacheBuilder<String, String>()
+			.setMaxSize(100)
+			.setExpireAfterAccess(10, TimeUnit.SECONDS)
+			.setTicker(time::get)
+			.build();
+
+		cache.put("key", "value");
+		for (int i = 0; i < 10; i++)
+		{
+			time.addAndGet(TimeUnit.SECONDS.toNanos(9));
+			assertEquals("value", cache.getIfPresent("key").get());
+		}
+
+		time.addAndGet(TimeUnit.SECONDS.toNanos(10));
+		assertFalse(cache.getIfPresent("key").isPresent());
+	}
+
+	@Test
+	public void testExpiredEntriesAreRemoved()
+	{
+		AtomicLong time = new AtomicLong(123456789L);
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>()
+			.setMaxSize(1000)
+			.setExpireAfterWrite(5, TimeUnit.MINUTES)
+			.setTicker(time::get)
+			.build();
+
+		for (int i = 0; i < 100; i++)
+		{
+			cache.put(i, i);
+			time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		}
+
+		// The first 50 were written at least 5 minutes ago.
+		time.addAndGet(TimeUnit.SECONDS.toNanos(249));
+		cache.cleanUp();
+		assertEquals(50, cache.size());
+		assertEquals(50, cache.getStats().getEvictionCount());
+
+		time.addAndGet(TimeUnit.HOURS.toNanos(2));
+		cache.cleanUp();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testExpiredEntryIsReloaded()
+	{
+		AtomicLong time = new AtomicLong(0);
+		AtomicInteger loads = new AtomicInteger();
+		Cache<String, Integer> cache = new CacheBuilder<String, Integer>()
+			.setMaxSize(10)
+			.setExpireAfterWrite(1, TimeUnit.SECONDS)
+			.setTicker(time::get)
+			.setLoader(k -> loads.incrementAndGet())
+			.build();
+
+		assertEquals(Integer.valueOf(1), cache.get("key"));
+		assertEquals(Integer.valueOf(1), cache.get("key"));
+		time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(Integer.valueOf(2), cache.get("key"));
+		assertEquals(1, cache.size());
+	}
+
+	// -------------------------------------------- //
+	// LOADING
+	// -------------------------------------------- //
+
+	@Test
+	public void testLoading()
+	{
+		AtomicInteger loads = new AtomicInteger();
+		Cache<Integer, String> cache = new CacheBuilder<Integer, String>()
+			.setMaxSize(10)
+			.setLoader(k -> { loads.incrementAndGet(); return String.valueOf(k); })
+			.build();
+
+		assertEquals("5", cache.get(5));
+		assertEquals("5", cache.get(5));
+		assertEquals(1, loads.get());
+
+		assertEquals("other", cache.get(6, () -> "other"));
+		assertEquals("other", cache.get(6));
+		assertEquals("7!", cache.get(7, k -> k + "!"));
+
+		CacheStats stats = cache.getStats();
+		assertEquals(3, stats.getLoadSuccessCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(2, stats.getHitCount());
+	}
+
+	@Test
+	public void testLoadingFailures()
+	{
+		Cache<Integer, String> cache = new CacheBuilder<Integer, String>().setMaxSize(10).build();
+
+		try { cache.get(1); fail(); } catch (IllegalStateException ex) { }
+		try { cache.get(1, k -> null); fail(); } catch (IllegalStateException ex) { }
+		try { cache.get(1, k -> { throw new UnsupportedOperationException(); }); fail(); } catch (UnsupportedOperationException ex) { }
+
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getStats().getLoadFailureCount());
+	}
+
+	// -------------------------------------------- //
+	// STATS
+	// -------------------------------------------- //
+
+	@Test
+	public void testStats()
+	{
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>().setMaxSize(10).build();
+		assertEquals(new CacheStats(0, 0, 0, 0, 0, 0), cache.getStats());
+		assertEquals(1.0D, cache.getStats().getHitRate(), 0.0D);
+
+		cache.put(1, 1);
+		cache.getIfPresent(1);
+		cache.getIfPresent(1);
+		cache.getIfPresent(1);
+		cache.getIfPresent(2);
+
+		CacheStats stats = cache.getStats();
+		assertEquals(3, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(4, stats.getRequestCount());
+		assertEquals(0.75D, stats.getHitRate(), 0.0D);
+		assertEquals(0.25D, stats.getMissRate(), 0.0D);
+	}
+
+	// -------------------------------------------- //
+	// CONCURRENCY
+	// -------------------------------------------- //
+
+	@Test
+	public void testConcurrentAccess() throws Exception
+	{
+		Cache<Integer, Integer> cache = new CacheBuilder<Integer, Integer>()
+			.setMaxSize(500)
+			.setExpireAfterAccess(1, TimeUnit.MINUTES)
+			.build();
+
+		List<Thread> threads = new ArrayList<>();
+		AtomicInteger failures = new AtomicInteger();
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		for (int t = 0; t < 8; t++)
+		{
+			Thread thread = new Thread(() ->
+			{
+				try
+				{
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					for (int i = 0; i < 50_000; i++)
+					{
+						int key = random.nextInt(2000);
+						switch (random.nextInt(4))
+						{
+							case 0: cache.put(key, key); break;
+							case 1: cache.invalidate(key); break;
+							default:
+								int value = cache.get(key, k -> k);
+								if (value != key) failures.incrementAndGet();
+						}
+					}
+				}
+				catch (RuntimeException ex)
+				{
+					error.compareAndSet(null, ex);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		cache.cleanUp();
+		assertNull(String.valueOf(error.get()), error.get());
+		assertEquals(0, failures.get());
+		assertTrue(cache.size() <= 500);
+	}
+
+}
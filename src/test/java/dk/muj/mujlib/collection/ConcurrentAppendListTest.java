@@ -0,0 +1,165 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.util.MCollections;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentAppendListTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testAppendAndGet()
+	{
+		ConcurrentAppendList<Integer> list = new ConcurrentAppendList<>();
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 100000; i++)
+		{
+			list.add(i);
+			expected.add(i);
+		}
+
+		assertEquals(100000, list.size());
+		assertEquals(expected, list);
+		assertEquals(expected.hashCode(), list.hashCode());
+		for (int i = 0; i < 100000; i += 7)
+		{
+			assertEquals(Integer.valueOf(i), list.get(i));
+		}
+	}
+
+	@Test
+	public void testFactories()
+	{
+		assertEquals(Arrays.asList("a", "b", "c"), ConcurrentAppendList.of("a", "b", "c"));
+		assertEquals(Arrays.asList("a", "b"), MCollections.appendList("a", "b"));
+		assertEquals(MCollections.range(0, 50), ConcurrentAppendList.copyOf(MCollections.range(0, 50)));
+	}
+
+	@Test
+	public void testIllegalOperations()
+	{
+		ConcurrentAppendList<String> list = ConcurrentAppendList.of("a");
+		try { list.add(null); fail(); } catch (ArgumentNullException ex) { }
+		try { list.addAll(Arrays.asList("b", null)); fail(); } catch (ArgumentNullException ex) { }
+		try { list.get(1); fail(); } catch (IndexOutOfBoundsException ex) { }
+		try { list.set(0, "b"); fail(); } catch (UnsupportedOperationException ex) { }
+		try { list.remove(0); fail(); } catch (UnsupportedOperationException ex) { }
+		try { list.add(0, "b"); fail(); } catch (UnsupportedOperationException ex) { }
+		assertEquals(1, list.size());
+	}
+
+	// -------------------------------------------- //
+	// CONCURRENCY
+	// -------------------------------------------- //
+
+	@Test
+	public void testConcurrentAppends() throws InterruptedException
+	{
+		int threads = 8;
+		int perThread = 50000;
+		ConcurrentAppendList<Integer> list = new ConcurrentAppendList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicBoolean done = new AtomicBoolean(false);
+		AtomicBoolean readFailed = new AtomicBoolean(false);
+
+		List<Thread> writers = new ArrayList<>();
+		for (int t = 0; t < threads; t++)
+		{
+			int base = t * perThread;
+			Thread writer = new Thread(() ->
+			{
+				try { start.await(); } catch (InterruptedException ex) { return; }
+				for (int i = 0; i < perThread; i++)
+				{
+					if (i % 100 == 0) list.addAll(Arrays.asList(base + i, base + i + 1));
+					else if (i % 100 != 1) list.add(base + i);
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+
+		// Reads while appending must see stored elements.
+		Thread reader = new Thread(() ->
+		{
+			while ( ! done.get())
+			{
+				int size = list.size();
+				if (size > 0 && list.get(size - 1) == null) readFailed.set(true);
+			}
+		});
+		reader.start();
+
+		start.countDown();
+		for (Thread writer : writers)
+		{
+			writer.join();
+		}
+		done.set(true);
+		reader.join();
+
+		assertFalse(readFailed.get());
+		assertEquals(threads * perThread, list.size());
+		BitSet seen = new BitSet();
+		for (Integer value : list)
+		{
+			assertFalse(seen.get(value));
+			seen.set(value);
+		}
+		assertEquals(threads * perThread, seen.cardinality());
+	}
+
+	@Test
+	public void testParallelStream()
+	{
+		ConcurrentAppendList<Integer> list = ConcurrentAppendList.copyOf(MCollections.range(0, 200000));
+
+		long sum = list.parallelStream().mapToLong(Integer::longValue).sum();
+		assertEquals(199999L * 200000L / 2, sum);
+		assertEquals(MCollections.range(0, 200000), list.parallelStream().collect(Collectors.toList()));
+
+		// Elements appended later aren't seen by an existing spliterator.
+		Spliterator<Integer> spliterator = list.spliterator();
+		list.add(-1);
+		assertEquals(200000, spliterator.estimateSize());
+	}
+
+}
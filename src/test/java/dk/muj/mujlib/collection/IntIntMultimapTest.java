@@ -0,0 +1,120 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class IntIntMultimapTest
+{
+	@Test
+	public void testInvertedIndex()
+	{
+		// Tag id to entity id
+		int[] tags = {3, 1, 3, 2, 3, 1};
+		int[] entities = {30, 10, 10, 20, 20, 40};
+		IntIntMultimap index = IntIntMultimap.of(tags, entities);
+
+		assertEquals(3, index.getKeyCount());
+		assertEquals(6, index.size());
+		assertArrayEquals(new int[] {10, 20, 30}, index.get(3).toArray());
+		assertEquals(2, index.getValueCount(1));
+		assertEquals(0, index.getValueCount(4));
+		assertTrue(index.get(4).isEmpty());
+		assertTrue(index.containsEntry(3, 20));
+		assertFalse(index.containsEntry(2, 10));
+		assertEquals("{1=[10, 40], 2=[20], 3=[10, 20, 30]}", index.toString());
+
+		IntIntMultimap inverse = index.inverse();
+		assertEquals("{10=[1, 3], 20=[2, 3], 30=[3], 40=[1]}", inverse.toString());
+		assertEquals(index, inverse.inverse());
+		assertEquals(index.hashCode(), inverse.inverse().hashCode());
+	}
+
+	@Test
+	public void testValuesView()
+	{
+		IntIntMultimap map = IntIntMultimap.of(new int[] {5, 5, 5, 6}, new int[] {9, 7, 8, 1});
+		IntIntMultimap.Values values = map.get(5);
+
+		assertEquals(3, values.size());
+		assertEquals(7, values.get(0));
+		assertEquals(9, values.get(2));
+		assertEquals(24, values.stream().sum());
+		try
+		{
+			values.get(3);
+			fail();
+		}
+		catch (IndexOutOfBoundsException ex) { }
+		try
+		{
+			IntIntMultimap.of(new int[1], new int[2]);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testRandomAgainstMap()
+	{
+		Random random = new Random(33);
+		int[] keys = new int[50_000];
+		int[] values = new int[keys.length];
+		Map<Integer, List<Integer>> expected = new TreeMap<>();
+		for (int i = 0; i < keys.length; i++)
+		{
+			keys[i] = random.nextInt(2_000) - 1_000;
+			values[i] = random.nextInt();
+			expected.computeIfAbsent(keys[i], key -> new ArrayList<>()).add(values[i]);
+		}
+		IntIntMultimap map = IntIntMultimap.of(keys, values);
+
+		assertEquals(expected.size(), map.getKeyCount());
+		int i = 0;
+		for (Map.Entry<Integer, List<Integer>> entry : expected.entrySet())
+		{
+			assertEquals((int) entry.getKey(), map.getKey(i++));
+			List<Integer> list = entry.getValue();
+			Collections.sort(list);
+			List<Integer> actual = new ArrayList<>();
+			map.get(entry.getKey()).forEach(actual::add);
+			assertEquals(list, actual);
+		}
+
+		List<Integer> pairs = new ArrayList<>();
+		map.forEach((key, value) -> pairs.add(key));
+		assertEquals(keys.length, pairs.size());
+	}
+
+}
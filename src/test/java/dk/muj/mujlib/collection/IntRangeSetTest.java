@@ -0,0 +1,219 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.util.MCollections;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntRangeSetTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testCoalescing()
+	{
+		IntRangeSet set = new IntRangeSet();
+		set.add(0, 5);
+		set.add(10, 15);
+		assertEquals(2, set.getRangeCount());
+
+		// Adjacent
+		set.add(5, 7);
+		assertEquals(2, set.getRangeCount());
+		assertEquals(0, set.getStart(0));
+		assertEquals(7, set.getEnd(0));
+
+		// Bridging
+		set.add(6, 11);
+		assertEquals(1, set.getRangeCount());
+		assertEquals("{[0, 15)}", set.toString());
+		assertEquals(15, set.getCardinality());
+		assertEquals(MCollections.range(0, 15), set.getRange(0));
+
+		// Empty ranges are ignored
+		set.add(100, 100);
+		assertEquals(1, set.getRangeCount());
+	}
+
+	@Test
+	public void testContainsOverlapsEncloses()
+	{
+		IntRangeSet set = IntRangeSet.of(-10, 0);
+		set.add(5, 10);
+
+		assertTrue(set.contains(-10));
+		assertTrue(set.contains(-1));
+		assertFalse(set.contains(0));
+		assertFalse(set.contains(4));
+		assertTrue(set.contains(5));
+		assertFalse(set.contains(10));
+
+		assertTrue(set.overlaps(-20, -9));
+		assertFalse(set.overlaps(0, 5));
+		assertTrue(set.overlaps(0, 6));
+		assertTrue(set.overlaps(-100, 100));
+		assertFalse(set.overlaps(10, 100));
+
+		assertTrue(set.encloses(6, 10));
+		assertFalse(set.encloses(6, 11));
+		assertFalse(set.encloses(-1, 6));
+	}
+
+	@Test
+	public void testRemove()
+	{
+		IntRangeSet set = IntRangeSet.of(0, 100);
+		set.remove(50);
+		assertEquals("{[0, 50), [51, 100)}", set.toString());
+
+		set.remove(40, 60);
+		assertEquals("{[0, 40), [60, 100)}", set.toString());
+
+		set.remove(-5, 10);
+		set.remove(90, 200);
+		assertEquals("{[10, 40), [60, 90)}", set.toString());
+
+		set.remove(0, 1000);
+		assertTrue(set.isEmpty());
+	}
+
+	@Test
+	public void testIllegalArguments()
+	{
+		IntRangeSet set = new IntRangeSet();
+		try { set.add(5, 4); fail(); } catch (IllegalArgumentException ex) { }
+		try { set.add(Integer.MAX_VALUE); fail(); } catch (IllegalArgumentException ex) { }
+		try { set.addAll(new int[]{1}, new int[0]); fail(); } catch (IllegalArgumentException ex) { }
+		try { set.getStart(0); fail(); } catch (IndexOutOfBoundsException ex) { }
+	}
+
+	// -------------------------------------------- //
+	// AGAINST BITSET
+	// -------------------------------------------- //
+
+	@Test
+	public void testRandomOperations()
+	{
+		Random random = new Random(13);
+		IntRangeSet set = new IntRangeSet();
+		BitSet expected = new BitSet();
+
+		for (int i = 0; i < 2000; i++)
+		{
+			int start = random.nextInt(1000);
+			int end = start + random.nextInt(30);
+			if (random.nextInt(3) == 0)
+			{
+				set.remove(start, end);
+				expected.clear(start, end);
+			}
+			else
+			{
+				set.add(start, end);
+				expected.set(start, end);
+			}
+		}
+		assertSetEquals(expected, set);
+
+		for (int i = 0; i < 500; i++)
+		{
+			int start = random.nextInt(1000);
+			int end = start + random.nextInt(30);
+			assertEquals(expected.get(start, end).cardinality() > 0, set.overlaps(start, end));
+			assertEquals(expected.get(start, end).cardinality() == end - start, set.encloses(start, end));
+		}
+	}
+
+	@Test
+	public void testBulkAndSetOperations()
+	{
+		Random random = new Random(17);
+		int[] starts = new int[300];
+		int[] ends = new int[300];
+		BitSet expectedA = new BitSet();
+		for (int i = 0; i < starts.length; i++)
+		{
+			starts[i] = random.nextInt(5000);
+			ends[i] = starts[i] + random.nextInt(40);
+			expectedA.set(starts[i], ends[i]);
+		}
+
+		IntRangeSet a = IntRangeSet.of(6000, 6010);
+		expectedA.set(6000, 6010);
+		a.addAll(starts, ends);
+		assertSetEquals(expectedA, a);
+
+		IntRangeSet b = new IntRangeSet();
+		BitSet expectedB = new BitSet();
+		for (int i = 0; i < 200; i++)
+		{
+			int start = random.nextInt(7000);
+			int end = start + random.nextInt(60);
+			b.add(start, end);
+			expectedB.set(start, end);
+		}
+
+		BitSet or = (BitSet) expectedA.clone();
+		or.or(expectedB);
+		BitSet and = (BitSet) expectedA.clone();
+		and.and(expectedB);
+
+		assertSetEquals(or, IntRangeSet.union(a, b));
+		assertSetEquals(and, IntRangeSet.intersection(a, b));
+
+		IntRangeSet copy = IntRangeSet.copyOf(a);
+		copy.addAll(b);
+		assertEquals(IntRangeSet.union(a, b), copy);
+		assertEquals(IntRangeSet.union(a, b).hashCode(), copy.hashCode());
+	}
+
+	// -------------------------------------------- //
+	// UTIL
+	// -------------------------------------------- //
+
+	private static void assertSetEquals(BitSet expected, IntRangeSet actual)
+	{
+		assertEquals(expected.cardinality(), actual.getCardinality());
+		for (int i = 0; i < actual.getRangeCount(); i++)
+		{
+			// Disjoint and coalesced
+			if (i > 0) assertTrue(actual.getEnd(i - 1) < actual.getStart(i));
+			assertEquals(actual.getStart(i), expected.nextSetBit(i == 0 ? 0 : actual.getEnd(i - 1)));
+			assertEquals(actual.getEnd(i), expected.nextClearBit(actual.getStart(i)));
+		}
+		for (int i = -5; i < expected.length() + 5; i++)
+		{
+			assertEquals(i >= 0 && expected.get(i), actual.contains(i));
+		}
+	}
+
+}
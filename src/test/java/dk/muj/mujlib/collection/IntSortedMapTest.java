@@ -0,0 +1,118 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class IntSortedMapTest
+{
+	@Test
+	public void testExtremeKeys()
+	{
+		IntSortedMap<String> map = new IntSortedMap<>();
+		map.put(Integer.MIN_VALUE, "min");
+		map.put(Integer.MAX_VALUE, "max");
+
+		assertEquals(OptionalInt.of(Integer.MAX_VALUE), map.floorKey(Integer.MAX_VALUE));
+		assertEquals(OptionalInt.of(Integer.MAX_VALUE), map.ceilingKey(0));
+		assertEquals(OptionalInt.of(Integer.MIN_VALUE), map.floorKey(0));
+		assertFalse(map.higherKey(Integer.MAX_VALUE).isPresent());
+		assertFalse(map.lowerKey(Integer.MIN_VALUE).isPresent());
+		assertEquals("{-2147483648=min, 2147483647=max}", map.toString());
+	}
+
+	@Test
+	public void testRandomAgainstTreeMap()
+	{
+		Random random = new Random(33);
+		IntSortedMap<Integer> map = new IntSortedMap<>();
+		TreeMap<Integer, Integer> expected = new TreeMap<>();
+
+		for (int i = 0; i < 100_000; i++)
+		{
+			int key = random.nextInt(10_000) - 5_000;
+			if (random.nextInt(3) != 0)
+			{
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+			else
+			{
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+
+		for (int i = 0; i < 1_000; i++)
+		{
+			int key = random.nextInt(11_000) - 5_500;
+			assertEquals(expected.get(key), map.get(key));
+			assertEquals(expected.floorKey(key), box(map.floorKey(key)));
+			assertEquals(expected.ceilingKey(key), box(map.ceilingKey(key)));
+
+			int to = key + random.nextInt(500);
+			List<Integer> keys = new ArrayList<>();
+			map.forEachInRange(key, to, (k, value) -> keys.add(k));
+			assertEquals(new ArrayList<>(expected.subMap(key, to).keySet()), keys);
+		}
+	}
+
+	@Test
+	public void testFromSorted()
+	{
+		int[] keys = new int[10_000];
+		Integer[] values = new Integer[keys.length];
+		for (int i = 0; i < keys.length; i++)
+		{
+			keys[i] = i * 2;
+			values[i] = i;
+		}
+		IntSortedMap<Integer> map = IntSortedMap.fromSorted(keys, values);
+
+		assertEquals(keys.length, map.size());
+		IntSortedMap<Integer>.Cursor cursor = map.cursor();
+		int count = 0;
+		for (boolean valid = cursor.seekCeiling(1); valid; valid = cursor.next())
+		{
+			count++;
+			assertEquals(cursor.getKey() / 2, (int) cursor.getValue());
+		}
+		assertEquals(keys.length - 1, count);
+		assertEquals(OptionalInt.of(100), map.floorKey(101));
+	}
+
+	private static Integer box(OptionalInt key)
+	{
+		return key.isPresent() ? key.getAsInt() : null;
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongRangeSetTest
+{
+	private static final long OFFSET = 1L << 40;
+
+	@Test
+	public void testAllowlist()
+	{
+		// IPv4 addresses as unsigned integers
+		LongRangeSet allowed = new LongRangeSet();
+		allowed.add(ip(10, 0, 0, 0), ip(11, 0, 0, 0));
+		allowed.add(ip(192, 168, 1, 0), ip(192, 168, 2, 0));
+		allowed.add(ip(255, 255, 255, 255));
+
+		assertTrue(allowed.contains(ip(10, 20, 30, 40)));
+		assertTrue(allowed.contains(ip(192, 168, 1, 255)));
+		assertFalse(allowed.contains(ip(192, 168, 2, 0)));
+		assertTrue(allowed.contains(ip(255, 255, 255, 255)));
+		assertTrue(allowed.overlaps(ip(9, 0, 0, 0), ip(10, 0, 0, 1)));
+		assertEquals((1L << 24) + 256 + 1, allowed.getCardinality());
+	}
+
+	@Test
+	public void testCardinalitySaturates()
+	{
+		LongRangeSet set = LongRangeSet.of(Long.MIN_VALUE, Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, set.getCardinality());
+		assertTrue(set.contains(0));
+		assertFalse(set.contains(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testRandomOperations()
+	{
+		Random random = new Random(19);
+		LongRangeSet set = new LongRangeSet();
+		BitSet expected = new BitSet();
+		long[] starts = new long[100];
+		long[] ends = new long[100];
+
+		for (int i = 0; i < starts.length; i++)
+		{
+			int start = random.nextInt(1000);
+			int end = start + random.nextInt(30);
+			starts[i] = OFFSET + start;
+			ends[i] = OFFSET + end;
+			expected.set(start, end);
+		}
+		set.addAll(starts, ends);
+
+		for (int i = 0; i < 500; i++)
+		{
+			int start = random.nextInt(1000);
+			int end = start + random.nextInt(30);
+			if (random.nextBoolean())
+			{
+				set.remove(OFFSET + start, OFFSET + end);
+				expected.clear(start, end);
+			}
+			else
+			{
+				set.add(OFFSET + start, OFFSET + end);
+				expected.set(start, end);
+			}
+		}
+
+		assertEquals(expected.cardinality(), set.getCardinality());
+		for (int i = 0; i < 1100; i++)
+		{
+			assertEquals(expected.get(i), set.contains(OFFSET + i));
+		}
+
+		LongRangeSet other = LongRangeSet.of(OFFSET + 100, OFFSET + 200);
+		LongRangeSet intersection = LongRangeSet.intersection(set, other);
+		assertEquals(expected.get(100, 200).cardinality(), intersection.getCardinality());
+		assertTrue(LongRangeSet.union(set, other).encloses(OFFSET + 100, OFFSET + 200));
+	}
+
+	private static long ip(int a, int b, int c, int d)
+	{
+		return ((long) a << 24) | (b << 16) | (c << 8) | d;
+	}
+
+}
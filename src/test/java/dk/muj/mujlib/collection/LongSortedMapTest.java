@@ -0,0 +1,290 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class LongSortedMapTest
+{
+	@Test
+	public void testTimeSeries()
+	{
+		LongSortedMap<String> map = new LongSortedMap<>();
+		map.put(1_000L, "a");
+		map.put(3_000L, "c");
+		map.put(2_000L, "b");
+
+		assertEquals("b", map.get(2_000L));
+		assertNull(map.get(2_500L));
+		assertEquals(OptionalLong.of(2_000L), map.floorKey(2_500L));
+		assertEquals(OptionalLong.of(3_000L), map.ceilingKey(2_500L));
+		assertEquals(OptionalLong.of(1_000L), map.lowerKey(2_000L));
+		assertEquals(OptionalLong.of(3_000L), map.higherKey(2_000L));
+		assertFalse(map.lowerKey(1_000L).isPresent());
+		assertFalse(map.higherKey(3_000L).isPresent());
+		assertEquals("{1000=a, 2000=b, 3000=c}", map.toString());
+
+		assertEquals("b", map.put(2_000L, "B"));
+		assertEquals("B", map.remove(2_000L));
+		assertNull(map.remove(2_000L));
+		assertEquals(2, map.size());
+	}
+
+	@Test
+	public void testExtremeKeys()
+	{
+		LongSortedMap<String> map = new LongSortedMap<>();
+		map.put(Long.MIN_VALUE, "min");
+		map.put(Long.MAX_VALUE, "max");
+
+		assertEquals(OptionalLong.of(Long.MAX_VALUE), map.floorKey(Long.MAX_VALUE));
+		assertEquals(OptionalLong.of(Long.MIN_VALUE), map.ceilingKey(Long.MIN_VALUE));
+		assertFalse(map.higherKey(Long.MAX_VALUE).isPresent());
+		assertFalse(map.lowerKey(Long.MIN_VALUE).isPresent());
+		assertEquals(OptionalLong.of(Long.MIN_VALUE), map.firstKey());
+		assertEquals(OptionalLong.of(Long.MAX_VALUE), map.lastKey());
+	}
+
+	@Test
+	public void testRandomAgainstTreeMap()
+	{
+		Random random = new Random(32);
+		LongSortedMap<Integer> map = new LongSortedMap<>();
+		TreeMap<Long, Integer> expected = new TreeMap<>();
+
+		for (int i = 0; i < 200_000; i++)
+		{
+			// Grow for a while, then shrink, to exercise splits and merges.
+			long key = random.nextInt(20_000) * 3L;
+			boolean growing = (i / 50_000) % 2 == 0;
+			if (random.nextInt(4) != 0 == growing)
+			{
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+			else
+			{
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		assertSameEntries(expected, map);
+		for (int i = 0; i < 2_000; i++)
+		{
+			long key = random.nextInt(61_000) - 500;
+			assertEquals(expected.floorKey(key), box(map.floorKey(key)));
+			assertEquals(expected.ceilingKey(key), box(map.ceilingKey(key)));
+			assertEquals(expected.lowerKey(key), box(map.lowerKey(key)));
+			assertEquals(expected.higherKey(key), box(map.higherKey(key)));
+		}
+
+		for (long key : new ArrayList<>(expected.keySet()))
+		{
+			assertEquals(expected.remove(key), map.remove(key));
+		}
+		assertTrue(map.isEmpty());
+		assertFalse(map.firstKey().isPresent());
+	}
+
+	@Test
+	public void testForEachInRange()
+	{
+		Random random = new Random(7);
+		LongSortedMap<Long> map = new LongSortedMap<>();
+		TreeMap<Long, Long> expected = new TreeMap<>();
+		for (int i = 0; i < 5_000; i++)
+		{
+			long key = random.nextInt(100_000);
+			map.put(key, -key);
+			expected.put(key, -key);
+		}
+
+		for (int i = 0; i < 200; i++)
+		{
+			long from = random.nextInt(110_000) - 5_000;
+			long to = from + random.nextInt(20_000);
+			List<Long> keys = new ArrayList<>();
+			map.forEachInRange(from, to, (key, value) ->
+			{
+				assertEquals(-key, (long) value);
+				keys.add(key);
+			});
+			assertEquals(new ArrayList<>(expected.subMap(from, to).keySet()), keys);
+		}
+	}
+
+	@Test
+	public void testCursor()
+	{
+		LongSortedMap<String> map = new LongSortedMap<>();
+		for (long i = 0; i < 1_000; i++)
+		{
+			map.put(i * 10, "v" + i);
+		}
+
+		LongSortedMap<String>.Cursor cursor = map.cursor();
+		assertFalse(cursor.isValid());
+		assertTrue(cursor.seekCeiling(995));
+		assertEquals(1_000, cursor.getKey());
+		assertTrue(cursor.previous());
+		assertEquals(990, cursor.getKey());
+		assertTrue(cursor.seekFloor(5));
+		assertEquals(0, cursor.getKey());
+		assertFalse(cursor.previous());
+		assertFalse(cursor.isValid());
+
+		// Walk backwards across every leaf.
+		assertTrue(cursor.seekLast());
+		long expected = 9_990;
+		do
+		{
+			assertEquals(expected, cursor.getKey());
+			expected -= 10;
+		}
+		while (cursor.previous());
+		assertEquals(-10, expected);
+
+		// Setting values keeps the cursor valid.
+		cursor.seekFirst();
+		assertEquals("v0", cursor.setValue("x"));
+		assertTrue(cursor.next());
+		assertEquals("x", map.get(0));
+
+		map.put(5, "y");
+		try
+		{
+			cursor.getKey();
+			fail();
+		}
+		catch (ConcurrentModificationException ex) { }
+	}
+
+	@Test
+	public void testFromSorted()
+	{
+		for (int size : new int[] {0, 1, 63, 64, 65, 4_096, 4_097, 300_000})
+		{
+			long[] keys = new long[size];
+			Long[] values = new Long[size];
+			TreeMap<Long, Long> expected = new TreeMap<>();
+			for (int i = 0; i < size; i++)
+			{
+				keys[i] = i * 7L - 1_000;
+				values[i] = (long) i;
+				expected.put(keys[i], values[i]);
+			}
+
+			LongSortedMap<Long> map = LongSortedMap.fromSorted(keys, values);
+			assertSameEntries(expected, map);
+
+			// The bulk loaded tree must stay valid when modified.
+			for (int i = 0; i < size; i += 3)
+			{
+				assertEquals(expected.remove(keys[i]), map.remove(keys[i]));
+				assertEquals(expected.put(keys[i] + 1, 0L), map.put(keys[i] + 1, 0L));
+			}
+			assertSameEntries(expected, map);
+		}
+	}
+
+	@Test
+	public void testFromSortedRejectsBadInput()
+	{
+		try
+		{
+			LongSortedMap.fromSorted(new long[] {1, 1}, new String[] {"a", "b"});
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+		try
+		{
+			LongSortedMap.fromSorted(new long[] {1, 2}, new String[] {"a"});
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+		try
+		{
+			LongSortedMap.fromSorted(new long[] {1}, new String[] {null});
+			fail();
+		}
+		catch (ArgumentNullException ex) { }
+	}
+
+	@Test
+	public void testEqualsAndHashCode()
+	{
+		LongSortedMap<String> a = new LongSortedMap<>();
+		for (long i = 999; i >= 0; i--)
+		{
+			a.put(i, "v" + i);
+		}
+		long[] keys = new long[1_000];
+		String[] values = new String[1_000];
+		TreeMap<Long, String> expected = new TreeMap<>();
+		for (int i = 0; i < keys.length; i++)
+		{
+			keys[i] = i;
+			values[i] = "v" + i;
+			expected.put((long) i, values[i]);
+		}
+		LongSortedMap<String> b = LongSortedMap.fromSorted(keys, values);
+
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+		assertEquals(expected.hashCode(), a.hashCode());
+		b.put(1, "other");
+		assertNotEquals(a, b);
+	}
+
+	private static <V> void assertSameEntries(TreeMap<Long, V> expected, LongSortedMap<V> map)
+	{
+		assertEquals(expected.size(), map.size());
+		List<Map.Entry<Long, V>> entries = new ArrayList<>();
+		map.forEach((key, value) -> entries.add(new AbstractMap.SimpleEntry<>(key, value)));
+		assertEquals(new ArrayList<>(expected.entrySet()), entries);
+		for (Map.Entry<Long, V> entry : expected.entrySet())
+		{
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+	}
+
+	private static Long box(OptionalLong key)
+	{
+		return key.isPresent() ? key.getAsLong() : null;
+	}
+
+}
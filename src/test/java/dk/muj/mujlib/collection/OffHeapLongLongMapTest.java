@@ -0,0 +1,189 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class OffHeapLongLongMapTest
+{
+	@Test
+	public void testRandomAgainstHashMap()
+	{
+		Random random = new Random(35);
+		OffHeapLongLongMap map = OffHeapLongLongMap.allocate(100_000);
+		Map<Long, Long> expected = new HashMap<>();
+
+		for (int i = 0; i < 100_000; i++)
+		{
+			long key = (random.nextInt(10) == 0) ? random.nextInt(3) : random.nextLong();
+			long value = random.nextLong();
+			assertEquals(expected.put(key, value) == null, map.put(key, value));
+		}
+		assertEquals(expected.size(), map.size());
+		for (Map.Entry<Long, Long> entry : expected.entrySet())
+		{
+			assertEquals((long) entry.getValue(), map.get(entry.getKey(), -1));
+			assertTrue(map.containsKey(entry.getKey()));
+		}
+		assertFalse(map.containsKey(3));
+		assertEquals(-1, map.get(3, -1));
+
+		Map<Long, Long> actual = new HashMap<>();
+		map.forEach(actual::put);
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testCapacity()
+	{
+		OffHeapLongLongMap map = OffHeapLongLongMap.allocate(100);
+		assertTrue(map.getCapacity() >= 100);
+		for (long i = 1; i <= map.getCapacity(); i++)
+		{
+			map.put(i, i);
+		}
+		map.put(1, 2);
+		try
+		{
+			map.put(-1, 0);
+			fail();
+		}
+		catch (IllegalStateException ex) { }
+		try
+		{
+			OffHeapLongLongMap.allocate(-1);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testFileReopen() throws IOException
+	{
+		Path file = Files.createTempFile("offheap", ".map");
+		try
+		{
+			try (OffHeapLongLongMap map = OffHeapLongLongMap.create(file, 10_000))
+			{
+				for (long i = 0; i < 10_000; i++)
+				{
+					map.put(i * 31, i);
+				}
+			}
+
+			try (OffHeapLongLongMap map = OffHeapLongLongMap.open(file, true))
+			{
+				assertEquals(10_000, map.size());
+				assertEquals(0, map.get(0, -1));
+				assertEquals(9_999, map.get(9_999 * 31, -1));
+				assertFalse(map.containsKey(1));
+				try
+				{
+					map.put(1, 1);
+					fail();
+				}
+				catch (UnsupportedOperationException ex) { }
+			}
+
+			try (OffHeapLongLongMap map = OffHeapLongLongMap.open(file, false))
+			{
+				assertFalse(map.put(31, 100));
+				assertTrue(map.put(1, 1));
+				assertEquals(10_001, map.size());
+			}
+
+			OffHeapLongLongMap map = OffHeapLongLongMap.open(file, true);
+			assertEquals(100, map.get(31, -1));
+			map.close();
+			try
+			{
+				map.get(31, -1);
+				fail();
+			}
+			catch (IllegalStateException ex) { }
+
+			Files.write(file, new byte[100]);
+			try
+			{
+				OffHeapLongLongMap.open(file, true);
+				fail();
+			}
+			catch (IllegalArgumentException ex) { }
+		}
+		finally
+		{
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void testConcurrentReaders() throws InterruptedException
+	{
+		OffHeapLongLongMap map = OffHeapLongLongMap.allocate(200_000);
+		AtomicBoolean done = new AtomicBoolean(false);
+		AtomicReference<String> failure = new AtomicReference<>();
+
+		Thread[] readers = new Thread[4];
+		for (int t = 0; t < readers.length; t++)
+		{
+			readers[t] = new Thread(() ->
+			{
+				Random random = new Random();
+				while ( ! done.get())
+				{
+					long key = random.nextInt(200_000) + 1;
+					long value = map.get(key, -1);
+					if (value != -1 && value != key * 7) failure.set(key + " -> " + value);
+				}
+			});
+			readers[t].start();
+		}
+
+		for (long key = 1; key <= 200_000; key++)
+		{
+			map.put(key, key * 7);
+		}
+		done.set(true);
+		for (Thread reader : readers)
+		{
+			reader.join();
+		}
+
+		assertNull(failure.get());
+		assertEquals(200_000, map.size());
+	}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PersistentMapTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testWithAndGet()
+	{
+		PersistentMap<String, Integer> empty = PersistentMap.empty();
+		PersistentMap<String, Integer> one = empty.with("one", 1);
+		PersistentMap<String, Integer> two = one.with("two", 2);
+
+		assertEquals(0, empty.size());
+		assertEquals(1, one.size());
+		assertEquals(2, two.size());
+		assertNull(one.get("two"));
+		assertEquals(Integer.valueOf(2), two.get("two"));
+		assertEquals(Integer.valueOf(1), two.get("one"));
+		assertNull(two.get(null));
+
+		// Same value returns the same map
+		assertSame(two, two.with("one", 1));
+
+		PersistentMap<String, Integer> replaced = two.with("one", 11);
+		assertEquals(Integer.valueOf(11), replaced.get("one"));
+		assertEquals(Integer.valueOf(1), two.get("one"));
+		assertEquals(2, replaced.size());
+	}
+
+	@Test
+	public void testWithout()
+	{
+		PersistentMap<String, Integer> map = PersistentMap.of(String.class, Integer.class, "a", 1, "b", 2, "c", 3);
+
+		PersistentMap<String, Integer> removed = map.without("b");
+		assertEquals(2, removed.size());
+		assertFalse(removed.containsKey("b"));
+		assertTrue(map.containsKey("b"));
+
+		assertSame(map, map.without("d"));
+		assertSame(PersistentMap.empty(), map.without("a").without("b").without("c"));
+	}
+
+	@Test
+	public void testIllegalArguments()
+	{
+		PersistentMap<String, Integer> map = PersistentMap.empty();
+		try { map.with(null, 1); fail(); } catch (ArgumentNullException ex) { }
+		try { map.with("a", null); fail(); } catch (ArgumentNullException ex) { }
+		try { map.without(null); fail(); } catch (ArgumentNullException ex) { }
+		try { map.put("a", 1); fail(); } catch (UnsupportedOperationException ex) { }
+		try { PersistentMap.of(String.class, Integer.class, "a"); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	// -------------------------------------------- //
+	// AGAINST HASHMAP
+	// -------------------------------------------- //
+
+	@Test
+	public void testRandomOperations()
+	{
+		Random random = new Random(42);
+		Map<Integer, Integer> expected = new HashMap<>();
+		PersistentMap<Integer, Integer> map = PersistentMap.empty();
+
+		for (int i = 0; i < 20000; i++)
+		{
+			int key = random.nextInt(5000);
+			if (random.nextInt(3) == 0)
+			{
+				expected.remove(key);
+				map = map.without(key);
+			}
+			else
+			{
+				expected.put(key, i);
+				map = map.with(key, i);
+			}
+		}
+
+		assertEquals(expected, map);
+		assertEquals(map, expected);
+		assertEquals(expected.hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void testOldVersionsUnchanged()
+	{
+		PersistentMap<Integer, Integer> map = PersistentMap.empty();
+		for (int i = 0; i < 1000; i++)
+		{
+			map = map.with(i, i);
+		}
+
+		PersistentMap<Integer, Integer> old = map;
+		for (int i = 0; i < 1000; i += 2)
+		{
+			map = map.without(i);
+		}
+
+		assertEquals(1000, old.size());
+		assertEquals(500, map.size());
+		for (int i = 0; i < 1000; i++)
+		{
+			assertEquals(Integer.valueOf(i), old.get(i));
+			assertEquals(i % 2 != 0, map.containsKey(i));
+		}
+	}
+
+	@Test
+	public void testCollisions()
+	{
+		PersistentMap<Colliding, Integer> map = PersistentMap.empty();
+		for (int i = 0; i < 100; i++)
+		{
+			map = map.with(new Colliding(i % 10, i), i);
+		}
+		assertEquals(100, map.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(Integer.valueOf(i), map.get(new Colliding(i % 10, i)));
+		}
+
+		for (int i = 0; i < 100; i++)
+		{
+			if (i % 10 == 3) continue;
+			map = map.without(new Colliding(i % 10, i));
+		}
+		assertEquals(10, map.size());
+		assertEquals(Integer.valueOf(53), map.get(new Colliding(3, 53)));
+
+		Map<Colliding, Integer> expected = new HashMap<>();
+		map.forEach(expected::put);
+		assertEquals(expected, map);
+	}
+
+	// -------------------------------------------- //
+	// TRANSIENT
+	// -------------------------------------------- //
+
+	@Test
+	public void testTransient()
+	{
+		PersistentMap<Integer, Integer> base = PersistentMap.of(Integer.class, Integer.class, 1, 1, 2, 2);
+		PersistentMap.Transient<Integer, Integer> builder = base.asTransient();
+		for (int i = 0; i < 1000; i++)
+		{
+			builder.put(i, -i);
+		}
+		builder.remove(5);
+		assertEquals(999, builder.size());
+
+		PersistentMap<Integer, Integer> built = builder.build();
+		assertEquals(999, built.size());
+		assertEquals(Integer.valueOf(-1), built.get(1));
+		assertFalse(built.containsKey(5));
+
+		// The source is not affected
+		assertEquals(2, base.size());
+		assertEquals(Integer.valueOf(1), base.get(1));
+
+		try { builder.put(1, 1); fail(); } catch (IllegalStateException ex) { }
+
+		Map<Integer, Integer> expected = new HashMap<>(built);
+		assertEquals(expected.hashCode(), built.hashCode());
+		assertEquals(built, PersistentMap.copyOf(expected));
+	}
+
+	// -------------------------------------------- //
+	// UTIL
+	// -------------------------------------------- //
+
+	private static final class Colliding
+	{
+		private final int hash;
+		private final int id;
+
+		Colliding(int hash, int id)
+		{
+			this.hash = hash;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return o instanceof Colliding && ((Colliding) o).id == this.id;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+	}
+
+}
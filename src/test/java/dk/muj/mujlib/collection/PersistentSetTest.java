@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class PersistentSetTest
+{
+	@Test
+	public void testWithAndWithout()
+	{
+		PersistentSet<String> set = PersistentSet.of("a", "b", "c");
+		assertEquals(3, set.size());
+		assertTrue(set.contains("b"));
+
+		assertSame(set, set.with("a"));
+		assertSame(set, set.without("d"));
+
+		PersistentSet<String> removed = set.without("a");
+		assertFalse(removed.contains("a"));
+		assertTrue(set.contains("a"));
+		assertSame(PersistentSet.empty(), removed.without("b").without("c"));
+	}
+
+	@Test
+	public void testRandomOperations()
+	{
+		Random random = new Random(7);
+		Set<Integer> expected = new HashSet<>();
+		PersistentSet<Integer> set = PersistentSet.empty();
+		PersistentSet.Transient<Integer> builder = PersistentSet.<Integer>empty().asTransient();
+
+		for (int i = 0; i < 10000; i++)
+		{
+			int element = random.nextInt(2000);
+			if (random.nextBoolean())
+			{
+				expected.add(element);
+				set = set.with(element);
+				builder.add(element);
+			}
+			else
+			{
+				expected.remove(element);
+				set = set.without(element);
+				builder.remove(element);
+			}
+		}
+
+		PersistentSet<Integer> built = builder.build();
+		assertEquals(expected, set);
+		assertEquals(expected, built);
+		assertEquals(set, built);
+		assertEquals(expected.hashCode(), set.hashCode());
+		assertEquals(expected.hashCode(), built.hashCode());
+		assertEquals(set, PersistentSet.copyOf(expected));
+	}
+
+}
@@ -0,0 +1,185 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PersistentVectorTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testAppendAndGet()
+	{
+		PersistentVector<Integer> vector = PersistentVector.empty();
+		List<PersistentVector<Integer>> versions = new ArrayList<>();
+		for (int i = 0; i < 5000; i++)
+		{
+			versions.add(vector);
+			vector = vector.withAppended(i);
+		}
+
+		assertEquals(5000, vector.size());
+		for (int i = 0; i < 5000; i++)
+		{
+			assertEquals(Integer.valueOf(i), vector.get(i));
+		}
+
+		// Every old version is unchanged
+		for (int i = 0; i < versions.size(); i += 97)
+		{
+			assertEquals(i, versions.get(i).size());
+		}
+	}
+
+	@Test
+	public void testWith()
+	{
+		PersistentVector<Integer> vector = PersistentVector.copyOf(range(2000));
+		PersistentVector<Integer> changed = vector.with(10, -1).with(1999, -2);
+
+		assertEquals(Integer.valueOf(-1), changed.get(10));
+		assertEquals(Integer.valueOf(-2), changed.get(1999));
+		assertEquals(Integer.valueOf(10), vector.get(10));
+		assertSame(vector, vector.with(3, vector.get(3)));
+	}
+
+	@Test
+	public void testWithoutLast()
+	{
+		PersistentVector<Integer> vector = PersistentVector.copyOf(range(3000));
+		for (int i = 2999; i >= 0; i--)
+		{
+			assertEquals(Integer.valueOf(i), vector.get(i));
+			vector = vector.withoutLast();
+			assertEquals(i, vector.size());
+			if (i % 100 == 0) assertEquals(range(i), vector);
+		}
+		assertSame(PersistentVector.empty(), vector);
+	}
+
+	@Test
+	public void testIllegalArguments()
+	{
+		PersistentVector<Integer> vector = PersistentVector.of(1, 2, 3);
+		try { vector.get(3); fail(); } catch (IndexOutOfBoundsException ex) { }
+		try { vector.get(-1); fail(); } catch (IndexOutOfBoundsException ex) { }
+		try { vector.withAppended(null); fail(); } catch (ArgumentNullException ex) { }
+		try { vector.add(4); fail(); } catch (UnsupportedOperationException ex) { }
+		try { PersistentVector.empty().withoutLast(); fail(); } catch (IllegalStateException ex) { }
+	}
+
+	// -------------------------------------------- //
+	// HASHCODE
+	// -------------------------------------------- //
+
+	@Test
+	public void testHashCode()
+	{
+		Random random = new Random(3);
+		List<Integer> expected = new ArrayList<>();
+		PersistentVector<Integer> vector = PersistentVector.empty();
+
+		for (int i = 0; i < 5000; i++)
+		{
+			int choice = random.nextInt(4);
+			if (choice == 0 && ! expected.isEmpty())
+			{
+				expected.remove(expected.size() - 1);
+				vector = vector.withoutLast();
+			}
+			else if (choice == 1 && ! expected.isEmpty())
+			{
+				int index = random.nextInt(expected.size());
+				expected.set(index, i);
+				vector = vector.with(index, i);
+			}
+			else
+			{
+				expected.add(i);
+				vector = vector.withAppended(i);
+			}
+			assertEquals(expected.hashCode(), vector.hashCode());
+		}
+		assertEquals(expected, vector);
+	}
+
+	// -------------------------------------------- //
+	// TRANSIENT
+	// -------------------------------------------- //
+
+	@Test
+	public void testTransient()
+	{
+		PersistentVector<Integer> base = PersistentVector.copyOf(range(100));
+		PersistentVector.Transient<Integer> builder = base.asTransient();
+		List<Integer> expected = new ArrayList<>(range(100));
+
+		for (int i = 0; i < 3000; i++)
+		{
+			builder.add(i);
+			expected.add(i);
+		}
+		for (int i = 0; i < 1500; i++)
+		{
+			builder.removeLast();
+			expected.remove(expected.size() - 1);
+		}
+		builder.set(5, -5);
+		expected.set(5, -5);
+
+		PersistentVector<Integer> built = builder.build();
+		assertEquals(expected, built);
+		assertEquals(expected.hashCode(), built.hashCode());
+		assertEquals(range(100), base);
+
+		try { builder.add(1); fail(); } catch (IllegalStateException ex) { }
+	}
+
+	// -------------------------------------------- //
+	// UTIL
+	// -------------------------------------------- //
+
+	private static List<Integer> range(int size)
+	{
+		Integer[] ret = new Integer[size];
+		for (int i = 0; i < size; i++)
+		{
+			ret[i] = i;
+		}
+		return Arrays.asList(ret);
+	}
+
+}
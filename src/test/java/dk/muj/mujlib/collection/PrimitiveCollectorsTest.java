@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class PrimitiveCollectorsTest
+{
+	@Test
+	public void testBitmapAndRangeSets()
+	{
+		RoaringBitmap bitmap = PrimitiveCollectors.toRoaringBitmap(IntStream.range(0, 1_000_000).parallel().map(i -> i * 3));
+		assertEquals(1_000_000, bitmap.getCardinality());
+		assertTrue(bitmap.contains(2_999_997));
+		assertFalse(bitmap.contains(2_999_998));
+
+		List<String> words = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++)
+		{
+			words.add("w" + (i % 5_000));
+		}
+		TreeSet<Integer> expected = words.stream().map(String::hashCode).collect(Collectors.toCollection(TreeSet::new));
+		RoaringBitmap hashes = words.parallelStream().collect(PrimitiveCollectors.toRoaringBitmap(String::hashCode));
+		assertEquals(expected.size(), hashes.getCardinality());
+		for (int hash : expected)
+		{
+			assertTrue(hashes.contains(hash));
+		}
+
+		IntRangeSet ints = PrimitiveCollectors.toIntRangeSet(IntStream.of(5, 1, 2, 3, 9, 4).parallel());
+		assertEquals(2, ints.getRangeCount());
+		assertEquals(6, ints.getEnd(0));
+
+		LongRangeSet longs = PrimitiveCollectors.toLongRangeSet(LongStream.range(0, 100_000).parallel().map(i -> i + (1L << 40)));
+		assertEquals(1, longs.getRangeCount());
+		assertEquals(100_000, longs.getCardinality());
+	}
+
+	@Test
+	public void testMultimap()
+	{
+		IntIntMultimap sequential = IntStream.range(0, 50_000).boxed()
+			.collect(PrimitiveCollectors.toIntIntMultimap(i -> i % 100, i -> i, 50_000));
+		IntIntMultimap parallel = IntStream.range(0, 50_000).boxed().parallel()
+			.collect(PrimitiveCollectors.toIntIntMultimap(i -> i % 100, i -> i));
+
+		assertEquals(sequential, parallel);
+		assertEquals(100, parallel.getKeyCount());
+		assertEquals(500, parallel.getValueCount(42));
+		assertTrue(parallel.containsEntry(42, 49_942));
+
+		// A size hint pre-sizes every partial result, and the collector can be reused.
+		Collector<Integer, ?, IntIntMultimap> hinted = PrimitiveCollectors.toIntIntMultimap(i -> i % 100, i -> i, 50_000);
+		assertEquals(sequential, IntStream.range(0, 50_000).boxed().parallel().collect(hinted));
+		assertEquals(sequential, IntStream.range(0, 50_000).boxed().collect(hinted));
+	}
+
+	@Test
+	public void testSortedMaps()
+	{
+		Random random = new Random(34);
+		long[] keys = random.longs(100_000, 0, 50_000).toArray();
+		TreeMap<Long, Long> expected = new TreeMap<>();
+		for (long key : keys)
+		{
+			expected.merge(key, 1L, Long::sum);
+		}
+
+		LongSortedMap<Long> counts = LongStream.of(keys).boxed().parallel()
+			.collect(PrimitiveCollectors.toLongSortedMap(key -> key, key -> 1L, Long::sum, 1_000));
+		assertEquals(expected.size(), counts.size());
+		counts.forEach((key, value) -> assertEquals(expected.get(key), value));
+
+		// Merging happens in encounter order.
+		IntSortedMap<String> last = IntStream.range(0, 10_000).boxed().parallel()
+			.collect(PrimitiveCollectors.toIntSortedMap(i -> -(i % 10), String::valueOf, (a, b) -> b, 16));
+		assertEquals(10, last.size());
+		assertEquals("9999", last.get(-9));
+		assertEquals(Integer.valueOf(-9), Integer.valueOf(last.firstKey().getAsInt()));
+
+		try
+		{
+			IntStream.of(1, 2, 1).boxed().collect(PrimitiveCollectors.toIntSortedMap(i -> i, i -> "v"));
+			fail();
+		}
+		catch (IllegalStateException ex) { }
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RingQueueTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testOfferPoll()
+	{
+		for (RingQueue<Integer> queue : queues(5))
+		{
+			assertEquals(8, queue.getCapacity());
+			assertNull(queue.poll());
+			assertNull(queue.peek());
+
+			// Several laps around the buffer
+			for (int lap = 0; lap < 5; lap++)
+			{
+				for (int i = 0; i < 8; i++)
+				{
+					assertTrue(queue.offer(i));
+				}
+				assertFalse(queue.offer(8));
+				assertEquals(8, queue.size());
+				assertEquals(Integer.valueOf(0), queue.peek());
+
+				for (int i = 0; i < 8; i++)
+				{
+					assertEquals(Integer.valueOf(i), queue.poll());
+				}
+				assertNull(queue.poll());
+				assertTrue(queue.isEmpty());
+			}
+		}
+	}
+
+	@Test
+	public void testDrainAndFill()
+	{
+		for (RingQueue<Integer> queue : queues(16))
+		{
+			AtomicInteger next = new AtomicInteger();
+			assertEquals(10, queue.fill(next::getAndIncrement, 10));
+			assertEquals(6, queue.fill(next::getAndIncrement, 100));
+			assertEquals(0, queue.fill(next::getAndIncrement, 100));
+			assertEquals(16, next.get());
+
+			List<Integer> drained = new ArrayList<>();
+			assertEquals(4, queue.drain(drained::add, 4));
+			assertEquals(12, queue.drain(drained::add));
+			assertEquals(0, queue.drain(drained::add));
+			for (int i = 0; i < 16; i++)
+			{
+				assertEquals(Integer.valueOf(i), drained.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testIterator()
+	{
+		for (RingQueue<Integer> queue : queues(4))
+		{
+			assertFalse(queue.iterator().hasNext());
+
+			// Around the end of the buffer
+			queue.fill(() -> -1, 3);
+			queue.drain(x -> { }, 3);
+			for (int i = 0; i < 4; i++)
+			{
+				assertTrue(queue.offer(i));
+			}
+
+			List<Integer> iterated = new ArrayList<>();
+			queue.iterator().forEachRemaining(iterated::add);
+			assertEquals(Arrays.asList(0, 1, 2, 3), iterated);
+			assertEquals(Arrays.asList(0, 1, 2, 3), Arrays.asList(queue.toArray()));
+			assertTrue(queue.contains(2));
+			assertFalse(queue.contains(4));
+			assertTrue(queue.containsAll(Arrays.asList(1, 3)));
+
+			// The iterator is a snapshot.
+			Iterator<Integer> iterator = queue.iterator();
+			assertEquals(Integer.valueOf(0), queue.poll());
+			assertEquals(Integer.valueOf(0), iterator.next());
+			try { iterator.remove(); fail(); } catch (UnsupportedOperationException ex) { }
+			try { queue.remove(Integer.valueOf(2)); fail(); } catch (UnsupportedOperationException ex) { }
+			assertEquals(3, queue.size());
+		}
+	}
+
+	@Test
+	public void testIllegalArguments()
+	{
+		for (RingQueue<Integer> queue : queues(4))
+		{
+			try { queue.offer(null); fail(); } catch (ArgumentNullException ex) { }
+			try { queue.fill(() -> null, 1); fail(); } catch (ArgumentNullException ex) { }
+			try { queue.drain(x -> { }, -1); fail(); } catch (IllegalArgumentException ex) { }
+			assertTrue(queue.isEmpty());
+		}
+		try { RingQueue.spsc(0); fail(); } catch (IllegalArgumentException ex) { }
+		try { RingQueue.mpmc(4, null); fail(); } catch (ArgumentNullException ex) { }
+		try { WaitStrategy.parking(0); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	// -------------------------------------------- //
+	// CONCURRENCY
+	// -------------------------------------------- //
+
+	@Test
+	public void testSpsc() throws InterruptedException
+	{
+		this.testConcurrent(RingQueue.spsc(64, WaitStrategy.yielding()), 1, 1);
+	}
+
+	@Test
+	public void testMpsc() throws InterruptedException
+	{
+		this.testConcurrent(RingQueue.mpsc(64, WaitStrategy.backingOff()), 4, 1);
+	}
+
+	@Test
+	public void testMpmc() throws InterruptedException
+	{
+		this.testConcurrent(RingQueue.mpmc(64, WaitStrategy.parking(1000)), 4, 4);
+	}
+
+	private void testConcurrent(RingQueue<Long> queue, int producers, int consumers) throws InterruptedException
+	{
+		int perProducer = 100000;
+		long total = (long) producers * perProducer;
+		AtomicLong sum = new AtomicLong();
+		AtomicLong count = new AtomicLong();
+		AtomicInteger orderErrors = new AtomicInteger();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++)
+		{
+			long base = (long) p * perProducer;
+			threads.add(new Thread(() ->
+			{
+				try
+				{
+					for (int i = 0; i < perProducer; i++)
+					{
+						queue.put(base + i);
+					}
+				}
+				catch (InterruptedException ex)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}));
+		}
+		for (int c = 0; c < consumers; c++)
+		{
+			threads.add(new Thread(() ->
+			{
+				// With one consumer, each producer's elements arrive in order.
+				long[] last = new long[producers];
+				Arrays.fill(last, -1);
+				while (count.get() < total)
+				{
+					Long element = queue.poll();
+					if (element == null) continue;
+					int producer = (int) (element / perProducer);
+					if (consumers == 1 && element <= last[producer]) orderErrors.incrementAndGet();
+					last[producer] = element;
+					sum.addAndGet(element);
+					count.incrementAndGet();
+				}
+			}));
+		}
+
+		for (Thread thread : threads)
+		{
+			thread.start();
+		}
+		for (Thread thread : threads)
+		{
+			thread.join();
+		}
+
+		assertEquals(total, count.get());
+		assertEquals((total - 1) * total / 2, sum.get());
+		assertEquals(0, orderErrors.get());
+		assertTrue(queue.isEmpty());
+	}
+
+	// -------------------------------------------- //
+	// UTIL
+	// -------------------------------------------- //
+
+	private static List<RingQueue<Integer>> queues(int capacity)
+	{
+		List<RingQueue<Integer>> ret = new ArrayList<>();
+		ret.add(RingQueue.spsc(capacity));
+		ret.add(RingQueue.mpsc(capacity));
+		ret.add(RingQueue.mpmc(capacity));
+		return ret;
+	}
+
+}
@@ -0,0 +1,322 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.collection;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class RoaringBitmapTest
+{
+	// -------------------------------------------- //
+	// BASICS
+	// -------------------------------------------- //
+
+	@Test
+	public void testAddContainsRemove()
+	{
+		RoaringBitmap bitmap = RoaringBitmap.of(1, 5, 70000, -1);
+		assertTrue(bitmap.contains(1));
+		assertTrue(bitmap.contains(70000));
+		assertTrue(bitmap.contains(-1));
+		assertFalse(bitmap.contains(2));
+		assertEquals(4, bitmap.getCardinality());
+
+		bitmap.remove(5);
+		bitmap.remove(6);
+		assertFalse(bitmap.contains(5));
+		assertEquals(3, bitmap.getCardinality());
+
+		// Unsigned order
+		assertArrayEquals(new int[]{1, 70000, -1}, bitmap.toArray());
+
+		bitmap.clear();
+		assertTrue(bitmap.isEmpty());
+	}
+
+	@Test
+	public void testDenseAndSparse()
+	{
+		// Crosses the array to bitmap threshold both ways
+		RoaringBitmap bitmap = new RoaringBitmap();
+		for (int i = 0; i < 10000; i += 2)
+		{
+			bitmap.add(i);
+		}
+		assertEquals(5000, bitmap.getCardinality());
+		for (int i = 0; i < 10000; i += 4)
+		{
+			bitmap.remove(i);
+		}
+		assertEquals(2500, bitmap.getCardinality());
+		for (int i = 0; i < 10000; i++)
+		{
+			assertEquals(i % 4 == 2, bitmap.contains(i));
+		}
+	}
+
+	@Test
+	public void testAddRange()
+	{
+		RoaringBitmap bitmap = new RoaringBitmap();
+		bitmap.addRange(10, 200000);
+		assertEquals(199990, bitmap.getCardinality());
+		assertFalse(bitmap.contains(9));
+		assertTrue(bitmap.contains(10));
+		assertTrue(bitmap.contains(199999));
+		assertFalse(bitmap.contains(200000));
+
+		// Merging with existing values in all container types
+		bitmap.add(300000);
+		bitmap.addRange(199990, 300001);
+		assertEquals(300000 - 10 + 1, bitmap.getCardinality());
+
+		RoaringBitmap full = new RoaringBitmap();
+		full.addRange(0, 1L << 32);
+		assertEquals(1L << 32, full.getCardinality());
+		assertTrue(full.contains(-1));
+
+		try { bitmap.addRange(-1, 5); fail(); } catch (IllegalArgumentException ex) { }
+		try { bitmap.addRange(5, 4); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testRank()
+	{
+		RoaringBitmap bitmap = new RoaringBitmap();
+		bitmap.addRange(100, 200);
+		bitmap.add(70000);
+		for (int i = 0; i < 10000; i++)
+		{
+			bitmap.add(200000 + i * 3);
+		}
+
+		assertEquals(0, bitmap.rank(99));
+		assertEquals(1, bitmap.rank(100));
+		assertEquals(100, bitmap.rank(1000));
+		assertEquals(101, bitmap.rank(70000));
+		assertEquals(102, bitmap.rank(200000));
+		assertEquals(103, bitmap.rank(200004));
+		assertEquals(bitmap.getCardinality(), bitmap.rank(-1));
+
+		bitmap.runOptimize();
+		assertEquals(50, bitmap.rank(149));
+	}
+
+	// -------------------------------------------- //
+	// SET OPERATIONS
+	// -------------------------------------------- //
+
+	@Test
+	public void testSetOperations()
+	{
+		Random random = new Random(11);
+		for (int round = 0; round < 20; round++)
+		{
+			TreeSet<Integer> expectedA = new TreeSet<>();
+			TreeSet<Integer> expectedB = new TreeSet<>();
+			RoaringBitmap a = randomBitmap(random, expectedA);
+			RoaringBitmap b = randomBitmap(random, expectedB);
+			if (round % 2 == 0) a.runOptimize();
+
+			TreeSet<Integer> and = new TreeSet<>(expectedA);
+			and.retainAll(expectedB);
+			TreeSet<Integer> or = new TreeSet<>(expectedA);
+			or.addAll(expectedB);
+			TreeSet<Integer> andNot = new TreeSet<>(expectedA);
+			andNot.removeAll(expectedB);
+
+			assertContentEquals(and, RoaringBitmap.and(a, b));
+			assertContentEquals(or, RoaringBitmap.or(a, b));
+			assertContentEquals(andNot, RoaringBitmap.andNot(a, b));
+
+			// The inputs are unchanged
+			assertContentEquals(expectedA, a);
+			assertContentEquals(expectedB, b);
+
+			a.addAll(b);
+			assertContentEquals(or, a);
+			assertContentEquals(expectedB, b);
+		}
+	}
+
+	// -------------------------------------------- //
+	// SERIALIZATION
+	// -------------------------------------------- //
+
+	@Test
+	public void testPortableFormat()
+	{
+		byte[] expected = {
+			0x3A, 0x30, 0, 0, // Cookie
+			1, 0, 0, 0, // One container
+			0, 0, 2, 0, // Key 0, three values
+			16, 0, 0, 0, // Offset
+			1, 0, 2, 0, 3, 0, // Values
+		};
+		assertArrayEquals(expected, RoaringBitmap.of(1, 2, 3).toBytes());
+	}
+
+	@Test
+	public void testSerialization()
+	{
+		Random random = new Random(5);
+		for (int round = 0; round < 10; round++)
+		{
+			RoaringBitmap bitmap = randomBitmap(random, new TreeSet<>());
+			if (round % 2 == 0) bitmap.runOptimize();
+
+			byte[] bytes = bitmap.toBytes();
+			assertEquals(bitmap.getSerializedSize(), bytes.length);
+			RoaringBitmap read = RoaringBitmap.fromBytes(bytes);
+			assertEquals(bitmap, read);
+			assertEquals(bitmap.hashCode(), read.hashCode());
+		}
+
+		try { RoaringBitmap.fromBytes(new byte[]{1, 2, 3, 4}); fail(); } catch (IllegalArgumentException ex) { }
+		byte[] bytes = RoaringBitmap.of(1, 2, 3).toBytes();
+		try { RoaringBitmap.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testMalformedContainers()
+	{
+		byte[] array = {
+			0x3A, 0x30, 0, 0, // Cookie
+			1, 0, 0, 0, // One container
+			0, 0, 2, 0, // Key 0, three values
+			16, 0, 0, 0, // Offset
+			2, 0, 1, 0, 3, 0, // Values, not sorted
+		};
+		try { RoaringBitmap.fromBytes(array); fail(); } catch (IllegalArgumentException ex) { }
+		array[16] = 1;
+		try { RoaringBitmap.fromBytes(array); fail(); } catch (IllegalArgumentException ex) { }
+		array[18] = 2;
+		assertEquals(RoaringBitmap.of(1, 2, 3), RoaringBitmap.fromBytes(array));
+
+		byte[] run = {
+			0x3B, 0x30, 0, 0, // Cookie, one container
+			1, // Run markers
+			0, 0, 0, 0, // Key 0, cardinality is ignored for runs
+			1, 0, // One run
+			(byte) 0xF0, (byte) 0xFF, (byte) 0xFF, 0, // Start 65520, 256 values
+		};
+		try { RoaringBitmap.fromBytes(run); fail(); } catch (IllegalArgumentException ex) { }
+		run[13] = 0x0F;
+		assertEquals(16, RoaringBitmap.fromBytes(run).getCardinality());
+
+		byte[] noRuns = {0x3B, 0x30, 0, 0, 1, 0, 0, 0, 0, 0, 0};
+		try { RoaringBitmap.fromBytes(noRuns); fail(); } catch (IllegalArgumentException ex) { }
+
+		byte[] overlappingRuns = {0x3B, 0x30, 0, 0, 1, 0, 0, 0, 0, 2, 0, 10, 0, 5, 0, 12, 0, 0, 0};
+		try { RoaringBitmap.fromBytes(overlappingRuns); fail(); } catch (IllegalArgumentException ex) { }
+
+		// A bitmap container with more bits set than its header says.
+		RoaringBitmap bitmap = new RoaringBitmap();
+		for (int i = 0; i < 10_000; i += 2)
+		{
+			bitmap.add(i);
+		}
+		byte[] bytes = bitmap.toBytes();
+		assertEquals(bitmap, RoaringBitmap.fromBytes(bytes));
+		bytes[bytes.length - 1] = (byte) 0x80;
+		try { RoaringBitmap.fromBytes(bytes); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testRunOptimize()
+	{
+		RoaringBitmap bitmap = new RoaringBitmap();
+		for (int i = 0; i < 100000; i++)
+		{
+			bitmap.add(i);
+		}
+		int before = bitmap.getSerializedSize();
+		assertTrue(bitmap.runOptimize());
+		assertTrue(bitmap.getSerializedSize() < before / 100);
+		assertEquals(100000, bitmap.getCardinality());
+
+		RoaringBitmap copy = RoaringBitmap.copyOf(bitmap);
+		copy.remove(500);
+		assertTrue(bitmap.contains(500));
+		assertFalse(copy.contains(500));
+		assertEquals(99999, copy.getCardinality());
+	}
+
+	// -------------------------------------------- //
+	// UTIL
+	// -------------------------------------------- //
+
+	// Mixes sparse, dense and consecutive chunks.
+	private static RoaringBitmap randomBitmap(Random random, TreeSet<Integer> expected)
+	{
+		RoaringBitmap ret = new RoaringBitmap();
+		for (int chunk = 0; chunk < 6; chunk++)
+		{
+			int base = random.nextInt(8) << 16;
+			int kind = random.nextInt(3);
+			int count = (kind == 0) ? 100 : (kind == 1) ? 20000 : 3;
+			for (int i = 0; i < count; i++)
+			{
+				if (kind == 2)
+				{
+					int start = base + random.nextInt(60000);
+					int length = random.nextInt(5000);
+					ret.addRange(start, start + length);
+					for (int j = start; j < start + length; j++) expected.add(j);
+				}
+				else
+				{
+					int value = base + random.nextInt(1 << 16);
+					ret.add(value);
+					expected.add(value);
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static void assertContentEquals(TreeSet<Integer> expected, RoaringBitmap actual)
+	{
+		assertEquals(expected.size(), actual.getCardinality());
+		PrimitiveIterator.OfInt it = actual.iterator();
+		for (int value : expected)
+		{
+			assertEquals(value, it.nextInt());
+		}
+		assertFalse(it.hasNext());
+
+		Iterator<Integer> values = expected.iterator();
+		actual.forEachInt(value -> assertEquals(values.next().intValue(), value));
+		assertFalse(values.hasNext());
+	}
+
+}
@@ -0,0 +1,313 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HashUtilTest
+{
+	@SuppressWarnings("unused")
+	private static class Point
+	{
+		private static final String NAME = "point";
+
+		private final int x;
+		private final long y;
+		private final double weight;
+		private final String label;
+		private final int[] values;
+		@ExcludeFromHashcode private final Object cache;
+
+		private Point(int x, long y, double weight, String label, int[] values, Object cache)
+		{
+			this.x = x;
+			this.y = y;
+			this.weight = weight;
+			this.label = label;
+			this.values = values;
+			this.cache = cache;
+		}
+	}
+
+	private static class Empty
+	{
+	}
+
+	@Test
+	public void testReflectionHash() throws Exception
+	{
+		int[] values = {1, 2, 3};
+		Point point = new Point(3, -7L, 2.5D, "a", values, new Object());
+
+		int expected = HashUtil.HASHCODE_START;
+		for (Field field : Point.class.getDeclaredFields())
+		{
+			if (field.isSynthetic() || field.isAnnotationPresent(ExcludeFromHashcode.class)) continue;
+			field.setAccessible(true);
+			expected = HashUtil.resultAddField(expected, field.get(point));
+		}
+		assertEquals(expected, HashUtil.reflectionHash(point));
+
+		// Repeated calls use the cached plan.
+		assertEquals(expected, HashUtil.reflectionHash(point));
+
+		// Excluded fields don't matter, the others do.
+		assertEquals(expected, HashUtil.reflectionHash(new Point(3, -7L, 2.5D, "a", values, "other")));
+		assertNotEquals(expected, HashUtil.reflectionHash(new Point(4, -7L, 2.5D, "a", values, null)));
+		assertNotEquals(expected, HashUtil.reflectionHash(new Point(3, -7L, 2.5D, null, values, null)));
+		assertNotEquals(HashUtil.reflectionHash(new Point(0, 0L, 1D, null, null, null)), HashUtil.reflectionHash(new Point(0, 0L, 2D, null, null, null)));
+
+		assertEquals(HashUtil.HASHCODE_START, HashUtil.reflectionHash(new Empty()));
+		assertEquals(HashUtil.HASHCODE_NULL, HashUtil.reflectionHash(null));
+
+		// JDK classes can't be read on newer Java versions, that must fail rather than hash constant.
+		try
+		{
+			assertNotEquals(HashUtil.reflectionHash(1), HashUtil.reflectionHash(2));
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testReflectionEquals()
+	{
+		int[] values = {1, 2, 3};
+		Point point = new Point(3, -7L, 2.5D, "a", values, new Object());
+
+		assertTrue(HashUtil.reflectionEquals(point, point));
+		assertTrue(HashUtil.reflectionEquals(point, new Point(3, -7L, 2.5D, "a", values, "other")));
+		assertTrue(HashUtil.reflectionEquals(null, null));
+		assertTrue(HashUtil.reflectionEquals(new Empty(), new Empty()));
+
+		assertFalse(HashUtil.reflectionEquals(point, null));
+		assertFalse(HashUtil.reflectionEquals(null, point));
+		assertFalse(HashUtil.reflectionEquals(point, new Empty()));
+		assertFalse(HashUtil.reflectionEquals(point, new Point(4, -7L, 2.5D, "a", values, null)));
+		assertFalse(HashUtil.reflectionEquals(point, new Point(3, -8L, 2.5D, "a", values, null)));
+		assertFalse(HashUtil.reflectionEquals(point, new Point(3, -7L, 2.5D, "b", values, null)));
+		assertFalse(HashUtil.reflectionEquals(point, new Point(3, -7L, 2.5D, null, values, null)));
+
+		// Like hashcode, arrays are compared by identity, and doubles by their bits.
+		assertFalse(HashUtil.reflectionEquals(point, new Point(3, -7L, 2.5D, "a", values.clone(), null)));
+		assertTrue(HashUtil.reflectionEquals(new Point(0, 0L, Double.NaN, null, null, null), new Point(0, 0L, Double.NaN, null, null, null)));
+		assertFalse(HashUtil.reflectionEquals(new Point(0, 0L, 0D, null, null, null), new Point(0, 0L, -0D, null, null, null)));
+
+		// Equal objects have equal hashcodes.
+		assertEquals(HashUtil.reflectionHash(point), HashUtil.reflectionHash(new Point(3, -7L, 2.5D, new String("a"), values, null)));
+		assertTrue(HashUtil.reflectionEquals(point, new Point(3, -7L, 2.5D, new String("a"), values, null)));
+	}
+
+	@Test
+	public void testReflectionCompare()
+	{
+		Point point = new Point(3, -7L, 2.5D, "b", null, null);
+
+		assertEquals(0, HashUtil.reflectionCompare(point, point));
+		assertEquals(0, HashUtil.reflectionCompare(point, new Point(3, -7L, 2.5D, "b", null, "other")));
+		assertEquals(0, HashUtil.reflectionCompare(null, null));
+		assertEquals(0, HashUtil.reflectionCompare(new Empty(), new Empty()));
+		assertTrue(HashUtil.reflectionCompare(null, point) < 0);
+		assertTrue(HashUtil.reflectionCompare(point, null) > 0);
+
+		// The first field decides.
+		assertTrue(HashUtil.reflectionCompare(point, new Point(4, -9L, 1D, "a", null, null)) < 0);
+		assertTrue(HashUtil.reflectionCompare(point, new Point(2, 9L, 3D, "c", null, null)) > 0);
+		assertTrue(HashUtil.reflectionCompare(point, new Point(3, -6L, 1D, "a", null, null)) < 0);
+		assertTrue(HashUtil.reflectionCompare(point, new Point(3, -7L, 2D, "c", null, null)) > 0);
+		assertTrue(HashUtil.reflectionCompare(point, new Point(3, -7L, 2.5D, "c", null, null)) < 0);
+		assertTrue(HashUtil.reflectionCompare(point, new Point(3, -7L, 2.5D, null, null, null)) > 0);
+
+		try
+		{
+			HashUtil.reflectionCompare(new Point(0, 0L, 0D, null, new int[0], null), new Point(0, 0L, 0D, null, new int[0], null));
+			fail();
+		}
+		catch (ClassCastException ex) { }
+
+		try
+		{
+			HashUtil.<Object>reflectionCompare(point, new Empty());
+			fail();
+		}
+		catch (ClassCastException ex) { }
+	}
+
+	@Test
+	public void testReflectionToString()
+	{
+		Point point = new Point(3, -7L, 2.5D, "a", new int[] {1, 2, 3}, new Object());
+		assertEquals("Point{x=3, y=-7, weight=2.5, label=a, values=[1, 2, 3]}", HashUtil.reflectionToString(point));
+		assertEquals("Point{x=0, y=0, weight=0.0, label=null, values=null}", HashUtil.reflectionToString(new Point(0, 0L, 0D, null, null, null)));
+		assertEquals("Empty{}", HashUtil.reflectionToString(new Empty()));
+		assertEquals("null", HashUtil.reflectionToString(null));
+	}
+
+	@Test
+	public void testReflectionUnreadable()
+	{
+		// JDK classes can't be read on newer Java versions.
+		// Then the methods must fail, rather than skip the fields and find 1 and 2 equal.
+		try
+		{
+			assertFalse(HashUtil.reflectionEquals(1, 2));
+			assertFalse(HashUtil.reflectionEquals("a", "b"));
+			assertTrue(HashUtil.reflectionCompare(1, 2) < 0);
+		}
+		catch (IllegalArgumentException ex) { }
+
+		try
+		{
+			assertEquals("Integer{value=1}", HashUtil.reflectionToString(1));
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testDeepHash()
+	{
+		Random random = new Random(42);
+		for (int i = 0; i < 1_000; i++)
+		{
+			Object obj = randomNested(random, 4);
+			assertEquals(recursiveDeepHash(obj), HashUtil.deepHash(obj));
+		}
+
+		assertEquals(HashUtil.HASHCODE_NULL, HashUtil.deepHash(null));
+		assertEquals("a".hashCode(), HashUtil.deepHash("a"));
+		assertEquals(HashUtil.hash(new int[] {1, 2}), HashUtil.deepHash(new int[] {1, 2}));
+		assertEquals(HashUtil.HASHCODE_START, HashUtil.deepHash(new Object[0]));
+
+		// Equal content gives equal hashcodes, shared or not.
+		Object[] shared = {1, new double[] {2.5D}};
+		assertEquals(HashUtil.deepHash(new Object[] {new Object[] {1, new double[] {2.5D}}, new Object[] {1, new double[] {2.5D}}}), HashUtil.deepHash(new Object[] {shared, shared}));
+	}
+
+	@Test
+	public void testDeepHashDeep()
+	{
+		// Far deeper than the stack would allow recursively.
+		Object[] root = new Object[1];
+		Object[] current = root;
+		for (int i = 0; i < 1_000_000; i++)
+		{
+			Object[] next = new Object[1];
+			current[0] = next;
+			current = next;
+		}
+		HashUtil.deepHash(root);
+		HashUtil.deepHashParallel(root);
+	}
+
+	@Test
+	public void testDeepHashCycle()
+	{
+		Object[] self = new Object[1];
+		self[0] = self;
+		assertEquals(HashUtil.resultAddField(HashUtil.HASHCODE_START, HashUtil.HASHCODE_NULL), HashUtil.deepHash(self));
+
+		Object[] one = new Object[2];
+		Object[] two = {"a", one};
+		one[0] = two;
+		one[1] = 5;
+		int expected = HashUtil.resultAddField(HashUtil.resultAddField(HashUtil.HASHCODE_START, "a"), HashUtil.HASHCODE_NULL);
+		expected = HashUtil.resultAddField(HashUtil.resultAddField(HashUtil.HASHCODE_START, expected), 5);
+		assertEquals(expected, HashUtil.deepHash(one));
+	}
+
+	@Test
+	public void testDeepHashParallel()
+	{
+		Random random = new Random(42);
+		for (int length : new int[] {0, 10, 4_095, 4_096, 100_000})
+		{
+			Object[] arr = new Object[length];
+			for (int i = 0; i < length; i++)
+			{
+				arr[i] = randomNested(random, 2);
+			}
+			if (length > 0) arr[length - 1] = arr;
+			assertEquals(HashUtil.deepHash(arr), HashUtil.deepHashParallel(arr));
+		}
+		assertEquals(HashUtil.deepHash("a"), HashUtil.deepHashParallel("a"));
+		assertEquals(HashUtil.HASHCODE_NULL, HashUtil.deepHashParallel(null));
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private static Object randomNested(Random random, int depth)
+	{
+		switch (depth == 0 ? random.nextInt(10) : random.nextInt(12))
+		{
+			case 0: return null;
+			case 1: return random.nextInt();
+			case 2: return "s" + random.nextInt(100);
+			case 3: return new boolean[] {random.nextBoolean()};
+			case 4: return new byte[] {(byte) random.nextInt()};
+			case 5: return new char[] {(char) random.nextInt(), 'x'};
+			case 6: return new short[] {(short) random.nextInt()};
+			case 7: return new int[] {random.nextInt(), random.nextInt()};
+			case 8: return new long[] {random.nextLong()};
+			case 9: return random.nextBoolean() ? new float[] {random.nextFloat()} : new double[] {random.nextDouble()};
+			default:
+				Object[] ret = new Object[random.nextInt(5)];
+				for (int i = 0; i < ret.length; i++)
+				{
+					ret[i] = randomNested(random, depth - 1);
+				}
+				return ret;
+		}
+	}
+
+	// The obvious recursive version.
+	private static int recursiveDeepHash(Object obj)
+	{
+		if (obj instanceof Object[])
+		{
+			int result = HashUtil.HASHCODE_START;
+			for (Object element : (Object[]) obj)
+			{
+				result = HashUtil.resultAddField(result, recursiveDeepHash(element));
+			}
+			return result;
+		}
+		if (obj instanceof boolean[]) return HashUtil.hash((boolean[]) obj);
+		if (obj instanceof byte[]) return HashUtil.hash((byte[]) obj);
+		if (obj instanceof char[]) return HashUtil.hash((char[]) obj);
+		if (obj instanceof short[]) return HashUtil.hash((short[]) obj);
+		if (obj instanceof int[]) return HashUtil.hash((int[]) obj);
+		if (obj instanceof long[]) return HashUtil.hash((long[]) obj);
+		if (obj instanceof float[]) return HashUtil.hash((float[]) obj);
+		if (obj instanceof double[]) return HashUtil.hash((double[]) obj);
+		return HashUtil.hash(obj);
+	}
+
+}
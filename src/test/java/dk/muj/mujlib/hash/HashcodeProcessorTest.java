@@ -0,0 +1,225 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.*;
+
+public class HashcodeProcessorTest
+{
+	private static final String POINT = String.join("\n",
+		"package sample;",
+		"import dk.muj.mujlib.hash.ExcludeFromHashcode;",
+		"import dk.muj.mujlib.hash.GenerateHashcode;",
+		"@GenerateHashcode",
+		"public class Point<T>",
+		"{",
+		"	static final String NAME = \"point\";",
+		"	final int x;",
+		"	final long y;",
+		"	final double weight;",
+		"	final String label;",
+		"	final int[] values;",
+		"	final T extra;",
+		"	char c = 'c';",
+		"	boolean b = true;",
+		"	byte bt = 1;",
+		"	short s = 2;",
+		"	float f = 3F;",
+		"	@ExcludeFromHashcode private final Object cache;",
+		"	public Point(int x, long y, double weight, String label, int[] values, T extra, Object cache)",
+		"	{",
+		"		assert label != \"invalid\";",
+		"		this.x = x; this.y = y; this.weight = weight; this.label = label; this.values = values; this.extra = extra; this.cache = cache;",
+		"	}",
+		"	@Override public int hashCode() { return Point_Hashcode.hashCode(this); }",
+		"	@Override public boolean equals(Object obj) { return Point_Hashcode.equals(this, obj); }",
+		"}");
+
+	private static final String OUTER = String.join("\n",
+		"package sample;",
+		"public class Outer",
+		"{",
+		"	@dk.muj.mujlib.hash.GenerateHashcode",
+		"	public static class Inner",
+		"	{",
+		"		public static int count(Inner obj) { return Outer_Inner_Hashcode.hashCode(obj); }",
+		"	}",
+		"}");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGenerated() throws Exception
+	{
+		ClassLoader loader = this.compile(POINT, OUTER);
+		Class<?> point = loader.loadClass("sample.Point");
+		Constructor<?> constructor = point.getConstructor(int.class, long.class, double.class, String.class, int[].class, Object.class, Object.class);
+
+		int[] values = {1, 2, 3};
+		List<Object> points = new ArrayList<>();
+		points.add(constructor.newInstance(3, -7L, 2.5D, "a", values, 5, new Object()));
+		points.add(constructor.newInstance(3, -7L, 2.5D, "a", values, 5, "other"));
+		points.add(constructor.newInstance(3, -7L, 2.5D, new String("a"), values, 5, null));
+		points.add(constructor.newInstance(3, -7L, 2.5D, "a", values.clone(), 5, null));
+		points.add(constructor.newInstance(3, -7L, 2.5D, "a", values, 6, null));
+		points.add(constructor.newInstance(4, -7L, 2.5D, "a", values, 5, null));
+		points.add(constructor.newInstance(3, -7L, 2.5D, "b", values, 5, null));
+		points.add(constructor.newInstance(0, 0L, Double.NaN, null, null, null, null));
+		points.add(constructor.newInstance(0, 0L, Double.NaN, null, null, null, null));
+		points.add(constructor.newInstance(0, 0L, 0D, null, null, null, null));
+		points.add(constructor.newInstance(0, 0L, -0D, null, null, null, null));
+
+		// The assert adds a synthetic field, which neither side uses.
+		assertTrue(Arrays.stream(point.getDeclaredFields()).anyMatch(Field::isSynthetic));
+
+		// Bit for bit the same as the reflective methods.
+		for (Object one : points)
+		{
+			assertEquals(HashUtil.reflectionHash(one), one.hashCode());
+			for (Object two : points)
+			{
+				assertEquals(HashUtil.reflectionEquals(one, two), one.equals(two));
+			}
+			assertFalse(one.equals(null));
+		}
+		assertEquals(points.get(0), points.get(1));
+		assertEquals(points.get(0), points.get(2));
+		assertNotEquals(points.get(0), points.get(3));
+
+		Method count = loader.loadClass("sample.Outer$Inner").getMethod("count", loader.loadClass("sample.Outer$Inner"));
+		assertEquals(HashUtil.HASHCODE_NULL, count.invoke(null, (Object) null));
+	}
+
+	@Test
+	public void testInvalid() throws Exception
+	{
+		this.assertError("Private fields", String.join("\n",
+			"@dk.muj.mujlib.hash.GenerateHashcode",
+			"public class Invalid",
+			"{",
+			"	private int x;",
+			"}"));
+
+		this.assertError("static nested classes", String.join("\n",
+			"public class Invalid",
+			"{",
+			"	@dk.muj.mujlib.hash.GenerateHashcode",
+			"	class Inner { }",
+			"}"));
+
+		this.assertError("only be used on classes", String.join("\n",
+			"@dk.muj.mujlib.hash.GenerateHashcode",
+			"public interface Invalid { }"));
+	}
+
+	// -------------------------------------------- //
+	// INTERNAL
+	// -------------------------------------------- //
+
+	private ClassLoader compile(String... sources) throws Exception
+	{
+		File output = this.folder.newFolder();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertTrue(diagnostics.getDiagnostics().toString(), this.compile(output, diagnostics, sources));
+		return new URLClassLoader(new URL[] {output.toURI().toURL()}, this.getClass().getClassLoader());
+	}
+
+	private void assertError(String message, String source) throws Exception
+	{
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		assertFalse(this.compile(this.folder.newFolder(), diagnostics, source));
+
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+		{
+			if (diagnostic.getKind() != Diagnostic.Kind.ERROR) continue;
+			if (diagnostic.getMessage(null).contains(message)) return;
+		}
+		fail(diagnostics.getDiagnostics().toString());
+	}
+
+	private boolean compile(File output, DiagnosticCollector<JavaFileObject> diagnostics, String... sources)
+	{
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		List<JavaFileObject> units = new ArrayList<>();
+		for (String source : sources)
+		{
+			units.add(new Source(source));
+		}
+
+		List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", output.getPath(), "-s", output.getPath());
+		JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, units);
+		task.setProcessors(Collections.singletonList(new HashcodeProcessor()));
+		return task.call();
+	}
+
+	private static class Source extends SimpleJavaFileObject
+	{
+		private final String code;
+
+		private Source(String code)
+		{
+			super(URI.create("string:///" + name(code).replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.code = code;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors)
+		{
+			return this.code;
+		}
+
+		private static String name(String code)
+		{
+			String simple = code.replaceFirst("(?s).*public (?:class|interface) (\\w+).*", "$1");
+			if ( ! code.startsWith("package ")) return simple;
+			return code.substring("package ".length(), code.indexOf(';')) + "." + simple;
+		}
+	}
+
+}
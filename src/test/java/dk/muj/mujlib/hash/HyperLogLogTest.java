@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.hash;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest
+{
+	@Test
+	public void testHash64()
+	{
+		assertEquals(HashUtil.hash64(5L), HashUtil.hash64(5));
+		assertEquals(HashUtil.HASHCODE_NULL, HashUtil.hash64((byte[]) null));
+		assertEquals(HashUtil.HASHCODE_NULL, HashUtil.hash64((CharSequence) null));
+		assertEquals(HashUtil.hash64("abcdefghi"), HashUtil.hash64(new StringBuilder("abcdefghi")));
+
+		// Every length, including the tails, gives a different hash.
+		Set<Long> hashes = new HashSet<>();
+		byte[] bytes = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+		for (int i = 1; i <= bytes.length; i++)
+		{
+			assertTrue(hashes.add(HashUtil.hash64(Arrays.copyOf(bytes, i))));
+			assertTrue(hashes.add(HashUtil.hash64(new String(bytes, 0, i, StandardCharsets.UTF_8))));
+		}
+
+		// Flipping one input bit flips about half of the output bits.
+		long flipped = 0;
+		for (int bit = 0; bit < 64; bit++)
+		{
+			flipped += Long.bitCount(HashUtil.hash64(12345L) ^ HashUtil.hash64(12345L ^ (1L << bit)));
+		}
+		assertEquals(32D, flipped / 64D, 3D);
+	}
+
+	@Test
+	public void testCardinality()
+	{
+		int[] cardinalities = {0, 1, 2, 10, 100, 1_000, 4_000, 10_000, 100_000, 1_000_000};
+		for (int cardinality : cardinalities)
+		{
+			HyperLogLog sketch = new HyperLogLog();
+			for (long i = 0; i < cardinality; i++)
+			{
+				sketch.add(i);
+				// Duplicates don't count.
+				if ((i & 3) == 0) sketch.add(i);
+			}
+
+			// Three standard errors, sparse sketches are far more accurate.
+			double error = sketch.isSparse() ? 0.005D : 3 * 1.04D / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION);
+			assertEquals("cardinality: " + cardinality, cardinality, sketch.cardinality(), cardinality * error + 0.5D);
+		}
+
+		HyperLogLog small = new HyperLogLog(HyperLogLog.MIN_PRECISION);
+		for (int i = 0; i < 100_000; i++)
+		{
+			small.add("user" + i);
+		}
+		assertFalse(small.isSparse());
+		assertEquals(100_000D, small.cardinality(), 100_000D * 3 * 1.04D / 4);
+	}
+
+	@Test
+	public void testIntAndLong()
+	{
+		HyperLogLog ints = new HyperLogLog();
+		HyperLogLog longs = new HyperLogLog();
+		for (int i = -500; i < 500; i++)
+		{
+			ints.add(i);
+			longs.add((long) i);
+		}
+		assertArrayEquals(longs.toBytes(), ints.toBytes());
+	}
+
+	@Test
+	public void testMerge()
+	{
+		for (int size : new int[] {100, 3_000, 50_000})
+		{
+			HyperLogLog a = new HyperLogLog(12);
+			HyperLogLog b = new HyperLogLog(12);
+			HyperLogLog union = new HyperLogLog(12);
+			for (long i = 0; i < size; i++)
+			{
+				a.add(i);
+				union.add(i);
+			}
+			// Half of b overlaps a, and b can be sparse while a is dense.
+			for (long i = size / 2; i < size / 2 + size / 10; i++)
+			{
+				b.add(i + size);
+				b.add(i);
+				union.add(i + size);
+			}
+
+			HyperLogLog ab = HyperLogLog.fromBytes(a.toBytes());
+			ab.merge(b);
+			HyperLogLog ba = HyperLogLog.fromBytes(b.toBytes());
+			ba.merge(a);
+			assertEquals(union.cardinality(), ab.cardinality());
+			assertEquals(union.cardinality(), ba.cardinality());
+			assertEquals(union.isSparse(), ab.isSparse());
+			assertArrayEquals(union.toBytes(), ab.toBytes());
+			assertArrayEquals(union.toBytes(), ba.toBytes());
+		}
+
+		try { new HyperLogLog(10).merge(new HyperLogLog(11)); fail(); } catch (IllegalArgumentException ex) { }
+		try { new HyperLogLog().merge(null); fail(); } catch (ArgumentNullException ex) { }
+	}
+
+	@Test
+	public void testSerialization()
+	{
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = 0; i < 1_000; i++)
+		{
+			sketch.add(i);
+		}
+		assertTrue(sketch.isSparse());
+		byte[] sparse = sketch.toBytes();
+		assertTrue(sparse.length < 1_000 * 4);
+		HyperLogLog read = HyperLogLog.fromBytes(sparse);
+		assertTrue(read.isSparse());
+		assertEquals(sketch.cardinality(), read.cardinality());
+		assertArrayEquals(sparse, read.toBytes());
+
+		for (int i = 0; i < 100_000; i++)
+		{
+			sketch.add(i);
+		}
+		assertFalse(sketch.isSparse());
+		byte[] dense = sketch.toBytes();
+		assertEquals(3 + (1 << HyperLogLog.DEFAULT_PRECISION) * 6 / 8, dense.length);
+		read = HyperLogLog.fromBytes(dense);
+		assertFalse(read.isSparse());
+		assertEquals(sketch.cardinality(), read.cardinality());
+		assertArrayEquals(dense, read.toBytes());
+
+		assertEquals(0, HyperLogLog.fromBytes(new HyperLogLog().toBytes()).cardinality());
+
+		try { HyperLogLog.fromBytes(null); fail(); } catch (ArgumentNullException ex) { }
+		try { HyperLogLog.fromBytes(Arrays.copyOf(dense, dense.length - 1)); fail(); } catch (IllegalArgumentException ex) { }
+		try { HyperLogLog.fromBytes(Arrays.copyOf(sparse, sparse.length - 1)); fail(); } catch (IllegalArgumentException ex) { }
+		try { HyperLogLog.fromBytes(Arrays.copyOf(sparse, sparse.length + 1)); fail(); } catch (IllegalArgumentException ex) { }
+		try { HyperLogLog.fromBytes(new byte[] {1, 30, 0, 0, 0, 0, 0}); fail(); } catch (IllegalArgumentException ex) { }
+		try { HyperLogLog.fromBytes(new byte[] {2, 14, 0, 0, 0, 0, 0}); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testPendingCrossesSparseLimit()
+	{
+		// The pending entries are only merged when read, and then cross the sparse limit.
+		HyperLogLog counted = new HyperLogLog(14);
+		HyperLogLog serialized = new HyperLogLog(14);
+		for (long i = 0; i < 4_100; i++)
+		{
+			counted.add(i);
+			serialized.add(i);
+		}
+		assertTrue(counted.isSparse());
+
+		long cardinality = counted.cardinality();
+		assertFalse(counted.isSparse());
+		assertEquals(4_100, cardinality, 4_100 * 0.05D);
+
+		HyperLogLog read = HyperLogLog.fromBytes(serialized.toBytes());
+		assertFalse(serialized.isSparse());
+		assertFalse(read.isSparse());
+		assertEquals(cardinality, read.cardinality());
+	}
+
+	@Test
+	public void testIllegal()
+	{
+		try { new HyperLogLog(3); fail(); } catch (IllegalArgumentException ex) { }
+		try { new HyperLogLog(19); fail(); } catch (IllegalArgumentException ex) { }
+		try { new HyperLogLog().add((CharSequence) null); fail(); } catch (ArgumentNullException ex) { }
+		try { new HyperLogLog().add((byte[]) null); fail(); } catch (ArgumentNullException ex) { }
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ModularArithmeticTest
+{
+	private static final long[] MODULI = {1, 2, 3, 97, 1_000_000_007L, (1L << 31) - 1, (1L << 61) - 1, Long.MAX_VALUE, Long.MAX_VALUE - 1};
+
+	@Test
+	public void testMulModAndPow()
+	{
+		Random random = new Random(38);
+		for (long m : MODULI)
+		{
+			BigInteger bigM = BigInteger.valueOf(m);
+			for (int i = 0; i < 2_000; i++)
+			{
+				long a = random.nextLong();
+				long b = (i % 2 == 0) ? random.nextLong() : random.nextInt(1_000);
+				long e = random.nextInt(1 << 20);
+				BigInteger bigA = BigInteger.valueOf(a);
+
+				assertEquals(bigA.mod(bigM).longValue(), ModularArithmetic.mod(a, m));
+				assertEquals(bigA.multiply(BigInteger.valueOf(b)).mod(bigM).longValue(), ModularArithmetic.mulMod(a, b, m));
+				assertEquals(bigA.modPow(BigInteger.valueOf(e), bigM).longValue(), ModularArithmetic.modPow(a, e, m));
+			}
+		}
+		assertEquals(0, ModularArithmetic.modPow(5, 0, 1));
+		assertEquals(1, ModularArithmetic.modPow(0, 0, 7));
+	}
+
+	@Test
+	public void testModInverse()
+	{
+		Random random = new Random(39);
+		for (long m : MODULI)
+		{
+			BigInteger bigM = BigInteger.valueOf(m);
+			for (int i = 0; i < 1_000; i++)
+			{
+				long a = random.nextLong();
+				BigInteger bigA = BigInteger.valueOf(a);
+				if (bigA.gcd(bigM).equals(BigInteger.ONE))
+				{
+					assertEquals(bigA.modInverse(bigM).longValue(), ModularArithmetic.modInverse(a, m));
+				}
+				else
+				{
+					try
+					{
+						ModularArithmetic.modInverse(a, m);
+						fail();
+					}
+					catch (ArithmeticException ex) { }
+				}
+			}
+		}
+		try
+		{
+			ModularArithmetic.mod(1, 0);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testMontgomery()
+	{
+		Random random = new Random(40);
+		for (long m : MODULI)
+		{
+			if ((m & 1) == 0) continue;
+			Montgomery montgomery = new Montgomery(m);
+			BigInteger bigM = BigInteger.valueOf(m);
+			for (int i = 0; i < 2_000; i++)
+			{
+				long a = random.nextLong();
+				long b = random.nextLong();
+				long e = random.nextLong() >>> 1;
+				BigInteger expected = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(bigM);
+
+				assertEquals(expected.longValue(), montgomery.mulMod(a, b));
+				long product = montgomery.multiply(montgomery.toMontgomery(a), montgomery.toMontgomery(b));
+				assertEquals(expected.longValue(), montgomery.fromMontgomery(product));
+				assertEquals(BigInteger.valueOf(a).modPow(BigInteger.valueOf(e), bigM).longValue(), montgomery.pow(a, e));
+			}
+		}
+		try
+		{
+			new Montgomery(10);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+}
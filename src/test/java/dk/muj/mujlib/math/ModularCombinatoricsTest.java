@@ -0,0 +1,112 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.util.Mth;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ModularCombinatoricsTest
+{
+	@Test
+	public void testAgainstBinomialPrecise()
+	{
+		long[] primes = {2, 7, 101, 1_000_000_007L, (1L << 61) - 1};
+		for (long prime : primes)
+		{
+			// A small table, so the Lucas path is used too.
+			ModularCombinatorics table = new ModularCombinatorics(prime, 50);
+			BigInteger bigPrime = BigInteger.valueOf(prime);
+			for (int n = 1; n <= 300; n++)
+			{
+				assertEquals(Mth.factorialPrecise(n).mod(bigPrime).longValue(), table.factorial(n));
+				for (int r = 1; r <= n; r += 7)
+				{
+					assertEquals("n: " + n + " r: " + r + " p: " + prime, Mth.binomialPrecise(n, r).mod(bigPrime).longValue(), table.binomial(n, r));
+				}
+			}
+			assertEquals(1, table.binomial(0, 0));
+			assertEquals(0, table.binomial(3, 4));
+		}
+	}
+
+	@Test
+	public void testHugeN()
+	{
+		long prime = 1_000_003;
+		ModularCombinatorics table = new ModularCombinatorics(prime, (int) prime);
+		assertEquals(prime, table.getTableSize());
+
+		// Lucas: digits of n = 2p + 5 and r = p + 3
+		long n = 2 * prime + 5;
+		long r = prime + 3;
+		long expected = table.binomial(2, 1) * table.binomial(5, 3) % prime;
+		assertEquals(expected, table.binomial(n, r));
+		assertEquals(0, table.binomial(prime + 1, 2));
+
+		Random random = new Random(41);
+		BigInteger bigPrime = BigInteger.valueOf(prime);
+		for (int i = 0; i < 10; i++)
+		{
+			int small = 2_000 + random.nextInt(2_000);
+			int k = random.nextInt(small) + 1;
+			assertEquals(Mth.binomialPrecise(small, k).mod(bigPrime).longValue(), table.binomial(small, k));
+		}
+		assertTrue(table.binomial(Long.MAX_VALUE, Long.MAX_VALUE / 3) >= 0);
+	}
+
+	@Test
+	public void testInverse()
+	{
+		ModularCombinatorics table = new ModularCombinatorics(1_000_000_007L, 1_000);
+		for (long a = 1; a < 3_000; a++)
+		{
+			assertEquals(1, a * table.inverse(a) % 1_000_000_007L);
+		}
+		try
+		{
+			table.inverse(1_000_000_007L);
+			fail();
+		}
+		catch (ArithmeticException ex) { }
+		try
+		{
+			new ModularCombinatorics(10, 5);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+		try
+		{
+			new ModularCombinatorics(561, 5);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
+	}
+
+}
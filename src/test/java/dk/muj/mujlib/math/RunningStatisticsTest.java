@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RunningStatisticsTest
+{
+	@Test
+	public void testSmall()
+	{
+		RunningStatistics statistics = new RunningStatistics();
+		assertEquals(0, statistics.getCount());
+		assertEquals(0D, statistics.getSum(), 0D);
+		assertTrue(Double.isNaN(statistics.getMean()));
+		assertTrue(Double.isNaN(statistics.getVariance()));
+		assertEquals(Double.POSITIVE_INFINITY, statistics.getMin(), 0D);
+
+		for (int i = 1; i <= 5; i++)
+		{
+			statistics.accept(i);
+		}
+		assertEquals(5, statistics.getCount());
+		assertEquals(15D, statistics.getSum(), 0D);
+		assertEquals(1D, statistics.getMin(), 0D);
+		assertEquals(5D, statistics.getMax(), 0D);
+		assertEquals(3D, statistics.getMean(), 1e-15);
+		assertEquals(2D, statistics.getVariance(), 1e-15);
+		assertEquals(2.5D, statistics.getSampleVariance(), 1e-15);
+		assertEquals(Math.sqrt(2D), statistics.getStandardDeviation(), 1e-15);
+		assertEquals(0D, statistics.getSkewness(), 1e-15);
+		assertEquals(-1.3D, statistics.getKurtosis(), 1e-14);
+	}
+
+	@Test
+	public void testAgainstTwoPass()
+	{
+		Random random = new Random(42);
+		double[] values = new double[100_001];
+		for (int i = 0; i < values.length; i++)
+		{
+			// Exponential with a large offset, which is hard for naive formulas.
+			values[i] = 1e9 - Math.log(1 - random.nextDouble());
+		}
+
+		RunningStatistics single = new RunningStatistics();
+		for (double value : values)
+		{
+			single.accept(value);
+		}
+		RunningStatistics bulk = new RunningStatistics();
+		bulk.accept(values);
+
+		// Merged from uneven parts, some added singly and some in bulk.
+		RunningStatistics merged = new RunningStatistics();
+		int[] cuts = {0, 1, 17, 5000, 5001, 60000, values.length};
+		for (int i = 0; i + 1 < cuts.length; i++)
+		{
+			RunningStatistics part = new RunningStatistics();
+			if ((i & 1) == 0)
+			{
+				part.accept(values, cuts[i], cuts[i + 1]);
+			}
+			else
+			{
+				for (int j = cuts[i]; j < cuts[i + 1]; j++)
+				{
+					part.accept(values[j]);
+				}
+			}
+			merged.merge(part);
+		}
+
+		double mean = 0D;
+		for (double value : values)
+		{
+			mean += value - 1e9;
+		}
+		mean /= values.length;
+		double m2 = 0D;
+		double m3 = 0D;
+		double m4 = 0D;
+		for (double value : values)
+		{
+			double delta = (value - 1e9) - mean;
+			m2 += delta * delta;
+			m3 += delta * delta * delta;
+			m4 += delta * delta * delta * delta;
+		}
+		double n = values.length;
+
+		for (RunningStatistics statistics : new RunningStatistics[] {single, bulk, merged})
+		{
+			assertEquals(values.length, statistics.getCount());
+			assertEquals(1e9 + mean, statistics.getMean(), 1e-4);
+			assertEquals(m2 / n, statistics.getVariance(), 1e-6);
+			assertEquals(Math.sqrt(n) * m3 / Math.pow(m2, 1.5), statistics.getSkewness(), 1e-3);
+			assertEquals(n * m4 / (m2 * m2) - 3, statistics.getKurtosis(), 1e-2);
+			assertEquals(n * (1e9 + mean), statistics.getSum(), 1e-2);
+		}
+		// The exponential distribution has skewness 2 and excess kurtosis 6.
+		assertEquals(2D, bulk.getSkewness(), 0.1);
+		assertEquals(6D, bulk.getKurtosis(), 1D);
+		assertEquals(single.getMin(), merged.getMin(), 0D);
+		assertEquals(single.getMax(), bulk.getMax(), 0D);
+	}
+
+	@Test
+	public void testCompensatedSum()
+	{
+		RunningStatistics statistics = new RunningStatistics();
+		statistics.accept(new double[] {1D, 1e100, 1D, -1e100});
+		assertEquals(2D, statistics.getSum(), 0D);
+
+		RunningStatistics tenths = new RunningStatistics();
+		for (int i = 0; i < 1_000_000; i++)
+		{
+			tenths.accept(0.1D);
+		}
+		assertEquals(100_000D, tenths.getSum(), 1e-9);
+		assertEquals(0D, tenths.getVariance(), 1e-20);
+		assertTrue(Double.isNaN(tenths.getSkewness()));
+
+		// Infinite values give an infinite sum, not the NaN of the compensation.
+		RunningStatistics infinite = new RunningStatistics();
+		infinite.accept(1D);
+		infinite.accept(Double.POSITIVE_INFINITY);
+		infinite.accept(2D);
+		assertEquals(Double.POSITIVE_INFINITY, infinite.getSum(), 0D);
+
+		RunningStatistics negative = new RunningStatistics();
+		negative.accept(new double[] {1D, Double.NEGATIVE_INFINITY});
+		assertEquals(Double.NEGATIVE_INFINITY, negative.getSum(), 0D);
+
+		RunningStatistics merged = new RunningStatistics();
+		merged.accept(3D);
+		merged.merge(infinite);
+		assertEquals(Double.POSITIVE_INFINITY, merged.getSum(), 0D);
+		merged.merge(negative);
+		assertTrue(Double.isNaN(merged.getSum()));
+	}
+
+	@Test
+	public void testStream()
+	{
+		Random random = new Random(7);
+		double[] values = random.doubles(50_000).toArray();
+		RunningStatistics parallel = Arrays.stream(values).parallel()
+			.collect(RunningStatistics::new, RunningStatistics::accept, RunningStatistics::merge);
+		RunningStatistics sequential = new RunningStatistics();
+		sequential.accept(values);
+
+		assertEquals(sequential.getCount(), parallel.getCount());
+		assertEquals(sequential.getMean(), parallel.getMean(), 1e-12);
+		assertEquals(sequential.getVariance(), parallel.getVariance(), 1e-12);
+		assertEquals(sequential.getSum(), parallel.getSum(), 1e-9);
+	}
+
+	@Test
+	public void testIllegal()
+	{
+		RunningStatistics statistics = new RunningStatistics();
+		try { statistics.accept((double[]) null); fail(); } catch (ArgumentNullException ex) { }
+		try { statistics.merge(null); fail(); } catch (ArgumentNullException ex) { }
+		try { statistics.accept(new double[2], 1, 3); fail(); } catch (ArrayIndexOutOfBoundsException ex) { }
+	}
+
+}
@@ -0,0 +1,200 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.math;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.arg.ArgumentStrangeException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TDigestTest
+{
+	private static final double[] QUANTILES = {0D, 0.0001D, 0.001D, 0.01D, 0.1D, 0.25D, 0.5D, 0.75D, 0.9D, 0.99D, 0.999D, 0.9999D, 1D};
+
+	@Test
+	public void testAgainstExact()
+	{
+		// Latency like, a long tail to the right.
+		Random random = new Random(7);
+		double[] values = new double[200_000];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = Math.exp(random.nextDouble() * 10D) * random.nextDouble();
+		}
+
+		TDigest digest = new TDigest(200D);
+		for (double value : values)
+		{
+			digest.add(value);
+		}
+		checkAgainstExact(digest, values);
+		assertTrue(digest.getCentroidCount() <= 200 + 3);
+	}
+
+	@Test
+	public void testMerge()
+	{
+		Random random = new Random(5);
+		double[] values = new double[160_000];
+		TDigest[] parts = new TDigest[16];
+		for (int i = 0; i < parts.length; i++)
+		{
+			parts[i] = new TDigest();
+		}
+		for (int i = 0; i < values.length; i++)
+		{
+			// Every part has its own range, so the merge has to interleave them.
+			values[i] = random.nextDouble() * 1000D + (i % parts.length) * 100D;
+			parts[i % parts.length].add(values[i]);
+		}
+
+		TDigest merged = new TDigest();
+		for (TDigest part : parts)
+		{
+			merged.merge(part);
+		}
+		checkAgainstExact(merged, values);
+		assertEquals(values.length, merged.getCount());
+
+		merged.merge(merged);
+		assertEquals(2 * values.length, merged.getCount());
+		checkAgainstExact(merged, values);
+	}
+
+	@Test
+	public void testSerialization()
+	{
+		Random random = new Random(3);
+		TDigest digest = new TDigest(50D);
+		for (int i = 0; i < 100_000; i++)
+		{
+			digest.add(random.nextDouble() * 10D - 5D);
+		}
+
+		byte[] bytes = digest.toBytes();
+		assertTrue(bytes.length < 60 * 10 + 64);
+		TDigest read = TDigest.fromBytes(bytes);
+		assertEquals(digest.getCount(), read.getCount());
+		assertEquals(digest.getMin(), read.getMin(), 0D);
+		assertEquals(digest.getMax(), read.getMax(), 0D);
+		assertEquals(digest.getCompression(), read.getCompression(), 0D);
+		for (double q : QUANTILES)
+		{
+			assertEquals(digest.quantile(q), read.quantile(q), 0D);
+		}
+		assertTrue(Arrays.equals(bytes, read.toBytes()));
+
+		TDigest empty = TDigest.fromBytes(new TDigest().toBytes());
+		assertEquals(0, empty.getCount());
+		assertTrue(Double.isNaN(empty.quantile(0.5D)));
+
+		try { TDigest.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)); fail(); } catch (IllegalArgumentException ex) { }
+		try { TDigest.fromBytes(Arrays.copyOf(bytes, bytes.length + 1)); fail(); } catch (IllegalArgumentException ex) { }
+		bytes[0] = 2;
+		try { TDigest.fromBytes(bytes); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testSmall()
+	{
+		TDigest digest = new TDigest();
+		assertTrue(Double.isNaN(digest.quantile(0.5D)));
+		assertTrue(Double.isNaN(digest.cdf(0D)));
+
+		digest.add(3D);
+		assertEquals(3D, digest.quantile(0D), 0D);
+		assertEquals(3D, digest.quantile(0.5D), 0D);
+		assertEquals(3D, digest.quantile(1D), 0D);
+		assertEquals(0D, digest.cdf(2D), 0D);
+		assertEquals(0.5D, digest.cdf(3D), 0D);
+		assertEquals(1D, digest.cdf(4D), 0D);
+
+		// Few values are kept exactly.
+		TDigest few = new TDigest();
+		for (int i = 1; i <= 9; i++)
+		{
+			few.add(i);
+		}
+		assertEquals(1D, few.quantile(0D), 0D);
+		assertEquals(5D, few.quantile(0.5D), 1e-12);
+		assertEquals(9D, few.quantile(1D), 0D);
+		assertEquals(0.5D, few.cdf(5D), 1e-12);
+
+		// Equal values are one step in the distribution.
+		TDigest equal = new TDigest();
+		for (int i = 0; i < 10_000; i++)
+		{
+			equal.add(7D);
+		}
+		assertEquals(7D, equal.quantile(0.01D), 0D);
+		assertEquals(7D, equal.quantile(0.99D), 0D);
+		assertEquals(0.5D, equal.cdf(7D), 1e-12);
+	}
+
+	@Test
+	public void testIllegal()
+	{
+		TDigest digest = new TDigest();
+		try { new TDigest(5D); fail(); } catch (IllegalArgumentException ex) { }
+		try { new TDigest(Double.NaN); fail(); } catch (IllegalArgumentException ex) { }
+		try { digest.add(Double.NaN); fail(); } catch (ArgumentStrangeException ex) { }
+		try { digest.add(Double.POSITIVE_INFINITY); fail(); } catch (ArgumentStrangeException ex) { }
+		try { digest.quantile(1.5D); fail(); } catch (IllegalArgumentException ex) { }
+		try { digest.cdf(Double.NaN); fail(); } catch (ArgumentStrangeException ex) { }
+		try { digest.merge(null); fail(); } catch (ArgumentNullException ex) { }
+		try { TDigest.fromBytes(null); fail(); } catch (ArgumentNullException ex) { }
+	}
+
+	// The error is measured in rank, it is smallest at the tails.
+	private static void checkAgainstExact(TDigest digest, double[] values)
+	{
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for (double q : QUANTILES)
+		{
+			double maxError = 0.0005D + 4 * q * (1 - q) / digest.getCompression();
+			double estimate = digest.quantile(q);
+			double rank = rank(sorted, estimate);
+			assertEquals("q: " + q, q, rank, maxError);
+
+			double exact = sorted[(int) Math.min(sorted.length - 1, q * sorted.length)];
+			assertEquals("q: " + q, rank(sorted, exact), digest.cdf(exact), maxError);
+		}
+		assertEquals(sorted[0], digest.getMin(), 0D);
+		assertEquals(sorted[sorted.length - 1], digest.getMax(), 0D);
+	}
+
+	private static double rank(double[] sorted, double value)
+	{
+		int index = Arrays.binarySearch(sorted, value);
+		if (index < 0) index = -index - 1;
+		return (double) index / sorted.length;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Magnus Ulf Jørgensen
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package dk.muj.mujlib.util;
+
+import dk.muj.mujlib.arg.ArgumentNullException;
+import dk.muj.mujlib.util.MthArrays.Classification;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.Assert.*;
+
+public class MthArraysTest
+{
+	private static final int[] SIZES = {0, 1, 63, 64, 65, 1000, (1 << 16) + 1, 300_007};
+
+	@Test
+	public void testInt()
+	{
+		Random random = new Random(40);
+		for (int size : SIZES)
+		{
+			int[] array = random.ints(size).toArray();
+			if (size > 0) array[0] = 0;
+			if (size > 1) array[1] = Integer.MIN_VALUE;
+			if (size > 2) array[2] = Integer.MAX_VALUE;
+
+			check(array.length, i -> Mth.isEven(array[i]), MthArrays.count(array, Classification.EVEN), MthArrays.bitmap(array, Classification.EVEN), MthArrays.indices(array, Classification.EVEN));
+			check(array.length, i -> Mth.isOdd(array[i]), MthArrays.count(array, Classification.ODD), MthArrays.bitmap(array, Classification.ODD), MthArrays.indices(array, Classification.ODD));
+			check(array.length, i -> Mth.isPositive(array[i]), MthArrays.count(array, Classification.POSITIVE), MthArrays.bitmap(array, Classification.POSITIVE), MthArrays.indices(array, Classification.POSITIVE));
+			check(array.length, i -> Mth.isNegative(array[i]), MthArrays.count(array, Classification.NEGATIVE), MthArrays.bitmap(array, Classification.NEGATIVE), MthArrays.indices(array, Classification.NEGATIVE));
+
+			for (Classification classification : Classification.values())
+			{
+				assertEquals(MthArrays.count(array, classification), MthArrays.parallelCount(array, classification));
+				assertArrayEquals(MthArrays.bitmap(array, classification), MthArrays.parallelBitmap(array, classification));
+				assertArrayEquals(MthArrays.indices(array, classification), MthArrays.parallelIndices(array, classification));
+			}
+		}
+	}
+
+	@Test
+	public void testLong()
+	{
+		Random random = new Random(41);
+		for (int size : SIZES)
+		{
+			long[] array = random.longs(size).toArray();
+			if (size > 0) array[0] = 0L;
+			if (size > 1) array[1] = Long.MIN_VALUE;
+			if (size > 2) array[2] = Long.MAX_VALUE;
+
+			check(array.length, i -> Mth.isEven(array[i]), MthArrays.count(array, Classification.EVEN), MthArrays.bitmap(array, Classification.EVEN), MthArrays.indices(array, Classification.EVEN));
+			check(array.length, i -> Mth.isOdd(array[i]), MthArrays.count(array, Classification.ODD), MthArrays.bitmap(array, Classification.ODD), MthArrays.indices(array, Classification.ODD));
+			check(array.length, i -> Mth.isPositive(array[i]), MthArrays.count(array, Classification.POSITIVE), MthArrays.bitmap(array, Classification.POSITIVE), MthArrays.indices(array, Classification.POSITIVE));
+			check(array.length, i -> Mth.isNegative(array[i]), MthArrays.count(array, Classification.NEGATIVE), MthArrays.bitmap(array, Classification.NEGATIVE), MthArrays.indices(array, Classification.NEGATIVE));
+
+			for (Classification classification : Classification.values())
+			{
+				assertEquals(MthArrays.count(array, classification), MthArrays.parallelCount(array, classification));
+				assertArrayEquals(MthArrays.bitmap(array, classification), MthArrays.parallelBitmap(array, classification));
+				assertArrayEquals(MthArrays.indices(array, classification), MthArrays.parallelIndices(array, classification));
+			}
+		}
+	}
+
+	@Test
+	public void testDouble()
+	{
+		Random random = new Random(42);
+		for (int size : SIZES)
+		{
+			double[] array = random.doubles(size, -1D, 1D).toArray();
+			if (size > 0) array[0] = 0D;
+			if (size > 1) array[1] = -0D;
+			if (size > 2) array[2] = Double.NaN;
+			if (size > 3) array[3] = Double.NEGATIVE_INFINITY;
+
+			check(array.length, i -> Mth.isPositive(array[i]), MthArrays.count(array, Classification.POSITIVE), MthArrays.bitmap(array, Classification.POSITIVE), MthArrays.indices(array, Classification.POSITIVE));
+			check(array.length, i -> Mth.isNegative(array[i]), MthArrays.count(array, Classification.NEGATIVE), MthArrays.bitmap(array, Classification.NEGATIVE), MthArrays.indices(array, Classification.NEGATIVE));
+
+			assertEquals(MthArrays.count(array, Classification.POSITIVE), MthArrays.parallelCount(array, Classification.POSITIVE));
+			assertArrayEquals(MthArrays.bitmap(array, Classification.NEGATIVE), MthArrays.parallelBitmap(array, Classification.NEGATIVE));
+			assertArrayEquals(MthArrays.indices(array, Classification.POSITIVE), MthArrays.parallelIndices(array, Classification.POSITIVE));
+		}
+	}
+
+	@Test
+	public void testIllegal()
+	{
+		try { MthArrays.count((int[]) null, Classification.EVEN); fail(); } catch (ArgumentNullException ex) { }
+		try { MthArrays.bitmap(new long[1], null); fail(); } catch (ArgumentNullException ex) { }
+		try { MthArrays.count(new double[1], Classification.EVEN); fail(); } catch (IllegalArgumentException ex) { }
+		try { MthArrays.parallelIndices(new double[1], Classification.ODD); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	private static void check(int length, IntPredicate expected, int count, long[] bitmap, int[] indices)
+	{
+		BitSet bits = new BitSet();
+		for (int i = 0; i < length; i++)
+		{
+			if (expected.test(i)) bits.set(i);
+		}
+
+		assertEquals(bits.cardinality(), count);
+		assertEquals(bits, BitSet.valueOf(bitmap));
+		assertEquals((length + 63) / 64, bitmap.length);
+		assertArrayEquals(bits.stream().toArray(), indices);
+	}
+
+}
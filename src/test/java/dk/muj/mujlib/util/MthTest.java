@@ -24,10 +24,18 @@
 
 package dk.muj.mujlib.util;
 
+import dk.muj.mujlib.arg.ArgumentStrangeException;
 import junit.framework.TestCase;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 public class MthTest extends TestCase
 {
@@ -66,6 +74,36 @@ public class MthTest extends TestCase
 		assertEquals(2*3*4*5*6*7*8, Mth.factorialExact(8));
 		assertEquals(2*3*4*5*6*7*8*9, Mth.factorialExact(9));
 		assertEquals(2*3*4*5*6*7*8*9*10, Mth.factorialExact(10));
+		assertEquals(2432902008176640000L, Mth.factorialExact(20));
+		try
+		{
+			Mth.factorialExact(21);
+			fail();
+		}
+		catch (ArithmeticException ex) { }
+	}
+
+	@Test
+	public void testFactorialPreciseLarge() throws Exception
+	{
+		BigInteger expected = BigInteger.ONE;
+		for (int n = 1; n <= 20_000; n++)
+		{
+			expected = expected.multiply(BigInteger.valueOf(n));
+			if (n < 1_200 || n % 997 == 0 || n == 20_000)
+			{
+				assertEquals(expected, Mth.factorialPrecise(n));
+			}
+		}
+
+		// Large results are remembered
+		assertSame(Mth.factorialPrecise(20_000), Mth.factorialPrecise(20_000));
+		try
+		{
+			Mth.factorialPrecise(-1);
+			fail();
+		}
+		catch (IllegalArgumentException ex) { }
 	}
 
 	// -------------------------------------------- //
@@ -107,6 +145,540 @@ public class MthTest extends TestCase
 		assertEquals(27132, Mth.binomialExact(19, 6));
 		assertEquals(48620, Mth.binomialExact(18, 9));
 		assertEquals(1716, Mth.binomialExact(13, 6));
+
+		// Larger than the factorials would allow
+		assertEquals(2_104_098_963_720L, Mth.binomialExact(44, 22));
+		assertEquals(7_219_428_434_016_265_740L, Mth.binomialExact(66, 33));
+		assertEquals(416_416_712_497_500L, Mth.binomialExact(10_000, 4));
+		assertEquals(4_999_950_000L, Mth.binomialExact(100_000, 2));
+	}
+
+	@Test
+	public void testBinomialExactAgainstPrecise() throws Exception
+	{
+		BigInteger max = BigInteger.valueOf(Long.MAX_VALUE);
+		for (int n = 1; n <= 130; n++)
+		{
+			for (int r = 1; r <= n; r++)
+			{
+				BigInteger expected = naiveBinomial(n, r);
+				assertEquals(expected, Mth.binomialPrecise(n, r));
+				if (expected.compareTo(max) <= 0)
+				{
+					assertEquals(expected.longValueExact(), Mth.binomialExact(n, r));
+				}
+				else
+				{
+					try
+					{
+						Mth.binomialExact(n, r);
+						fail();
+					}
+					catch (ArithmeticException ex) { }
+				}
+			}
+		}
+
+		assertEquals(naiveBinomial(2_000, 700), Mth.binomialPrecise(2_000, 700));
+	}
+
+	@Test
+	public void testBinomialIllegal() throws Exception
+	{
+		int[][] illegal = {{5, 6}, {0, 0}, {5, 0}, {-1, -2}};
+		for (int[] args : illegal)
+		{
+			try
+			{
+				Mth.binomialExact(args[0], args[1]);
+				fail();
+			}
+			catch (IllegalArgumentException ex) { }
+			try
+			{
+				Mth.binomialPrecise(args[0], args[1]);
+				fail();
+			}
+			catch (IllegalArgumentException ex) { }
+		}
+	}
+
+	private static BigInteger naiveBinomial(int n, int r)
+	{
+		BigInteger ret = BigInteger.ONE;
+		for (int i = 1; i <= r; i++)
+		{
+			ret = ret.multiply(BigInteger.valueOf(n - r + i)).divide(BigInteger.valueOf(i));
+		}
+		return ret;
+	}
+
+	// -------------------------------------------- //
+	// PRIMES
+	// -------------------------------------------- //
+
+	@Test
+	public void testLogFactorial()
+	{
+		// Reference values calculated with 60 digits.
+		long[] n = {0, 1, 2, 5, 20, 21, 100, 255, 256, 257, 1000, 123456, 1000000000, 1000000000000000L, 4611686018427387904L};
+		double[] expected = {0.0D, 0.0D, 0.6931471805599453D, 4.787491742782046D, 42.335616460753485D, 45.38013889847691D, 363.73937555556347D, 1161.7121011184006D, 1167.2572785628802D, 1172.8063546477754D, 5912.128178488163D, 1323904.4924837977D, 19723265848.226982D, 3.3538776394910704e+16D, 1.9357609798221378e+20D};
+		double[] bulk = Mth.logFactorial(n);
+		for (int i = 0; i < n.length; i++)
+		{
+			assertEquals("n: " + n[i], expected[i], Mth.logFactorial(n[i]), 2 * Math.ulp(expected[i]));
+			assertEquals(Mth.logFactorial(n[i]), bulk[i], 0D);
+		}
+
+		// ln(n!) = ln((n-1)!) + ln(n), across the table and the series.
+		for (long i = 1; i < 2000; i++)
+		{
+			double expectedLog = Mth.logFactorial(i - 1) + Math.log(i);
+			assertEquals(expectedLog, Mth.logFactorial(i), 4 * Math.ulp(expectedLog));
+		}
+		try { Mth.logFactorial(-1); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testLogBinomial()
+	{
+		// Reference values calculated with 60 digits.
+		long[][] nr = {{67, 1}, {67, 33}, {100, 3}, {100, 16}, {100, 17}, {100, 50}, {1000, 500}, {1000000, 20}, {1000000, 12345}, {1000000000000L, 1}, {1000000000000L, 17}, {1000000000000L, 500000000000L}, {4611686018427387904L, 1099511627776L}};
+		double[] expected = {4.204692619390966D, 44.10163955417503D, 11.993498045565198D, 41.74356535521251D, 43.34116880999961D, 66.78384165201743D, 689.4672615678512D, 233.974404697297D, 66513.01554713037D, 27.631021115928547D, 436.22228552051246D, 693147180545.904D, 17866225961977.04D};
+		for (int i = 0; i < nr.length; i++)
+		{
+			long n = nr[i][0];
+			long r = nr[i][1];
+			assertEquals("n: " + n + " r: " + r, expected[i], Mth.logBinomial(n, r), 4 * Math.ulp(expected[i]));
+			assertEquals(Mth.logBinomial(n, r), Mth.logBinomial(n, n - r), 0D);
+		}
+
+		// Compared with the exact coefficients.
+		long[] rs = new long[300];
+		for (int r = 0; r < rs.length; r++)
+		{
+			rs[r] = r;
+		}
+		double[] bulk = Mth.logBinomial(299, rs);
+		for (int r = 1; r < 299; r++)
+		{
+			BigInteger exact = Mth.binomialPrecise(299, r);
+			int shift = Math.max(0, exact.bitLength() - 62);
+			double expectedLog = Math.log(exact.shiftRight(shift).doubleValue()) + shift * Math.log(2D);
+			assertEquals("r: " + r, expectedLog, bulk[r], 4 * Math.ulp(expectedLog));
+		}
+		assertEquals(0D, bulk[0], 0D);
+		assertEquals(0D, Mth.logBinomial(0, 0), 0D);
+		try { Mth.logBinomial(5, 6); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.logBinomial(5, -1); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testLogGamma()
+	{
+		// Reference values calculated with 60 digits.
+		double[] x = {0.001D, 0.5D, 1.5D, 2.5D, 3.7D, 15.9D, 16.1D, 100.25D, 1e10D};
+		double[] expected = {6.907178885383853D, 0.5723649429247001D, -0.12078223763524522D, 0.2846828704729192D, 1.4280723266653879D, 27.625493215168692D, 28.173694494813542D, 360.28455963776423D, 220258509288.81058D};
+		for (int i = 0; i < x.length; i++)
+		{
+			assertEquals("x: " + x[i], expected[i], Mth.logGamma(x[i]), 4 * Math.ulp(expected[i]));
+		}
+		for (long n = 0; n < 300; n++)
+		{
+			assertEquals(Mth.logFactorial(n), Mth.logGamma(n + 1), 1e-12);
+		}
+		try { Mth.logGamma(0D); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.logGamma(Double.NaN); fail(); } catch (ArgumentStrangeException ex) { }
+	}
+
+	@Test
+	public void testNextCombinationBits()
+	{
+		// Every 3-subset of 6 elements, in increasing order.
+		int count = 1;
+		long bits = 0b111;
+		while (bits != 0b111000)
+		{
+			long next = Mth.nextCombination(bits);
+			assertTrue(next > bits);
+			assertEquals(3, Long.bitCount(next));
+			bits = next;
+			count++;
+		}
+		assertEquals(20, count);
+
+		assertEquals(0b1011L, Mth.nextCombination(0b111L));
+		assertEquals(Long.MIN_VALUE | 1L, Mth.nextCombination(1L << 62 | 1L << 61));
+		try { Mth.nextCombination(0L); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.nextCombination(Long.MIN_VALUE); fail(); } catch (ArithmeticException ex) { }
+	}
+
+	@Test
+	public void testNextCombination()
+	{
+		for (int n = 0; n <= 8; n++)
+		{
+			for (int k = 0; k <= n; k++)
+			{
+				int[] combination = new int[k];
+				for (int i = 0; i < k; i++)
+				{
+					combination[i] = i;
+				}
+
+				// The ranks follow the enumeration order.
+				long rank = 0;
+				do
+				{
+					assertEquals(rank, Mth.rankCombination(combination, n));
+					int[] unranked = new int[k];
+					Mth.unrankCombination(rank, n, unranked);
+					assertTrue(Arrays.equals(combination, unranked));
+					rank++;
+				}
+				while (Mth.nextCombination(combination, n));
+
+				assertEquals((k == 0 || k == n) ? 1 : Mth.binomialExact(n, k), rank);
+			}
+		}
+	}
+
+	@Test
+	public void testRankCombinationLarge()
+	{
+		Random random = new Random(41);
+		for (int i = 0; i < 100; i++)
+		{
+			long rank = (random.nextLong() >>> 1) % Mth.binomialExact(200, 10);
+			int[] combination = new int[10];
+			Mth.unrankCombination(rank, 200, combination);
+			assertEquals(rank, Mth.rankCombination(combination, 200));
+		}
+
+		int[] last = new int[10];
+		Mth.unrankCombination(Mth.binomialExact(200, 10) - 1, 200, last);
+		assertTrue(Arrays.equals(new int[] {190, 191, 192, 193, 194, 195, 196, 197, 198, 199}, last));
+
+		try { Mth.rankCombination(new int[] {1, 1}, 5); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.rankCombination(new int[] {1, 5}, 5); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.unrankCombination(10, 5, new int[2]); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.unrankCombination(-1, 5, new int[2]); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testCombinations()
+	{
+		assertEquals(Mth.binomialExact(20, 7), Mth.combinations(20, 7).count());
+		assertEquals(1, Mth.combinations(5, 0).count());
+
+		// Parallel parts are ranges of ranks, so they sum up the same.
+		long expected = Mth.combinations(24, 6).mapToLong(c -> Mth.rankCombination(c, 24)).sum();
+		long actual = Mth.combinations(24, 6).parallel().mapToLong(c -> Mth.rankCombination(c, 24)).sum();
+		assertEquals(expected, actual);
+		long count = Mth.binomialExact(24, 6);
+		assertEquals(count * (count - 1) / 2, actual);
+
+		try { Mth.combinations(3, 4); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.combinations(100, 50); fail(); } catch (ArithmeticException ex) { }
+	}
+
+	@Test
+	public void testNextPermutation()
+	{
+		int[] array = {0, 1, 2, 3};
+		int count = 1;
+		int[] previous = array.clone();
+		while (Mth.nextPermutation(array))
+		{
+			assertTrue(compare(previous, array) < 0);
+			previous = array.clone();
+			count++;
+		}
+		assertEquals(24, count);
+		assertTrue(Arrays.equals(new int[] {0, 1, 2, 3}, array));
+
+		// Equal elements, 5! / (2! 3!) distinct permutations.
+		int[] repeated = {1, 1, 2, 2, 2};
+		count = 1;
+		while (Mth.nextPermutation(repeated))
+		{
+			count++;
+		}
+		assertEquals(10, count);
+	}
+
+	@Test
+	public void testForEachPermutation()
+	{
+		for (int n = 0; n <= 7; n++)
+		{
+			int[] array = new int[n];
+			for (int i = 0; i < n; i++)
+			{
+				array[i] = i;
+			}
+
+			Set<String> seen = new HashSet<>();
+			int[] count = {0};
+			Mth.forEachPermutation(array, p ->
+			{
+				count[0]++;
+				seen.add(Arrays.toString(p));
+			});
+			long expected = Mth.factorialExact(n);
+			assertEquals(expected, count[0]);
+			assertEquals(expected, seen.size());
+		}
+	}
+
+	private static int compare(int[] a, int[] b)
+	{
+		for (int i = 0; i < a.length; i++)
+		{
+			if (a[i] != b[i]) return Integer.compare(a[i], b[i]);
+		}
+		return 0;
+	}
+
+	@Test
+	public void testIsqrt()
+	{
+		Random random = new Random(45);
+		long[] edges = {0, 1, 2, 3, 4, 15, 16, 17, Integer.MAX_VALUE, 3037000499L * 3037000499L, 3037000499L * 3037000499L - 1, Long.MAX_VALUE};
+		for (int i = 0; i < 10_000 + edges.length; i++)
+		{
+			long n = (i < edges.length) ? edges[i] : (random.nextLong() >>> 1) >>> random.nextInt(63);
+			long root = Mth.isqrt(n);
+			BigInteger big = BigInteger.valueOf(n);
+			assertTrue(BigInteger.valueOf(root).pow(2).compareTo(big) <= 0);
+			assertTrue(BigInteger.valueOf(root + 1).pow(2).compareTo(big) > 0);
+			if (n <= Integer.MAX_VALUE) assertEquals(root, Mth.isqrt((int) n));
+		}
+		try { Mth.isqrt(-1); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.isqrt(-1L); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testLogarithms()
+	{
+		// Powers of two and ten, one off them, and random numbers.
+		List<Long> numbers = new ArrayList<>();
+		long ten = 1;
+		for (int i = 0; i < 63; i++)
+		{
+			Collections.addAll(numbers, 1L << i, (1L << i) + 1, (1L << i) - 1);
+			if (i <= 18) Collections.addAll(numbers, ten, ten + 1, ten - 1);
+			if (i < 18) ten *= 10;
+		}
+		Random random = new Random(45);
+		for (int i = 0; i < 10_000; i++)
+		{
+			numbers.add((random.nextLong() >>> 1) >>> random.nextInt(63));
+		}
+		numbers.add(Long.MAX_VALUE);
+
+		for (long n : numbers)
+		{
+			if (n <= 0) continue;
+			BigInteger big = BigInteger.valueOf(n);
+			int floor2 = big.bitLength() - 1;
+			int floor10 = Long.toString(n).length() - 1;
+			assertEquals(floor2, Mth.floorLog2(n));
+			assertEquals(floor2 + (Long.bitCount(n) == 1 ? 0 : 1), Mth.ceilLog2(n));
+			assertEquals(floor10, Mth.floorLog10(n));
+			assertEquals(floor10 + (BigInteger.TEN.pow(floor10).equals(big) ? 0 : 1), Mth.ceilLog10(n));
+			if (n <= Integer.MAX_VALUE)
+			{
+				assertEquals(Mth.floorLog2(n), Mth.floorLog2((int) n));
+				assertEquals(Mth.ceilLog2(n), Mth.ceilLog2((int) n));
+				assertEquals(Mth.floorLog10(n), Mth.floorLog10((int) n));
+				assertEquals(Mth.ceilLog10(n), Mth.ceilLog10((int) n));
+			}
+		}
+		assertEquals(9, Mth.floorLog10(Integer.MAX_VALUE));
+		assertEquals(18, Mth.floorLog10(Long.MAX_VALUE));
+		assertEquals(19, Mth.ceilLog10(Long.MAX_VALUE));
+		try { Mth.floorLog2(0); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.ceilLog10(-5L); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testCeilPow2Exact()
+	{
+		assertEquals(1, Mth.ceilPow2Exact(1));
+		assertEquals(2, Mth.ceilPow2Exact(2));
+		assertEquals(4, Mth.ceilPow2Exact(3));
+		assertEquals(1024, Mth.ceilPow2Exact(1000));
+		assertEquals(1 << 30, Mth.ceilPow2Exact(1 << 30));
+		assertEquals(1L << 62, Mth.ceilPow2Exact((1L << 61) + 1));
+		try { Mth.ceilPow2Exact((1 << 30) + 1); fail(); } catch (ArithmeticException ex) { }
+		try { Mth.ceilPow2Exact((1L << 62) + 1); fail(); } catch (ArithmeticException ex) { }
+		try { Mth.ceilPow2Exact(0); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testPowExact()
+	{
+		for (long base = -40; base <= 40; base++)
+		{
+			for (int exponent = 0; exponent <= 70; exponent++)
+			{
+				BigInteger expected = BigInteger.valueOf(base).pow(exponent);
+				try
+				{
+					assertEquals(expected.longValueExact(), Mth.powExact(base, exponent));
+				}
+				catch (ArithmeticException ex)
+				{
+					assertTrue(expected.bitLength() > 63);
+				}
+				try
+				{
+					assertEquals(expected.intValueExact(), Mth.powExact((int) base, exponent));
+				}
+				catch (ArithmeticException ex)
+				{
+					assertTrue(expected.bitLength() > 31);
+				}
+			}
+		}
+		assertEquals(Long.MIN_VALUE, Mth.powExact(-2L, 63));
+		try { Mth.powExact(2L, -1); fail(); } catch (IllegalArgumentException ex) { }
+	}
+
+	@Test
+	public void testGcdAndLcm()
+	{
+		Random random = new Random(45);
+		for (int i = 0; i < 10_000; i++)
+		{
+			long factor = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			long a = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			long b = (random.nextLong() >>> 1) >>> random.nextInt(63);
+			if (factor > 0 && a <= Long.MAX_VALUE / factor && b <= Long.MAX_VALUE / factor)
+			{
+				a *= factor;
+				b *= factor;
+			}
+			BigInteger gcd = BigInteger.valueOf(a).gcd(BigInteger.valueOf(b));
+			assertEquals(gcd.longValue(), Mth.gcd(a, b));
+
+			BigInteger lcm = (a == 0 || b == 0) ? BigInteger.ZERO : BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(gcd);
+			try
+			{
+				assertEquals(lcm.longValueExact(), Mth.lcmExact(a, b));
+			}
+			catch (ArithmeticException ex)
+			{
+				assertTrue(lcm.bitLength() > 63);
+			}
+		}
+		assertEquals(0, Mth.gcd(0, 0));
+		assertEquals(7, Mth.gcd(0, 7));
+		assertEquals(6, Mth.gcd(12, 18));
+		assertEquals(36, Mth.lcmExact(12, 18));
+		assertEquals(0, Mth.lcmExact(0, 18));
+		try { Mth.gcd(-1, 2); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.lcmExact(-1L, 0L); fail(); } catch (IllegalArgumentException ex) { }
+		try { Mth.lcmExact(Integer.MAX_VALUE, Integer.MAX_VALUE - 1); fail(); } catch (ArithmeticException ex) { }
+	}
+
+	@Test
+	public void testDivision()
+	{
+		for (int x = -20; x <= 20; x++)
+		{
+			for (int y = -7; y <= 7; y++)
+			{
+				if (y == 0) continue;
+				int expected = (int) Math.ceil((double) x / y);
+				assertEquals(expected, Mth.ceilDiv(x, y));
+				assertEquals(expected, Mth.ceilDiv((long) x, (long) y));
+				assertEquals(x - expected * y, Mth.ceilMod(x, y));
+				assertEquals(x - expected * y, Mth.ceilMod((long) x, (long) y));
+				assertEquals(Math.floorMod(x, y), Mth.floorMod((long) x, y));
+			}
+		}
+		assertEquals(Integer.MIN_VALUE / 2, Mth.ceilDiv(Integer.MIN_VALUE, 2));
+		assertEquals(Long.MAX_VALUE / 2 + 1, Mth.ceilDiv(Long.MAX_VALUE, 2L));
+		assertEquals(Integer.MAX_VALUE - 1, Mth.floorMod(-1L, Integer.MAX_VALUE));
+		try { Mth.ceilDiv(1, 0); fail(); } catch (ArithmeticException ex) { }
+	}
+
+	@Test
+	public void testIsPrime()
+	{
+		Random random = new Random(39);
+		for (long n = -10; n < 10_000; n++)
+		{
+			assertEquals(String.valueOf(n), n > 1 && BigInteger.valueOf(n).isProbablePrime(50), Mth.isPrime(n));
+		}
+		for (int i = 0; i < 10_000; i++)
+		{
+			long n = random.nextLong() >>> random.nextInt(63);
+			assertEquals(String.valueOf(n), n > 1 && BigInteger.valueOf(n).isProbablePrime(50), Mth.isPrime(n));
+		}
+
+		// Strong pseudoprimes to several bases, and Carmichael numbers
+		long[] composites = {561, 1_373_653, 25_326_001, 3_215_031_751L, 2_152_302_898_747L, 341_550_071_728_321L, 3_825_123_056_546_413_051L};
+		for (long n : composites)
+		{
+			assertFalse(String.valueOf(n), Mth.isPrime(n));
+		}
+		assertTrue(Mth.isPrime(Long.MAX_VALUE - 24));
+		assertTrue(Mth.isPrime((1L << 61) - 1));
+	}
+
+	@Test
+	public void testNextPrime()
+	{
+		assertEquals(2, Mth.nextPrime(-5));
+		assertEquals(3, Mth.nextPrime(2));
+		assertEquals(5, Mth.nextPrime(3));
+		assertEquals(1_000_000_007L, Mth.nextPrime(1_000_000_000L));
+		assertEquals(Long.MAX_VALUE - 24, Mth.nextPrime(Long.MAX_VALUE - 100));
+		try
+		{
+			Mth.nextPrime(Long.MAX_VALUE - 24);
+			fail();
+		}
+		catch (ArithmeticException ex) { }
+	}
+
+	@Test
+	public void testPrimes()
+	{
+		assertTrue(Arrays.equals(new long[] {2, 3, 5, 7, 11, 13}, Mth.primes(0, 17).toArray()));
+		assertTrue(Arrays.equals(new long[] {3, 5, 7, 11, 13, 17}, Mth.primes(3, 18).toArray()));
+		assertTrue(Arrays.equals(new long[] {}, Mth.primes(24, 29).toArray()));
+		assertTrue(Arrays.equals(new long[] {2}, Mth.primes(2, 3).toArray()));
+		assertEquals(0, Mth.primes(100, 10).count());
+
+		assertEquals(664_579, Mth.primes(0, 10_000_000).count());
+		assertEquals(5_761_455, Mth.primes(0, 100_000_000).parallel().count());
+		assertTrue(Arrays.equals(Mth.primes(0, 3_000_000).toArray(), Mth.primes(0, 3_000_000).parallel().toArray()));
+
+		// A window far up
+		long from = 1_000_000_000_000L;
+		long[] primes = Mth.primes(from, from + 1_000_000).parallel().toArray();
+		int count = 0;
+		for (long n = from; n < from + 1_000_000; n++)
+		{
+			if (Mth.isPrime(n)) assertEquals(n, primes[count++]);
+		}
+		assertEquals(count, primes.length);
+
+		// A narrow window at the top is tested one by one, without sieving up to 2^31.
+		from = (1L << 62) - 1_000;
+		primes = Mth.primes(from, 1L << 62).toArray();
+		count = 0;
+		for (long n = from; n < 1L << 62; n++)
+		{
+			if (Mth.isPrime(n)) assertEquals(n, primes[count++]);
+		}
+		assertEquals(count, primes.length);
+		assertTrue(count > 0);
+		assertTrue(Arrays.equals(new long[] {2, 3, 5}, Mth.primes(2, 7).toArray()));
 	}
 
 	// -------------------------------------------- //